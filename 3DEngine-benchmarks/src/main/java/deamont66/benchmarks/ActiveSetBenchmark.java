@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.benchmarks;
+
+import deamont66.engine.components.EntityComponent;
+import deamont66.engine.core.Entity;
+import deamont66.engine.core.Scene;
+import deamont66.engine.core.Transform;
+import deamont66.engine.core.math.Vector3f;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scene update with <code>awakePercent</code> of entities awake, the rest
+ * sleeping. Tree update still visits every entity, active set update only
+ * the awake ones.
+ *
+ * @author JiriSimecek
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ActiveSetBenchmark {
+
+    private static final int CHILDREN = 16;
+
+    @Param({"1024"})
+    private int roots;
+
+    @Param({"1", "10", "100"})
+    private int awakePercent;
+
+    @Param({"false", "true"})
+    private boolean activeSet;
+
+    private Scene scene;
+
+    @Setup
+    public void setUp() {
+        scene = new Scene();
+        scene.setCamera(new Entity());
+        int n = 0;
+        for (int r = 0; r < roots; r++) {
+            Entity root = createEntity(n++);
+            for (int c = 0; c < CHILDREN; c++) {
+                root.addChild(createEntity(n++));
+            }
+            scene.addChild(root);
+        }
+        scene.setActiveSetUpdate(activeSet);
+    }
+
+    private Entity createEntity(int n) {
+        Entity entity = new Entity();
+        entity.addComponent(new MoveComponent());
+        if (n % 100 >= awakePercent) {
+            entity.sleep();
+        }
+        return entity;
+    }
+
+    @Benchmark
+    public void updateAll() {
+        scene.updateAll(0.016f);
+    }
+
+    private static final class MoveComponent extends EntityComponent {
+
+        private static final Vector3f STEP = new Vector3f(0, 0.001f, 0);
+
+        @Override
+        public void update(float delta) {
+            Transform transform = getTransform();
+            transform.getPos().addLocal(STEP);
+            transform.markChanged();
+        }
+    }
+}
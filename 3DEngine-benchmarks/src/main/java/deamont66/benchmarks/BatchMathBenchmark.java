@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.benchmarks;
+
+import deamont66.engine.core.math.BatchMath;
+import deamont66.engine.core.math.Bounds;
+import deamont66.engine.core.math.Matrix4f;
+import deamont66.engine.core.math.Quaternion;
+import deamont66.engine.core.math.Vector3f;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link BatchMath} kernels against per-object loops over the same data:
+ * transforming {@link #COUNT} points, {@link #COUNT} bounding boxes and
+ * accumulating normals of a grid mesh with {@link #COUNT} vertices.
+ * Per-object normals are computed the way IndexedModel did it before
+ * BatchMath.
+ *
+ * @author JiriSimecek
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchMathBenchmark {
+
+    public static final int GRID_SIZE = 64;
+    public static final int COUNT = GRID_SIZE * GRID_SIZE;
+
+    private final Matrix4f matrix = new Matrix4f();
+
+    // points
+    private final float[] xs = new float[COUNT];
+    private final float[] ys = new float[COUNT];
+    private final float[] zs = new float[COUNT];
+    private final float[] outX = new float[COUNT];
+    private final float[] outY = new float[COUNT];
+    private final float[] outZ = new float[COUNT];
+    private final float[] packedPoints = new float[COUNT * 3];
+    private final float[] packedOut = new float[COUNT * 3];
+    private final Vector3f[] points = new Vector3f[COUNT];
+    private final Vector3f[] pointsOut = new Vector3f[COUNT];
+
+    // bounds
+    private final float[] affineMatrices = new float[COUNT * BatchMath.AFFINE_SIZE];
+    private final float[] localBoxes = new float[COUNT * BatchMath.AABB_SIZE];
+    private final float[] worldBoxes = new float[COUNT * BatchMath.AABB_SIZE];
+    private final Matrix4f[] matrices = new Matrix4f[COUNT];
+    private final Bounds[] localBounds = new Bounds[COUNT];
+    private final Bounds[] worldBounds = new Bounds[COUNT];
+
+    // grid mesh
+    private final int[] indices = new int[(GRID_SIZE - 1) * (GRID_SIZE - 1) * 6];
+    private final float[] normals = new float[COUNT * 3];
+    private final List<Vector3f> positionList = new ArrayList<>();
+    private final List<Integer> indexList = new ArrayList<>();
+    private final List<Vector3f> normalList = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(3);
+        Vector3f axis = new Vector3f(1, 2, 3).normalizeLocal();
+        matrix.initTransformation(new Vector3f(1, 2, 3), new Quaternion().fromAxisAngle(axis, 0.7f), new Vector3f(2, 2, 2));
+
+        for (int i = 0; i < COUNT; i++) {
+            float x = i % GRID_SIZE;
+            float z = i / GRID_SIZE;
+            float y = random.nextFloat();
+            xs[i] = x;
+            ys[i] = y;
+            zs[i] = z;
+            packedPoints[i * 3] = x;
+            packedPoints[i * 3 + 1] = y;
+            packedPoints[i * 3 + 2] = z;
+            points[i] = new Vector3f(x, y, z);
+            pointsOut[i] = new Vector3f();
+            positionList.add(new Vector3f(x, y, z));
+
+            matrices[i] = new Matrix4f().initTransformation(new Vector3f(x, y, z),
+                    new Quaternion().fromAxisAngle(axis, random.nextFloat() * 6), new Vector3f(1, 1, 1));
+            BatchMath.storeAffine(matrices[i], affineMatrices, i * BatchMath.AFFINE_SIZE);
+            localBounds[i] = new Bounds().set(-1, -1, -1, 1, 2, 1);
+            localBounds[i].getBox(localBoxes, i * BatchMath.AABB_SIZE);
+            worldBounds[i] = new Bounds();
+        }
+
+        int n = 0;
+        for (int z = 0; z < GRID_SIZE - 1; z++) {
+            for (int x = 0; x < GRID_SIZE - 1; x++) {
+                int i = z * GRID_SIZE + x;
+                int[] quad = {i, i + GRID_SIZE, i + 1, i + 1, i + GRID_SIZE, i + GRID_SIZE + 1};
+                for (int q : quad) {
+                    indices[n++] = q;
+                    indexList.add(q);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public float[] transformPointsSoa() {
+        BatchMath.transformPoints(matrix, xs, ys, zs, outX, outY, outZ, COUNT);
+        return outX;
+    }
+
+    @Benchmark
+    public float[] transformPointsPacked() {
+        BatchMath.transformPoints(matrix, packedPoints, 0, packedOut, 0, COUNT);
+        return packedOut;
+    }
+
+    @Benchmark
+    public Vector3f[] transformPointsPerObject() {
+        for (int i = 0; i < COUNT; i++) {
+            matrix.transform(points[i], pointsOut[i]);
+        }
+        return pointsOut;
+    }
+
+    @Benchmark
+    public float[] transformBoundsBatch() {
+        BatchMath.transformBounds(affineMatrices, localBoxes, worldBoxes, COUNT);
+        return worldBoxes;
+    }
+
+    @Benchmark
+    public Bounds[] transformBoundsPerObject() {
+        for (int i = 0; i < COUNT; i++) {
+            localBounds[i].transform(matrices[i], worldBounds[i]);
+        }
+        return worldBounds;
+    }
+
+    @Benchmark
+    public float[] accumulateNormalsBatch() {
+        Arrays.fill(normals, 0);
+        BatchMath.accumulateNormals(packedPoints, indices, indices.length, normals);
+        BatchMath.normalize(normals, COUNT);
+        return normals;
+    }
+
+    @Benchmark
+    public List<Vector3f> accumulateNormalsPerObject() {
+        normalList.clear();
+        for (int i = 0; i < positionList.size(); i++) {
+            normalList.add(new Vector3f());
+        }
+        for (int i = 0; i < indexList.size(); i += 3) {
+            int i0 = indexList.get(i);
+            int i1 = indexList.get(i + 1);
+            int i2 = indexList.get(i + 2);
+
+            Vector3f v1 = positionList.get(i1).sub(positionList.get(i0));
+            Vector3f v2 = positionList.get(i2).sub(positionList.get(i0));
+            Vector3f normal = v1.cross(v2).normalized();
+
+            normalList.get(i0).set(normalList.get(i0).add(normal));
+            normalList.get(i1).set(normalList.get(i1).add(normal));
+            normalList.get(i2).set(normalList.get(i2).add(normal));
+        }
+        for (int i = 0; i < normalList.size(); i++) {
+            normalList.get(i).set(normalList.get(i).normalized());
+        }
+        return normalList;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.benchmarks;
+
+import deamont66.engine.components.Camera;
+import deamont66.engine.components.EntityComponent;
+import deamont66.engine.core.Entity;
+import deamont66.engine.core.Scene;
+import deamont66.engine.core.math.Bounds;
+import deamont66.engine.rendering.Renderer;
+import deamont66.engine.rendering.Shader;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Render traversal of clustered scene (<code>clusters</code> root entities
+ * spread over a big area, each with 64 children around it) with and without
+ * subtree culling. Components only count draw calls, so the benchmark
+ * measures traversal and culling cost.
+ *
+ * @author JiriSimecek
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CullingBenchmark {
+
+    private static final int CHILDREN = 64;
+
+    @Param({"256", "4096"})
+    private int clusters;
+
+    @Param({"false", "true"})
+    private boolean culling;
+
+    private Scene scene;
+    private Camera camera;
+    private int draws;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        scene = new Scene();
+        camera = new Camera((float) Math.toRadians(70), 16f / 9f, 0.1f, 1000f);
+        scene.setCamera(new Entity().addComponent(camera));
+
+        for (int c = 0; c < clusters; c++) {
+            Entity cluster = new Entity();
+            cluster.getTransform().setPos(random.nextFloat() * 2000 - 1000, 0, random.nextFloat() * 2000 - 1000);
+            cluster.addComponent(new DrawCounter());
+            for (int i = 0; i < CHILDREN; i++) {
+                Entity child = new Entity();
+                child.getTransform().setPos(random.nextFloat() * 20 - 10, random.nextFloat() * 5, random.nextFloat() * 20 - 10);
+                child.addComponent(new DrawCounter());
+                cluster.addChild(child);
+            }
+            scene.addChild(cluster);
+        }
+        scene.setCulling(culling);
+    }
+
+    @Benchmark
+    public int renderAll() {
+        draws = 0;
+        scene.renderAll(null, null, camera);
+        return draws;
+    }
+
+    private final class DrawCounter extends EntityComponent {
+
+        private final Bounds bounds = new Bounds().set(-1, -1, -1, 1, 1, 1);
+
+        @Override
+        public void render(Shader shader, Renderer renderingEngine, Camera camera) {
+            draws++;
+        }
+
+        @Override
+        public Bounds getLocalBounds() {
+            return bounds;
+        }
+    }
+}
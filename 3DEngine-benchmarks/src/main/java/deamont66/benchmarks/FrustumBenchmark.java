@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.benchmarks;
+
+import deamont66.engine.core.math.Frustum;
+import deamont66.engine.core.math.Matrix4f;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Frustum tests per second: batched {@link Frustum#cullAabbs} and
+ * {@link Frustum#cullSpheres} over packed arrays against testing the same
+ * objects one by one. About half of {@link #COUNT} objects are visible, so
+ * branches aren't predictable.
+ *
+ * @author JiriSimecek
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+@OperationsPerInvocation(FrustumBenchmark.COUNT)
+public class FrustumBenchmark {
+
+    public static final int COUNT = 4096;
+
+    private final Frustum frustum = new Frustum();
+    private final float[] boxes = new float[COUNT * 6];
+    private final float[] spheres = new float[COUNT * 4];
+    private final byte[] lastPlanes = new byte[COUNT];
+    private final int[] visible = new int[COUNT];
+
+    @Setup
+    public void setUp() {
+        frustum.set(new Matrix4f().initPerspective((float) Math.toRadians(70), 16f / 9f, 0.1f, 500));
+
+        Random random = new Random(42);
+        for (int i = 0; i < COUNT; i++) {
+            float x = random.nextFloat() * 1000 - 500;
+            float y = random.nextFloat() * 200 - 100;
+            float z = random.nextFloat() * 600 - 50;
+            float size = 0.5f + random.nextFloat() * 5;
+            boxes[i * 6] = x - size;
+            boxes[i * 6 + 1] = y - size;
+            boxes[i * 6 + 2] = z - size;
+            boxes[i * 6 + 3] = x + size;
+            boxes[i * 6 + 4] = y + size;
+            boxes[i * 6 + 5] = z + size;
+            spheres[i * 4] = x;
+            spheres[i * 4 + 1] = y;
+            spheres[i * 4 + 2] = z;
+            spheres[i * 4 + 3] = size;
+        }
+    }
+
+    @Benchmark
+    public int cullAabbs() {
+        return frustum.cullAabbs(boxes, COUNT, visible);
+    }
+
+    @Benchmark
+    public int intersectsAabbEach() {
+        int visibleCount = 0;
+        for (int i = 0; i < COUNT; i++) {
+            if (frustum.intersectsAabb(boxes, i * 6)) {
+                visibleCount++;
+            }
+        }
+        return visibleCount;
+    }
+
+    @Benchmark
+    public int classifyAabbCoherent() {
+        int visibleCount = 0;
+        for (int i = 0; i < COUNT; i++) {
+            if (frustum.classifyAabb(boxes, i * 6, Frustum.ALL_PLANES, lastPlanes, i) != Frustum.OUTSIDE) {
+                visibleCount++;
+            }
+        }
+        return visibleCount;
+    }
+
+    @Benchmark
+    public int cullSpheres() {
+        return frustum.cullSpheres(spheres, COUNT, visible);
+    }
+
+    @Benchmark
+    public int intersectsSphereEach() {
+        int visibleCount = 0;
+        for (int i = 0; i < COUNT; i++) {
+            if (frustum.intersectsSphere(spheres[i * 4], spheres[i * 4 + 1], spheres[i * 4 + 2], spheres[i * 4 + 3])) {
+                visibleCount++;
+            }
+        }
+        return visibleCount;
+    }
+}
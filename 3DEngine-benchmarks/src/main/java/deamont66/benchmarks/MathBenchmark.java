@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.benchmarks;
+
+import deamont66.engine.core.math.Matrix4f;
+import deamont66.engine.core.math.Quaternion;
+import deamont66.engine.core.math.Vector3f;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single operations of {@link Vector3f}, {@link Quaternion} and
+ * {@link Matrix4f}. Allocating variants are paired with their
+ * <code>dest</code> counterparts, direct TRS build, affine multiply and
+ * affine/rigid inverse with the generic paths they replace (all without
+ * allocation, so only arithmetic is compared).
+ *
+ * @author JiriSimecek
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MathBenchmark {
+
+    private final Vector3f vector = new Vector3f();
+    private final Vector3f axis = new Vector3f();
+    private final Vector3f scale = new Vector3f(1, 2, 3);
+    private final Vector3f vectorDest = new Vector3f();
+
+    private final Quaternion rotation = new Quaternion();
+    private final Quaternion rotation2 = new Quaternion();
+    private final Quaternion quaternionDest = new Quaternion();
+
+    private final Matrix4f matrix = new Matrix4f();
+    private final Matrix4f matrix2 = new Matrix4f();
+    private final Matrix4f matrixDest = new Matrix4f();
+    private final Matrix4f rigid = new Matrix4f();
+
+    // temporaries of generic paths
+    private final Matrix4f translationMatrix = new Matrix4f();
+    private final Matrix4f rotationMatrix = new Matrix4f();
+    private final Matrix4f scaleMatrix = new Matrix4f();
+    private final Matrix4f temp = new Matrix4f();
+    private final Matrix4f temp2 = new Matrix4f();
+    private final Quaternion conjugate = new Quaternion();
+
+    @Setup
+    public void setUp() {
+        vector.set(0.3f, -1.2f, 4.5f);
+        axis.set(1, 2, 3);
+        axis.normalize();
+        rotation.fromAxisAngle(axis, 0.7f);
+        rotation2.fromAxisAngle(new Vector3f(0, 1, 0), 1.3f);
+        matrix.initTransformation(vector, rotation, scale);
+        matrix2.initTransformation(axis, rotation2, scale);
+        rigid.initTransformation(vector, rotation);
+    }
+
+    @Benchmark
+    public Vector3f vectorRotateQuaternion() {
+        return vector.rotate(rotation);
+    }
+
+    @Benchmark
+    public Vector3f vectorRotateQuaternionDest() {
+        return vector.rotate(rotation, vectorDest);
+    }
+
+    @Benchmark
+    public Vector3f vectorRotateAxisAngle() {
+        return vector.rotate(axis, 0.7f, vectorDest);
+    }
+
+    @Benchmark
+    public Vector3f vectorCrossNormalized() {
+        return vector.cross(axis, vectorDest).normalized(vectorDest);
+    }
+
+    @Benchmark
+    public Quaternion quaternionMul() {
+        return rotation.mul(rotation2, quaternionDest);
+    }
+
+    @Benchmark
+    public Quaternion quaternionFromAxisAngle() {
+        return quaternionDest.fromAxisAngle(axis, 0.7f);
+    }
+
+    @Benchmark
+    public Quaternion quaternionSlerp() {
+        return rotation.slerp(rotation2, 0.3f, true, quaternionDest);
+    }
+
+    @Benchmark
+    public Matrix4f quaternionToRotationMatrix() {
+        return rotation.toRotationMatrix(matrixDest);
+    }
+
+    @Benchmark
+    public Matrix4f matrixMul() {
+        return matrix.mul(matrix2);
+    }
+
+    @Benchmark
+    public Matrix4f matrixMulDest() {
+        return matrix.mul(matrix2, matrixDest);
+    }
+
+    @Benchmark
+    public Matrix4f matrixMulAffine() {
+        return matrix.mulAffine(matrix2, matrixDest);
+    }
+
+    @Benchmark
+    public Matrix4f matrixInitTransformation() {
+        return matrixDest.initTransformation(vector, rotation, scale);
+    }
+
+    /**
+     * World matrix of one hierarchy level as Transform builds it:
+     * parent * TRS.
+     */
+    @Benchmark
+    public Matrix4f transformationLevel() {
+        temp.initTransformation(vector, rotation, scale);
+        return matrix2.mulAffine(temp, matrixDest);
+    }
+
+    /**
+     * Same as {@link #transformationLevel()} the old way: separate
+     * translation, rotation and scale matrices and full products.
+     */
+    @Benchmark
+    public Matrix4f transformationLevelGeneric() {
+        translationMatrix.initTranslation(vector.x, vector.y, vector.z);
+        rotation.toRotationMatrix(rotationMatrix);
+        scaleMatrix.initScale(scale.x, scale.y, scale.z);
+        rotationMatrix.mul(scaleMatrix, temp);
+        translationMatrix.mul(temp, temp2);
+        return matrix2.mul(temp2, matrixDest);
+    }
+
+    @Benchmark
+    public Matrix4f cameraView() {
+        return matrixDest.initTransformation(vector, rotation).invertRigid(matrixDest);
+    }
+
+    /**
+     * Camera view matrix the old way: conjugated rotation times negative
+     * translation.
+     */
+    @Benchmark
+    public Matrix4f cameraViewGeneric() {
+        rotation.conjugated(conjugate).toRotationMatrix(rotationMatrix);
+        translationMatrix.initTranslation(-vector.x, -vector.y, -vector.z);
+        return rotationMatrix.mul(translationMatrix, matrixDest);
+    }
+
+    @Benchmark
+    public Matrix4f matrixInvertAffine() {
+        return matrix.invertAffine(matrixDest);
+    }
+
+    @Benchmark
+    public Matrix4f matrixInvertRigid() {
+        return rigid.invertRigid(matrixDest);
+    }
+
+    @Benchmark
+    public Matrix4f matrixInvertGeneric() {
+        return invertGeneric(matrix, matrixDest);
+    }
+
+    /**
+     * Full 4x4 inverse by cofactors, which is what inverting any matrix
+     * costs without knowing it's affine.
+     */
+    private static Matrix4f invertGeneric(Matrix4f m, Matrix4f dest) {
+        float s0 = m.m00 * m.m11 - m.m10 * m.m01;
+        float s1 = m.m00 * m.m12 - m.m10 * m.m02;
+        float s2 = m.m00 * m.m13 - m.m10 * m.m03;
+        float s3 = m.m01 * m.m12 - m.m11 * m.m02;
+        float s4 = m.m01 * m.m13 - m.m11 * m.m03;
+        float s5 = m.m02 * m.m13 - m.m12 * m.m03;
+        float c5 = m.m22 * m.m33 - m.m32 * m.m23;
+        float c4 = m.m21 * m.m33 - m.m31 * m.m23;
+        float c3 = m.m21 * m.m32 - m.m31 * m.m22;
+        float c2 = m.m20 * m.m33 - m.m30 * m.m23;
+        float c1 = m.m20 * m.m32 - m.m30 * m.m22;
+        float c0 = m.m20 * m.m31 - m.m30 * m.m21;
+
+        float invDet = 1.0f / (s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0);
+
+        float r00 = (m.m11 * c5 - m.m12 * c4 + m.m13 * c3) * invDet;
+        float r01 = (-m.m01 * c5 + m.m02 * c4 - m.m03 * c3) * invDet;
+        float r02 = (m.m31 * s5 - m.m32 * s4 + m.m33 * s3) * invDet;
+        float r03 = (-m.m21 * s5 + m.m22 * s4 - m.m23 * s3) * invDet;
+        float r10 = (-m.m10 * c5 + m.m12 * c2 - m.m13 * c1) * invDet;
+        float r11 = (m.m00 * c5 - m.m02 * c2 + m.m03 * c1) * invDet;
+        float r12 = (-m.m30 * s5 + m.m32 * s2 - m.m33 * s1) * invDet;
+        float r13 = (m.m20 * s5 - m.m22 * s2 + m.m23 * s1) * invDet;
+        float r20 = (m.m10 * c4 - m.m11 * c2 + m.m13 * c0) * invDet;
+        float r21 = (-m.m00 * c4 + m.m01 * c2 - m.m03 * c0) * invDet;
+        float r22 = (m.m30 * s4 - m.m31 * s2 + m.m33 * s0) * invDet;
+        float r23 = (-m.m20 * s4 + m.m21 * s2 - m.m23 * s0) * invDet;
+        float r30 = (-m.m10 * c3 + m.m11 * c1 - m.m12 * c0) * invDet;
+        float r31 = (m.m00 * c3 - m.m01 * c1 + m.m02 * c0) * invDet;
+        float r32 = (-m.m30 * s3 + m.m31 * s1 - m.m32 * s0) * invDet;
+        float r33 = (m.m20 * s3 - m.m21 * s1 + m.m22 * s0) * invDet;
+
+        dest.m00 = r00; dest.m01 = r01; dest.m02 = r02; dest.m03 = r03;
+        dest.m10 = r10; dest.m11 = r11; dest.m12 = r12; dest.m13 = r13;
+        dest.m20 = r20; dest.m21 = r21; dest.m22 = r22; dest.m23 = r23;
+        dest.m30 = r30; dest.m31 = r31; dest.m32 = r32; dest.m33 = r33;
+        return dest;
+    }
+}
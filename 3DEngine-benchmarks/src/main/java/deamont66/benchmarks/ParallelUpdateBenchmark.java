@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.benchmarks;
+
+import deamont66.engine.components.EntityComponent;
+import deamont66.engine.core.Entity;
+import deamont66.engine.core.Scene;
+import deamont66.engine.core.Transform;
+import deamont66.engine.core.math.Matrix4f;
+import deamont66.engine.core.math.Vector3f;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scene update of <code>roots</code> root entities with 64 children each,
+ * every entity rotating itself with a thread safe component. 0 threads is
+ * serial update without pool, compare it with 1 to see overhead of the pool.
+ *
+ * @author JiriSimecek
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelUpdateBenchmark {
+
+    private static final int CHILDREN = 64;
+
+    @Param({"0", "1", "2", "4", "8", "16"})
+    private int threads;
+
+    @Param({"64", "1024"})
+    private int roots;
+
+    private Scene scene;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        scene = new Scene();
+        scene.setCamera(new Entity());
+        for (int r = 0; r < roots; r++) {
+            Entity root = new Entity();
+            root.addComponent(new SpinComponent());
+            for (int c = 0; c < CHILDREN; c++) {
+                Entity child = new Entity();
+                child.getTransform().setPos(c, 0, 0);
+                child.addComponent(new SpinComponent());
+                root.addChild(child);
+            }
+            scene.addChild(root);
+        }
+
+        if (threads > 0) {
+            pool = new ForkJoinPool(threads);
+            scene.setUpdatePool(pool);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public void updateAll() {
+        scene.updateAll(0.016f);
+    }
+
+    private static final class SpinComponent extends EntityComponent {
+
+        private static final Vector3f AXIS = new Vector3f(0, 1, 0);
+        private final Matrix4f world = new Matrix4f();
+        private float checksum;
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
+
+        @Override
+        public void update(float delta) {
+            Transform transform = getTransform();
+            transform.rotate(AXIS, delta);
+            transform.getTransformation(world);
+            checksum += world.m03;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.benchmarks;
+
+import deamont66.engine.components.Camera;
+import deamont66.engine.components.EntityComponent;
+import deamont66.engine.core.Entity;
+import deamont66.engine.core.Scene;
+import deamont66.engine.core.math.Matrix4f;
+import deamont66.engine.core.math.Vector3f;
+import deamont66.engine.rendering.Renderer;
+import deamont66.engine.rendering.Shader;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Frame of a scene with {@link #ROOTS} * {@link #CHILDREN} (10k) entities,
+ * each rotated by a component every update and drawn by a component which
+ * computes its model view projection matrix, like MeshRenderer does, but
+ * calls no GL (shader and renderer are null).
+ *
+ * Only Scene, Entity, Transform and Camera API which already existed when
+ * math types extended javax.vecmath is used, so the class can be run
+ * against that version of the engine as well and the results compared.
+ *
+ * @author JiriSimecek
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SceneTraversalBenchmark {
+
+    public static final int ROOTS = 100;
+    public static final int CHILDREN = 99;
+
+    private Scene scene;
+    private Camera camera;
+
+    @Setup
+    public void setUp() {
+        scene = new Scene();
+        Entity cameraEntity = new Entity();
+        camera = new Camera((float) Math.toRadians(70), 16f / 9f, 0.1f, 1000);
+        cameraEntity.addComponent(camera);
+        cameraEntity.getTransform().setPos(new Vector3f(0, 10, -50));
+        scene.setCamera(cameraEntity);
+
+        for (int r = 0; r < ROOTS; r++) {
+            Entity root = new Entity();
+            root.getTransform().setPos(new Vector3f(r % 10 * 10, 0, r / 10 * 10));
+            root.addComponent(new SpinComponent());
+            root.addComponent(new DrawComponent());
+            for (int c = 0; c < CHILDREN; c++) {
+                Entity child = new Entity();
+                child.getTransform().setPos(new Vector3f(c % 10 - 5, 1, c / 10 - 5));
+                child.addComponent(new SpinComponent());
+                child.addComponent(new DrawComponent());
+                root.addChild(child);
+            }
+            scene.addChild(root);
+        }
+    }
+
+    @Benchmark
+    public void update() {
+        scene.processInputAll(0.016f);
+        scene.updateAll(0.016f);
+    }
+
+    @Benchmark
+    public void render() {
+        scene.renderAll(null, null, camera);
+    }
+
+    @Benchmark
+    public void frame() {
+        scene.processInputAll(0.016f);
+        scene.updateAll(0.016f);
+        scene.renderAll(null, null, camera);
+    }
+
+    private static final class SpinComponent extends EntityComponent {
+
+        private static final Vector3f AXIS = new Vector3f(0, 1, 0);
+
+        @Override
+        public void update(float delta) {
+            getTransform().rotate(AXIS, delta);
+        }
+    }
+
+    private static final class DrawComponent extends EntityComponent {
+
+        private final Matrix4f viewProjection = new Matrix4f();
+        private final Matrix4f model = new Matrix4f();
+        private final Matrix4f mvp = new Matrix4f();
+        private float checksum;
+
+        @Override
+        public void render(Shader shader, Renderer renderer, Camera camera) {
+            camera.getViewProjection(viewProjection);
+            getTransform().getTransformation(model);
+            viewProjection.mul(model, mvp);
+            checksum += mvp.m03;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.benchmarks;
+
+import deamont66.engine.core.math.DynamicAabbTree;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Dynamic AABB tree with <code>count</code> unit boxes in a 1000 units big
+ * cube. Move benchmarks move every object a bit (most stay in their enlarged
+ * box) or teleport a fraction of them, query benchmarks compare tree with
+ * linear scan.
+ *
+ * @author JiriSimecek
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SpatialIndexBenchmark {
+
+    private static final float WORLD_SIZE = 1000;
+    private static final float QUERY_SIZE = 20;
+
+    @Param({"10000", "100000"})
+    private int count;
+
+    private DynamicAabbTree<Integer> tree;
+    private int[] proxies;
+    private float[] boxes;
+    private final Random random = new Random(42);
+    private int teleported;
+    private int queryFound;
+
+    private final DynamicAabbTree.Callback<Integer> counter = new DynamicAabbTree.Callback<Integer>() {
+
+        @Override
+        public boolean found(int proxy, Integer data) {
+            queryFound++;
+            return true;
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        tree = new DynamicAabbTree<>(0.1f);
+        proxies = new int[count];
+        boxes = new float[count * 6];
+        for (int i = 0; i < count; i++) {
+            int o = i * 6;
+            setBox(o, random.nextFloat() * WORLD_SIZE, random.nextFloat() * WORLD_SIZE, random.nextFloat() * WORLD_SIZE);
+            proxies[i] = tree.insert(boxes[o], boxes[o + 1], boxes[o + 2],
+                    boxes[o + 3], boxes[o + 4], boxes[o + 5], i);
+        }
+    }
+
+    private void setBox(int o, float x, float y, float z) {
+        boxes[o] = x;
+        boxes[o + 1] = y;
+        boxes[o + 2] = z;
+        boxes[o + 3] = x + 1;
+        boxes[o + 4] = y + 1;
+        boxes[o + 5] = z + 1;
+    }
+
+    private void move(int i) {
+        int o = i * 6;
+        tree.move(proxies[i], boxes[o], boxes[o + 1], boxes[o + 2], boxes[o + 3], boxes[o + 4], boxes[o + 5]);
+    }
+
+    /** All objects move by 0.01 along x, every tenth frame they leave enlarged box. */
+    @Benchmark
+    public int moveAllSmall() {
+        for (int i = 0; i < count; i++) {
+            int o = i * 6;
+            boxes[o] += 0.01f;
+            boxes[o + 3] += 0.01f;
+            move(i);
+        }
+        return tree.getHeight();
+    }
+
+    /** One percent of objects jumps to random place. */
+    @Benchmark
+    public int teleportOnePercent() {
+        for (int n = count / 100; n > 0; n--) {
+            int i = teleported++ % count;
+            setBox(i * 6, random.nextFloat() * WORLD_SIZE, random.nextFloat() * WORLD_SIZE, random.nextFloat() * WORLD_SIZE);
+            move(i);
+        }
+        return tree.getHeight();
+    }
+
+    @Benchmark
+    public int removeInsert() {
+        int i = teleported++ % count;
+        int o = i * 6;
+        tree.remove(proxies[i]);
+        proxies[i] = tree.insert(boxes[o], boxes[o + 1], boxes[o + 2], boxes[o + 3], boxes[o + 4], boxes[o + 5], i);
+        return proxies[i];
+    }
+
+    @Benchmark
+    public int queryTree() {
+        float x = random.nextFloat() * WORLD_SIZE, y = random.nextFloat() * WORLD_SIZE, z = random.nextFloat() * WORLD_SIZE;
+        queryFound = 0;
+        tree.query(x, y, z, x + QUERY_SIZE, y + QUERY_SIZE, z + QUERY_SIZE, counter);
+        return queryFound;
+    }
+
+    @Benchmark
+    public int queryLinearScan() {
+        float x = random.nextFloat() * WORLD_SIZE, y = random.nextFloat() * WORLD_SIZE, z = random.nextFloat() * WORLD_SIZE;
+        int found = 0;
+        for (int o = 0; o < count * 6; o += 6) {
+            if (boxes[o] <= x + QUERY_SIZE && boxes[o + 3] >= x
+                    && boxes[o + 1] <= y + QUERY_SIZE && boxes[o + 4] >= y
+                    && boxes[o + 2] <= z + QUERY_SIZE && boxes[o + 5] >= z) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
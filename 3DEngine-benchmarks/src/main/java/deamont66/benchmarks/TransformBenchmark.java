@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.benchmarks;
+
+import deamont66.engine.core.Transform;
+import deamont66.engine.core.math.Matrix4f;
+import deamont66.engine.core.math.Vector3f;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * World matrix and change detection of the deepest transform in a chain of
+ * <code>depth</code> transforms, both for static hierarchy and for one whose
+ * root moves every operation.
+ *
+ * @author JiriSimecek
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TransformBenchmark {
+
+    @Param({"1", "4", "16", "64"})
+    private int depth;
+
+    private Transform[] chain;
+    private Transform root;
+    private Transform leaf;
+    private final Matrix4f dest = new Matrix4f();
+
+    @Setup
+    public void setUp() {
+        chain = new Transform[depth];
+        chain[0] = new Transform();
+        for (int i = 1; i < depth; i++) {
+            chain[i] = new Transform();
+            chain[i].getPos().set(0, 1, 0);
+            chain[i].rotate(new Vector3f(0, 0, 1), 0.1f);
+            chain[i].setParent(chain[i - 1]);
+        }
+        root = chain[0];
+        leaf = chain[depth - 1];
+
+        // take snapshots, so that nothing has changed
+        for (Transform t : chain) {
+            t.update();
+        }
+    }
+
+    @Benchmark
+    public Matrix4f getTransformation() {
+        return leaf.getTransformation();
+    }
+
+    @Benchmark
+    public Matrix4f getTransformationDest() {
+        return leaf.getTransformation(dest);
+    }
+
+    @Benchmark
+    public Matrix4f getTransformationMovingRoot() {
+        root.getPos().x += 0.001f;
+        root.markChanged();
+        return leaf.getTransformation(dest);
+    }
+
+    @Benchmark
+    public boolean hasChanged() {
+        return leaf.hasChanged();
+    }
+
+    @Benchmark
+    public boolean hasChangedMovingRoot() {
+        root.getPos().x += 0.001f;
+        root.markChanged();
+        return leaf.hasChanged();
+    }
+}
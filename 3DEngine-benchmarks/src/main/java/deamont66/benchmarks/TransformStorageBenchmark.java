@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.benchmarks;
+
+import deamont66.engine.core.PackedTransform;
+import deamont66.engine.core.Transform;
+import deamont66.engine.core.TransformStorage;
+import deamont66.engine.core.math.Matrix4f;
+import deamont66.engine.core.math.Vector3f;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * World matrices of <code>count</code> transforms in a hierarchy of roots
+ * with {@link #CHILDREN} children each (and the same number of grandchildren
+ * under the first child), {@link TransformStorage} against graph of
+ * {@link Transform} objects. Every operation moves all roots, so every world
+ * matrix has to be recomputed.
+ *
+ * @author JiriSimecek
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TransformStorageBenchmark {
+
+    public static final int CHILDREN = 8;
+
+    @Param({"10000", "100000"})
+    private int count;
+
+    private TransformStorage storage;
+    private PackedTransform[] packedRoots;
+
+    private Transform[] transforms;
+    private Transform[] roots;
+
+    private final Matrix4f dest = new Matrix4f();
+
+    @Setup
+    public void setUp() {
+        int groupSize = 1 + 2 * CHILDREN;
+        int groups = Math.max(count / groupSize, 1);
+        Vector3f axis = new Vector3f(0, 1, 0);
+
+        storage = new TransformStorage(groups * groupSize);
+        packedRoots = new PackedTransform[groups];
+        transforms = new Transform[groups * groupSize];
+        roots = new Transform[groups];
+
+        int n = 0;
+        for (int g = 0; g < groups; g++) {
+            PackedTransform packedRoot = storage.create(null);
+            packedRoot.setPos(g, 0, 0);
+            packedRoots[g] = packedRoot;
+            Transform root = new Transform();
+            root.setPos(g, 0, 0);
+            roots[g] = root;
+            transforms[n++] = root;
+
+            PackedTransform packedFirst = null;
+            Transform first = null;
+            for (int c = 0; c < CHILDREN; c++) {
+                PackedTransform packedChild = storage.create(packedRoot);
+                packedChild.setPos(c, 1, 0);
+                packedChild.rotate(axis, c * 0.1f);
+                Transform child = new Transform();
+                child.setParent(root);
+                child.setPos(c, 1, 0);
+                child.rotate(axis, c * 0.1f);
+                transforms[n++] = child;
+                if (c == 0) {
+                    packedFirst = packedChild;
+                    first = child;
+                }
+            }
+            for (int c = 0; c < CHILDREN; c++) {
+                PackedTransform packedChild = storage.create(packedFirst);
+                packedChild.setPos(0, c, 1);
+                Transform child = new Transform();
+                child.setParent(first);
+                child.setPos(0, c, 1);
+                transforms[n++] = child;
+            }
+        }
+        storage.updateWorldMatrices();
+    }
+
+    @Benchmark
+    public float[] storageAllChanged() {
+        for (int i = 0; i < packedRoots.length; i++) {
+            packedRoots[i].setPos(i, 0.001f, 0);
+        }
+        storage.updateWorldMatrices();
+        return storage.getWorldMatrices();
+    }
+
+    @Benchmark
+    public float[] storageUnchanged() {
+        storage.updateWorldMatrices();
+        return storage.getWorldMatrices();
+    }
+
+    @Benchmark
+    public Matrix4f objectGraphAllChanged() {
+        for (int i = 0; i < roots.length; i++) {
+            roots[i].setPos(i, 0.001f, 0);
+        }
+        for (int i = 0; i < transforms.length; i++) {
+            transforms[i].getTransformation(dest);
+        }
+        return dest;
+    }
+
+    @Benchmark
+    public Matrix4f objectGraphUnchanged() {
+        for (int i = 0; i < transforms.length; i++) {
+            transforms[i].getTransformation(dest);
+        }
+        return dest;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.benchmarks;
+
+import deamont66.engine.core.math.FastMath;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Exact {@link Math} functions against {@link FastMath} approximations, each
+ * applied to {@link #COUNT} arguments spread over the whole input range.
+ *
+ * @author JiriSimecek
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+@OperationsPerInvocation(TrigBenchmark.COUNT)
+public class TrigBenchmark {
+
+    public static final int COUNT = 1024;
+
+    private final float[] angles = new float[COUNT];
+    private final float[] cosines = new float[COUNT];
+    private final float[] positives = new float[COUNT];
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < COUNT; i++) {
+            angles[i] = -FastMath.TWO_PI + 2 * FastMath.TWO_PI * i / COUNT;
+            cosines[i] = -1 + 2.0f * i / COUNT;
+            positives[i] = 0.01f + i;
+        }
+    }
+
+    @Benchmark
+    public float sinExact() {
+        float sum = 0;
+        for (int i = 0; i < COUNT; i++) {
+            sum += (float) Math.sin(angles[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public float sinApprox() {
+        float sum = 0;
+        for (int i = 0; i < COUNT; i++) {
+            sum += FastMath.sinApprox(angles[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public float atan2Exact() {
+        float sum = 0;
+        for (int i = 0; i < COUNT; i++) {
+            sum += (float) Math.atan2(angles[i], cosines[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public float atan2Approx() {
+        float sum = 0;
+        for (int i = 0; i < COUNT; i++) {
+            sum += FastMath.atan2Approx(angles[i], cosines[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public float acosExact() {
+        float sum = 0;
+        for (int i = 0; i < COUNT; i++) {
+            sum += (float) Math.acos(cosines[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public float acosApprox() {
+        float sum = 0;
+        for (int i = 0; i < COUNT; i++) {
+            sum += FastMath.acosApprox(cosines[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public float invSqrtExact() {
+        float sum = 0;
+        for (int i = 0; i < COUNT; i++) {
+            sum += 1.0f / (float) Math.sqrt(positives[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public float invSqrtApprox() {
+        float sum = 0;
+        for (int i = 0; i < COUNT; i++) {
+            sum += FastMath.invSqrtApprox(positives[i]);
+        }
+        return sum;
+    }
+}
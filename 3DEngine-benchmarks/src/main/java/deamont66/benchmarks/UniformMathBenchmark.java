@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.benchmarks;
+
+import deamont66.engine.components.Camera;
+import deamont66.engine.core.Entity;
+import deamont66.engine.core.Transform;
+import deamont66.engine.core.math.Matrix4f;
+import deamont66.engine.core.math.Vector3f;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Matrix math of one draw call: what Shader.updateUniforms computes for
+ * T_model, T_MVP, R_lightMatrix and C_eyePos, without uploading it to GL.
+ * Run through {@link BenchmarkMain}, gc.alloc.rate.norm of the
+ * <code>dest</code> variants has to stay at 0 bytes per operation, the
+ * allocating variant shows what the old API cost.
+ *
+ * @author JiriSimecek
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UniformMathBenchmark {
+
+    private Camera camera;
+    private Transform cameraTransform;
+    private Transform parent;
+    private Transform transform;
+
+    private final Matrix4f lightMatrix = new Matrix4f();
+    private final Matrix4f viewProjection = new Matrix4f();
+    private final Matrix4f projected = new Matrix4f();
+    private final Matrix4f lightProjected = new Matrix4f();
+    private final Vector3f eyePos = new Vector3f();
+
+    @Setup
+    public void setUp() {
+        Entity cameraEntity = new Entity();
+        camera = new Camera((float) Math.toRadians(70), 16f / 9f, 0.1f, 1000);
+        cameraEntity.addComponent(camera);
+        cameraTransform = cameraEntity.getTransform();
+        cameraTransform.setPos(0, 5, -20);
+        cameraTransform.rotate(new Vector3f(1, 0, 0), 0.2f);
+
+        Entity parentEntity = new Entity();
+        parentEntity.getTransform().setPos(3, 0, 4);
+        Entity entity = new Entity();
+        entity.getTransform().setPos(0, 1, 0);
+        entity.getTransform().rotate(new Vector3f(0, 1, 0), 0.5f);
+        parentEntity.addChild(entity);
+        parent = parentEntity.getTransform();
+        transform = entity.getTransform();
+
+        lightMatrix.initOrthographic(-40, 40, -40, 40, -40, 40);
+    }
+
+    @Benchmark
+    public Matrix4f drawUniforms() {
+        return computeUniforms();
+    }
+
+    /**
+     * Camera and parent of the drawn entity move every draw, so all cached
+     * matrices are recomputed.
+     */
+    @Benchmark
+    public Matrix4f drawUniformsMoving() {
+        cameraTransform.getPos().x += 0.001f;
+        cameraTransform.markChanged();
+        parent.getPos().z += 0.001f;
+        parent.markChanged();
+        return computeUniforms();
+    }
+
+    @Benchmark
+    public Matrix4f drawUniformsAllocating() {
+        Matrix4f worldMatrix = transform.getTransformation();
+        camera.getTransform().getTransformedPos();
+        lightMatrix.mul(worldMatrix);
+        return camera.getViewProjection().mul(worldMatrix);
+    }
+
+    private Matrix4f computeUniforms() {
+        Matrix4f worldMatrix = transform.getWorldMatrix();
+        camera.getTransform().getTransformedPos(eyePos);
+        lightMatrix.mul(worldMatrix, lightProjected);
+        return camera.getViewProjection(viewProjection).mul(worldMatrix, projected);
+    }
+}
@@ -65,6 +65,11 @@ public class BaseLight extends EntityComponent {
                 engine.getRenderingEngine().addLight(this);
         }
 
+        @Override
+        public void removeFromEngine(CoreEngine engine) {
+                engine.getRenderingEngine().removeLight(this);
+        }
+
         public Shader getShader() {
                 return shader;
         }
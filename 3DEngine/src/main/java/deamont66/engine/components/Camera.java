@@ -30,13 +30,21 @@
 
 package deamont66.engine.components;
 
+import deamont66.engine.core.math.Frustum;
 import deamont66.engine.core.math.Vector3f;
 import deamont66.engine.core.math.Matrix4f;
+import deamont66.engine.core.math.Quaternion;
 import deamont66.engine.core.*;
 
 public class Camera extends EntityComponent
 {
 	private Matrix4f projection;
+
+        // scratch objects reused by getViewProjection(Matrix4f)
+        private final Matrix4f cameraView = new Matrix4f();
+        private final Quaternion cameraRot = new Quaternion();
+        private final Vector3f cameraPos = new Vector3f();
+        private final Matrix4f frustumMatrix = new Matrix4f();
         
         public Camera(Matrix4f projection) {
             this.projection = projection;
@@ -49,12 +57,29 @@ public class Camera extends EntityComponent
 
 	public Matrix4f getViewProjection()
 	{
-		Matrix4f cameraRotation = getTransform().getTransformedRot().conjugated().toRotationMatrix();
-		Vector3f cameraPos = getTransform().getTransformedPos().mul(-1);
+		return getViewProjection(new Matrix4f());
+	}
 
-		Matrix4f cameraTranslation = new Matrix4f().initTranslation(cameraPos.getX(), cameraPos.getY(), cameraPos.getZ());
+	public Matrix4f getViewProjection(Matrix4f dest)
+	{
+		getTransform().getTransformedRot(cameraRot);
+		getTransform().getTransformedPos(cameraPos);
 
-		return projection.mul(cameraRotation.mul(cameraTranslation));
+		// view matrix is inverse of camera's rigid world transformation
+		cameraView.initTransformation(cameraPos, cameraRot).invertRigid(cameraView);
+
+		return projection.mul(cameraView, dest);
+	}
+
+	/**
+	 * Extracts view frustum of this camera.
+	 *
+	 * @param dest frustum to store planes to
+	 * @return dest
+	 */
+	public Frustum getFrustum(Frustum dest)
+	{
+		return dest.set(getViewProjection(frustumMatrix));
 	}
 
 	@Override
@@ -66,4 +91,8 @@ public class Camera extends EntityComponent
     public void setProjection(Matrix4f projection) {
         this.projection = projection;
     }
+
+    public Matrix4f getProjection() {
+        return projection;
+    }
 }
@@ -33,11 +33,14 @@ import deamont66.engine.core.CoreEngine;
 import deamont66.engine.core.Entity;
 import deamont66.engine.rendering.Renderer;
 import deamont66.engine.core.Transform;
+import deamont66.engine.core.math.Bounds;
 import deamont66.engine.rendering.Shader;
 
 public abstract class EntityComponent {
 
         private Entity parent;
+        private Transform transform;
+        private boolean sleeping;
 
         public void processInput(float delta) {
         }
@@ -52,13 +55,90 @@ public abstract class EntityComponent {
                 this.parent = parent;
         }
 
+        public Entity getParent() {
+                return parent;
+        }
+
         public Transform getTransform() {
                 if (parent != null) {
                         return parent.getTransform();
                 }
-                return null;
+                return transform;
+        }
+
+        /**
+         * Sets transform used by component which isn't attached to any
+         * {@link Entity} (see {@link deamont66.engine.ecs.EcsWorld}).
+         *
+         * @param transform transform of the component
+         */
+        public void setTransform(Transform transform) {
+                this.transform = transform;
+        }
+
+        /**
+         * Thread safe components may be updated in parallel with other root
+         * entities (see {@link deamont66.engine.core.Scene#setUpdatePool}).
+         * Their {@link #update(float)} may only change its own entity and its
+         * children and may only read objects which aren't changed by other
+         * subtrees during update. They are updated before other components.
+         *
+         * @return true if update of this component is thread safe
+         */
+        public boolean isThreadSafe() {
+                return false;
+        }
+
+        /**
+         * Puts component to sleep, its {@link #update(float)} isn't called
+         * until {@link #wake()}. Entity is still updated even when all its
+         * components sleep, put the entity itself to sleep with
+         * {@link Entity#sleep()}.
+         */
+        public void sleep() {
+                sleeping = true;
+        }
+
+        /**
+         * Wakes up this component and its entity.
+         */
+        public void wake() {
+                sleeping = false;
+                if (parent != null) {
+                        parent.wake();
+                }
+        }
+
+        public boolean isSleeping() {
+                return sleeping;
+        }
+
+        /**
+         * Returns component to its initial state when its entity is released
+         * to {@link deamont66.engine.core.EntityPool}.
+         */
+        public void reset() {
         }
 
         public void addToEngine(CoreEngine engine) {
         }
+
+        /**
+         * Reverts {@link #addToEngine(CoreEngine)}, called when entity is
+         * released to {@link deamont66.engine.core.EntityPool}.
+         *
+         * @param engine engine component was added to
+         */
+        public void removeFromEngine(CoreEngine engine) {
+        }
+
+        /**
+         * Bounds of this component in parent's local space, used to compute
+         * {@link Entity#getWorldBounds()}.
+         *
+         * @return local bounds or null if component has no volume
+         */
+        public Bounds getLocalBounds() {
+                return null;
+        }
 }
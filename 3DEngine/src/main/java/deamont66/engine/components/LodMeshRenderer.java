@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.components;
+
+import deamont66.engine.core.Entity;
+import deamont66.engine.core.Scene;
+import deamont66.engine.core.math.Bounds;
+import deamont66.engine.core.math.Matrix4f;
+import deamont66.engine.core.math.Vector3f;
+import deamont66.engine.rendering.Material;
+import deamont66.engine.rendering.Mesh;
+import deamont66.engine.rendering.Renderer;
+import deamont66.engine.rendering.Shader;
+import deamont66.engine.rendering.meshLoading.LodChain;
+
+/**
+ * Renders one mesh of a level of detail chain, chosen by size of the mesh on
+ * screen (diameter of its bounding sphere as a fraction of screen height).
+ * Level is switched only when the size gets past the switch size by
+ * hysteresis, so it doesn't flicker at the boundary. Size is always measured
+ * from the scene camera, so light and shadow passes draw the same level.
+ *
+ * @author JiriSimecek
+ */
+public class LodMeshRenderer extends EntityComponent
+{
+	/** Screen size above which the original mesh is drawn. */
+	public static final float FULL_DETAIL_SIZE = 0.4f;
+	public static final float DEFAULT_HYSTERESIS = 0.15f;
+
+	private final Mesh[] meshes;
+	// level i is drawn when screen size is below switchSizes[i]
+	private final float[] switchSizes;
+	private final Material material;
+	private float hysteresis = DEFAULT_HYSTERESIS;
+	private int level;
+
+	private final Bounds worldBounds = new Bounds();
+	private final Vector3f cameraPos = new Vector3f();
+
+	/**
+	 * Uses default chain of model, see {@link LodChain#load(String)}.
+	 */
+	public LodMeshRenderer(String fileName, Material material)
+	{
+		this(fileName, LodChain.load(fileName), material);
+	}
+
+	/**
+	 * Creates meshes of all levels. Switch sizes keep triangle density on
+	 * screen roughly constant: triangle count falls with the square of the
+	 * size.
+	 *
+	 * @param meshName name of mesh of level 0, other levels get suffix
+	 */
+	public LodMeshRenderer(String meshName, LodChain chain, Material material)
+	{
+		this.meshes = new Mesh[chain.getLevelCount()];
+		this.switchSizes = new float[meshes.length];
+		this.material = material;
+
+		float originalTriangles = chain.getTriangleCount(0);
+		for (int i = 0; i < meshes.length; i++)
+		{
+			meshes[i] = new Mesh(i == 0 ? meshName : meshName + "#lod" + i, chain.getLevel(i));
+			switchSizes[i] = i == 0 ? Float.POSITIVE_INFINITY
+				: FULL_DETAIL_SIZE * (float) Math.sqrt(chain.getTriangleCount(i) / originalTriangles);
+		}
+	}
+
+	/**
+	 * @param meshes meshes from the most detailed one
+	 * @param switchSizes screen sizes below which each level is drawn,
+	 * decreasing (first one is ignored)
+	 */
+	public LodMeshRenderer(Mesh[] meshes, float[] switchSizes, Material material)
+	{
+		if (meshes.length == 0 || meshes.length != switchSizes.length)
+		{
+			throw new IllegalArgumentException("Every level needs a mesh and a switch size");
+		}
+		this.meshes = meshes.clone();
+		this.switchSizes = switchSizes.clone();
+		this.material = material;
+	}
+
+	@Override
+	public void render(Shader shader, Renderer renderingEngine, Camera camera)
+	{
+		Mesh mesh = meshes[selectLevel(getScreenSize(getViewer(camera)))];
+		shader.bind();
+		shader.updateUniforms(getTransform(), material, renderingEngine, camera);
+		mesh.draw();
+	}
+
+	private Camera getViewer(Camera camera)
+	{
+		Entity entity = getParent();
+		Scene scene = entity != null ? entity.getScene() : null;
+		if (scene != null && scene.getCamera() != null)
+		{
+			Camera sceneCamera = scene.getCamera().getComponent(Camera.class);
+			if (sceneCamera != null)
+			{
+				return sceneCamera;
+			}
+		}
+		return camera;
+	}
+
+	/**
+	 * @return diameter of bounding sphere of the original mesh projected by
+	 * <code>camera</code>, as a fraction of screen height
+	 */
+	public float getScreenSize(Camera camera)
+	{
+		meshes[0].getBounds().transform(getTransform().getWorldMatrix(), worldBounds);
+		float radius = worldBounds.getRadius();
+		Matrix4f projection = camera.getProjection();
+		if (projection.m33 != 0)
+		{
+			// orthographic, size doesn't depend on distance
+			return radius * projection.m11;
+		}
+
+		camera.getTransform().getTransformedPos(cameraPos);
+		Vector3f center = worldBounds.getCenter();
+		float dx = center.x - cameraPos.x, dy = center.y - cameraPos.y, dz = center.z - cameraPos.z;
+		float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+		if (distance <= radius)
+		{
+			return Float.POSITIVE_INFINITY;
+		}
+		return radius * projection.m11 / distance;
+	}
+
+	private int selectLevel(float screenSize)
+	{
+		while (level + 1 < meshes.length && screenSize < switchSizes[level + 1] * (1 - hysteresis))
+		{
+			level++;
+		}
+		while (level > 0 && screenSize > switchSizes[level] * (1 + hysteresis))
+		{
+			level--;
+		}
+		return level;
+	}
+
+	@Override
+	public Bounds getLocalBounds()
+	{
+		return meshes[0].getBounds();
+	}
+
+	/**
+	 * @return level drawn last time
+	 */
+	public int getLevel()
+	{
+		return level;
+	}
+
+	public int getLevelCount()
+	{
+		return meshes.length;
+	}
+
+	public Mesh getMesh(int level)
+	{
+		return meshes[level];
+	}
+
+	public Material getMaterial()
+	{
+		return material;
+	}
+
+	/**
+	 * @param hysteresis relative distance from switch size needed to change
+	 * level, 0 - 1
+	 */
+	public void setHysteresis(float hysteresis)
+	{
+		this.hysteresis = hysteresis;
+	}
+}
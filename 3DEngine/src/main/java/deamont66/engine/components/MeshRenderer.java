@@ -31,6 +31,7 @@
 package deamont66.engine.components;
 
 import deamont66.engine.core.Transform;
+import deamont66.engine.core.math.Bounds;
 import deamont66.engine.rendering.Material;
 import deamont66.engine.rendering.Mesh;
 import deamont66.engine.rendering.Renderer;
@@ -54,4 +55,20 @@ public class MeshRenderer extends EntityComponent
 		shader.updateUniforms(getTransform(), material, renderingEngine, camera);
 		mesh.draw();
 	}
+
+	@Override
+	public Bounds getLocalBounds()
+	{
+		return mesh.getBounds();
+	}
+
+	public Mesh getMesh()
+	{
+		return mesh;
+	}
+
+	public Material getMaterial()
+	{
+		return material;
+	}
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.core;
+
+import java.util.Arrays;
+
+/**
+ * Awake entities of a scene. Adding and removing is O(1) (removed entity is
+ * replaced by the last one), every entity remembers its index. Update runs
+ * over a copy of the set made at its start, so entities falling asleep,
+ * waking up or being removed during update don't disturb the iteration.
+ *
+ * @author JiriSimecek
+ */
+final class ActiveSet {
+
+    private Entity[] entities = new Entity[64];
+    private int size;
+    // copy of entities taken by update
+    private Entity[] updating = new Entity[64];
+
+    void add(Entity entity) {
+        if (entity.getAwakeIndex() >= 0) {
+            return;
+        }
+        if (size == entities.length) {
+            entities = Arrays.copyOf(entities, size * 2);
+        }
+        entity.setAwakeIndex(size);
+        entities[size++] = entity;
+    }
+
+    void remove(Entity entity) {
+        int index = entity.getAwakeIndex();
+        if (index < 0) {
+            return;
+        }
+        Entity last = entities[--size];
+        entities[index] = last;
+        last.setAwakeIndex(index);
+        entities[size] = null;
+        entity.setAwakeIndex(-1);
+    }
+
+    /**
+     * Adds awake entities of the subtree.
+     */
+    void addTree(Entity root) {
+        if (!root.isSleeping()) {
+            add(root);
+        }
+        for (int i = 0; i < root.getChildCount(); i++) {
+            addTree(root.getChild(i));
+        }
+    }
+
+    void removeTree(Entity root) {
+        remove(root);
+        for (int i = 0; i < root.getChildCount(); i++) {
+            removeTree(root.getChild(i));
+        }
+    }
+
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            entities[i].setAwakeIndex(-1);
+            entities[i] = null;
+        }
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Calls {@link Entity#update(float)} of every entity which was awake
+     * when update started and is still awake and in the set when its turn
+     * comes. Entities woken up during update are updated next time.
+     */
+    void update(float delta) {
+        int count = size;
+        if (updating.length < count) {
+            updating = new Entity[entities.length];
+        }
+        System.arraycopy(entities, 0, updating, 0, count);
+
+        for (int i = 0; i < count; i++) {
+            Entity entity = updating[i];
+            updating[i] = null;
+            if (entity.getAwakeIndex() >= 0) {
+                entity.update(delta);
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.core;
+
+import deamont66.engine.components.EntityComponent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Components of scene entities indexed by type. Bucket of a type is created
+ * on first query (by one pass over the scene) and then kept up to date when
+ * components are added or removed and when entities are attached or
+ * detached. Every component is in bucket of every queried type it's an
+ * instance of.
+ *
+ * @author JiriSimecek
+ */
+final class ComponentIndex {
+
+    private final Scene scene;
+    private final HashMap<Class<?>, Bucket<?>> buckets = new HashMap<>();
+    private final ArrayList<Bucket<?>> bucketList = new ArrayList<>();
+
+    ComponentIndex(Scene scene) {
+        this.scene = scene;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T extends EntityComponent> Bucket<T> getBucket(Class<T> type) {
+        Bucket<T> bucket = (Bucket<T>) buckets.get(type);
+        if (bucket == null) {
+            bucket = new Bucket<>(type);
+            List<Entity> entities = scene.getAllEntities();
+            for (int i = 0; i < entities.size(); i++) {
+                Entity entity = entities.get(i);
+                for (int c = 0; c < entity.getComponentCount(); c++) {
+                    bucket.add(entity.getComponent(c));
+                }
+            }
+            buckets.put(type, bucket);
+            bucketList.add(bucket);
+        }
+        return bucket;
+    }
+
+    void add(EntityComponent component) {
+        for (int i = 0; i < bucketList.size(); i++) {
+            bucketList.get(i).add(component);
+        }
+    }
+
+    void remove(EntityComponent component) {
+        for (int i = 0; i < bucketList.size(); i++) {
+            bucketList.get(i).remove(component);
+        }
+    }
+
+    void addTree(Entity root) {
+        for (int c = 0; c < root.getComponentCount(); c++) {
+            add(root.getComponent(c));
+        }
+        for (int i = 0; i < root.getChildCount(); i++) {
+            addTree(root.getChild(i));
+        }
+    }
+
+    void removeTree(Entity root) {
+        for (int c = 0; c < root.getComponentCount(); c++) {
+            remove(root.getComponent(c));
+        }
+        for (int i = 0; i < root.getChildCount(); i++) {
+            removeTree(root.getChild(i));
+        }
+    }
+
+    /**
+     * Components of one type in no particular order, removed component is
+     * replaced by the last one.
+     */
+    static final class Bucket<T extends EntityComponent> {
+
+        final Class<T> type;
+        final ArrayList<T> components = new ArrayList<>();
+        final List<T> view = Collections.unmodifiableList(components);
+        // position of every component in the list
+        private final IdentityHashMap<EntityComponent, Integer> slots = new IdentityHashMap<>();
+        // changes whenever content changes
+        int version;
+
+        Bucket(Class<T> type) {
+            this.type = type;
+        }
+
+        void add(EntityComponent component) {
+            if (type.isInstance(component) && !slots.containsKey(component)) {
+                slots.put(component, components.size());
+                components.add(type.cast(component));
+                version++;
+            }
+        }
+
+        void remove(EntityComponent component) {
+            Integer slot = slots.remove(component);
+            if (slot != null) {
+                T last = components.remove(components.size() - 1);
+                if (last != component) {
+                    components.set(slot, last);
+                    slots.put(last, slot);
+                }
+                version++;
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.core;
+
+import deamont66.engine.components.EntityComponent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Cached list of scene entities having components of all given types,
+ * created by {@link Scene#createQuery(Class[])}. The list is rebuilt only
+ * when a component of one of the types was added or removed since last
+ * {@link #getEntities()}, from the smallest type bucket of the scene
+ * component index.
+ *
+ * @author JiriSimecek
+ */
+public final class ComponentQuery {
+
+    private final ComponentIndex.Bucket<?>[] buckets;
+    private final int[] versions;
+    private final ArrayList<Entity> entities = new ArrayList<>();
+    private final List<Entity> entitiesView = Collections.unmodifiableList(entities);
+
+    ComponentQuery(ComponentIndex.Bucket<?>[] buckets) {
+        this.buckets = buckets;
+        this.versions = new int[buckets.length];
+        for (int i = 0; i < versions.length; i++) {
+            // force first rebuild
+            versions[i] = buckets[i].version - 1;
+        }
+    }
+
+    /**
+     * @return read only list of matching entities in no particular order,
+     * iterate it by index to avoid allocation
+     */
+    public List<Entity> getEntities() {
+        if (isStale()) {
+            rebuild();
+        }
+        return entitiesView;
+    }
+
+    private boolean isStale() {
+        for (int i = 0; i < buckets.length; i++) {
+            if (versions[i] != buckets[i].version) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void rebuild() {
+        int smallest = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            versions[i] = buckets[i].version;
+            if (buckets[i].components.size() < buckets[smallest].components.size()) {
+                smallest = i;
+            }
+        }
+
+        entities.clear();
+        List<? extends EntityComponent> candidates = buckets[smallest].components;
+        Class<? extends EntityComponent> candidateType = buckets[smallest].type;
+        for (int c = 0; c < candidates.size(); c++) {
+            EntityComponent component = candidates.get(c);
+            Entity entity = component.getParent();
+            // entity with more components of the type is added only once
+            if (entity.getComponent(candidateType) != component) {
+                continue;
+            }
+            boolean matches = true;
+            for (int t = 0; t < buckets.length && matches; t++) {
+                matches = t == smallest || entity.hasComponent(buckets[t].type);
+            }
+            if (matches) {
+                entities.add(entity);
+            }
+        }
+    }
+
+    public int getTypeCount() {
+        return buckets.length;
+    }
+
+    public Class<? extends EntityComponent> getType(int index) {
+        return buckets[index].type;
+    }
+}
@@ -42,4 +42,6 @@ public class Debug {
     public static boolean ENABLE_SHADERS = true;
     public static boolean ENABLE_PARALLAX_MAP = true;
     public static boolean ENABLE_NORMAL_MAP = true;
+    /** Checks misuse of {@link FrameArena}, must be set before it's used. */
+    public static boolean DEBUG_FRAME_ARENA = false;
 }
@@ -31,36 +31,301 @@ package deamont66.engine.core;
 
 import deamont66.engine.components.Camera;
 import deamont66.engine.components.EntityComponent;
+import deamont66.engine.core.math.Bounds;
+import deamont66.engine.core.math.DynamicAabbTree;
+import deamont66.engine.core.math.Frustum;
+import deamont66.engine.core.math.Matrix4f;
 import deamont66.engine.rendering.Renderer;
 import deamont66.engine.rendering.Shader;
 import java.util.ArrayList;
+import java.util.List;
 
 public class Entity {
 
+    // whether class overrides render(), i.e. may draw something
+    private static final ClassValue<Boolean> ENTITY_RENDERS = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return overridesRender(type, Entity.class);
+        }
+    };
+    private static final ClassValue<Boolean> COMPONENT_RENDERS = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return overridesRender(type, EntityComponent.class);
+        }
+    };
+
     private final ArrayList<Entity> children;
     private final ArrayList<EntityComponent> components;
     private final Transform transform;
     private CoreEngine engine;
+    private Entity parent;
+    // set only for root entities of scene
+    private Scene scene;
+    private int sceneIndex = -1;
+
+    private EntityPool pool;
+    private boolean pooled;
+
+    // never moves, geometry can be baked
+    private boolean staticGeometry;
+
+    // world space bounds of components, recomputed only when transform changes
+    private final Bounds worldBounds = new Bounds();
+    private final Bounds tempBounds = new Bounds();
+    private boolean worldBoundsDirty = true;
+    private int worldBoundsVersion;
+    // entity may draw something outside of its world bounds
+    private boolean unbounded;
+    // changes when component bounds change, not with transform
+    private int boundsVersion;
+    // bounds of this entity and all descendants; when dirty, all ancestors
+    // are dirty as well
+    private final Bounds subtreeBounds = new Bounds();
+    private boolean subtreeBoundsDirty = true;
+    private boolean subtreeUnbounded;
+
+    // leaf of this entity in SpatialIndex of scene
+    private int spatialProxy = DynamicAabbTree.NULL;
+
+    // log of scene this entity is attached to, if scene records changes
+    private TransformChangeLog changeLog;
+    private int changeTick;
+
+    // thread safe components were already updated by parallel scene update
+    private boolean threadSafeUpdated;
+
+    // sleeping entities aren't updated, index in awake set of scene
+    private boolean sleeping;
+    private int awakeIndex = -1;
 
     public Entity() {
         children = new ArrayList<>();
         components = new ArrayList<>();
         transform = new Transform();
+        transform.setOwner(this);
         engine = null;
     }
 
     public void addChild(Entity child) {
         children.add(child);
+        child.parent = this;
         child.setEngine(engine);
         child.getTransform().setParent(transform);
+        invalidateSubtreeBounds();
+        Scene rootScene = getScene();
+        if (rootScene != null) {
+            rootScene.entityAdded(child);
+        }
+    }
+
+    public Entity getParent() {
+        return parent;
+    }
+
+    public int getChildCount() {
+        return children.size();
+    }
+
+    public Entity getChild(int index) {
+        return children.get(index);
+    }
+
+    /**
+     * Detaches child from this entity. Child keeps its engine, so it can be
+     * attached again without adding its components to engine again.
+     */
+    public void removeChild(Entity child) {
+        if (child.parent != this) {
+            throw new IllegalArgumentException("Entity is not a child of this entity");
+        }
+        Scene rootScene = getScene();
+        if (rootScene != null) {
+            rootScene.entityRemoved(child);
+        }
+        children.remove(child);
+        child.parent = null;
+        child.getTransform().setParent(null);
+        invalidateSubtreeBounds();
+    }
+
+    /**
+     * Detaches this entity from its parent entity or from scene if it's a
+     * root entity.
+     */
+    public void detach() {
+        if (parent != null) {
+            parent.removeChild(this);
+        } else if (scene != null) {
+            scene.removeChild(this);
+        }
+    }
+
+    /**
+     * @return scene this entity is attached to (directly or through its
+     * parents) or null
+     */
+    public Scene getScene() {
+        Entity root = this;
+        while (root.parent != null) {
+            root = root.parent;
+        }
+        return root.scene;
+    }
+
+    void setScene(Scene scene, int sceneIndex) {
+        this.scene = scene;
+        this.sceneIndex = sceneIndex;
+    }
+
+    int getSceneIndex() {
+        return sceneIndex;
+    }
+
+    EntityPool getPool() {
+        return pool;
+    }
+
+    void setPool(EntityPool pool) {
+        this.pool = pool;
+    }
+
+    boolean isPooled() {
+        return pooled;
+    }
+
+    void setPooled(boolean pooled) {
+        this.pooled = pooled;
+    }
+
+    /**
+     * Returns entity to its initial state, called by {@link EntityPool} when
+     * entity is released. Resets all components and children, transform of
+     * children is kept (pool resets only transform of the released entity).
+     * Entities with more state override this. Entity and its components
+     * are woken up.
+     */
+    public void reset() {
+        wake();
+        for (int i = 0; i < components.size(); i++) {
+            components.get(i).wake();
+            components.get(i).reset();
+        }
+        for (int i = 0; i < children.size(); i++) {
+            children.get(i).reset();
+        }
+        invalidateWorldBounds();
     }
 
     public Entity addComponent(EntityComponent component) {
         components.add(component);
         component.setParent(this);
+        invalidateWorldBounds();
+        Scene rootScene = getScene();
+        if (rootScene != null) {
+            rootScene.componentAdded(component);
+        }
         return this;
     }
 
+    /**
+     * Removes component from this entity. Component stays added to engine.
+     *
+     * @return true if entity had the component
+     */
+    public boolean removeComponent(EntityComponent component) {
+        if (components.remove(component)) {
+            component.setParent(null);
+            invalidateWorldBounds();
+            Scene rootScene = getScene();
+            if (rootScene != null) {
+                rootScene.componentRemoved(component);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    public int getComponentCount() {
+        return components.size();
+    }
+
+    public EntityComponent getComponent(int index) {
+        return components.get(index);
+    }
+
+    /**
+     * Marks entity as static, i.e. it won't move after the scene is loaded,
+     * so its meshes can be merged by
+     * {@link deamont66.engine.rendering.StaticGeometryBaker}.
+     */
+    public void setStatic(boolean staticGeometry) {
+        this.staticGeometry = staticGeometry;
+    }
+
+    public boolean isStatic() {
+        return staticGeometry;
+    }
+
+    /**
+     * Puts entity to sleep, its {@link #update(float)} isn't called until it
+     * wakes up. Children aren't affected. Entity wakes up by {@link #wake()},
+     * which is called when its transform is changed, by
+     * {@link EntityComponent#wake()} of its components and by events
+     * registered with {@link #wakeOn(EventBus, Class)}. Input and rendering
+     * aren't affected by sleep.
+     */
+    public void sleep() {
+        if (!sleeping) {
+            sleeping = true;
+            Scene rootScene = getScene();
+            if (rootScene != null) {
+                rootScene.entitySlept(this);
+            }
+        }
+    }
+
+    public void wake() {
+        if (sleeping) {
+            sleeping = false;
+            Scene rootScene = getScene();
+            if (rootScene != null) {
+                rootScene.entityWoke(this);
+            }
+        }
+    }
+
+    public boolean isSleeping() {
+        return sleeping;
+    }
+
+    /**
+     * Wakes this entity up whenever event of given type is dispatched by
+     * <code>bus</code>.
+     *
+     * @return subscribed listener, to be passed to
+     * {@link EventBus#unsubscribe(Class, EventBus.Listener)}
+     */
+    public <E> EventBus.Listener<E> wakeOn(EventBus bus, Class<E> type) {
+        EventBus.Listener<E> listener = new EventBus.Listener<E>() {
+            @Override
+            public void onEvent(E event) {
+                wake();
+            }
+        };
+        bus.subscribe(type, listener);
+        return listener;
+    }
+
+    int getAwakeIndex() {
+        return awakeIndex;
+    }
+
+    void setAwakeIndex(int awakeIndex) {
+        this.awakeIndex = awakeIndex;
+    }
+
     public void processInputAll(float delta) {
         processInput(delta);
 
@@ -70,13 +335,36 @@ public class Entity {
     }
 
     public void updateAll(float delta) {
-        update(delta);
+        if (!sleeping) {
+            update(delta);
+        }
+        threadSafeUpdated = false;
 
         for (Entity child : children) {
             child.updateAll(delta);
         }
     }
 
+    /**
+     * Updates only components which are {@link EntityComponent#isThreadSafe()
+     * thread safe}, the following {@link #updateAll(float)} skips them.
+     * Used by parallel update of {@link Scene}.
+     */
+    void updateThreadSafeAll(float delta) {
+        if (!sleeping) {
+            for (EntityComponent component : components) {
+                if (component.isThreadSafe() && !component.isSleeping()) {
+                    component.update(delta);
+                }
+            }
+            threadSafeUpdated = true;
+        }
+
+        for (Entity child : children) {
+            child.updateThreadSafeAll(delta);
+        }
+    }
+
     public void renderAll(Shader shader, Renderer renderer, Camera camera) {
         render(shader, renderer, camera);
 
@@ -85,6 +373,51 @@ public class Entity {
         }
     }
 
+    /**
+     * Renders only the part of subtree which intersects
+     * <code>frustum</code>. Whole subtree is rejected by one test of
+     * {@link #getSubtreeBounds()}, subtree completely inside frustum isn't
+     * tested any more. Entities without bounds and
+     * {@link #isSubtreeUnbounded() unbounded} entities are always rendered,
+     * subtree containing them is never rejected as a whole, its bounded
+     * descendants are still culled one by one.
+     *
+     * @param planeMask planes which still have to be tested, see
+     * {@link Frustum#classifyAabb(float[], int, int)}
+     * @param box scratch array for 6 floats
+     */
+    void renderAll(Shader shader, Renderer renderer, Camera camera, Frustum frustum, int planeMask, float[] box) {
+        if (planeMask != Frustum.INSIDE) {
+            Bounds bounds = getSubtreeBounds();
+            if (!bounds.isEmpty() && !subtreeUnbounded) {
+                bounds.getBox(box, 0);
+                planeMask = frustum.classifyAabb(box, 0, planeMask);
+                if (planeMask == Frustum.OUTSIDE) {
+                    return;
+                }
+            }
+        }
+
+        if (planeMask == Frustum.INSIDE || children.isEmpty()) {
+            render(shader, renderer, camera);
+        } else {
+            // subtree intersects frustum, this entity alone may not
+            Bounds bounds = getWorldBounds();
+            if (bounds.isEmpty() || unbounded) {
+                render(shader, renderer, camera);
+            } else {
+                bounds.getBox(box, 0);
+                if (frustum.classifyAabb(box, 0, planeMask) != Frustum.OUTSIDE) {
+                    render(shader, renderer, camera);
+                }
+            }
+        }
+
+        for (int i = 0; i < children.size(); i++) {
+            children.get(i).renderAll(shader, renderer, camera, frustum, planeMask, box);
+        }
+    }
+
     public void processInput(float delta) {
         transform.update();
 
@@ -95,7 +428,9 @@ public class Entity {
 
     public void update(float delta) {
         for (EntityComponent component : components) {
-            component.update(delta);
+            if (!component.isSleeping() && (!threadSafeUpdated || !component.isThreadSafe())) {
+                component.update(delta);
+            }
         }
     }
 
@@ -105,21 +440,209 @@ public class Entity {
         }
     }
 
-    public ArrayList<Entity> getAllAttached() {
-        ArrayList<Entity> result = new ArrayList<>();
+    /**
+     * @return first component of given type (or its subclass) or null
+     */
+    public <T extends EntityComponent> T getComponent(Class<T> type) {
+        for (int i = 0; i < components.size(); i++) {
+            EntityComponent component = components.get(i);
+            if (type.isInstance(component)) {
+                return type.cast(component);
+            }
+        }
+        return null;
+    }
 
-        for (Entity child : children) {
-            result.addAll(child.getAllAttached());
+    public boolean hasComponent(Class<? extends EntityComponent> type) {
+        return getComponent(type) != null;
+    }
+
+    /**
+     * Visits this entity and then its descendants.
+     *
+     * @param visitor visitor, its return value decides whether children of
+     * visited entity are visited
+     */
+    public void visitPreOrder(EntityVisitor visitor) {
+        if (visitor.visit(this)) {
+            for (int i = 0; i < children.size(); i++) {
+                children.get(i).visitPreOrder(visitor);
+            }
+        }
+    }
+
+    /**
+     * Visits descendants of this entity and then the entity itself.
+     */
+    public void visitPostOrder(EntityVisitor visitor) {
+        for (int i = 0; i < children.size(); i++) {
+            children.get(i).visitPostOrder(visitor);
         }
+        visitor.visit(this);
+    }
 
-        result.add(this);
-        return result;
+    /**
+     * Returns this entity and all its descendants, children before their
+     * parents. Creates new list, prefer {@link #visitPostOrder(EntityVisitor)},
+     * {@link EntityIterator} or {@link Scene#getAllEntities()} for per frame
+     * use.
+     */
+    public ArrayList<Entity> getAllAttached() {
+        return getAllAttached(new ArrayList<Entity>());
+    }
+
+    /**
+     * Adds this entity and all its descendants (children before their
+     * parents) to <code>dest</code>.
+     *
+     * @return dest
+     */
+    public <L extends List<Entity>> L getAllAttached(L dest) {
+        for (int i = 0; i < children.size(); i++) {
+            children.get(i).getAllAttached(dest);
+        }
+        dest.add(this);
+        return dest;
     }
 
     public Transform getTransform() {
         return transform;
     }
 
+    /**
+     * Returns union of world space bounds of all components of this entity
+     * (children are not included). Result is cached and recomputed only when
+     * world transformation has changed.
+     *
+     * @return world bounds, empty if no component has bounds; don't modify
+     */
+    public Bounds getWorldBounds() {
+        if (worldBoundsDirty || transform.getVersion() != worldBoundsVersion) {
+            updateWorldBounds();
+        }
+        return worldBounds;
+    }
+
+    /**
+     * Forces recomputation of world bounds, call after bounds of some
+     * component were changed.
+     */
+    public void invalidateWorldBounds() {
+        worldBoundsDirty = true;
+        boundsVersion++;
+        invalidateSubtreeBounds();
+        if (changeLog != null) {
+            changeLog.record(this);
+        }
+    }
+
+    /**
+     * Returns union of {@link #getWorldBounds()} of this entity and all its
+     * descendants. It's recomputed lazily, only the subtrees in which
+     * something moved or changed bounds since last call are visited.
+     *
+     * @return subtree bounds, empty if nothing in subtree has bounds; don't
+     * modify
+     */
+    public Bounds getSubtreeBounds() {
+        if (subtreeBoundsDirty) {
+            subtreeBounds.set(getWorldBounds());
+            subtreeUnbounded = unbounded;
+            for (int i = 0; i < children.size(); i++) {
+                Entity child = children.get(i);
+                subtreeBounds.union(child.getSubtreeBounds());
+                subtreeUnbounded |= child.subtreeUnbounded;
+            }
+            subtreeBoundsDirty = false;
+        }
+        return subtreeBounds;
+    }
+
+    /**
+     * Entity is unbounded when it may draw something its
+     * {@link #getWorldBounds() world bounds} don't cover: its class overrides
+     * {@link #render(Shader, Renderer, Camera)} or it has a component which
+     * overrides render but returns no
+     * {@link EntityComponent#getLocalBounds() local bounds}. Subtree
+     * containing unbounded entity is never culled as a whole.
+     *
+     * @return true if this entity or any descendant is unbounded
+     */
+    public boolean isSubtreeUnbounded() {
+        getSubtreeBounds();
+        return subtreeUnbounded;
+    }
+
+    /**
+     * Called by transform of this entity whenever its world transformation
+     * changes (also when inherited from parent).
+     */
+    void worldTransformChanged() {
+        invalidateSubtreeBounds();
+        if (changeLog != null) {
+            changeLog.record(this);
+        }
+    }
+
+    TransformChangeLog getChangeLog() {
+        return changeLog;
+    }
+
+    void setChangeLog(TransformChangeLog changeLog) {
+        this.changeLog = changeLog;
+    }
+
+    int getChangeTick() {
+        return changeTick;
+    }
+
+    void setChangeTick(int changeTick) {
+        this.changeTick = changeTick;
+    }
+
+    private void invalidateSubtreeBounds() {
+        for (Entity entity = this; entity != null && !entity.subtreeBoundsDirty; entity = entity.parent) {
+            entity.subtreeBoundsDirty = true;
+        }
+    }
+
+    int getBoundsVersion() {
+        return boundsVersion;
+    }
+
+    int getSpatialProxy() {
+        return spatialProxy;
+    }
+
+    void setSpatialProxy(int spatialProxy) {
+        this.spatialProxy = spatialProxy;
+    }
+
+    private void updateWorldBounds() {
+        worldBoundsVersion = transform.getVersion();
+        Matrix4f worldMatrix = transform.getWorldMatrix();
+
+        worldBounds.setEmpty();
+        unbounded = ENTITY_RENDERS.get(getClass());
+        for (EntityComponent component : components) {
+            Bounds localBounds = component.getLocalBounds();
+            if (localBounds != null) {
+                worldBounds.union(localBounds.transform(worldMatrix, tempBounds));
+            } else if (COMPONENT_RENDERS.get(component.getClass())) {
+                unbounded = true;
+            }
+        }
+        worldBoundsDirty = false;
+    }
+
+    private static boolean overridesRender(Class<?> type, Class<?> base) {
+        try {
+            return type.getMethod("render", Shader.class, Renderer.class, Camera.class).getDeclaringClass() != base;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     public void setEngine(CoreEngine engine) {
         if (this.engine != engine) {
             this.engine = engine;
@@ -133,4 +656,20 @@ public class Entity {
             }
         }
     }
+
+    /**
+     * Removes components from engine, used by {@link EntityPool}, they are
+     * added again when entity is attached to scene.
+     */
+    void removeFromEngine() {
+        if (engine != null) {
+            for (int i = 0; i < components.size(); i++) {
+                components.get(i).removeFromEngine(engine);
+            }
+            for (int i = 0; i < children.size(); i++) {
+                children.get(i).removeFromEngine();
+            }
+            engine = null;
+        }
+    }
 }
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.core;
+
+import deamont66.engine.components.EntityComponent;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reusable iterator over entity tree which doesn't allocate anything once
+ * its stack is big enough for the tree. Call one of the <code>reset</code>
+ * methods before every iteration, the iterator is also {@link Iterable} so
+ * it can be used in for-each loop:
+ *
+ * <pre>
+ * for (Entity entity : iterator.reset(scene, EntityIterator.Order.PRE_ORDER)) {
+ * }
+ * </pre>
+ *
+ * Tree must not be changed during iteration.
+ *
+ * @author JiriSimecek
+ */
+public final class EntityIterator implements Iterator<Entity>, Iterable<Entity> {
+
+    public enum Order {
+
+        /** Entity is returned before its children. */
+        PRE_ORDER,
+        /** Entity is returned after its children. */
+        POST_ORDER
+    }
+
+    private Entity[] stack = new Entity[16];
+    private int[] nextChild = new int[16];
+    private int depth = -1;
+
+    private Scene scene;
+    private Entity root;
+    private int nextRoot;
+
+    private Order order = Order.PRE_ORDER;
+    private Class<? extends EntityComponent> filter;
+    private Entity next;
+
+    /**
+     * Starts iteration over <code>root</code> and all its descendants.
+     *
+     * @return this
+     */
+    public EntityIterator reset(Entity root, Order order) {
+        return reset(null, root, order, null);
+    }
+
+    /**
+     * Starts iteration over descendants of <code>root</code> (including
+     * itself) having component of given type.
+     *
+     * @return this
+     */
+    public EntityIterator reset(Entity root, Order order, Class<? extends EntityComponent> componentType) {
+        return reset(null, root, order, componentType);
+    }
+
+    /**
+     * Starts iteration over all entities of scene (without camera).
+     *
+     * @return this
+     */
+    public EntityIterator reset(Scene scene, Order order) {
+        return reset(scene, null, order, null);
+    }
+
+    /**
+     * Starts iteration over all entities of scene having component of given
+     * type.
+     *
+     * @return this
+     */
+    public EntityIterator reset(Scene scene, Order order, Class<? extends EntityComponent> componentType) {
+        return reset(scene, null, order, componentType);
+    }
+
+    private EntityIterator reset(Scene scene, Entity root, Order order, Class<? extends EntityComponent> componentType) {
+        while (depth >= 0) {
+            stack[depth--] = null;
+        }
+        this.scene = scene;
+        this.root = root;
+        this.nextRoot = 0;
+        this.order = order;
+        this.filter = componentType;
+        this.next = null;
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            do {
+                next = order == Order.PRE_ORDER ? advancePreOrder() : advancePostOrder();
+            } while (next != null && filter != null && !next.hasComponent(filter));
+        }
+        return next != null;
+    }
+
+    @Override
+    public Entity next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Entity result = next;
+        next = null;
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Iterator<Entity> iterator() {
+        return this;
+    }
+
+    private Entity advancePreOrder() {
+        while (true) {
+            if (depth < 0) {
+                Entity nextRootEntity = takeRoot();
+                if (nextRootEntity != null) {
+                    push(nextRootEntity);
+                }
+                return nextRootEntity;
+            }
+
+            Entity top = stack[depth];
+            int child = nextChild[depth];
+            if (child < top.getChildCount()) {
+                nextChild[depth] = child + 1;
+                Entity childEntity = top.getChild(child);
+                push(childEntity);
+                return childEntity;
+            }
+            stack[depth--] = null;
+        }
+    }
+
+    private Entity advancePostOrder() {
+        while (true) {
+            if (depth < 0) {
+                Entity nextRootEntity = takeRoot();
+                if (nextRootEntity == null) {
+                    return null;
+                }
+                push(nextRootEntity);
+            }
+
+            Entity top = stack[depth];
+            int child = nextChild[depth];
+            if (child < top.getChildCount()) {
+                nextChild[depth] = child + 1;
+                push(top.getChild(child));
+            } else {
+                stack[depth--] = null;
+                return top;
+            }
+        }
+    }
+
+    private Entity takeRoot() {
+        if (scene != null) {
+            return nextRoot < scene.getChildCount() ? scene.getChild(nextRoot++) : null;
+        }
+        return nextRoot++ == 0 ? root : null;
+    }
+
+    private void push(Entity entity) {
+        depth++;
+        if (depth == stack.length) {
+            Entity[] newStack = new Entity[depth * 2];
+            System.arraycopy(stack, 0, newStack, 0, depth);
+            stack = newStack;
+            int[] newNextChild = new int[depth * 2];
+            System.arraycopy(nextChild, 0, newNextChild, 0, depth);
+            nextChild = newNextChild;
+        }
+        stack[depth] = entity;
+        nextChild[depth] = 0;
+    }
+}
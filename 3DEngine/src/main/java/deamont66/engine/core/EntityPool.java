@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.core;
+
+import java.util.ArrayList;
+
+/**
+ * Pool of entities of one kind (e.g. projectiles), created by a factory like
+ * prefabs. Acquire and release are O(1).
+ *
+ * Released entity is detached from its parent or scene, its components are
+ * removed from engine (e.g. lights from renderer), its transform is reset and
+ * {@link Entity#reset()} is called. Entity released during update of its
+ * scene (e.g. by its own component) stays attached until the end of
+ * {@link Scene#updateAll(float)}, because scene is iterating its entities.
+ *
+ * @author JiriSimecek
+ */
+public class EntityPool {
+
+    public interface Factory {
+
+        Entity create();
+    }
+
+    private final Factory factory;
+    private final ArrayList<Entity> free = new ArrayList<>();
+    private int createdCount;
+
+    public EntityPool(Factory factory) {
+        this(factory, 0);
+    }
+
+    /**
+     * @param factory creates new entities
+     * @param initialSize number of entities created in advance
+     */
+    public EntityPool(Factory factory, int initialSize) {
+        this.factory = factory;
+        for (int i = 0; i < initialSize; i++) {
+            free.add(create());
+        }
+    }
+
+    private Entity create() {
+        Entity entity = factory.create();
+        entity.setPool(this);
+        createdCount++;
+        return entity;
+    }
+
+    /**
+     * @return free entity, newly created if pool is empty
+     */
+    public Entity acquire() {
+        if (free.isEmpty()) {
+            return create();
+        }
+        Entity entity = free.remove(free.size() - 1);
+        entity.setPooled(false);
+        return entity;
+    }
+
+    public void release(Entity entity) {
+        if (entity.getPool() != this) {
+            throw new IllegalArgumentException("Entity doesn't belong to this pool");
+        }
+        if (entity.isPooled()) {
+            throw new IllegalStateException("Entity was already released");
+        }
+
+        entity.setPooled(true);
+        Scene scene = entity.getScene();
+        if (scene != null && scene.isUpdating()) {
+            scene.releaseLater(entity);
+        } else {
+            recycle(entity);
+        }
+    }
+
+    void recycle(Entity entity) {
+        entity.detach();
+        entity.removeFromEngine();
+        entity.getTransform().reset();
+        entity.reset();
+        free.add(entity);
+    }
+
+    public int getFreeCount() {
+        return free.size();
+    }
+
+    /**
+     * @return number of entities created by this pool
+     */
+    public int getCreatedCount() {
+        return createdCount;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Typed event bus with deferred delivery. {@link #post(Class)} returns an
+ * event object from a ring buffer of its type, the sender fills it and it's
+ * delivered to subscribers of exactly that class on the next
+ * {@link #dispatch()}. Event objects are reused, so posting doesn't allocate
+ * once buffers are big enough; subscribers must not keep them.
+ *
+ * Events are dispatched type by type (in order in which types were first
+ * used) and in order of posting within a type. Events posted during
+ * dispatch are delivered by the next dispatch. {@link Scene} dispatches
+ * its bus after input processing and after update.
+ *
+ * Several threads may post at once, but event is filled after it was queued,
+ * so threads which post must finish (e.g. be joined like parallel update of
+ * {@link Scene}) before {@link #dispatch()}. Everything else has to be called
+ * from the thread which dispatches.
+ *
+ * @author JiriSimecek
+ */
+public final class EventBus {
+
+    public interface Listener<E> {
+
+        void onEvent(E event);
+    }
+
+    /**
+     * Creates event objects, used when they can't be created by their
+     * no argument constructor.
+     */
+    public interface Factory<E> {
+
+        E create();
+    }
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final HashMap<Class<?>, EventQueue<?>> queuesByType = new HashMap<>();
+    private final List<EventQueue<?>> queues = new ArrayList<>();
+
+    /**
+     * Sets factory of events of given type.
+     */
+    public synchronized <E> void register(Class<E> type, Factory<? extends E> factory) {
+        getQueue(type).factory = factory;
+    }
+
+    public synchronized <E> void subscribe(Class<E> type, Listener<? super E> listener) {
+        getQueue(type).listeners.add(listener);
+    }
+
+    public synchronized <E> void unsubscribe(Class<E> type, Listener<? super E> listener) {
+        EventQueue<E> queue = getQueue(type);
+        queue.listeners.remove(listener);
+    }
+
+    /**
+     * Queues new event of given type. May be called from several threads,
+     * but not concurrently with {@link #dispatch()}.
+     *
+     * @return event object to fill, valid until next dispatch
+     */
+    public <E> E post(Class<E> type) {
+        EventQueue<E> queue;
+        synchronized (this) {
+            queue = getQueue(type);
+        }
+        return queue.post();
+    }
+
+    /**
+     * Delivers all queued events to subscribers.
+     *
+     * @return number of dispatched events
+     */
+    public int dispatch() {
+        int dispatched = 0;
+        for (int i = 0; i < queues.size(); i++) {
+            dispatched += queues.get(i).dispatch();
+        }
+        return dispatched;
+    }
+
+    /**
+     * @return number of events waiting for dispatch
+     */
+    public synchronized int getQueuedCount() {
+        int count = 0;
+        for (int i = 0; i < queues.size(); i++) {
+            count += queues.get(i).getSize();
+        }
+        return count;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <E> EventQueue<E> getQueue(Class<E> type) {
+        EventQueue<E> queue = (EventQueue<E>) queuesByType.get(type);
+        if (queue == null) {
+            queue = new EventQueue<>(type);
+            queuesByType.put(type, queue);
+            queues.add(queue);
+        }
+        return queue;
+    }
+
+    private static final class EventQueue<E> {
+
+        private final Class<E> type;
+        private Factory<? extends E> factory;
+        private final List<Listener<? super E>> listeners = new ArrayList<>();
+
+        private Object[] events = new Object[INITIAL_CAPACITY];
+        private int head;
+        private int size;
+
+        EventQueue(Class<E> type) {
+            this.type = type;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized E post() {
+            if (size == events.length) {
+                grow();
+            }
+            int index = (head + size) % events.length;
+            if (events[index] == null) {
+                events[index] = create();
+            }
+            size++;
+            return (E) events[index];
+        }
+
+        private void grow() {
+            Object[] newEvents = new Object[events.length * 2];
+            for (int i = 0; i < size; i++) {
+                newEvents[i] = events[(head + i) % events.length];
+            }
+            events = newEvents;
+            head = 0;
+        }
+
+        private E create() {
+            if (factory != null) {
+                return factory.create();
+            }
+            try {
+                return type.newInstance();
+            } catch (InstantiationException | IllegalAccessException ex) {
+                throw new IllegalStateException("Event " + type.getName()
+                        + " needs public no argument constructor or a factory", ex);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        int dispatch() {
+            int count;
+            Object[] snapshot;
+            int start;
+            synchronized (this) {
+                count = size;
+                snapshot = events;
+                start = head;
+            }
+            if (count == 0) {
+                return 0;
+            }
+
+            for (int i = 0; i < count; i++) {
+                E event = (E) snapshot[(start + i) % snapshot.length];
+                for (int l = 0; l < listeners.size(); l++) {
+                    listeners.get(l).onEvent(event);
+                }
+            }
+
+            synchronized (this) {
+                if (snapshot != events) {
+                    // buffer grew during dispatch, dispatched events are at its start
+                    head = count;
+                } else {
+                    head = (head + count) % events.length;
+                }
+                size -= count;
+            }
+            return count;
+        }
+
+        synchronized int getSize() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.core;
+
+import deamont66.engine.core.math.Matrix4f;
+import deamont66.engine.core.math.Quaternion;
+import deamont66.engine.core.math.Vector3f;
+
+/**
+ * Per thread pool of temporary math objects. Objects taken between
+ * {@link #begin()} and {@link #end()} are returned to the pool by that
+ * {@link #end()}, so they must not be stored anywhere. Scopes can be nested,
+ * {@link Game} opens one around every update and render.
+ *
+ * <pre>
+ * FrameArena arena = FrameArena.get();
+ * arena.begin();
+ * try {
+ *     Vector3f dir = arena.vector3f();
+ *     ...
+ * } finally {
+ *     arena.end();
+ * }
+ * </pre>
+ *
+ * Taken objects have undefined values. When {@link Debug#DEBUG_FRAME_ARENA}
+ * is set (before first use of the arena) released objects are filled with
+ * NaN and every object is checked for it when taken again, so writes through
+ * escaped references end with exception and reads from them produce NaN.
+ *
+ * @author JiriSimecek
+ */
+public final class FrameArena {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final ThreadLocal<FrameArena> ARENAS = new ThreadLocal<FrameArena>() {
+        @Override
+        protected FrameArena initialValue() {
+            return new FrameArena();
+        }
+    };
+
+    private final boolean debug = Debug.DEBUG_FRAME_ARENA;
+
+    private Vector3f[] vectors = new Vector3f[INITIAL_CAPACITY];
+    private Quaternion[] quaternions = new Quaternion[INITIAL_CAPACITY];
+    private Matrix4f[] matrices = new Matrix4f[INITIAL_CAPACITY];
+    private int vectorCount;
+    private int quaternionCount;
+    private int matrixCount;
+
+    // vectorCount, quaternionCount and matrixCount of every open scope
+    private int[] marks = new int[3 * INITIAL_CAPACITY];
+    private int depth;
+
+    private long allocationCount;
+
+    private FrameArena() {
+    }
+
+    /**
+     * @return arena of current thread
+     */
+    public static FrameArena get() {
+        return ARENAS.get();
+    }
+
+    /**
+     * Opens new scope.
+     */
+    public void begin() {
+        int i = depth * 3;
+        if (i == marks.length) {
+            int[] newMarks = new int[marks.length * 2];
+            System.arraycopy(marks, 0, newMarks, 0, marks.length);
+            marks = newMarks;
+            allocationCount++;
+        }
+        marks[i] = vectorCount;
+        marks[i + 1] = quaternionCount;
+        marks[i + 2] = matrixCount;
+        depth++;
+    }
+
+    /**
+     * Closes innermost scope and releases all objects taken in it.
+     *
+     * @throws IllegalStateException if there is no open scope
+     */
+    public void end() {
+        if (depth == 0) {
+            throw new IllegalStateException("FrameArena.end() called without begin()");
+        }
+        depth--;
+        int i = depth * 3;
+
+        if (debug) {
+            for (int n = marks[i]; n < vectorCount; n++) {
+                vectors[n].set(Float.NaN, Float.NaN, Float.NaN);
+            }
+            for (int n = marks[i + 1]; n < quaternionCount; n++) {
+                quaternions[n].set(Float.NaN, Float.NaN, Float.NaN, Float.NaN);
+            }
+            for (int n = marks[i + 2]; n < matrixCount; n++) {
+                poison(matrices[n]);
+            }
+        }
+
+        vectorCount = marks[i];
+        quaternionCount = marks[i + 1];
+        matrixCount = marks[i + 2];
+    }
+
+    public Vector3f vector3f() {
+        checkScope();
+        if (vectorCount == vectors.length) {
+            Vector3f[] newVectors = new Vector3f[vectors.length * 2];
+            System.arraycopy(vectors, 0, newVectors, 0, vectors.length);
+            vectors = newVectors;
+            allocationCount++;
+        }
+
+        Vector3f v = vectors[vectorCount];
+        if (v == null) {
+            v = vectors[vectorCount] = new Vector3f();
+            allocationCount++;
+        } else if (debug && !(Float.isNaN(v.x) && Float.isNaN(v.y) && Float.isNaN(v.z))) {
+            throw escaped(v);
+        }
+        vectorCount++;
+        return v;
+    }
+
+    public Quaternion quaternion() {
+        checkScope();
+        if (quaternionCount == quaternions.length) {
+            Quaternion[] newQuaternions = new Quaternion[quaternions.length * 2];
+            System.arraycopy(quaternions, 0, newQuaternions, 0, quaternions.length);
+            quaternions = newQuaternions;
+            allocationCount++;
+        }
+
+        Quaternion q = quaternions[quaternionCount];
+        if (q == null) {
+            q = quaternions[quaternionCount] = new Quaternion();
+            allocationCount++;
+        } else if (debug && !(Float.isNaN(q.x) && Float.isNaN(q.y) && Float.isNaN(q.z) && Float.isNaN(q.w))) {
+            throw escaped(q);
+        }
+        quaternionCount++;
+        return q;
+    }
+
+    public Matrix4f matrix4f() {
+        checkScope();
+        if (matrixCount == matrices.length) {
+            Matrix4f[] newMatrices = new Matrix4f[matrices.length * 2];
+            System.arraycopy(matrices, 0, newMatrices, 0, matrices.length);
+            matrices = newMatrices;
+            allocationCount++;
+        }
+
+        Matrix4f m = matrices[matrixCount];
+        if (m == null) {
+            m = matrices[matrixCount] = new Matrix4f();
+            allocationCount++;
+        } else if (debug && !isPoisoned(m)) {
+            throw escaped(m);
+        }
+        matrixCount++;
+        return m;
+    }
+
+    /**
+     * @return number of open scopes
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Number of objects and arrays created by this arena so far. It stops
+     * growing once the pool is big enough for the busiest frame, which can be
+     * used to check that frames don't allocate.
+     *
+     * @return allocation count
+     */
+    public long getAllocationCount() {
+        return allocationCount;
+    }
+
+    private void checkScope() {
+        if (depth == 0) {
+            throw new IllegalStateException("FrameArena used outside of begin() / end()");
+        }
+    }
+
+    private static IllegalStateException escaped(Object o) {
+        return new IllegalStateException("Temporary " + o.getClass().getSimpleName()
+                + " was modified after its scope ended: " + o);
+    }
+
+    private static void poison(Matrix4f m) {
+        m.m00 = m.m01 = m.m02 = m.m03 = Float.NaN;
+        m.m10 = m.m11 = m.m12 = m.m13 = Float.NaN;
+        m.m20 = m.m21 = m.m22 = m.m23 = Float.NaN;
+        m.m30 = m.m31 = m.m32 = m.m33 = Float.NaN;
+    }
+
+    private static boolean isPoisoned(Matrix4f m) {
+        return Float.isNaN(m.m00) && Float.isNaN(m.m01) && Float.isNaN(m.m02) && Float.isNaN(m.m03)
+                && Float.isNaN(m.m10) && Float.isNaN(m.m11) && Float.isNaN(m.m12) && Float.isNaN(m.m13)
+                && Float.isNaN(m.m20) && Float.isNaN(m.m21) && Float.isNaN(m.m22) && Float.isNaN(m.m23)
+                && Float.isNaN(m.m30) && Float.isNaN(m.m31) && Float.isNaN(m.m32) && Float.isNaN(m.m33);
+    }
+}
@@ -91,39 +91,57 @@ public abstract class Game {
         }
 
         protected void processInputAll(float delta) {
-                getSceneObject().processInputAll(delta);
-                processInput(delta);
-                if (currentState != null) {
-                        currentState.processInput(delta);
+                FrameArena arena = FrameArena.get();
+                arena.begin();
+                try {
+                        getSceneObject().processInputAll(delta);
+                        processInput(delta);
+                        if (currentState != null) {
+                                currentState.processInput(delta);
+                        }
+                } finally {
+                        arena.end();
                 }
         }
 
         protected void updateAll(float delta) {
-                getSceneObject().updateAll(delta);
-                if (gui != null) {
-                        if (gui.update()) {
-                                // nothing yet
+                FrameArena arena = FrameArena.get();
+                arena.begin();
+                try {
+                        getSceneObject().updateAll(delta);
+                        if (gui != null) {
+                                if (gui.update()) {
+                                        // nothing yet
+                                }
                         }
-                }
-                update(delta);
-                if (currentState != null) {
-                        currentState.update(delta);
+                        update(delta);
+                        if (currentState != null) {
+                                currentState.update(delta);
+                        }
+                } finally {
+                        arena.end();
                 }
         }
 
         protected void renderAll(Renderer renderer) {
-                renderer.render(getSceneObject());
-                if (gui != null) {
-                        renderer.to2D(Window.getWidth(), Window.getHeight());
-                        try {
-                                gui.render(false);
-                        } catch (Exception e) {
+                FrameArena arena = FrameArena.get();
+                arena.begin();
+                try {
+                        renderer.render(getSceneObject());
+                        if (gui != null) {
+                                renderer.to2D(Window.getWidth(), Window.getHeight());
+                                try {
+                                        gui.render(false);
+                                } catch (Exception e) {
+                                }
+                                renderer.backTo3D();
                         }
-                        renderer.backTo3D();
-                }
-                render(renderer);
-                if (currentState != null) {
-                        currentState.render(renderer);
+                        render(renderer);
+                        if (currentState != null) {
+                                currentState.render(renderer);
+                        }
+                } finally {
+                        arena.end();
                 }
         }
 
@@ -247,7 +247,18 @@ public class Input
          */
 	public static Vector2f getMousePosition()
 	{
-		return new Vector2f(Mouse.getX(), Mouse.getY());
+		return getMousePosition(new Vector2f());
+	}
+
+        /**
+         * Stores position of mouse on the screen to dest.
+         * @param dest vector to store position to
+         * @return dest
+         */
+	public static Vector2f getMousePosition(Vector2f dest)
+	{
+		dest.set(Mouse.getX(), Mouse.getY());
+		return dest;
 	}
 	
         /**
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.core;
+
+import deamont66.engine.core.math.BatchMath;
+import deamont66.engine.core.math.Matrix4f;
+import deamont66.engine.core.math.Quaternion;
+import deamont66.engine.core.math.Vector3f;
+
+/**
+ * Handle of transform stored in {@link TransformStorage}. Holds no data
+ * except its index, so getters copy values to given objects. World values
+ * are the ones computed by last {@link TransformStorage#updateWorldMatrices()}.
+ *
+ * @author JiriSimecek
+ */
+public final class PackedTransform {
+
+    final TransformStorage storage;
+    int index;
+
+    PackedTransform(TransformStorage storage, int index) {
+        this.storage = storage;
+        this.index = index;
+    }
+
+    public Vector3f getPos(Vector3f dest) {
+        float[] positions = storage.positions();
+        int i = checkedIndex() * 3;
+        dest.set(positions[i], positions[i + 1], positions[i + 2]);
+        return dest;
+    }
+
+    public void setPos(float x, float y, float z) {
+        float[] positions = storage.positions();
+        int i = checkedIndex() * 3;
+        positions[i] = x;
+        positions[i + 1] = y;
+        positions[i + 2] = z;
+        storage.markDirty(index);
+    }
+
+    public void setPos(Vector3f pos) {
+        setPos(pos.x, pos.y, pos.z);
+    }
+
+    public Quaternion getRot(Quaternion dest) {
+        float[] rotations = storage.rotations();
+        int i = checkedIndex() * 4;
+        dest.set(rotations[i], rotations[i + 1], rotations[i + 2], rotations[i + 3]);
+        return dest;
+    }
+
+    public void setRot(Quaternion rot) {
+        float[] rotations = storage.rotations();
+        int i = checkedIndex() * 4;
+        rotations[i] = rot.x;
+        rotations[i + 1] = rot.y;
+        rotations[i + 2] = rot.z;
+        rotations[i + 3] = rot.w;
+        storage.markDirty(index);
+    }
+
+    public Vector3f getScale(Vector3f dest) {
+        float[] scales = storage.scales();
+        int i = checkedIndex() * 3;
+        dest.set(scales[i], scales[i + 1], scales[i + 2]);
+        return dest;
+    }
+
+    public void setScale(float x, float y, float z) {
+        float[] scales = storage.scales();
+        int i = checkedIndex() * 3;
+        scales[i] = x;
+        scales[i + 1] = y;
+        scales[i + 2] = z;
+        storage.markDirty(index);
+    }
+
+    public void setScale(Vector3f scale) {
+        setScale(scale.x, scale.y, scale.z);
+    }
+
+    public void rotate(Vector3f axis, float angle) {
+        FrameArena arena = FrameArena.get();
+        arena.begin();
+        try {
+            Quaternion rot = getRot(arena.quaternion());
+            Quaternion temp = arena.quaternion().fromAxisAngle(axis, angle);
+            temp.mul(rot, rot).normalize();
+            setRot(rot);
+        } finally {
+            arena.end();
+        }
+    }
+
+    public PackedTransform getParent() {
+        return storage.getHandle(storage.getParentIndex(checkedIndex()));
+    }
+
+    public void setParent(PackedTransform parent) {
+        storage.setParent(checkedIndex(), parent);
+    }
+
+    public Matrix4f getTransformation(Matrix4f dest) {
+        return BatchMath.loadAffine(storage.getWorldMatrices(), checkedIndex() * BatchMath.AFFINE_SIZE, dest);
+    }
+
+    public Vector3f getTransformedPos(Vector3f dest) {
+        float[] world = storage.getWorldMatrices();
+        int i = checkedIndex() * BatchMath.AFFINE_SIZE;
+        dest.set(world[i + 3], world[i + 7], world[i + 11]);
+        return dest;
+    }
+
+    /**
+     * @return index in storage arrays, changes when storage reorders
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public boolean isDestroyed() {
+        return index == TransformStorage.NO_PARENT;
+    }
+
+    private int checkedIndex() {
+        if (index == TransformStorage.NO_PARENT) {
+            throw new IllegalStateException("Transform was destroyed");
+        }
+        return index;
+    }
+}
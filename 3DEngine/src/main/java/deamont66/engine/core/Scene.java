@@ -30,9 +30,15 @@
 package deamont66.engine.core;
 
 import deamont66.engine.components.Camera;
+import deamont66.engine.components.EntityComponent;
+import deamont66.engine.core.math.Frustum;
+import deamont66.engine.ecs.EcsWorld;
 import deamont66.engine.rendering.Renderer;
 import deamont66.engine.rendering.Shader;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  *
@@ -44,6 +50,29 @@ public class Scene {
         private CoreEngine engine;
 
         private Entity camera;
+        private EcsWorld ecsWorld;
+        private ForkJoinPool updatePool;
+
+        // flattened tree, rebuilt only after entities were added
+        private final ArrayList<Entity> allEntities = new ArrayList<>();
+        private final List<Entity> allEntitiesView = Collections.unmodifiableList(allEntities);
+        private boolean allEntitiesDirty = true;
+
+        private SpatialIndex spatialIndex;
+        private TransformChangeLog changeLog;
+        private EventBus eventBus;
+        // awake entities, only when active set update is enabled
+        private ActiveSet activeSet;
+
+        private ComponentIndex componentIndex;
+
+        // entities released to EntityPool while entities were iterated
+        private final ArrayList<Entity> pendingReleases = new ArrayList<>();
+        private boolean updating;
+
+        private boolean culling = true;
+        private final Frustum cullFrustum = new Frustum();
+        private final float[] cullBox = new float[6];
 
         public Scene() {
                 this.children = new ArrayList<>();
@@ -51,45 +80,340 @@ public class Scene {
         }
 
         public void processInputAll(float delta) {
+                updating = true;
                 processInput(delta);
 
                 this.camera.processInput(delta);
                 for (Entity child : children) {
                         child.processInputAll(delta);
                 }
+                if (ecsWorld != null) {
+                        ecsWorld.processInput(delta);
+                }
+                if (eventBus != null) {
+                        eventBus.dispatch();
+                }
+                releasePending();
         }
 
         public void updateAll(float delta) {
+                updating = true;
                 update(delta);
 
                 this.camera.update(delta);
-                for (Entity child : children) {
-                        child.updateAll(delta);
+                if (activeSet != null) {
+                        activeSet.update(delta);
+                } else {
+                        if (updatePool != null && children.size() > 1) {
+                                updateThreadSafeParallel(delta);
+                        }
+                        for (Entity child : children) {
+                                child.updateAll(delta);
+                        }
+                }
+                if (ecsWorld != null) {
+                        ecsWorld.update(delta);
+                }
+                if (changeLog != null) {
+                        changeLog.endTick();
+                }
+                if (spatialIndex != null) {
+                        spatialIndex.update();
+                }
+                if (eventBus != null) {
+                        eventBus.dispatch();
                 }
+                releasePending();
+        }
+
+        /**
+         * @return true during {@link #processInputAll(float)} and
+         * {@link #updateAll(float)}, entities can't be detached then
+         */
+        boolean isUpdating() {
+                return updating;
+        }
+
+        /**
+         * Returns entity to its pool at the end of current update.
+         */
+        void releaseLater(Entity entity) {
+                pendingReleases.add(entity);
+        }
+
+        private void releasePending() {
+                updating = false;
+                for (int i = 0; i < pendingReleases.size(); i++) {
+                        Entity entity = pendingReleases.get(i);
+                        entity.getPool().recycle(entity);
+                }
+                pendingReleases.clear();
+        }
+
+        private void updateThreadSafeParallel(float delta) {
+                // resolve camera world transform now, thread safe components
+                // (e.g. LookAtComponent) may read it concurrently
+                camera.getTransform().getWorldMatrix();
+
+                int grain = Math.max(1, children.size() / (updatePool.getParallelism() * 4));
+                updatePool.invoke(new SubtreeUpdateTask(children, 0, children.size(), grain, delta));
         }
 
         public void renderAll(Shader shader, Renderer renderer, Camera camera) {
                 render(shader, renderer, camera);
 
                 this.camera.render(shader, renderer, camera);
-                for (Entity child : children) {
-                        child.renderAll(shader, renderer, camera);
+                if (culling && camera != null) {
+                        camera.getFrustum(cullFrustum);
+                        for (int i = 0; i < children.size(); i++) {
+                                children.get(i).renderAll(shader, renderer, camera, cullFrustum, Frustum.ALL_PLANES, cullBox);
+                        }
+                } else {
+                        for (Entity child : children) {
+                                child.renderAll(shader, renderer, camera);
+                        }
+                }
+                if (ecsWorld != null) {
+                        ecsWorld.render(shader, renderer, camera);
                 }
         }
 
         public void addChild(Entity child) {
+                child.setScene(this, children.size());
                 children.add(child);
                 child.setEngine(engine);
+                entityAdded(child);
+        }
+
+        /**
+         * Detaches root entity in O(1), last root entity takes its place in
+         * the order of update and render. Entity keeps its engine, so it can
+         * be added again without adding its components to engine again.
+         */
+        public void removeChild(Entity child) {
+                int index = child.getSceneIndex();
+                if (index < 0 || index >= children.size() || children.get(index) != child) {
+                        throw new IllegalArgumentException("Entity is not a root entity of this scene");
+                }
+
+                entityRemoved(child);
+                Entity last = children.remove(children.size() - 1);
+                if (last != child) {
+                        children.set(index, last);
+                        last.setScene(this, index);
+                }
+                child.setScene(null, -1);
+        }
+
+        public int getChildCount() {
+                return children.size();
+        }
+
+        public Entity getChild(int index) {
+                return children.get(index);
+        }
+
+        void entityAdded(Entity entity) {
+                if (activeSet != null) {
+                        activeSet.addTree(entity);
+                }
+                if (componentIndex != null) {
+                        componentIndex.addTree(entity);
+                }
+                if (changeLog != null) {
+                        entity.visitPreOrder(changeLogAttacher);
+                }
+                structureChanged();
+        }
+
+        void entityRemoved(Entity entity) {
+                if (spatialIndex != null) {
+                        spatialIndex.remove(entity);
+                }
+                if (activeSet != null) {
+                        activeSet.removeTree(entity);
+                }
+                if (componentIndex != null) {
+                        componentIndex.removeTree(entity);
+                }
+                if (changeLog != null) {
+                        entity.visitPreOrder(changeLogDetacher);
+                }
+                structureChanged();
+        }
+
+        // attached entities are recorded as changed
+        private final EntityVisitor changeLogAttacher = new EntityVisitor() {
+
+                @Override
+                public boolean visit(Entity entity) {
+                        entity.setChangeLog(changeLog);
+                        changeLog.record(entity);
+                        return true;
+                }
+        };
+
+        private final EntityVisitor changeLogDetacher = new EntityVisitor() {
+
+                @Override
+                public boolean visit(Entity entity) {
+                        entity.setChangeLog(null);
+                        return true;
+                }
+        };
+
+        void componentAdded(EntityComponent component) {
+                if (componentIndex != null) {
+                        componentIndex.add(component);
+                }
         }
 
+        void componentRemoved(EntityComponent component) {
+                if (componentIndex != null) {
+                        componentIndex.remove(component);
+                }
+        }
+
+        void entityWoke(Entity entity) {
+                if (activeSet != null) {
+                        activeSet.add(entity);
+                }
+        }
+
+        void entitySlept(Entity entity) {
+                if (activeSet != null) {
+                        activeSet.remove(entity);
+                }
+        }
+
+        void structureChanged() {
+                allEntitiesDirty = true;
+        }
+
+        /**
+         * Returns spatial index of all entities of the scene (without
+         * camera). It's created on first use and updated after every
+         * {@link #updateAll(float)}.
+         *
+         * @return spatial index of scene
+         */
+        public SpatialIndex getSpatialIndex() {
+                if (spatialIndex == null) {
+                        spatialIndex = new SpatialIndex(this);
+                        spatialIndex.update();
+                }
+                return spatialIndex;
+        }
+
+        /**
+         * Returns log of entities whose world transform or bounds changed
+         * during the last tick (since previous {@link #updateAll(float)}),
+         * so systems like physics sync or networking process only those
+         * instead of polling {@link Transform#hasChanged()} of every entity.
+         * Recording starts on first call, all entities of the scene are
+         * reported as changed in the first tick.
+         *
+         * @return change log of scene, filled at the end of every update
+         */
+        public TransformChangeLog getTransformChanges() {
+                if (changeLog == null) {
+                        changeLog = new TransformChangeLog();
+                        for (int i = 0; i < children.size(); i++) {
+                                children.get(i).visitPreOrder(changeLogAttacher);
+                        }
+                }
+                return changeLog;
+        }
+
+        /**
+         * Returns all entities of scene (without camera), children before
+         * their parents. Creates new list, use {@link #getAllEntities()} for
+         * per frame use.
+         */
         public ArrayList<Entity> getAllAttached() {
-                ArrayList<Entity> result = new ArrayList<>();
+                return new ArrayList<>(getAllEntities());
+        }
 
-                for (Entity child : children) {
-                        result.addAll(child.getAllAttached());
+        /**
+         * Returns cached list of all entities of scene (without camera) in
+         * the same order as {@link #getAllAttached()}. The list is rebuilt
+         * only when entity was added somewhere in the scene tree.
+         *
+         * @return read only list of all entities
+         */
+        public List<Entity> getAllEntities() {
+                if (allEntitiesDirty) {
+                        allEntities.clear();
+                        for (int i = 0; i < children.size(); i++) {
+                                children.get(i).getAllAttached(allEntities);
+                        }
+                        allEntitiesDirty = false;
                 }
+                return allEntitiesView;
+        }
 
-                return result;
+        /**
+         * Returns all components of given type (or its subclasses) attached
+         * to entities of the scene (without camera). First call for a type
+         * goes through the whole scene once, the list is then kept up to date
+         * as components and entities are added and removed.
+         *
+         * @param type component type
+         * @return read only list in no particular order, iterate it by index
+         * to avoid allocation
+         */
+        public <T extends EntityComponent> List<T> getComponents(Class<T> type) {
+                return getComponentIndex().getBucket(type).view;
+        }
+
+        /**
+         * Creates cached query for entities having components of all given
+         * types. Keep the query and call
+         * {@link ComponentQuery#getEntities()} every frame, it's rebuilt
+         * only after components of those types were added or removed.
+         *
+         * @param types component types
+         * @return new query
+         */
+        @SafeVarargs
+        public final ComponentQuery createQuery(Class<? extends EntityComponent>... types) {
+                if (types.length == 0) {
+                        throw new IllegalArgumentException("Query needs at least one component type");
+                }
+                ComponentIndex.Bucket<?>[] buckets = new ComponentIndex.Bucket<?>[types.length];
+                for (int i = 0; i < types.length; i++) {
+                        if (types[i] == null) {
+                                throw new IllegalArgumentException("Query component type can't be null");
+                        }
+                        buckets[i] = getComponentIndex().getBucket(types[i]);
+                }
+                return new ComponentQuery(buckets);
+        }
+
+        private ComponentIndex getComponentIndex() {
+                if (componentIndex == null) {
+                        componentIndex = new ComponentIndex(this);
+                }
+                return componentIndex;
+        }
+
+        /**
+         * Visits every root entity and then its descendants, see
+         * {@link Entity#visitPreOrder(EntityVisitor)}.
+         */
+        public void visitPreOrder(EntityVisitor visitor) {
+                for (int i = 0; i < children.size(); i++) {
+                        children.get(i).visitPreOrder(visitor);
+                }
+        }
+
+        /**
+         * Visits descendants of every root entity and then the root itself.
+         */
+        public void visitPostOrder(EntityVisitor visitor) {
+                for (int i = 0; i < children.size(); i++) {
+                        children.get(i).visitPostOrder(visitor);
+                }
         }
 
         public void setEngine(CoreEngine engine) {
@@ -102,9 +426,118 @@ public class Scene {
                         for (Entity child : children) {
                                 child.setEngine(engine);
                         }
+                        if (ecsWorld != null) {
+                                ecsWorld.setEngine(engine);
+                        }
                 }
         }
 
+        /**
+         * Returns archetype based entity storage of this scene, it's created
+         * on first use and updated and rendered after entity tree.
+         *
+         * @return entity component world of scene
+         */
+        public EcsWorld getEcsWorld() {
+                if (ecsWorld == null) {
+                        ecsWorld = new EcsWorld();
+                        ecsWorld.setEngine(engine);
+                }
+                return ecsWorld;
+        }
+
+        /**
+         * Returns event bus of the scene, it's created on first use. Queued
+         * events are dispatched at the end of {@link #processInputAll(float)}
+         * and {@link #updateAll(float)}, after all entities.
+         *
+         * @return event bus of scene
+         */
+        public EventBus getEventBus() {
+                if (eventBus == null) {
+                        eventBus = new EventBus();
+                }
+                return eventBus;
+        }
+
+        /**
+         * Enables parallel update. Subtrees of root entities are then split
+         * between threads of <code>pool</code>, which update their
+         * {@link deamont66.engine.components.EntityComponent#isThreadSafe()
+         * thread safe} components. All other components (and overridden
+         * {@link Entity#update(float)} methods) are updated afterwards on the
+         * calling thread in the usual order. Order of updates within every
+         * root subtree is kept.
+         *
+         * @param pool pool to update with or null to update serially
+         */
+        public void setUpdatePool(ForkJoinPool pool) {
+                this.updatePool = pool;
+        }
+
+        public ForkJoinPool getUpdatePool() {
+                return updatePool;
+        }
+
+        /**
+         * Enables update of awake entities only. Scene then keeps set of
+         * entities which aren't {@link Entity#sleep() sleeping} and
+         * {@link #updateAll(float)} iterates just that set instead of whole
+         * entity tree, so its cost depends on number of awake entities, not on
+         * size of the scene. Entities are updated in no particular order
+         * (parents aren't guaranteed to be updated before children) and
+         * {@link #setUpdatePool(ForkJoinPool) update pool} isn't used.
+         * Without active set, sleeping entities are skipped during tree
+         * traversal.
+         *
+         * @param enabled true to update only awake entities
+         */
+        public void setActiveSetUpdate(boolean enabled) {
+                if (enabled && activeSet == null) {
+                        activeSet = new ActiveSet();
+                        for (int i = 0; i < children.size(); i++) {
+                                activeSet.addTree(children.get(i));
+                        }
+                } else if (!enabled && activeSet != null) {
+                        activeSet.clear();
+                        activeSet = null;
+                }
+        }
+
+        public boolean isActiveSetUpdate() {
+                return activeSet != null;
+        }
+
+        /**
+         * @return number of entities updated by active set update, or -1 if
+         * it's not enabled
+         */
+        public int getAwakeCount() {
+                return activeSet != null ? activeSet.size() : -1;
+        }
+
+        /**
+         * Enables culling of entity tree in {@link #renderAll(Shader,
+         * Renderer, Camera)}: subtrees whose
+         * {@link Entity#getSubtreeBounds() bounds} are outside frustum of the
+         * rendering camera (scene camera, or light camera in shadow passes)
+         * are skipped. Enabled by default. Subtrees containing
+         * {@link Entity#isSubtreeUnbounded() unbounded} entities, which draw
+         * without reporting their
+         * {@link deamont66.engine.components.EntityComponent#getLocalBounds()
+         * bounds}, aren't rejected as a whole, so such entities are always
+         * drawn.
+         *
+         * @param culling true to cull
+         */
+        public void setCulling(boolean culling) {
+                this.culling = culling;
+        }
+
+        public boolean isCulling() {
+                return culling;
+        }
+
         public void setCamera(Entity camera) {
                 this.camera = camera;
                 camera.setEngine(engine);
@@ -0,0 +1,397 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.core;
+
+import deamont66.engine.core.math.Bounds;
+import deamont66.engine.core.math.DynamicAabbTree;
+import deamont66.engine.core.math.Frustum;
+import deamont66.engine.core.math.Matrix4f;
+import deamont66.engine.core.math.Vector3f;
+import java.util.List;
+
+/**
+ * Dynamic AABB tree of all entities of a {@link Scene}, see
+ * {@link Scene#getSpatialIndex()}. Entities are indexed by their
+ * {@link Entity#getWorldBounds() world bounds}, entities without bounds
+ * (lights, empty nodes) as a point at their world position.
+ *
+ * {@link #update()} is called by the scene after update of entities. It
+ * goes only through entities in {@link Scene#getTransformChanges()}, tree is
+ * changed just for entities which moved out of their enlarged box.
+ *
+ * Queries store found entities into arrays given by caller and return
+ * their count, they don't allocate anything. When the array is full, query
+ * stops, so overlap queries return arbitrary subset of entities in that
+ * case. Queries are not thread safe.
+ *
+ * @author JiriSimecek
+ */
+public class SpatialIndex {
+
+    /** Default enlargement of boxes in the tree. */
+    public static final float DEFAULT_MARGIN = 0.1f;
+
+    private final Scene scene;
+    private final DynamicAabbTree<Entity> tree;
+
+    // versions of entity transform and bounds at last update, by proxy
+    private int[] transformVersions = new int[64];
+    private int[] boundsVersions = new int[64];
+
+    private boolean initialized;
+
+    private final Collector collector = new Collector();
+    private final RayCollector rayCollector = new RayCollector();
+    private int[] nearestProxies = new int[16];
+    private float[] nearestDistances = new float[16];
+
+    public SpatialIndex(Scene scene) {
+        this(scene, DEFAULT_MARGIN);
+    }
+
+    public SpatialIndex(Scene scene, float margin) {
+        this.scene = scene;
+        this.tree = new DynamicAabbTree<>(margin);
+    }
+
+    /**
+     * Updates tree with entities which were added or moved during the last
+     * tick of the scene. First update inserts all entities of the scene.
+     */
+    public void update() {
+        TransformChangeLog changes = scene.getTransformChanges();
+        if (!initialized) {
+            List<Entity> entities = scene.getAllEntities();
+            for (int i = 0; i < entities.size(); i++) {
+                if (entities.get(i).getSpatialProxy() == DynamicAabbTree.NULL) {
+                    insert(entities.get(i));
+                }
+            }
+            initialized = true;
+        }
+
+        for (int i = 0; i < changes.size(); i++) {
+            Entity entity = changes.get(i);
+            if (entity.getChangeLog() != changes) {
+                // detached since
+                continue;
+            }
+            int proxy = entity.getSpatialProxy();
+            if (proxy == DynamicAabbTree.NULL) {
+                insert(entity);
+            } else if (entity.getTransform().getVersion() != transformVersions[proxy]
+                    || entity.getBoundsVersion() != boundsVersions[proxy]) {
+                Bounds bounds = getBounds(entity);
+                if (bounds != null) {
+                    tree.move(proxy, bounds);
+                } else {
+                    Matrix4f world = entity.getTransform().getWorldMatrix();
+                    tree.move(proxy, world.m03, world.m13, world.m23, world.m03, world.m13, world.m23);
+                }
+                storeVersions(entity, proxy);
+            }
+        }
+    }
+
+    private final EntityVisitor remover = new EntityVisitor() {
+
+        @Override
+        public boolean visit(Entity entity) {
+            int proxy = entity.getSpatialProxy();
+            if (proxy != DynamicAabbTree.NULL) {
+                tree.remove(proxy);
+                entity.setSpatialProxy(DynamicAabbTree.NULL);
+            }
+            return true;
+        }
+    };
+
+    /**
+     * Removes entity and its descendants, called by scene when they are
+     * detached.
+     */
+    void remove(Entity entity) {
+        entity.visitPreOrder(remover);
+    }
+
+    private void insert(Entity entity) {
+        Bounds bounds = getBounds(entity);
+        int proxy;
+        if (bounds != null) {
+            proxy = tree.insert(bounds, entity);
+        } else {
+            Matrix4f world = entity.getTransform().getWorldMatrix();
+            proxy = tree.insert(world.m03, world.m13, world.m23, world.m03, world.m13, world.m23, entity);
+        }
+        entity.setSpatialProxy(proxy);
+
+        if (proxy >= transformVersions.length) {
+            int length = Math.max(proxy + 1, transformVersions.length * 2);
+            int[] newTransformVersions = new int[length];
+            System.arraycopy(transformVersions, 0, newTransformVersions, 0, transformVersions.length);
+            transformVersions = newTransformVersions;
+            int[] newBoundsVersions = new int[length];
+            System.arraycopy(boundsVersions, 0, newBoundsVersions, 0, boundsVersions.length);
+            boundsVersions = newBoundsVersions;
+        }
+        storeVersions(entity, proxy);
+    }
+
+    private void storeVersions(Entity entity, int proxy) {
+        transformVersions[proxy] = entity.getTransform().getVersion();
+        boundsVersions[proxy] = entity.getBoundsVersion();
+    }
+
+    private static Bounds getBounds(Entity entity) {
+        Bounds bounds = entity.getWorldBounds();
+        return bounds.isEmpty() ? null : bounds;
+    }
+
+    /**
+     * Passes entities whose box overlaps given box to callback.
+     *
+     * @return number of entities passed to callback
+     */
+    public int query(Bounds bounds, DynamicAabbTree.Callback<? super Entity> callback) {
+        return tree.query(bounds, callback);
+    }
+
+    /**
+     * Finds entities whose box overlaps given box.
+     *
+     * @param dest found entities
+     * @return number of entities stored to dest
+     */
+    public int queryBox(Bounds bounds, Entity[] dest) {
+        return queryBox(bounds, dest, 0, dest.length);
+    }
+
+    private int queryBox(Bounds bounds, Entity[] dest, int offset, int length) {
+        collector.reset(dest, offset, length);
+        tree.query(bounds, collector);
+        return collector.count;
+    }
+
+    /**
+     * Finds entities whose box intersects sphere.
+     *
+     * @param dest found entities
+     * @return number of entities stored to dest
+     */
+    public int querySphere(Vector3f center, float radius, Entity[] dest) {
+        return querySphere(center.x, center.y, center.z, radius, dest, 0, dest.length);
+    }
+
+    private int querySphere(float x, float y, float z, float radius, Entity[] dest, int offset, int length) {
+        collector.reset(dest, offset, length);
+        tree.querySphere(x, y, z, radius, collector);
+        return collector.count;
+    }
+
+    /**
+     * Sphere queries of many agents at once.
+     *
+     * @param spheres packed spheres (centerX, centerY, centerZ, radius)
+     * @param count number of spheres
+     * @param dest entities found by all queries
+     * @param offsets entities of sphere i are stored from
+     * <code>dest[offsets[i]]</code> to <code>dest[offsets[i + 1]]</code>
+     * (exclusive), needs count + 1 elements
+     * @return total number of entities stored to dest
+     */
+    public int querySpheres(float[] spheres, int count, Entity[] dest, int[] offsets) {
+        int total = 0;
+        for (int s = 0; s < count; s++) {
+            int o = s * 4;
+            offsets[s] = total;
+            total += querySphere(spheres[o], spheres[o + 1], spheres[o + 2], spheres[o + 3],
+                    dest, total, dest.length - total);
+        }
+        offsets[count] = total;
+        return total;
+    }
+
+    /**
+     * Finds entities whose box intersects frustum, e.g. for culling.
+     *
+     * @param dest found entities
+     * @return number of entities stored to dest
+     */
+    public int queryFrustum(Frustum frustum, Entity[] dest) {
+        collector.reset(dest, 0, dest.length);
+        tree.queryFrustum(frustum, collector);
+        return collector.count;
+    }
+
+    /**
+     * Finds entities hit by ray, nearest first. Only the nearest
+     * <code>dest.length</code> hits are found, so picking can pass array of
+     * length one.
+     *
+     * @param origin ray origin
+     * @param direction normalized ray direction
+     * @param maxDistance length of the ray
+     * @param dest hit entities
+     * @param distances distances where ray enters boxes of hit entities, may
+     * be null
+     * @return number of entities stored to dest
+     */
+    public int raycast(Vector3f origin, Vector3f direction, float maxDistance, Entity[] dest, float[] distances) {
+        rayCollector.reset(dest, distances, maxDistance);
+        tree.raycast(origin.x, origin.y, origin.z, direction.x, direction.y, direction.z, maxDistance, rayCollector);
+        return rayCollector.count;
+    }
+
+    /**
+     * Finds <code>dest.length</code> entities nearest to point, measured to
+     * their boxes.
+     *
+     * @param dest found entities, nearest first
+     * @param distancesSquared squared distances of found entities, may be
+     * null
+     * @return number of entities stored to dest
+     */
+    public int nearest(Vector3f point, Entity[] dest, float[] distancesSquared) {
+        return nearest(point.x, point.y, point.z, dest.length, dest, 0, distancesSquared);
+    }
+
+    private int nearest(float x, float y, float z, int k, Entity[] dest, int offset, float[] distancesSquared) {
+        if (nearestProxies.length < k) {
+            nearestProxies = new int[k];
+            nearestDistances = new float[k];
+        }
+        int count = tree.nearest(x, y, z, k, nearestProxies, nearestDistances);
+        for (int i = 0; i < count; i++) {
+            dest[offset + i] = tree.getData(nearestProxies[i]);
+        }
+        if (distancesSquared != null) {
+            System.arraycopy(nearestDistances, 0, distancesSquared, offset, count);
+        }
+        return count;
+    }
+
+    /**
+     * Nearest neighbours of many points at once.
+     *
+     * @param points packed points (x, y, z)
+     * @param count number of points
+     * @param k number of neighbours of every point
+     * @param dest neighbours of point i are stored from
+     * <code>dest[i * k]</code>, unused elements are set to null
+     * @param distancesSquared squared distances in the same layout, may be
+     * null
+     * @param counts number of neighbours found for every point, may be null
+     */
+    public void nearest(float[] points, int count, int k, Entity[] dest, float[] distancesSquared, int[] counts) {
+        for (int p = 0; p < count; p++) {
+            int offset = p * k;
+            int found = nearest(points[p * 3], points[p * 3 + 1], points[p * 3 + 2], k, dest, offset, distancesSquared);
+            for (int i = found; i < k; i++) {
+                dest[offset + i] = null;
+            }
+            if (counts != null) {
+                counts[p] = found;
+            }
+        }
+    }
+
+    private static final class Collector implements DynamicAabbTree.Callback<Entity> {
+
+        private Entity[] dest;
+        private int offset;
+        private int length;
+        private int count;
+
+        void reset(Entity[] dest, int offset, int length) {
+            this.dest = dest;
+            this.offset = offset;
+            this.length = length;
+            this.count = 0;
+        }
+
+        @Override
+        public boolean found(int proxy, Entity entity) {
+            if (count == length) {
+                return false;
+            }
+            dest[offset + count++] = entity;
+            return count < length;
+        }
+    }
+
+    // keeps nearest hits sorted, full buffer shortens the ray
+    private static final class RayCollector implements DynamicAabbTree.RayCallback<Entity> {
+
+        private Entity[] dest;
+        private float[] distances;
+        private float[] ownDistances = new float[16];
+        private float maxDistance;
+        private int count;
+
+        void reset(Entity[] dest, float[] distances, float maxDistance) {
+            this.maxDistance = maxDistance;
+            this.dest = dest;
+            if (distances == null) {
+                if (ownDistances.length < dest.length) {
+                    ownDistances = new float[dest.length];
+                }
+                distances = ownDistances;
+            }
+            this.distances = distances;
+            this.count = 0;
+        }
+
+        @Override
+        public float hit(int proxy, Entity entity, float distance) {
+            int capacity = dest.length;
+            if (capacity == 0) {
+                return 0;
+            }
+            if (count < capacity || distance < distances[capacity - 1]) {
+                int i = count < capacity ? count++ : capacity - 1;
+                for (; i > 0 && distances[i - 1] > distance; i--) {
+                    distances[i] = distances[i - 1];
+                    dest[i] = dest[i - 1];
+                }
+                distances[i] = distance;
+                dest[i] = entity;
+            }
+            return count == capacity ? distances[capacity - 1] : maxDistance;
+        }
+    }
+
+    public DynamicAabbTree<Entity> getTree() {
+        return tree;
+    }
+
+    public int getEntityCount() {
+        return tree.getProxyCount();
+    }
+}
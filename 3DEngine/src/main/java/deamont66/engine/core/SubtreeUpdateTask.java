@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.core;
+
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Updates thread safe components of a range of root entities, splitting the
+ * range between {@link java.util.concurrent.ForkJoinPool} workers until it
+ * has at most <code>grain</code> roots. Whole subtree of every root is always
+ * updated by one thread in the usual order.
+ *
+ * @author JiriSimecek
+ */
+final class SubtreeUpdateTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<Entity> roots;
+    private final int start;
+    private final int end;
+    private final int grain;
+    private final float delta;
+
+    SubtreeUpdateTask(List<Entity> roots, int start, int end, int grain, float delta) {
+        this.roots = roots;
+        this.start = start;
+        this.end = end;
+        this.grain = grain;
+        this.delta = delta;
+    }
+
+    @Override
+    protected void compute() {
+        if (end - start > grain) {
+            int middle = (start + end) >>> 1;
+            invokeAll(new SubtreeUpdateTask(roots, start, middle, grain, delta),
+                    new SubtreeUpdateTask(roots, middle, end, grain, delta));
+            return;
+        }
+
+        FrameArena arena = FrameArena.get();
+        arena.begin();
+        try {
+            for (int i = start; i < end; i++) {
+                roots.get(i).updateThreadSafeAll(delta);
+            }
+        } finally {
+            arena.end();
+        }
+    }
+}
@@ -32,122 +32,240 @@ package deamont66.engine.core;
 import deamont66.engine.core.math.Vector3f;
 import deamont66.engine.core.math.Matrix4f;
 import deamont66.engine.core.math.Quaternion;
-
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Position, rotation and scale relative to parent transform.
+ *
+ * Local matrix, world matrix and world rotation are cached. Setters and
+ * {@link #markChanged()} invalidate the caches of this transform and of all
+ * its children, so reading unchanged transform costs one flag check no
+ * matter how deep in the hierarchy it is. Vectors returned by getters are
+ * the stored ones; if they are modified in place, {@link #markChanged()} has
+ * to be called.
+ *
+ * @author JiriSimecek
+ */
 public class Transform {
 
         private Transform parent;
-        private Matrix4f parentMatrix;
+        // entity woken up and notified by changes of this transform
+        private Entity owner;
+        private final List<Transform> children = new ArrayList<>();
 
-        private Vector3f pos;
-        private Quaternion rot;
-        private Vector3f scale;
+        private final Vector3f pos = new Vector3f(0, 0, 0);
+        private final Quaternion rot = new Quaternion(0, 0, 0, 1);
+        private final Vector3f scale = new Vector3f(1, 1, 1);
 
-        private Vector3f oldPos;
-        private Quaternion oldRot;
-        private Vector3f oldScale;
+        // values at last update(), catch in place changes without markChanged()
+        private final Vector3f oldPos = new Vector3f();
+        private final Quaternion oldRot = new Quaternion();
+        private final Vector3f oldScale = new Vector3f();
 
-        public Transform() {
-                pos = new Vector3f(0, 0, 0);
-                rot = new Quaternion(0, 0, 0, 1);
-                scale = new Vector3f(1, 1, 1);
+        private final Matrix4f localMatrix = new Matrix4f();
+        private final Matrix4f worldMatrix = new Matrix4f();
+        private final Quaternion worldRot = new Quaternion();
+        private boolean localDirty = true;
+        private boolean worldDirty = true;
+        private boolean worldRotDirty = true;
 
-                parentMatrix = new Matrix4f().initIdentity();
+        private boolean changed = true;
+        private int version;
+
+        public Transform() {
+                update();
+                changed = true;
         }
 
         public void reset() {
-                pos = new Vector3f(0, 0, 0);
-                rot = new Quaternion(0, 0, 0, 1);
-                scale = new Vector3f(1, 1, 1);
-
-                parentMatrix = new Matrix4f().initIdentity();
+                pos.set(0, 0, 0);
+                rot.set(0, 0, 0, 1);
+                scale.set(1, 1, 1);
+                markChanged();
         }
 
+        /**
+         * Starts new frame for {@link #hasChanged()}. Parent has to be updated
+         * before its children (as {@link Entity} does).
+         */
         public void update() {
-                if (oldPos != null) {
+                if (!pos.equals(oldPos) || !rot.equals(oldRot) || !scale.equals(oldScale)) {
+                        markChanged();
                         oldPos.set(pos);
                         oldRot.set(rot);
                         oldScale.set(scale);
-                } else {
-                        oldPos = new Vector3f(0, 0, 0).set(pos).add(1.0f);
+                }
+                changed = parent != null && parent.changed;
+        }
 
-                        oldRot = new Quaternion(0, 0, 0, 0);
-                        oldRot.set(rot);
-                        oldRot.mul(0.5f);
+        /**
+         * Invalidates cached matrices of this transform and its children. Has
+         * to be called after vectors returned by {@link #getPos()},
+         * {@link #getRot()} or {@link #getScale()} were modified directly.
+         * Wakes up sleeping owner entity (changes inherited from parent
+         * don't).
+         */
+        public void markChanged() {
+                localDirty = true;
+                invalidateWorld();
+                if (owner != null) {
+                        owner.wake();
+                }
+        }
 
-                        oldScale = new Vector3f(0, 0, 0).set(scale).add(1.0f);
+        private void invalidateWorld() {
+                if (worldDirty && worldRotDirty && changed) {
+                        // children are already invalid too
+                        return;
+                }
+                worldDirty = true;
+                worldRotDirty = true;
+                changed = true;
+                version++;
+                if (owner != null) {
+                        owner.worldTransformChanged();
+                }
+                for (int i = 0; i < children.size(); i++) {
+                        children.get(i).invalidateWorld();
                 }
         }
 
         public void rotate(Vector3f axis, float angle) {
-                Quaternion temp = new Quaternion(axis, angle);
-                temp.mul(rot);
-                temp.normalize();
-                rot = temp;
+                FrameArena arena = FrameArena.get();
+                arena.begin();
+                try {
+                        Quaternion temp = arena.quaternion().fromAxisAngle(axis, angle);
+                        temp.mul(rot, rot).normalize();
+                } finally {
+                        arena.end();
+                }
+                markChanged();
         }
 
         public void lookAt(Vector3f point) {
-                rot.lookAt(point.sub(pos));
+                FrameArena arena = FrameArena.get();
+                arena.begin();
+                try {
+                        rot.lookAt(point.sub(pos, arena.vector3f()));
+                } finally {
+                        arena.end();
+                }
+                markChanged();
         }
 
         public Quaternion getLookAtRotation(Vector3f point) {
-                Quaternion temp = new Quaternion();
-                temp.lookAt(point.sub(pos));
-                return temp;
+                return getLookAtRotation(point, new Quaternion());
         }
 
-        public boolean hasChanged() {
-                if (parent != null && parent.hasChanged()) {
-                        return true;
-                }
-
-                if (!pos.equals(oldPos)) {
-                        return true;
-                }
-
-                if (!rot.equals(oldRot)) {
-                        return true;
+        public Quaternion getLookAtRotation(Vector3f point, Quaternion dest) {
+                FrameArena arena = FrameArena.get();
+                arena.begin();
+                try {
+                        dest.lookAt(point.sub(pos, arena.vector3f()));
+                } finally {
+                        arena.end();
                 }
+                return dest;
+        }
 
-                if (!scale.equals(oldScale)) {
-                        return true;
-                }
+        /**
+         * @return true if this transform or any of its parents has changed
+         * since last {@link #update()}
+         */
+        public boolean hasChanged() {
+                return changed;
+        }
 
-                return false;
+        /**
+         * @return number which changes every time world transformation of
+         * this transform changes
+         */
+        public int getVersion() {
+                return version;
         }
 
         public Matrix4f getTransformation() {
-                Matrix4f translationMatrix = new Matrix4f().initTranslation(pos.getX(), pos.getY(), pos.getZ());
-                Matrix4f rotationMatrix = rot.toRotationMatrix();
-                Matrix4f scaleMatrix = new Matrix4f().initScale(scale.getX(), scale.getY(), scale.getZ());
+                return getTransformation(new Matrix4f());
+        }
 
-                return getParentMatrix().mul(translationMatrix.mul(rotationMatrix.mul(scaleMatrix)));
+        /**
+         * Copies world transformation of this transform into
+         * <code>dest</code>.
+         *
+         * @param dest matrix to store result to
+         * @return dest
+         */
+        public Matrix4f getTransformation(Matrix4f dest) {
+                return dest.set(getWorldMatrix());
         }
 
-        private Matrix4f getParentMatrix() {
-                if (parent != null && parent.hasChanged()) {
-                        parentMatrix = parent.getTransformation();
+        /**
+         * @return cached world transformation, must not be modified
+         */
+        public Matrix4f getWorldMatrix() {
+                if (worldDirty) {
+                        if (localDirty) {
+                                localMatrix.initTransformation(pos, rot, scale);
+                                localDirty = false;
+                        }
+                        if (parent != null) {
+                                parent.getWorldMatrix().mulAffine(localMatrix, worldMatrix);
+                        } else {
+                                worldMatrix.set(localMatrix);
+                        }
+                        worldDirty = false;
                 }
-
-                return parentMatrix;
+                return worldMatrix;
         }
 
         public void setParent(Transform parent) {
+                if (this.parent != null) {
+                        this.parent.children.remove(this);
+                }
                 this.parent = parent;
+                if (parent != null) {
+                        parent.children.add(this);
+                }
+                invalidateWorld();
+        }
+
+        public Transform getParent() {
+                return parent;
+        }
+
+        void setOwner(Entity owner) {
+                this.owner = owner;
         }
 
         public Vector3f getTransformedPos() {
-                return getParentMatrix().transform(pos);
+                return getTransformedPos(new Vector3f());
+        }
+
+        public Vector3f getTransformedPos(Vector3f dest) {
+                Matrix4f world = getWorldMatrix();
+                dest.set(world.m03, world.m13, world.m23);
+                return dest;
         }
 
         public Quaternion getTransformedRot() {
-                Quaternion parentRotation = new Quaternion(0, 0, 0, 1);
+                return getTransformedRot(new Quaternion());
+        }
 
-                if (parent != null) {
-                        parentRotation = parent.getTransformedRot();
+        public Quaternion getTransformedRot(Quaternion dest) {
+                return dest.set(getWorldRot());
+        }
+
+        private Quaternion getWorldRot() {
+                if (worldRotDirty) {
+                        if (parent != null) {
+                                parent.getWorldRot().mul(rot, worldRot);
+                        } else {
+                                worldRot.set(rot);
+                        }
+                        worldRotDirty = false;
                 }
-                Quaternion ret = new Quaternion(parentRotation);
-                ret.mul(rot);
-                return ret;
+                return worldRot;
         }
 
         public Vector3f getPos() {
@@ -155,7 +273,13 @@ public class Transform {
         }
 
         public void setPos(Vector3f pos) {
-                this.pos = pos;
+                this.pos.set(pos);
+                markChanged();
+        }
+
+        public void setPos(float x, float y, float z) {
+                pos.set(x, y, z);
+                markChanged();
         }
 
         public Quaternion getRot() {
@@ -163,7 +287,8 @@ public class Transform {
         }
 
         public void setRot(Quaternion rotation) {
-                this.rot = rotation;
+                rot.set(rotation);
+                markChanged();
         }
 
         public Vector3f getScale() {
@@ -171,10 +296,12 @@ public class Transform {
         }
 
         public void setScale(float scale) {
-                setScale(new Vector3f(scale, scale, scale));
+                this.scale.set(scale, scale, scale);
+                markChanged();
         }
 
         public void setScale(Vector3f scale) {
-                this.scale = scale;
+                this.scale.set(scale);
+                markChanged();
         }
 }
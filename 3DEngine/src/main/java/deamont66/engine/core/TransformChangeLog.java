@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Entities of a scene whose world transform or bounds changed during the
+ * last tick, see {@link Scene#getTransformChanges()}. Every entity is
+ * recorded once per tick, by the first change. Changes inherited from
+ * parent are recorded too, as are entities attached to the scene. Tick has
+ * to start with {@link Scene#processInputAll(float)} (as in the game loop),
+ * which starts new frame of every {@link Transform}.
+ *
+ * Recording thread appends to its own buffer without locking, so thread
+ * safe components updated in parallel can move their entities. At the end
+ * of {@link Scene#updateAll(float)} buffers are collected into the list of
+ * the finished tick: changes of the updating thread first, then changes of
+ * other threads, each in order of recording. The list is valid until the
+ * end of the next update. It may contain entities which were detached
+ * since, check {@link Entity#getScene()} if it matters.
+ *
+ * @author JiriSimecek
+ */
+public final class TransformChangeLog {
+
+    // thread which finished last tick, records on other threads go to
+    // their own buffers
+    private Thread updateThread;
+    private final Buffer updateBuffer = new Buffer();
+    private final ArrayList<Buffer> threadBuffers = new ArrayList<>();
+    private final ThreadLocal<Buffer> threadBuffer = new ThreadLocal<Buffer>() {
+
+        @Override
+        protected Buffer initialValue() {
+            Buffer buffer = new Buffer();
+            synchronized (threadBuffers) {
+                threadBuffers.add(buffer);
+            }
+            return buffer;
+        }
+    };
+
+    // changes of the finished tick
+    private Entity[] changed = new Entity[64];
+    private int changedCount;
+    // tick being recorded, starts at 1 so that new entities (tick 0) are recorded
+    private int tick = 1;
+
+    void record(Entity entity) {
+        if (entity.getChangeTick() == tick) {
+            return;
+        }
+        entity.setChangeTick(tick);
+        Buffer buffer = Thread.currentThread() == updateThread ? updateBuffer : threadBuffer.get();
+        buffer.add(entity);
+    }
+
+    /**
+     * Finishes tick, called on update thread after parallel update has
+     * joined.
+     */
+    void endTick() {
+        Arrays.fill(changed, 0, changedCount, null);
+        changedCount = 0;
+        collect(updateBuffer);
+        synchronized (threadBuffers) {
+            for (int i = 0; i < threadBuffers.size(); i++) {
+                collect(threadBuffers.get(i));
+            }
+        }
+        updateThread = Thread.currentThread();
+        tick++;
+    }
+
+    private void collect(Buffer buffer) {
+        if (changedCount + buffer.size > changed.length) {
+            changed = Arrays.copyOf(changed, Math.max(changed.length * 2, changedCount + buffer.size));
+        }
+        System.arraycopy(buffer.entities, 0, changed, changedCount, buffer.size);
+        changedCount += buffer.size;
+        buffer.clear();
+    }
+
+    /**
+     * @return number of entities changed during the last tick
+     */
+    public int size() {
+        return changedCount;
+    }
+
+    /**
+     * @param index index in order of recording, 0 to {@link #size()} - 1
+     * @return changed entity
+     */
+    public Entity get(int index) {
+        if (index >= changedCount) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + changedCount);
+        }
+        return changed[index];
+    }
+
+    /**
+     * @return number of the tick being recorded now, the finished one is
+     * one less
+     */
+    public int getTick() {
+        return tick;
+    }
+
+    private static final class Buffer {
+
+        private Entity[] entities = new Entity[64];
+        private int size;
+
+        void add(Entity entity) {
+            if (size == entities.length) {
+                entities = Arrays.copyOf(entities, size * 2);
+            }
+            entities[size++] = entity;
+        }
+
+        void clear() {
+            Arrays.fill(entities, 0, size, null);
+            size = 0;
+        }
+    }
+}
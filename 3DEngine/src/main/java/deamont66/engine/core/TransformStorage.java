@@ -0,0 +1,378 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.core;
+
+import deamont66.engine.core.math.BatchMath;
+
+/**
+ * Transform hierarchy stored in flat arrays, an alternative to graph of
+ * {@link Transform} objects for large numbers of objects. Transforms are
+ * accessed through {@link PackedTransform} handles.
+ *
+ * Storage is kept ordered so that every parent is stored before its
+ * children, so {@link #updateWorldMatrices()} computes all world matrices in
+ * one linear pass. Only transforms which changed, or whose parent's world
+ * matrix changed, are recomputed. Reparenting to a transform stored later
+ * and destroying transforms make the storage reorder itself on next update,
+ * which changes indices (handles are updated).
+ *
+ * World matrices are stored as affine matrices in {@link BatchMath} layout
+ * and can be passed directly to its kernels.
+ *
+ * @author JiriSimecek
+ */
+public final class TransformStorage {
+
+    public static final int NO_PARENT = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final byte ALIVE = 1;
+    private static final byte DIRTY = 2;
+    private static final byte WORLD_CHANGED = 4;
+
+    private float[] positions;
+    private float[] rotations;
+    private float[] scales;
+    private float[] worldMatrices;
+    private int[] parents;
+    private byte[] flags;
+    private PackedTransform[] handles;
+
+    private int count;
+    private int aliveCount;
+    private boolean needsReorder;
+
+    public TransformStorage() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public TransformStorage(int capacity) {
+        capacity = Math.max(capacity, 1);
+        positions = new float[capacity * 3];
+        rotations = new float[capacity * 4];
+        scales = new float[capacity * 3];
+        worldMatrices = new float[capacity * BatchMath.AFFINE_SIZE];
+        parents = new int[capacity];
+        flags = new byte[capacity];
+        handles = new PackedTransform[capacity];
+    }
+
+    /**
+     * Creates identity transform.
+     *
+     * @param parent parent transform or null
+     * @return handle of new transform
+     */
+    public PackedTransform create(PackedTransform parent) {
+        if (parent != null) {
+            checkOwner(parent);
+        }
+        if (count == parents.length) {
+            grow(count * 2);
+        }
+
+        int i = count++;
+        positions[i * 3] = positions[i * 3 + 1] = positions[i * 3 + 2] = 0;
+        rotations[i * 4] = rotations[i * 4 + 1] = rotations[i * 4 + 2] = 0;
+        rotations[i * 4 + 3] = 1;
+        scales[i * 3] = scales[i * 3 + 1] = scales[i * 3 + 2] = 1;
+        parents[i] = parent != null ? parent.index : NO_PARENT;
+        flags[i] = ALIVE | DIRTY;
+        aliveCount++;
+
+        PackedTransform handle = new PackedTransform(this, i);
+        handles[i] = handle;
+        return handle;
+    }
+
+    /**
+     * Destroys transform, its children become roots (keeping their local
+     * transformation).
+     */
+    public void destroy(PackedTransform transform) {
+        checkOwner(transform);
+        int index = transform.index;
+        for (int i = index + 1; i < count; i++) {
+            if (parents[i] == index) {
+                parents[i] = NO_PARENT;
+                flags[i] |= DIRTY;
+            }
+        }
+        // children stored before parent exist only while reorder is pending
+        for (int i = 0; i < index; i++) {
+            if (parents[i] == index) {
+                parents[i] = NO_PARENT;
+                flags[i] |= DIRTY;
+            }
+        }
+
+        flags[index] = 0;
+        handles[index] = null;
+        transform.index = NO_PARENT;
+        aliveCount--;
+        needsReorder = true;
+    }
+
+    /**
+     * Recomputes world matrices of all changed transforms and their
+     * descendants.
+     */
+    public void updateWorldMatrices() {
+        if (needsReorder) {
+            reorder();
+        }
+
+        final float[] pos = positions, rot = rotations, scl = scales, world = worldMatrices;
+        final int[] par = parents;
+        final byte[] fl = flags;
+
+        for (int i = 0; i < count; i++) {
+            int f = fl[i];
+            int parent = par[i];
+            if ((f & DIRTY) == 0 && (parent == NO_PARENT || (fl[parent] & WORLD_CHANGED) == 0)) {
+                fl[i] = (byte) (f & ~WORLD_CHANGED);
+                continue;
+            }
+
+            int p = i * 3, r = i * 4, w = i * BatchMath.AFFINE_SIZE;
+            float x = rot[r], y = rot[r + 1], z = rot[r + 2], qw = rot[r + 3];
+            float sx = scl[p], sy = scl[p + 1], sz = scl[p + 2];
+
+            float xx = x * x, yy = y * y, zz = z * z;
+            float xy = x * y, xz = x * z, yz = y * z;
+            float wx = qw * x, wy = qw * y, wz = qw * z;
+
+            // local translation * rotation * scale, same as Matrix4f.initTransformation
+            float l00 = (1 - 2 * (yy + zz)) * sx, l01 = 2 * (xy - wz) * sy,       l02 = 2 * (xz + wy) * sz,       l03 = pos[p];
+            float l10 = 2 * (xy + wz) * sx,       l11 = (1 - 2 * (xx + zz)) * sy, l12 = 2 * (yz - wx) * sz,       l13 = pos[p + 1];
+            float l20 = 2 * (xz - wy) * sx,       l21 = 2 * (yz + wx) * sy,       l22 = (1 - 2 * (xx + yy)) * sz, l23 = pos[p + 2];
+
+            if (parent == NO_PARENT) {
+                world[w]     = l00; world[w + 1] = l01; world[w + 2]  = l02; world[w + 3]  = l03;
+                world[w + 4] = l10; world[w + 5] = l11; world[w + 6]  = l12; world[w + 7]  = l13;
+                world[w + 8] = l20; world[w + 9] = l21; world[w + 10] = l22; world[w + 11] = l23;
+            } else {
+                int m = parent * BatchMath.AFFINE_SIZE;
+                for (int row = 0; row < 12; row += 4) {
+                    float a0 = world[m + row], a1 = world[m + row + 1], a2 = world[m + row + 2], a3 = world[m + row + 3];
+                    world[w + row]     = a0 * l00 + a1 * l10 + a2 * l20;
+                    world[w + row + 1] = a0 * l01 + a1 * l11 + a2 * l21;
+                    world[w + row + 2] = a0 * l02 + a1 * l12 + a2 * l22;
+                    world[w + row + 3] = a0 * l03 + a1 * l13 + a2 * l23 + a3;
+                }
+            }
+            fl[i] = (byte) ((f & ~DIRTY) | WORLD_CHANGED);
+        }
+    }
+
+    /**
+     * Restores parent before child order and removes destroyed transforms.
+     * Stable: transforms keep their relative order within same depth.
+     */
+    private void reorder() {
+        int[] depths = new int[count];
+        int maxDepth = 0;
+        for (int i = 0; i < count; i++) {
+            if ((flags[i] & ALIVE) != 0) {
+                maxDepth = Math.max(maxDepth, computeDepth(i, depths));
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            depths[i]--;
+        }
+
+        // counting sort by depth
+        int[] starts = new int[maxDepth + 2];
+        for (int i = 0; i < count; i++) {
+            if ((flags[i] & ALIVE) != 0) {
+                starts[depths[i] + 1]++;
+            }
+        }
+        for (int d = 1; d < starts.length; d++) {
+            starts[d] += starts[d - 1];
+        }
+        int[] newIndices = new int[count];
+        for (int i = 0; i < count; i++) {
+            newIndices[i] = (flags[i] & ALIVE) != 0 ? starts[depths[i]]++ : NO_PARENT;
+        }
+
+        int capacity = parents.length;
+        float[] newPositions = new float[capacity * 3];
+        float[] newRotations = new float[capacity * 4];
+        float[] newScales = new float[capacity * 3];
+        float[] newWorldMatrices = new float[capacity * BatchMath.AFFINE_SIZE];
+        int[] newParents = new int[capacity];
+        byte[] newFlags = new byte[capacity];
+        PackedTransform[] newHandles = new PackedTransform[capacity];
+
+        for (int i = 0; i < count; i++) {
+            int n = newIndices[i];
+            if (n == NO_PARENT) {
+                continue;
+            }
+            System.arraycopy(positions, i * 3, newPositions, n * 3, 3);
+            System.arraycopy(rotations, i * 4, newRotations, n * 4, 4);
+            System.arraycopy(scales, i * 3, newScales, n * 3, 3);
+            System.arraycopy(worldMatrices, i * BatchMath.AFFINE_SIZE, newWorldMatrices, n * BatchMath.AFFINE_SIZE, BatchMath.AFFINE_SIZE);
+            newParents[n] = parents[i] == NO_PARENT ? NO_PARENT : newIndices[parents[i]];
+            newFlags[n] = flags[i];
+            newHandles[n] = handles[i];
+            newHandles[n].index = n;
+        }
+
+        positions = newPositions;
+        rotations = newRotations;
+        scales = newScales;
+        worldMatrices = newWorldMatrices;
+        parents = newParents;
+        flags = newFlags;
+        handles = newHandles;
+        count = aliveCount;
+        needsReorder = false;
+    }
+
+    private int computeDepth(int index, int[] depths) {
+        // depths are stored + 1, so 0 means not computed yet
+        if (depths[index] == 0) {
+            int parent = parents[index];
+            int depth = 1;
+            while (parent != NO_PARENT) {
+                if (depths[parent] != 0) {
+                    depth += depths[parent];
+                    break;
+                }
+                depth++;
+                parent = parents[parent];
+            }
+            depths[index] = depth;
+        }
+        return depths[index] - 1;
+    }
+
+    private void grow(int capacity) {
+        positions = copyOf(positions, capacity * 3);
+        rotations = copyOf(rotations, capacity * 4);
+        scales = copyOf(scales, capacity * 3);
+        worldMatrices = copyOf(worldMatrices, capacity * BatchMath.AFFINE_SIZE);
+
+        int[] newParents = new int[capacity];
+        System.arraycopy(parents, 0, newParents, 0, count);
+        parents = newParents;
+
+        byte[] newFlags = new byte[capacity];
+        System.arraycopy(flags, 0, newFlags, 0, count);
+        flags = newFlags;
+
+        PackedTransform[] newHandles = new PackedTransform[capacity];
+        System.arraycopy(handles, 0, newHandles, 0, count);
+        handles = newHandles;
+    }
+
+    private static float[] copyOf(float[] array, int length) {
+        float[] result = new float[length];
+        System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+        return result;
+    }
+
+    private void checkOwner(PackedTransform transform) {
+        if (transform.storage != this || transform.index == NO_PARENT) {
+            throw new IllegalArgumentException("Transform is destroyed or belongs to another storage");
+        }
+    }
+
+    /**
+     * @return number of slots in use, including destroyed ones until next
+     * update
+     */
+    public int getCount() {
+        return count;
+    }
+
+    public int getAliveCount() {
+        return aliveCount;
+    }
+
+    /**
+     * World matrices, {@link BatchMath#AFFINE_SIZE} floats for every index
+     * below {@link #getCount()}. Valid after
+     * {@link #updateWorldMatrices()}; the array is replaced when storage
+     * grows or reorders.
+     *
+     * @return world matrices, must not be modified
+     */
+    public float[] getWorldMatrices() {
+        return worldMatrices;
+    }
+
+    // accessors used by PackedTransform
+
+    float[] positions() {
+        return positions;
+    }
+
+    float[] rotations() {
+        return rotations;
+    }
+
+    float[] scales() {
+        return scales;
+    }
+
+    void markDirty(int index) {
+        flags[index] |= DIRTY;
+    }
+
+    int getParentIndex(int index) {
+        return parents[index];
+    }
+
+    PackedTransform getHandle(int index) {
+        return index == NO_PARENT ? null : handles[index];
+    }
+
+    void setParent(int index, PackedTransform parent) {
+        int parentIndex = NO_PARENT;
+        if (parent != null) {
+            checkOwner(parent);
+            parentIndex = parent.index;
+            for (int p = parentIndex; p != NO_PARENT; p = parents[p]) {
+                if (p == index) {
+                    throw new IllegalArgumentException("Transform can't be parent of itself or its ancestor");
+                }
+            }
+        }
+        parents[index] = parentIndex;
+        flags[index] |= DIRTY;
+        if (parentIndex > index) {
+            needsReorder = true;
+        }
+    }
+}
@@ -124,7 +124,19 @@ public class Util {
 	}
 
 	public static FloatBuffer createFlippedBuffer(Matrix4f value) {
-		FloatBuffer buffer = createFloatBuffer(4 * 4);
+		return fillFlippedBuffer(createFloatBuffer(4 * 4), value);
+	}
+
+	/**
+	 * Writes matrix to existing buffer (which has to hold at least 16
+	 * floats) and flips it, so one buffer can be reused for every upload.
+	 *
+	 * @param buffer buffer to write to
+	 * @param value matrix
+	 * @return buffer
+	 */
+	public static FloatBuffer fillFlippedBuffer(FloatBuffer buffer, Matrix4f value) {
+		buffer.clear();
 
 		for (int i = 0; i < 4; i++) {
 			for (int j = 0; j < 4; j++) {
@@ -0,0 +1,412 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ *
+ */
+package deamont66.engine.core.math;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Batch kernels working on flat float arrays. Vectors are stored either as
+ * structure of arrays (separate x, y and z arrays) or packed (x, y, z, x,
+ * ...). Affine matrices are stored as 12 floats, row by row without the
+ * constant last row.
+ *
+ * Loops are kept simple, branch free and without object access, so HotSpot
+ * can unroll and auto-vectorize them.
+ *
+ * @author JiriSimecek
+ */
+public final class BatchMath {
+
+    public static final int AFFINE_SIZE = 12;
+    public static final int AABB_SIZE = 6;
+
+    private BatchMath() {
+    }
+
+    /**
+     * Stores upper three rows of affine matrix to <code>dest</code>.
+     *
+     * @param m affine matrix
+     * @param dest array to store to
+     * @param offset offset of first element in dest
+     */
+    public static void storeAffine(Matrix4f m, float[] dest, int offset) {
+        dest[offset]      = m.m00; dest[offset + 1]  = m.m01; dest[offset + 2]  = m.m02; dest[offset + 3]  = m.m03;
+        dest[offset + 4]  = m.m10; dest[offset + 5]  = m.m11; dest[offset + 6]  = m.m12; dest[offset + 7]  = m.m13;
+        dest[offset + 8]  = m.m20; dest[offset + 9]  = m.m21; dest[offset + 10] = m.m22; dest[offset + 11] = m.m23;
+    }
+
+    /**
+     * Loads affine matrix stored by {@link #storeAffine(Matrix4f, float[], int)}.
+     *
+     * @param src array to load from
+     * @param offset offset of first element in src
+     * @param dest matrix to store to, last row is set to 0, 0, 0, 1
+     * @return dest
+     */
+    public static Matrix4f loadAffine(float[] src, int offset, Matrix4f dest) {
+        dest.m00 = src[offset];     dest.m01 = src[offset + 1]; dest.m02 = src[offset + 2];  dest.m03 = src[offset + 3];
+        dest.m10 = src[offset + 4]; dest.m11 = src[offset + 5]; dest.m12 = src[offset + 6];  dest.m13 = src[offset + 7];
+        dest.m20 = src[offset + 8]; dest.m21 = src[offset + 9]; dest.m22 = src[offset + 10]; dest.m23 = src[offset + 11];
+        dest.m30 = 0;               dest.m31 = 0;               dest.m32 = 0;                dest.m33 = 1;
+        return dest;
+    }
+
+    /**
+     * Transforms points stored as structure of arrays. Output arrays may be
+     * the same as input arrays.
+     */
+    public static void transformPoints(Matrix4f m, float[] xs, float[] ys, float[] zs,
+            float[] outX, float[] outY, float[] outZ, int count) {
+        checkLength(count, xs, ys, zs, outX, outY, outZ);
+
+        final float m00 = m.m00, m01 = m.m01, m02 = m.m02, m03 = m.m03;
+        final float m10 = m.m10, m11 = m.m11, m12 = m.m12, m13 = m.m13;
+        final float m20 = m.m20, m21 = m.m21, m22 = m.m22, m23 = m.m23;
+
+        for (int i = 0; i < count; i++) {
+            float x = xs[i];
+            float y = ys[i];
+            float z = zs[i];
+            outX[i] = m00 * x + m01 * y + m02 * z + m03;
+            outY[i] = m10 * x + m11 * y + m12 * z + m13;
+            outZ[i] = m20 * x + m21 * y + m22 * z + m23;
+        }
+    }
+
+    /**
+     * Transforms directions (translation is ignored) stored as structure of
+     * arrays. Output arrays may be the same as input arrays.
+     */
+    public static void transformDirections(Matrix4f m, float[] xs, float[] ys, float[] zs,
+            float[] outX, float[] outY, float[] outZ, int count) {
+        checkLength(count, xs, ys, zs, outX, outY, outZ);
+
+        final float m00 = m.m00, m01 = m.m01, m02 = m.m02;
+        final float m10 = m.m10, m11 = m.m11, m12 = m.m12;
+        final float m20 = m.m20, m21 = m.m21, m22 = m.m22;
+
+        for (int i = 0; i < count; i++) {
+            float x = xs[i];
+            float y = ys[i];
+            float z = zs[i];
+            outX[i] = m00 * x + m01 * y + m02 * z;
+            outY[i] = m10 * x + m11 * y + m12 * z;
+            outZ[i] = m20 * x + m21 * y + m22 * z;
+        }
+    }
+
+    /**
+     * Transforms packed points (x, y, z triplets). <code>src</code> and
+     * <code>dest</code> may be the same array.
+     */
+    public static void transformPoints(Matrix4f m, float[] src, int srcOffset, float[] dest, int destOffset, int count) {
+        checkRange(src, srcOffset, count * 3);
+        checkRange(dest, destOffset, count * 3);
+
+        final float m00 = m.m00, m01 = m.m01, m02 = m.m02, m03 = m.m03;
+        final float m10 = m.m10, m11 = m.m11, m12 = m.m12, m13 = m.m13;
+        final float m20 = m.m20, m21 = m.m21, m22 = m.m22, m23 = m.m23;
+
+        for (int i = 0; i < count; i++) {
+            int s = srcOffset + i * 3;
+            int d = destOffset + i * 3;
+            float x = src[s];
+            float y = src[s + 1];
+            float z = src[s + 2];
+            dest[d]     = m00 * x + m01 * y + m02 * z + m03;
+            dest[d + 1] = m10 * x + m11 * y + m12 * z + m13;
+            dest[d + 2] = m20 * x + m21 * y + m22 * z + m23;
+        }
+    }
+
+    /**
+     * Transforms packed points between float buffers, using absolute
+     * positions (buffer positions are not changed).
+     */
+    public static void transformPoints(Matrix4f m, FloatBuffer src, FloatBuffer dest, int count) {
+        if (src.limit() < count * 3 || dest.limit() < count * 3) {
+            throw new IndexOutOfBoundsException("Buffers are too small for " + count + " points");
+        }
+
+        final float m00 = m.m00, m01 = m.m01, m02 = m.m02, m03 = m.m03;
+        final float m10 = m.m10, m11 = m.m11, m12 = m.m12, m13 = m.m13;
+        final float m20 = m.m20, m21 = m.m21, m22 = m.m22, m23 = m.m23;
+
+        for (int i = 0; i < count * 3; i += 3) {
+            float x = src.get(i);
+            float y = src.get(i + 1);
+            float z = src.get(i + 2);
+            dest.put(i,     m00 * x + m01 * y + m02 * z + m03);
+            dest.put(i + 1, m10 * x + m11 * y + m12 * z + m13);
+            dest.put(i + 2, m20 * x + m21 * y + m22 * z + m23);
+        }
+    }
+
+    /**
+     * Computes axis aligned bounds of packed points.
+     *
+     * @param points packed points
+     * @param count number of points
+     * @param dest minX, minY, minZ, maxX, maxY, maxZ is stored here
+     * @param destOffset offset in dest
+     */
+    public static void computeBounds(float[] points, int count, float[] dest, int destOffset) {
+        checkRange(points, 0, count * 3);
+        checkRange(dest, destOffset, AABB_SIZE);
+
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < count * 3; i += 3) {
+            float x = points[i];
+            float y = points[i + 1];
+            float z = points[i + 2];
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            minZ = Math.min(minZ, z);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+            maxZ = Math.max(maxZ, z);
+        }
+
+        dest[destOffset]     = minX;
+        dest[destOffset + 1] = minY;
+        dest[destOffset + 2] = minZ;
+        dest[destOffset + 3] = maxX;
+        dest[destOffset + 4] = maxY;
+        dest[destOffset + 5] = maxZ;
+    }
+
+    /**
+     * Transforms many local bounding boxes to world space at once (Arvo's
+     * method, result is tight AABB of the transformed box).
+     *
+     * @param matrices affine matrices, {@link #AFFINE_SIZE} floats each
+     * @param localBounds local boxes, {@link #AABB_SIZE} floats each
+     * @param worldBounds world boxes are stored here, may be localBounds
+     * @param count number of boxes
+     */
+    public static void transformBounds(float[] matrices, float[] localBounds, float[] worldBounds, int count) {
+        checkRange(matrices, 0, count * AFFINE_SIZE);
+        checkRange(localBounds, 0, count * AABB_SIZE);
+        checkRange(worldBounds, 0, count * AABB_SIZE);
+
+        for (int i = 0; i < count; i++) {
+            int m = i * AFFINE_SIZE;
+            int b = i * AABB_SIZE;
+
+            // transform center and extents separately, extents with absolute matrix
+            float cx = (localBounds[b] + localBounds[b + 3]) * 0.5f;
+            float cy = (localBounds[b + 1] + localBounds[b + 4]) * 0.5f;
+            float cz = (localBounds[b + 2] + localBounds[b + 5]) * 0.5f;
+            float ex = (localBounds[b + 3] - localBounds[b]) * 0.5f;
+            float ey = (localBounds[b + 4] - localBounds[b + 1]) * 0.5f;
+            float ez = (localBounds[b + 5] - localBounds[b + 2]) * 0.5f;
+
+            float wcx = matrices[m] * cx + matrices[m + 1] * cy + matrices[m + 2] * cz + matrices[m + 3];
+            float wcy = matrices[m + 4] * cx + matrices[m + 5] * cy + matrices[m + 6] * cz + matrices[m + 7];
+            float wcz = matrices[m + 8] * cx + matrices[m + 9] * cy + matrices[m + 10] * cz + matrices[m + 11];
+
+            float wex = Math.abs(matrices[m]) * ex + Math.abs(matrices[m + 1]) * ey + Math.abs(matrices[m + 2]) * ez;
+            float wey = Math.abs(matrices[m + 4]) * ex + Math.abs(matrices[m + 5]) * ey + Math.abs(matrices[m + 6]) * ez;
+            float wez = Math.abs(matrices[m + 8]) * ex + Math.abs(matrices[m + 9]) * ey + Math.abs(matrices[m + 10]) * ez;
+
+            worldBounds[b]     = wcx - wex;
+            worldBounds[b + 1] = wcy - wey;
+            worldBounds[b + 2] = wcz - wez;
+            worldBounds[b + 3] = wcx + wex;
+            worldBounds[b + 4] = wcy + wey;
+            worldBounds[b + 5] = wcz + wez;
+        }
+    }
+
+    /**
+     * Adds normalized face normal of every triangle to normals of its three
+     * vertices. Normals are not normalized afterwards, use
+     * {@link #normalize(float[], int)}.
+     *
+     * @param positions packed positions
+     * @param indices triangle indices
+     * @param indexCount number of indices (multiple of 3)
+     * @param normals packed normals to accumulate to
+     */
+    public static void accumulateNormals(float[] positions, int[] indices, int indexCount, float[] normals) {
+        checkRange(indices, indexCount);
+
+        for (int i = 0; i < indexCount; i += 3) {
+            int i0 = indices[i] * 3;
+            int i1 = indices[i + 1] * 3;
+            int i2 = indices[i + 2] * 3;
+
+            float v1x = positions[i1] - positions[i0];
+            float v1y = positions[i1 + 1] - positions[i0 + 1];
+            float v1z = positions[i1 + 2] - positions[i0 + 2];
+            float v2x = positions[i2] - positions[i0];
+            float v2y = positions[i2 + 1] - positions[i0 + 1];
+            float v2z = positions[i2 + 2] - positions[i0 + 2];
+
+            float nx = v1y * v2z - v1z * v2y;
+            float ny = v1z * v2x - v1x * v2z;
+            float nz = v1x * v2y - v1y * v2x;
+            float invLength = 1.0f / (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+            nx *= invLength;
+            ny *= invLength;
+            nz *= invLength;
+
+            normals[i0] += nx;  normals[i0 + 1] += ny;  normals[i0 + 2] += nz;
+            normals[i1] += nx;  normals[i1 + 1] += ny;  normals[i1 + 2] += nz;
+            normals[i2] += nx;  normals[i2 + 1] += ny;  normals[i2 + 2] += nz;
+        }
+    }
+
+    /**
+     * Adds tangent of every triangle to tangents of its three vertices.
+     * Tangents are not normalized afterwards, use
+     * {@link #normalize(float[], int)}.
+     *
+     * @param positions packed positions
+     * @param texCoords packed texture coordinates (u, v pairs)
+     * @param indices triangle indices
+     * @param indexCount number of indices (multiple of 3)
+     * @param tangents packed tangents to accumulate to
+     */
+    public static void accumulateTangents(float[] positions, float[] texCoords, int[] indices, int indexCount, float[] tangents) {
+        checkRange(indices, indexCount);
+
+        for (int i = 0; i < indexCount; i += 3) {
+            int i0 = indices[i];
+            int i1 = indices[i + 1];
+            int i2 = indices[i + 2];
+
+            float edge1x = positions[i1 * 3] - positions[i0 * 3];
+            float edge1y = positions[i1 * 3 + 1] - positions[i0 * 3 + 1];
+            float edge1z = positions[i1 * 3 + 2] - positions[i0 * 3 + 2];
+            float edge2x = positions[i2 * 3] - positions[i0 * 3];
+            float edge2y = positions[i2 * 3 + 1] - positions[i0 * 3 + 1];
+            float edge2z = positions[i2 * 3 + 2] - positions[i0 * 3 + 2];
+
+            float deltaU1 = texCoords[i1 * 2] - texCoords[i0 * 2];
+            float deltaV1 = texCoords[i1 * 2 + 1] - texCoords[i0 * 2 + 1];
+            float deltaU2 = texCoords[i2 * 2] - texCoords[i0 * 2];
+            float deltaV2 = texCoords[i2 * 2 + 1] - texCoords[i0 * 2 + 1];
+
+            float dividend = (deltaU1 * deltaV2 - deltaU2 * deltaV1);
+            float f = dividend == 0 ? 0.0f : 1.0f / dividend;
+
+            float tx = f * (deltaV2 * edge1x - deltaV1 * edge2x);
+            float ty = f * (deltaV2 * edge1y - deltaV1 * edge2y);
+            float tz = f * (deltaV2 * edge1z - deltaV1 * edge2z);
+
+            tangents[i0 * 3] += tx;  tangents[i0 * 3 + 1] += ty;  tangents[i0 * 3 + 2] += tz;
+            tangents[i1 * 3] += tx;  tangents[i1 * 3 + 1] += ty;  tangents[i1 * 3 + 2] += tz;
+            tangents[i2 * 3] += tx;  tangents[i2 * 3 + 1] += ty;  tangents[i2 * 3 + 2] += tz;
+        }
+    }
+
+    /**
+     * Normalizes packed vectors in place.
+     */
+    public static void normalize(float[] vectors, int count) {
+        checkRange(vectors, 0, count * 3);
+
+        for (int i = 0; i < count * 3; i += 3) {
+            float x = vectors[i];
+            float y = vectors[i + 1];
+            float z = vectors[i + 2];
+            float invLength = 1.0f / (float) Math.sqrt(x * x + y * y + z * z);
+            vectors[i]     = x * invLength;
+            vectors[i + 1] = y * invLength;
+            vectors[i + 2] = z * invLength;
+        }
+    }
+
+    /**
+     * Linear blend skinning of packed positions.
+     *
+     * @param bindPositions packed positions in bind pose
+     * @param boneIndices bone indices, <code>influences</code> per vertex
+     * @param boneWeights bone weights, <code>influences</code> per vertex
+     * @param influences number of bones affecting each vertex
+     * @param boneMatrices affine bone matrices, {@link #AFFINE_SIZE} floats each
+     * @param dest packed skinned positions are stored here
+     * @param count number of vertices
+     */
+    public static void skin(float[] bindPositions, int[] boneIndices, float[] boneWeights, int influences,
+            float[] boneMatrices, float[] dest, int count) {
+        checkRange(bindPositions, 0, count * 3);
+        checkRange(dest, 0, count * 3);
+        checkRange(boneIndices, count * influences);
+        checkRange(boneWeights, 0, count * influences);
+
+        for (int i = 0; i < count; i++) {
+            int p = i * 3;
+            float x = bindPositions[p];
+            float y = bindPositions[p + 1];
+            float z = bindPositions[p + 2];
+
+            float rx = 0, ry = 0, rz = 0;
+            for (int j = 0; j < influences; j++) {
+                int influence = i * influences + j;
+                float weight = boneWeights[influence];
+                int m = boneIndices[influence] * AFFINE_SIZE;
+
+                rx += weight * (boneMatrices[m] * x + boneMatrices[m + 1] * y + boneMatrices[m + 2] * z + boneMatrices[m + 3]);
+                ry += weight * (boneMatrices[m + 4] * x + boneMatrices[m + 5] * y + boneMatrices[m + 6] * z + boneMatrices[m + 7]);
+                rz += weight * (boneMatrices[m + 8] * x + boneMatrices[m + 9] * y + boneMatrices[m + 10] * z + boneMatrices[m + 11]);
+            }
+
+            dest[p]     = rx;
+            dest[p + 1] = ry;
+            dest[p + 2] = rz;
+        }
+    }
+
+    // explicit range checks up front let JIT drop per element bounds checks
+    private static void checkLength(int count, float[]... arrays) {
+        for (float[] array : arrays) {
+            if (array.length < count) {
+                throw new IndexOutOfBoundsException("Array of length " + array.length + " is too small for " + count + " elements");
+            }
+        }
+    }
+
+    private static void checkRange(float[] array, int offset, int length) {
+        if (offset < 0 || offset + length > array.length) {
+            throw new IndexOutOfBoundsException("Range " + offset + " - " + (offset + length) + " is out of array of length " + array.length);
+        }
+    }
+
+    private static void checkRange(int[] array, int length) {
+        if (length > array.length) {
+            throw new IndexOutOfBoundsException("Range 0 - " + length + " is out of array of length " + array.length);
+        }
+    }
+}
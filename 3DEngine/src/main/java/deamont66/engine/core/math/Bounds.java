@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ *
+ */
+package deamont66.engine.core.math;
+
+/**
+ * Axis aligned bounding box together with bounding sphere. Empty bounds
+ * (min > max) contain nothing and are ignored by
+ * {@link #union(Bounds)}.
+ *
+ * @author JiriSimecek
+ */
+public final class Bounds {
+
+    private final Vector3f min = new Vector3f();
+    private final Vector3f max = new Vector3f();
+    private final Vector3f center = new Vector3f();
+    private float radius;
+
+    public Bounds() {
+        setEmpty();
+    }
+
+    public Bounds(Bounds r) {
+        set(r);
+    }
+
+    public Bounds setEmpty() {
+        min.set(Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY);
+        max.set(Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY);
+        center.set(0, 0, 0);
+        radius = -1;
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return min.x > max.x || min.y > max.y || min.z > max.z;
+    }
+
+    public Bounds set(Bounds r) {
+        min.set(r.min);
+        max.set(r.max);
+        center.set(r.center);
+        radius = r.radius;
+        return this;
+    }
+
+    /**
+     * Sets box and circumscribed sphere of the box.
+     */
+    public Bounds set(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        min.set(minX, minY, minZ);
+        max.set(maxX, maxY, maxZ);
+        setSphereFromBox();
+        return this;
+    }
+
+    /**
+     * Computes bounds of packed points. Box is exact, sphere is centered in
+     * box center with radius of the farthest point, which is never bigger
+     * than sphere around the box.
+     *
+     * @param points packed points (x, y, z triplets)
+     * @param count number of points
+     * @return this
+     */
+    public Bounds set(float[] points, int count) {
+        if (count == 0) {
+            return setEmpty();
+        }
+
+        float[] box = new float[BatchMath.AABB_SIZE];
+        BatchMath.computeBounds(points, count, box, 0);
+        min.set(box[0], box[1], box[2]);
+        max.set(box[3], box[4], box[5]);
+        center.set((min.x + max.x) * 0.5f, (min.y + max.y) * 0.5f, (min.z + max.z) * 0.5f);
+
+        float maxDistanceSquared = 0;
+        for (int i = 0; i < count * 3; i += 3) {
+            float dx = points[i] - center.x;
+            float dy = points[i + 1] - center.y;
+            float dz = points[i + 2] - center.z;
+            maxDistanceSquared = Math.max(maxDistanceSquared, dx * dx + dy * dy + dz * dz);
+        }
+        radius = (float) Math.sqrt(maxDistanceSquared);
+        return this;
+    }
+
+    private void setSphereFromBox() {
+        center.set((min.x + max.x) * 0.5f, (min.y + max.y) * 0.5f, (min.z + max.z) * 0.5f);
+        float ex = max.x - center.x;
+        float ey = max.y - center.y;
+        float ez = max.z - center.z;
+        radius = (float) Math.sqrt(ex * ex + ey * ey + ez * ez);
+    }
+
+    /**
+     * Transforms bounds by affine matrix. Box is the exact box around
+     * transformed box (also under non-uniform scale), sphere radius is scaled
+     * by the largest axis scale and clamped to sphere around the new box.
+     *
+     * @param m affine matrix
+     * @param dest bounds to store result to, may be this
+     * @return dest
+     */
+    public Bounds transform(Matrix4f m, Bounds dest) {
+        if (isEmpty()) {
+            return dest.setEmpty();
+        }
+
+        float cx = (min.x + max.x) * 0.5f, cy = (min.y + max.y) * 0.5f, cz = (min.z + max.z) * 0.5f;
+        float ex = max.x - cx, ey = max.y - cy, ez = max.z - cz;
+
+        float wcx = m.m00 * cx + m.m01 * cy + m.m02 * cz + m.m03;
+        float wcy = m.m10 * cx + m.m11 * cy + m.m12 * cz + m.m13;
+        float wcz = m.m20 * cx + m.m21 * cy + m.m22 * cz + m.m23;
+        float wex = Math.abs(m.m00) * ex + Math.abs(m.m01) * ey + Math.abs(m.m02) * ez;
+        float wey = Math.abs(m.m10) * ex + Math.abs(m.m11) * ey + Math.abs(m.m12) * ez;
+        float wez = Math.abs(m.m20) * ex + Math.abs(m.m21) * ey + Math.abs(m.m22) * ez;
+
+        float scaleX = m.m00 * m.m00 + m.m10 * m.m10 + m.m20 * m.m20;
+        float scaleY = m.m01 * m.m01 + m.m11 * m.m11 + m.m21 * m.m21;
+        float scaleZ = m.m02 * m.m02 + m.m12 * m.m12 + m.m22 * m.m22;
+        float maxScale = (float) Math.sqrt(Math.max(scaleX, Math.max(scaleY, scaleZ)));
+        float sphereRadius = radius * maxScale;
+        float sx = center.x, sy = center.y, sz = center.z;
+
+        dest.min.set(wcx - wex, wcy - wey, wcz - wez);
+        dest.max.set(wcx + wex, wcy + wey, wcz + wez);
+        dest.center.set(m.m00 * sx + m.m01 * sy + m.m02 * sz + m.m03,
+                m.m10 * sx + m.m11 * sy + m.m12 * sz + m.m13,
+                m.m20 * sx + m.m21 * sy + m.m22 * sz + m.m23);
+        dest.radius = sphereRadius;
+
+        // sphere around transformed box may be tighter under non-uniform scale
+        float boxRadius = (float) Math.sqrt(wex * wex + wey * wey + wez * wez);
+        if (boxRadius < sphereRadius) {
+            dest.center.set(wcx, wcy, wcz);
+            dest.radius = boxRadius;
+        }
+        return dest;
+    }
+
+    /**
+     * Grows this bounds to contain <code>r</code> as well.
+     *
+     * @param r bounds to add
+     * @return this
+     */
+    public Bounds union(Bounds r) {
+        if (r.isEmpty()) {
+            return this;
+        }
+        if (isEmpty()) {
+            return set(r);
+        }
+
+        min.set(Math.min(min.x, r.min.x), Math.min(min.y, r.min.y), Math.min(min.z, r.min.z));
+        max.set(Math.max(max.x, r.max.x), Math.max(max.y, r.max.y), Math.max(max.z, r.max.z));
+
+        // smallest sphere containing both spheres, unless sphere around box is smaller
+        float dx = r.center.x - center.x, dy = r.center.y - center.y, dz = r.center.z - center.z;
+        float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+        if (distance + r.radius <= radius) {
+            // r is already inside
+        } else if (distance + radius <= r.radius) {
+            center.set(r.center);
+            radius = r.radius;
+        } else {
+            float newRadius = (distance + radius + r.radius) * 0.5f;
+            float t = (newRadius - radius) / distance;
+            center.set(center.x + dx * t, center.y + dy * t, center.z + dz * t);
+            radius = newRadius;
+        }
+
+        float ex = (max.x - min.x) * 0.5f, ey = (max.y - min.y) * 0.5f, ez = (max.z - min.z) * 0.5f;
+        float boxRadius = (float) Math.sqrt(ex * ex + ey * ey + ez * ez);
+        if (boxRadius < radius) {
+            setSphereFromBox();
+        }
+        return this;
+    }
+
+    public boolean intersects(Bounds r) {
+        return min.x <= r.max.x && max.x >= r.min.x
+                && min.y <= r.max.y && max.y >= r.min.y
+                && min.z <= r.max.z && max.z >= r.min.z;
+    }
+
+    public boolean contains(float x, float y, float z) {
+        return x >= min.x && x <= max.x && y >= min.y && y <= max.y && z >= min.z && z <= max.z;
+    }
+
+    /**
+     * Writes box as minX, minY, minZ, maxX, maxY, maxZ (the layout used by
+     * {@link BatchMath} and {@link Frustum}).
+     */
+    public void getBox(float[] dest, int offset) {
+        dest[offset] = min.x;
+        dest[offset + 1] = min.y;
+        dest[offset + 2] = min.z;
+        dest[offset + 3] = max.x;
+        dest[offset + 4] = max.y;
+        dest[offset + 5] = max.z;
+    }
+
+    public Vector3f getMin() {
+        return min;
+    }
+
+    public Vector3f getMax() {
+        return max;
+    }
+
+    public Vector3f getCenter() {
+        return center;
+    }
+
+    public float getRadius() {
+        return radius;
+    }
+
+    @Override
+    public String toString() {
+        return "Bounds[" + min + " - " + max + ", sphere " + center + " r=" + radius + "]";
+    }
+}
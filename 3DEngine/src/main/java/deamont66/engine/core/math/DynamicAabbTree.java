@@ -0,0 +1,758 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.core.math;
+
+/**
+ * Dynamic bounding volume hierarchy of boxes (the tree used by Box2D and
+ * Bullet broadphase). Every object is a leaf with its box enlarged by
+ * <code>margin</code>, so small moves don't change the tree at all. Insert,
+ * remove and move are O(log n), tree is kept balanced by rotations.
+ *
+ * Nodes are stored in arrays and boxes are packed as minX, minY, minZ, maxX,
+ * maxY, maxZ like in {@link Frustum}. Proxy returned by insert is index of
+ * its leaf and stays valid until the object is removed. Leaves also keep the
+ * exact box, queries report only objects whose exact box passes the test.
+ * Queries use a shared stack, so the tree can't be queried from more
+ * threads at once.
+ *
+ * @param <T> type of objects stored in leaves
+ * @author JiriSimecek
+ */
+public final class DynamicAabbTree<T> {
+
+    public static final int NULL = -1;
+
+    /**
+     * Receives objects found by query.
+     */
+    public interface Callback<T> {
+
+        /**
+         * @param proxy proxy of found object
+         * @param data found object
+         * @return false to stop query
+         */
+        boolean found(int proxy, T data);
+    }
+
+    /**
+     * Receives objects hit by {@link #raycast}.
+     */
+    public interface RayCallback<T> {
+
+        /**
+         * @param proxy proxy of hit object
+         * @param data hit object
+         * @param distance distance along ray where it enters object's box
+         * @return new maximal distance of the ray; <code>distance</code> to
+         * find only the nearest hit, current maximum to find all hits, 0 to
+         * stop
+         */
+        float hit(int proxy, T data, float distance);
+    }
+
+    private final float margin;
+
+    private int root = NULL;
+    private int capacity;
+    private int nodeCount;
+    private int freeList;
+    private int proxyCount;
+
+    private float[] boxes;
+    private float[] leafBoxes; // exact boxes of leaves
+    private int[] parents; // next free node for free nodes
+    private int[] children1;
+    private int[] children2;
+    private int[] heights; // 0 for leaves, -1 for free nodes
+    private Object[] data;
+
+    private int[] stack = new int[64];
+    private int[] planeMasks = new int[64];
+    private float[] nearestDistances = new float[0];
+
+    public DynamicAabbTree(float margin) {
+        this.margin = margin;
+        this.capacity = 16;
+        boxes = new float[capacity * 6];
+        leafBoxes = new float[capacity * 6];
+        parents = new int[capacity];
+        children1 = new int[capacity];
+        children2 = new int[capacity];
+        heights = new int[capacity];
+        data = new Object[capacity];
+        linkFreeNodes(0);
+    }
+
+    private void linkFreeNodes(int from) {
+        for (int i = from; i < capacity - 1; i++) {
+            parents[i] = i + 1;
+            heights[i] = -1;
+        }
+        parents[capacity - 1] = NULL;
+        heights[capacity - 1] = -1;
+        freeList = from;
+    }
+
+    private int allocateNode() {
+        if (freeList == NULL) {
+            int oldCapacity = capacity;
+            capacity *= 2;
+            boxes = copyOf(boxes, capacity * 6);
+            leafBoxes = copyOf(leafBoxes, capacity * 6);
+            parents = copyOf(parents, capacity);
+            children1 = copyOf(children1, capacity);
+            children2 = copyOf(children2, capacity);
+            heights = copyOf(heights, capacity);
+            Object[] newData = new Object[capacity];
+            System.arraycopy(data, 0, newData, 0, oldCapacity);
+            data = newData;
+            linkFreeNodes(oldCapacity);
+        }
+
+        int node = freeList;
+        freeList = parents[node];
+        parents[node] = NULL;
+        children1[node] = NULL;
+        children2[node] = NULL;
+        heights[node] = 0;
+        data[node] = null;
+        nodeCount++;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        parents[node] = freeList;
+        heights[node] = -1;
+        data[node] = null;
+        freeList = node;
+        nodeCount--;
+    }
+
+    private static float[] copyOf(float[] array, int length) {
+        float[] result = new float[length];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+
+    private static int[] copyOf(int[] array, int length) {
+        int[] result = new int[length];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+
+    /**
+     * Inserts object with given bounds.
+     *
+     * @return proxy of the object
+     */
+    public int insert(Bounds bounds, T object) {
+        Vector3f min = bounds.getMin();
+        Vector3f max = bounds.getMax();
+        return insert(min.x, min.y, min.z, max.x, max.y, max.z, object);
+    }
+
+    public int insert(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, T object) {
+        int proxy = allocateNode();
+        setLeafBox(proxy, minX, minY, minZ, maxX, maxY, maxZ);
+        setFatBox(proxy, minX, minY, minZ, maxX, maxY, maxZ);
+        data[proxy] = object;
+        insertLeaf(proxy);
+        proxyCount++;
+        return proxy;
+    }
+
+    public void remove(int proxy) {
+        checkProxy(proxy);
+        removeLeaf(proxy);
+        freeNode(proxy);
+        proxyCount--;
+    }
+
+    /**
+     * Updates bounds of object. Tree is changed only if the new box doesn't
+     * fit into the enlarged box of the proxy, otherwise only exact box of
+     * the leaf is updated.
+     *
+     * @return true if proxy was reinserted
+     */
+    public boolean move(int proxy, Bounds bounds) {
+        Vector3f min = bounds.getMin();
+        Vector3f max = bounds.getMax();
+        return move(proxy, min.x, min.y, min.z, max.x, max.y, max.z);
+    }
+
+    public boolean move(int proxy, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        checkProxy(proxy);
+        setLeafBox(proxy, minX, minY, minZ, maxX, maxY, maxZ);
+        int o = proxy * 6;
+        if (boxes[o] <= minX && boxes[o + 1] <= minY && boxes[o + 2] <= minZ
+                && boxes[o + 3] >= maxX && boxes[o + 4] >= maxY && boxes[o + 5] >= maxZ) {
+            return false;
+        }
+
+        removeLeaf(proxy);
+        setFatBox(proxy, minX, minY, minZ, maxX, maxY, maxZ);
+        insertLeaf(proxy);
+        return true;
+    }
+
+    private void setLeafBox(int node, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        int o = node * 6;
+        leafBoxes[o] = minX;
+        leafBoxes[o + 1] = minY;
+        leafBoxes[o + 2] = minZ;
+        leafBoxes[o + 3] = maxX;
+        leafBoxes[o + 4] = maxY;
+        leafBoxes[o + 5] = maxZ;
+    }
+
+    private void setFatBox(int node, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        int o = node * 6;
+        boxes[o] = minX - margin;
+        boxes[o + 1] = minY - margin;
+        boxes[o + 2] = minZ - margin;
+        boxes[o + 3] = maxX + margin;
+        boxes[o + 4] = maxY + margin;
+        boxes[o + 5] = maxZ + margin;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T getData(int proxy) {
+        checkProxy(proxy);
+        return (T) data[proxy];
+    }
+
+    /**
+     * Copies enlarged box of proxy to <code>dest</code>.
+     */
+    public void getFatBox(int proxy, float[] dest, int offset) {
+        checkProxy(proxy);
+        System.arraycopy(boxes, proxy * 6, dest, offset, 6);
+    }
+
+    /**
+     * Copies exact box of proxy to <code>dest</code>.
+     */
+    public void getBox(int proxy, float[] dest, int offset) {
+        checkProxy(proxy);
+        System.arraycopy(leafBoxes, proxy * 6, dest, offset, 6);
+    }
+
+    public int getProxyCount() {
+        return proxyCount;
+    }
+
+    /**
+     * @return height of the tree, 0 for tree with single object, -1 for
+     * empty tree
+     */
+    public int getHeight() {
+        return root == NULL ? -1 : heights[root];
+    }
+
+    private void checkProxy(int proxy) {
+        if (proxy < 0 || proxy >= capacity || heights[proxy] != 0) {
+            throw new IllegalArgumentException("Invalid proxy " + proxy);
+        }
+    }
+
+    /**
+     * Finds all objects whose box overlaps given box.
+     *
+     * @return number of objects passed to callback
+     */
+    public int query(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, Callback<? super T> callback) {
+        if (root == NULL) {
+            return 0;
+        }
+
+        int found = 0;
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int node = stack[--top];
+            boolean leaf = heights[node] == 0;
+            float[] b = leaf ? leafBoxes : boxes;
+            int o = node * 6;
+            if (b[o] > maxX || b[o + 3] < minX
+                    || b[o + 1] > maxY || b[o + 4] < minY
+                    || b[o + 2] > maxZ || b[o + 5] < minZ) {
+                continue;
+            }
+
+            if (leaf) {
+                found++;
+                if (!callback.found(node, getData(node))) {
+                    break;
+                }
+            } else {
+                top = push(top, children1[node]);
+                top = push(top, children2[node]);
+            }
+        }
+        return found;
+    }
+
+    public int query(Bounds bounds, Callback<? super T> callback) {
+        Vector3f min = bounds.getMin();
+        Vector3f max = bounds.getMax();
+        return query(min.x, min.y, min.z, max.x, max.y, max.z, callback);
+    }
+
+    /**
+     * Finds all objects whose box intersects given sphere.
+     *
+     * @return number of objects passed to callback
+     */
+    public int querySphere(float x, float y, float z, float radius, Callback<? super T> callback) {
+        if (root == NULL) {
+            return 0;
+        }
+
+        float radiusSquared = radius * radius;
+        int found = 0;
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int node = stack[--top];
+            boolean leaf = heights[node] == 0;
+            if (distanceSquared(leaf ? leafBoxes : boxes, node * 6, x, y, z) > radiusSquared) {
+                continue;
+            }
+
+            if (leaf) {
+                found++;
+                if (!callback.found(node, getData(node))) {
+                    break;
+                }
+            } else {
+                top = push(top, children1[node]);
+                top = push(top, children2[node]);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds all objects whose box intersects frustum. Planes which whole box
+     * of a node is inside of are not tested again for its descendants.
+     *
+     * @return number of objects passed to callback
+     */
+    public int queryFrustum(Frustum frustum, Callback<? super T> callback) {
+        if (root == NULL) {
+            return 0;
+        }
+
+        int found = 0;
+        int top = 0;
+        stack[top] = root;
+        planeMasks[top++] = Frustum.ALL_PLANES;
+        while (top > 0) {
+            int node = stack[--top];
+            int mask = planeMasks[top];
+            boolean leaf = heights[node] == 0;
+            mask = frustum.classifyAabb(leaf ? leafBoxes : boxes, node * 6, mask);
+            if (mask == Frustum.OUTSIDE) {
+                continue;
+            }
+
+            if (leaf) {
+                found++;
+                if (!callback.found(node, getData(node))) {
+                    break;
+                }
+            } else {
+                top = push(top, children1[node]);
+                planeMasks[top - 1] = mask;
+                top = push(top, children2[node]);
+                planeMasks[top - 1] = mask;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Casts ray through the tree, objects aren't reported in order of
+     * distance.
+     *
+     * @param ox ray origin
+     * @param dx ray direction, doesn't have to be normalized (distances are
+     * then in multiples of its length)
+     * @param maxDistance length of the ray
+     * @param callback receives hits and shortens the ray
+     * @return number of objects passed to callback
+     */
+    public int raycast(float ox, float oy, float oz, float dx, float dy, float dz, float maxDistance, RayCallback<? super T> callback) {
+        if (root == NULL) {
+            return 0;
+        }
+
+        float ix = 1 / dx, iy = 1 / dy, iz = 1 / dz;
+        int found = 0;
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int node = stack[--top];
+            boolean leaf = heights[node] == 0;
+            float distance = intersectRay(leaf ? leafBoxes : boxes, node * 6, ox, oy, oz, ix, iy, iz, maxDistance);
+            if (distance < 0) {
+                continue;
+            }
+
+            if (leaf) {
+                found++;
+                maxDistance = callback.hit(node, getData(node), distance);
+                if (maxDistance <= 0) {
+                    break;
+                }
+            } else {
+                top = push(top, children1[node]);
+                top = push(top, children2[node]);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds <code>k</code> objects nearest to point, measured to their
+     * boxes (0 for point inside box).
+     *
+     * @param k maximal number of objects to find
+     * @param proxies proxies of found objects are stored here, nearest first
+     * @param distancesSquared squared distances of found objects, may be
+     * null
+     * @return number of found objects
+     */
+    public int nearest(float x, float y, float z, int k, int[] proxies, float[] distancesSquared) {
+        if (root == NULL || k <= 0) {
+            return 0;
+        }
+
+        float[] distances = distancesSquared != null ? distancesSquared : getNearestDistances(k);
+        int count = 0;
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int node = stack[--top];
+            // fat box distance never exceeds distance of anything inside
+            if (count == k && distanceSquared(boxes, node * 6, x, y, z) >= distances[k - 1]) {
+                continue;
+            }
+
+            if (heights[node] == 0) {
+                float distance = distanceSquared(leafBoxes, node * 6, x, y, z);
+                if (count < k || distance < distances[k - 1]) {
+                    int i = count < k ? count++ : k - 1;
+                    for (; i > 0 && distances[i - 1] > distance; i--) {
+                        distances[i] = distances[i - 1];
+                        proxies[i] = proxies[i - 1];
+                    }
+                    distances[i] = distance;
+                    proxies[i] = node;
+                }
+            } else {
+                // nearer child goes on top of the stack
+                int child1 = children1[node];
+                int child2 = children2[node];
+                if (distanceSquared(boxes, child1 * 6, x, y, z) < distanceSquared(boxes, child2 * 6, x, y, z)) {
+                    top = push(top, child2);
+                    top = push(top, child1);
+                } else {
+                    top = push(top, child1);
+                    top = push(top, child2);
+                }
+            }
+        }
+        return count;
+    }
+
+    private float[] getNearestDistances(int k) {
+        if (nearestDistances.length < k) {
+            nearestDistances = new float[k];
+        }
+        return nearestDistances;
+    }
+
+    private static float distanceSquared(float[] b, int o, float x, float y, float z) {
+        float dx = Math.max(0, Math.max(b[o] - x, x - b[o + 3]));
+        float dy = Math.max(0, Math.max(b[o + 1] - y, y - b[o + 4]));
+        float dz = Math.max(0, Math.max(b[o + 2] - z, z - b[o + 5]));
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    // slab test, returns entry distance or -1 if ray misses the box
+    private static float intersectRay(float[] b, int o, float ox, float oy, float oz, float ix, float iy, float iz, float maxDistance) {
+        float near = 0;
+        float far = maxDistance;
+
+        float t1 = (b[o] - ox) * ix, t2 = (b[o + 3] - ox) * ix;
+        if (Float.isNaN(t1) || Float.isNaN(t2)) {
+            // ray parallel to slab and origin on its boundary
+            t1 = Float.NEGATIVE_INFINITY;
+            t2 = Float.POSITIVE_INFINITY;
+        }
+        near = Math.max(near, Math.min(t1, t2));
+        far = Math.min(far, Math.max(t1, t2));
+
+        t1 = (b[o + 1] - oy) * iy;
+        t2 = (b[o + 4] - oy) * iy;
+        if (Float.isNaN(t1) || Float.isNaN(t2)) {
+            t1 = Float.NEGATIVE_INFINITY;
+            t2 = Float.POSITIVE_INFINITY;
+        }
+        near = Math.max(near, Math.min(t1, t2));
+        far = Math.min(far, Math.max(t1, t2));
+
+        t1 = (b[o + 2] - oz) * iz;
+        t2 = (b[o + 5] - oz) * iz;
+        if (Float.isNaN(t1) || Float.isNaN(t2)) {
+            t1 = Float.NEGATIVE_INFINITY;
+            t2 = Float.POSITIVE_INFINITY;
+        }
+        near = Math.max(near, Math.min(t1, t2));
+        far = Math.min(far, Math.max(t1, t2));
+
+        return near <= far ? near : -1;
+    }
+
+    private int push(int top, int node) {
+        if (top == stack.length) {
+            stack = copyOf(stack, top * 2);
+            planeMasks = copyOf(planeMasks, top * 2);
+        }
+        stack[top] = node;
+        return top + 1;
+    }
+
+    private static float area(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        float dx = maxX - minX, dy = maxY - minY, dz = maxZ - minZ;
+        return 2 * (dx * dy + dy * dz + dz * dx);
+    }
+
+    private float area(int node) {
+        int o = node * 6;
+        return area(boxes[o], boxes[o + 1], boxes[o + 2], boxes[o + 3], boxes[o + 4], boxes[o + 5]);
+    }
+
+    private float unionArea(int a, int b) {
+        int oa = a * 6, ob = b * 6;
+        return area(Math.min(boxes[oa], boxes[ob]), Math.min(boxes[oa + 1], boxes[ob + 1]),
+                Math.min(boxes[oa + 2], boxes[ob + 2]), Math.max(boxes[oa + 3], boxes[ob + 3]),
+                Math.max(boxes[oa + 4], boxes[ob + 4]), Math.max(boxes[oa + 5], boxes[ob + 5]));
+    }
+
+    private void setUnion(int dest, int a, int b) {
+        int o = dest * 6, oa = a * 6, ob = b * 6;
+        boxes[o] = Math.min(boxes[oa], boxes[ob]);
+        boxes[o + 1] = Math.min(boxes[oa + 1], boxes[ob + 1]);
+        boxes[o + 2] = Math.min(boxes[oa + 2], boxes[ob + 2]);
+        boxes[o + 3] = Math.max(boxes[oa + 3], boxes[ob + 3]);
+        boxes[o + 4] = Math.max(boxes[oa + 4], boxes[ob + 4]);
+        boxes[o + 5] = Math.max(boxes[oa + 5], boxes[ob + 5]);
+    }
+
+    private void insertLeaf(int leaf) {
+        if (root == NULL) {
+            root = leaf;
+            parents[leaf] = NULL;
+            return;
+        }
+
+        // find sibling with the lowest cost of surface area heuristic
+        int index = root;
+        while (heights[index] > 0) {
+            int child1 = children1[index];
+            int child2 = children2[index];
+
+            float area = area(index);
+            float combinedArea = unionArea(index, leaf);
+            // cost of new parent of this node and the leaf
+            float cost = 2 * combinedArea;
+            // minimum cost of pushing the leaf further down
+            float inheritanceCost = 2 * (combinedArea - area);
+
+            float cost1 = unionArea(leaf, child1) + inheritanceCost;
+            if (heights[child1] > 0) {
+                cost1 -= area(child1);
+            }
+            float cost2 = unionArea(leaf, child2) + inheritanceCost;
+            if (heights[child2] > 0) {
+                cost2 -= area(child2);
+            }
+
+            if (cost < cost1 && cost < cost2) {
+                break;
+            }
+            index = cost1 < cost2 ? child1 : child2;
+        }
+
+        int sibling = index;
+        int oldParent = parents[sibling];
+        int newParent = allocateNode();
+        parents[newParent] = oldParent;
+        setUnion(newParent, leaf, sibling);
+        heights[newParent] = heights[sibling] + 1;
+
+        if (oldParent != NULL) {
+            if (children1[oldParent] == sibling) {
+                children1[oldParent] = newParent;
+            } else {
+                children2[oldParent] = newParent;
+            }
+        } else {
+            root = newParent;
+        }
+        children1[newParent] = sibling;
+        children2[newParent] = leaf;
+        parents[sibling] = newParent;
+        parents[leaf] = newParent;
+
+        refit(parents[leaf]);
+    }
+
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL;
+            return;
+        }
+
+        int parent = parents[leaf];
+        int grandParent = parents[parent];
+        int sibling = children1[parent] == leaf ? children2[parent] : children1[parent];
+
+        if (grandParent != NULL) {
+            if (children1[grandParent] == parent) {
+                children1[grandParent] = sibling;
+            } else {
+                children2[grandParent] = sibling;
+            }
+            parents[sibling] = grandParent;
+            freeNode(parent);
+            refit(grandParent);
+        } else {
+            root = sibling;
+            parents[sibling] = NULL;
+            freeNode(parent);
+        }
+    }
+
+    // balances and fixes boxes and heights from node up to root
+    private void refit(int node) {
+        while (node != NULL) {
+            node = balance(node);
+            int child1 = children1[node];
+            int child2 = children2[node];
+            heights[node] = 1 + Math.max(heights[child1], heights[child2]);
+            setUnion(node, child1, child2);
+            node = parents[node];
+        }
+    }
+
+    // rotates higher grandchild up if children of a differ in height by more than one
+    private int balance(int a) {
+        if (heights[a] < 2) {
+            return a;
+        }
+
+        int b = children1[a];
+        int c = children2[a];
+        int balance = heights[c] - heights[b];
+
+        if (balance > 1) {
+            int f = children1[c];
+            int g = children2[c];
+            children1[c] = a;
+            parents[c] = parents[a];
+            parents[a] = c;
+            replaceChild(parents[c], a, c);
+
+            if (heights[f] > heights[g]) {
+                children2[c] = f;
+                children2[a] = g;
+                parents[g] = a;
+                setUnion(a, b, g);
+                setUnion(c, a, f);
+                heights[a] = 1 + Math.max(heights[b], heights[g]);
+                heights[c] = 1 + Math.max(heights[a], heights[f]);
+            } else {
+                children2[c] = g;
+                children2[a] = f;
+                parents[f] = a;
+                setUnion(a, b, f);
+                setUnion(c, a, g);
+                heights[a] = 1 + Math.max(heights[b], heights[f]);
+                heights[c] = 1 + Math.max(heights[a], heights[g]);
+            }
+            return c;
+        }
+
+        if (balance < -1) {
+            int d = children1[b];
+            int e = children2[b];
+            children1[b] = a;
+            parents[b] = parents[a];
+            parents[a] = b;
+            replaceChild(parents[b], a, b);
+
+            if (heights[d] > heights[e]) {
+                children2[b] = d;
+                children1[a] = e;
+                parents[e] = a;
+                setUnion(a, c, e);
+                setUnion(b, a, d);
+                heights[a] = 1 + Math.max(heights[c], heights[e]);
+                heights[b] = 1 + Math.max(heights[a], heights[d]);
+            } else {
+                children2[b] = e;
+                children1[a] = d;
+                parents[d] = a;
+                setUnion(a, c, d);
+                setUnion(b, a, e);
+                heights[a] = 1 + Math.max(heights[c], heights[d]);
+                heights[b] = 1 + Math.max(heights[a], heights[e]);
+            }
+            return b;
+        }
+
+        return a;
+    }
+
+    private void replaceChild(int parent, int oldChild, int newChild) {
+        if (parent == NULL) {
+            root = newChild;
+        } else if (children1[parent] == oldChild) {
+            children1[parent] = newChild;
+        } else {
+            children2[parent] = newChild;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.core.math;
+
+/**
+ * Trigonometry and normalization used by the math classes. Every function
+ * comes in two flavours, exact one backed by {@link Math} and approximation
+ * with <code>Approx</code> suffix. Functions without suffix use whichever is
+ * selected by {@link #setApproximate(boolean)}, exact is the default.
+ *
+ * Maximal absolute errors of approximations against <code>Math</code>,
+ * enforced by <code>FastMathTest</code>:
+ * <ul>
+ * <li>{@link #sinApprox(float)}, {@link #cosApprox(float)}: 1e-6 for
+ * |x| &lt;= 2&pi;, reduction of bigger angles adds at most |x| * 2e-7</li>
+ * <li>{@link #atan2Approx(float, float)}: 2e-5 rad</li>
+ * <li>{@link #acosApprox(float)}: 2e-6 rad</li>
+ * <li>{@link #invSqrtApprox(float)}: relative error 5e-6</li>
+ * </ul>
+ *
+ * @author JiriSimecek
+ */
+public final class FastMath {
+
+    public static final float PI = (float) Math.PI;
+    public static final float HALF_PI = (float) (Math.PI / 2);
+    public static final float TWO_PI = (float) (Math.PI * 2);
+    private static final float INV_TWO_PI = (float) (1 / (Math.PI * 2));
+
+    // minimax polynomials: sin on [0, pi/2], atan on [0, 1],
+    // acos(x) / sqrt(1 - x) on [0, 1]
+    private static final float SIN1 = 0.99999662f;
+    private static final float SIN3 = -0.16664828f;
+    private static final float SIN5 = 0.0083063255f;
+    private static final float SIN7 = -0.00018363660f;
+
+    private static final float ATAN1 = 0.99986633f;
+    private static final float ATAN3 = -0.33030479f;
+    private static final float ATAN5 = 0.18015927f;
+    private static final float ATAN7 = -0.085156303f;
+    private static final float ATAN9 = 0.020845087f;
+
+    private static final float ACOS0 = 1.5707957f;
+    private static final float ACOS1 = -0.21454281f;
+    private static final float ACOS2 = 0.088171034f;
+    private static final float ACOS3 = -0.045927165f;
+    private static final float ACOS4 = 0.020619978f;
+    private static final float ACOS5 = -0.0049111366f;
+
+    private static boolean approximate = false;
+
+    private FastMath() {
+    }
+
+    /**
+     * Selects implementation used by {@link #sin(float)}, {@link #cos(float)},
+     * {@link #atan2(float, float)}, {@link #acos(float)} and
+     * {@link #invSqrt(float)} and so by rotation code of math classes.
+     * Should be set once before the game starts.
+     *
+     * @param approximate true for approximations, false for exact functions
+     */
+    public static void setApproximate(boolean approximate) {
+        FastMath.approximate = approximate;
+    }
+
+    public static boolean isApproximate() {
+        return approximate;
+    }
+
+    public static float sin(float x) {
+        return approximate ? sinApprox(x) : (float) Math.sin(x);
+    }
+
+    public static float cos(float x) {
+        return approximate ? cosApprox(x) : (float) Math.cos(x);
+    }
+
+    public static float atan2(float y, float x) {
+        return approximate ? atan2Approx(y, x) : (float) Math.atan2(y, x);
+    }
+
+    public static float acos(float x) {
+        return approximate ? acosApprox(x) : (float) Math.acos(x);
+    }
+
+    public static float invSqrt(float x) {
+        return approximate ? invSqrtApprox(x) : 1.0f / (float) Math.sqrt(x);
+    }
+
+    public static float sinApprox(float x) {
+        // reduce to [-pi, pi] and then to [-pi/2, pi/2] using sin(pi - x) = sin(x)
+        x -= TWO_PI * Math.round(x * INV_TWO_PI);
+        if (x > HALF_PI) {
+            x = PI - x;
+        } else if (x < -HALF_PI) {
+            x = -PI - x;
+        }
+        float x2 = x * x;
+        return x * (SIN1 + x2 * (SIN3 + x2 * (SIN5 + x2 * SIN7)));
+    }
+
+    public static float cosApprox(float x) {
+        return sinApprox(x + HALF_PI);
+    }
+
+    public static float atan2Approx(float y, float x) {
+        float ax = Math.abs(x);
+        float ay = Math.abs(y);
+        float max = Math.max(ax, ay);
+        if (max == 0) {
+            return 0;
+        }
+
+        float a = Math.min(ax, ay) / max;
+        float a2 = a * a;
+        float r = a * (ATAN1 + a2 * (ATAN3 + a2 * (ATAN5 + a2 * (ATAN7 + a2 * ATAN9))));
+        if (ay > ax) {
+            r = HALF_PI - r;
+        }
+        if (x < 0) {
+            r = PI - r;
+        }
+        return y < 0 ? -r : r;
+    }
+
+    /**
+     * @param x cosine, clamped to [-1, 1]
+     * @return angle in [0, pi]
+     */
+    public static float acosApprox(float x) {
+        float a = Math.min(Math.abs(x), 1.0f);
+        float r = (float) Math.sqrt(1.0f - a) * (ACOS0 + a * (ACOS1 + a * (ACOS2 + a * (ACOS3 + a * (ACOS4 + a * ACOS5)))));
+        return x < 0 ? PI - r : r;
+    }
+
+    /**
+     * Inverse square root by bit trick with two Newton iterations. Math.sqrt
+     * is an intrinsic on most JVMs, so measure before relying on this.
+     *
+     * @param x positive number
+     * @return approximation of 1 / sqrt(x)
+     */
+    public static float invSqrtApprox(float x) {
+        float half = 0.5f * x;
+        float r = Float.intBitsToFloat(0x5f375a86 - (Float.floatToRawIntBits(x) >> 1));
+        r = r * (1.5f - half * r * r);
+        r = r * (1.5f - half * r * r);
+        return r;
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ *
+ */
+package deamont66.engine.core.math;
+
+/**
+ * View volume made of six planes extracted from view projection matrix.
+ * Planes point inside, so point is inside frustum when its distance to all
+ * planes is positive.
+ *
+ * Bounding boxes are packed as minX, minY, minZ, maxX, maxY, maxZ and
+ * spheres as centerX, centerY, centerZ, radius.
+ *
+ * Hierarchies can use plane masks: {@link #classifyAabb(float[], int, int)}
+ * returns mask of planes box still intersects, children of that box only
+ * have to be tested against those planes. Mask {@link #INSIDE} means whole
+ * subtree is visible.
+ *
+ * @author JiriSimecek
+ */
+public final class Frustum {
+
+    public static final int PLANE_LEFT = 0;
+    public static final int PLANE_RIGHT = 1;
+    public static final int PLANE_BOTTOM = 2;
+    public static final int PLANE_TOP = 3;
+    public static final int PLANE_NEAR = 4;
+    public static final int PLANE_FAR = 5;
+    public static final int PLANE_COUNT = 6;
+
+    /** Mask of all planes, used for root of hierarchy. */
+    public static final int ALL_PLANES = (1 << PLANE_COUNT) - 1;
+    /** Box is completely inside, no further tests needed. */
+    public static final int INSIDE = 0;
+    /** Box is completely outside. */
+    public static final int OUTSIDE = -1;
+
+    // a, b, c, d of every plane
+    private final float[] planes = new float[PLANE_COUNT * 4];
+
+    public Frustum() {
+    }
+
+    public Frustum(Matrix4f viewProjection) {
+        set(viewProjection);
+    }
+
+    /**
+     * Extracts planes from view projection matrix (Gribb and Hartmann
+     * method, OpenGL clip space).
+     *
+     * @param m view projection matrix
+     * @return this
+     */
+    public Frustum set(Matrix4f m) {
+        setPlane(PLANE_LEFT,   m.m30 + m.m00, m.m31 + m.m01, m.m32 + m.m02, m.m33 + m.m03);
+        setPlane(PLANE_RIGHT,  m.m30 - m.m00, m.m31 - m.m01, m.m32 - m.m02, m.m33 - m.m03);
+        setPlane(PLANE_BOTTOM, m.m30 + m.m10, m.m31 + m.m11, m.m32 + m.m12, m.m33 + m.m13);
+        setPlane(PLANE_TOP,    m.m30 - m.m10, m.m31 - m.m11, m.m32 - m.m12, m.m33 - m.m13);
+        setPlane(PLANE_NEAR,   m.m30 + m.m20, m.m31 + m.m21, m.m32 + m.m22, m.m33 + m.m23);
+        setPlane(PLANE_FAR,    m.m30 - m.m20, m.m31 - m.m21, m.m32 - m.m22, m.m33 - m.m23);
+        return this;
+    }
+
+    public Frustum set(Frustum r) {
+        System.arraycopy(r.planes, 0, planes, 0, planes.length);
+        return this;
+    }
+
+    private void setPlane(int plane, float a, float b, float c, float d) {
+        float invLength = 1.0f / (float) Math.sqrt(a * a + b * b + c * c);
+        int i = plane * 4;
+        planes[i] = a * invLength;
+        planes[i + 1] = b * invLength;
+        planes[i + 2] = c * invLength;
+        planes[i + 3] = d * invLength;
+    }
+
+    /**
+     * @param plane plane index (PLANE_* constant)
+     * @param dest a, b, c, d of plane are stored from dest[offset]
+     */
+    public void getPlane(int plane, float[] dest, int offset) {
+        System.arraycopy(planes, plane * 4, dest, offset, 4);
+    }
+
+    public float distance(int plane, float x, float y, float z) {
+        int i = plane * 4;
+        return planes[i] * x + planes[i + 1] * y + planes[i + 2] * z + planes[i + 3];
+    }
+
+    public boolean containsPoint(float x, float y, float z) {
+        for (int i = 0; i < PLANE_COUNT * 4; i += 4) {
+            if (planes[i] * x + planes[i + 1] * y + planes[i + 2] * z + planes[i + 3] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean containsPoint(Vector3f point) {
+        return containsPoint(point.x, point.y, point.z);
+    }
+
+    public boolean intersectsSphere(float x, float y, float z, float radius) {
+        for (int i = 0; i < PLANE_COUNT * 4; i += 4) {
+            if (planes[i] * x + planes[i + 1] * y + planes[i + 2] * z + planes[i + 3] < -radius) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean intersectsSphere(Vector3f center, float radius) {
+        return intersectsSphere(center.x, center.y, center.z, radius);
+    }
+
+    public boolean intersectsAabb(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        for (int i = 0; i < PLANE_COUNT * 4; i += 4) {
+            // farthest corner along plane normal
+            float a = planes[i], b = planes[i + 1], c = planes[i + 2];
+            float px = a >= 0 ? maxX : minX;
+            float py = b >= 0 ? maxY : minY;
+            float pz = c >= 0 ? maxZ : minZ;
+            if (a * px + b * py + c * pz + planes[i + 3] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean intersectsAabb(float[] bounds, int offset) {
+        return intersectsAabb(bounds[offset], bounds[offset + 1], bounds[offset + 2],
+                bounds[offset + 3], bounds[offset + 4], bounds[offset + 5]);
+    }
+
+    /**
+     * Classifies box against planes in <code>planeMask</code> only.
+     *
+     * @param bounds packed boxes
+     * @param offset offset of the box
+     * @param planeMask planes to test, {@link #ALL_PLANES} for roots or
+     * result of parent's classification
+     * @return {@link #OUTSIDE}, {@link #INSIDE} or mask of intersected
+     * planes to pass to children
+     */
+    public int classifyAabb(float[] bounds, int offset, int planeMask) {
+        return classifyAabb(bounds, offset, planeMask, null, 0);
+    }
+
+    /**
+     * Same as {@link #classifyAabb(float[], int, int)} with plane coherency:
+     * plane which rejected the box last time is tested first, because it's
+     * likely to reject it again this frame.
+     *
+     * @param bounds packed boxes
+     * @param offset offset of the box
+     * @param planeMask planes to test
+     * @param lastPlanes per object index of plane which rejected it last
+     * time, updated by this method, may be null
+     * @param lastPlaneIndex index of the object in lastPlanes
+     * @return {@link #OUTSIDE}, {@link #INSIDE} or mask of intersected planes
+     */
+    public int classifyAabb(float[] bounds, int offset, int planeMask, byte[] lastPlanes, int lastPlaneIndex) {
+        if (planeMask == INSIDE) {
+            return INSIDE;
+        }
+
+        float minX = bounds[offset], minY = bounds[offset + 1], minZ = bounds[offset + 2];
+        float maxX = bounds[offset + 3], maxY = bounds[offset + 4], maxZ = bounds[offset + 5];
+
+        int first = lastPlanes != null ? lastPlanes[lastPlaneIndex] : 0;
+        int resultMask = INSIDE;
+
+        for (int n = 0; n < PLANE_COUNT; n++) {
+            int plane = first + n;
+            if (plane >= PLANE_COUNT) {
+                plane -= PLANE_COUNT;
+            }
+            if ((planeMask & (1 << plane)) == 0) {
+                continue;
+            }
+
+            int i = plane * 4;
+            float a = planes[i], b = planes[i + 1], c = planes[i + 2], d = planes[i + 3];
+
+            // p is corner farthest along normal, n the nearest one
+            float pDist = a * (a >= 0 ? maxX : minX) + b * (b >= 0 ? maxY : minY) + c * (c >= 0 ? maxZ : minZ) + d;
+            if (pDist < 0) {
+                if (lastPlanes != null) {
+                    lastPlanes[lastPlaneIndex] = (byte) plane;
+                }
+                return OUTSIDE;
+            }
+            float nDist = a * (a >= 0 ? minX : maxX) + b * (b >= 0 ? minY : maxY) + c * (c >= 0 ? minZ : maxZ) + d;
+            if (nDist < 0) {
+                resultMask |= 1 << plane;
+            }
+        }
+
+        return resultMask;
+    }
+
+    /**
+     * Tests many boxes at once.
+     *
+     * @param bounds packed boxes
+     * @param count number of boxes
+     * @param visible indices of boxes intersecting frustum are stored here
+     * @return number of visible boxes
+     */
+    public int cullAabbs(float[] bounds, int count, int[] visible) {
+        if (bounds.length < count * 6 || visible.length < count) {
+            throw new IndexOutOfBoundsException("Arrays are too small for " + count + " boxes");
+        }
+
+        int visibleCount = 0;
+        for (int b = 0; b < count; b++) {
+            if (intersectsAabb(bounds, b * 6)) {
+                visible[visibleCount++] = b;
+            }
+        }
+        return visibleCount;
+    }
+
+    /**
+     * Tests many spheres at once. Plane tests of each sphere are combined
+     * without branching.
+     *
+     * @param spheres packed spheres
+     * @param count number of spheres
+     * @param visible indices of spheres intersecting frustum are stored here
+     * @return number of visible spheres
+     */
+    public int cullSpheres(float[] spheres, int count, int[] visible) {
+        if (spheres.length < count * 4 || visible.length < count) {
+            throw new IndexOutOfBoundsException("Arrays are too small for " + count + " spheres");
+        }
+
+        int visibleCount = 0;
+        for (int s = 0; s < count; s++) {
+            int o = s * 4;
+            float x = spheres[o], y = spheres[o + 1], z = spheres[o + 2], negRadius = -spheres[o + 3];
+
+            boolean inside = true;
+            for (int i = 0; i < PLANE_COUNT * 4; i += 4) {
+                inside &= planes[i] * x + planes[i + 1] * y + planes[i + 2] * z + planes[i + 3] >= negRadius;
+            }
+            if (inside) {
+                visible[visibleCount++] = s;
+            }
+        }
+        return visibleCount;
+    }
+}
@@ -30,37 +30,70 @@
 
 package deamont66.engine.core.math;
 
-import javax.vecmath.Matrix3f;
-import javax.vecmath.Matrix4d;
-import javax.vecmath.Quat4f;
-
-public class Matrix4f extends javax.vecmath.Matrix4f {
-
-    public Matrix4f(float f, float f1, float f2, float f3, float f4, float f5, float f6, float f7, float f8, float f9, float f10, float f11, float f12, float f13, float f14, float f15) {
-        super(f, f1, f2, f3, f4, f5, f6, f7, f8, f9, f10, f11, f12, f13, f14, f15);
+/**
+ * Row major 4x4 float matrix.
+ *
+ * @author JiriSimecek
+ */
+public final class Matrix4f {
+
+    public float m00, m01, m02, m03;
+    public float m10, m11, m12, m13;
+    public float m20, m21, m22, m23;
+    public float m30, m31, m32, m33;
+
+    public Matrix4f(float m00, float m01, float m02, float m03,
+            float m10, float m11, float m12, float m13,
+            float m20, float m21, float m22, float m23,
+            float m30, float m31, float m32, float m33) {
+        this.m00 = m00;    this.m01 = m01;    this.m02 = m02;    this.m03 = m03;
+        this.m10 = m10;    this.m11 = m11;    this.m12 = m12;    this.m13 = m13;
+        this.m20 = m20;    this.m21 = m21;    this.m22 = m22;    this.m23 = m23;
+        this.m30 = m30;    this.m31 = m31;    this.m32 = m32;    this.m33 = m33;
     }
 
     public Matrix4f(float[] floats) {
-        super(floats);
-    }
-
-    public Matrix4f(Quat4f quat4f, javax.vecmath.Vector3f vctrf, float f) {
-        super(quat4f, vctrf, f);
+        this(floats[0], floats[1], floats[2], floats[3],
+                floats[4], floats[5], floats[6], floats[7],
+                floats[8], floats[9], floats[10], floats[11],
+                floats[12], floats[13], floats[14], floats[15]);
     }
 
-    public Matrix4f(Matrix4d mtrxd) {
-        super(mtrxd);
+    public Matrix4f(Matrix4f r) {
+        set(r);
     }
 
-    public Matrix4f(javax.vecmath.Matrix4f mtrxf) {
-        super(mtrxf);
+    public Matrix4f() {
     }
 
-    public Matrix4f(Matrix3f mtrxf, javax.vecmath.Vector3f vctrf, float f) {
-        super(mtrxf, vctrf, f);
+    public Matrix4f set(Matrix4f r) {
+        m00 = r.m00;    m01 = r.m01;    m02 = r.m02;    m03 = r.m03;
+        m10 = r.m10;    m11 = r.m11;    m12 = r.m12;    m13 = r.m13;
+        m20 = r.m20;    m21 = r.m21;    m22 = r.m22;    m23 = r.m23;
+        m30 = r.m30;    m31 = r.m31;    m32 = r.m32;    m33 = r.m33;
+        return this;
     }
 
-    public Matrix4f() {
+    public float getElement(int row, int column) {
+        switch (row * 4 + column) {
+            case 0:  return m00;
+            case 1:  return m01;
+            case 2:  return m02;
+            case 3:  return m03;
+            case 4:  return m10;
+            case 5:  return m11;
+            case 6:  return m12;
+            case 7:  return m13;
+            case 8:  return m20;
+            case 9:  return m21;
+            case 10: return m22;
+            case 11: return m23;
+            case 12: return m30;
+            case 13: return m31;
+            case 14: return m32;
+            case 15: return m33;
+            default: throw new ArrayIndexOutOfBoundsException("Matrix4f has no element " + row + ", " + column);
+        }
     }
 
     public Matrix4f initIdentity() {
@@ -89,20 +122,24 @@ public class Matrix4f extends javax.vecmath.Matrix4f {
         y = (float) Math.toRadians(y);
         z = (float) Math.toRadians(z);
 
-        rz.m00 = (float) Math.cos(z);   rz.m01 = -(float) Math.sin(z);      rz.m02 = 0;                     rz.m03 = 0;
-        rz.m10 = (float) Math.sin(z);   rz.m11 = (float) Math.cos(z);       rz.m12 = 0;                     rz.m13 = 0;
-        rz.m20 = 0;                     rz.m21 = 0;                         rz.m22 = 1;                     rz.m23 = 0;
-        rz.m30 = 0;                     rz.m31 = 0;                         rz.m32 = 0;                     rz.m33 = 1;
+        float sinX = FastMath.sin(x), cosX = FastMath.cos(x);
+        float sinY = FastMath.sin(y), cosY = FastMath.cos(y);
+        float sinZ = FastMath.sin(z), cosZ = FastMath.cos(z);
 
-        rx.m00 = 1;                     rx.m01 = 0;                         rx.m02 = 0;                     rx.m03 = 0;
-        rx.m10 = 0;                     rx.m11 = (float) Math.cos(x);       rx.m12 = -(float) Math.sin(x);  rx.m13 = 0;
-        rx.m20 = 0;                     rx.m21 = (float) Math.sin(x);       rx.m22 = (float) Math.cos(x);   rx.m23 = 0;
-        rx.m30 = 0;                     rx.m31 = 0;                         rx.m32 = 0;                     rx.m33 = 1;
+        rz.m00 = cosZ;                  rz.m01 = -sinZ;                 rz.m02 = 0;                     rz.m03 = 0;
+        rz.m10 = sinZ;                  rz.m11 = cosZ;                  rz.m12 = 0;                     rz.m13 = 0;
+        rz.m20 = 0;                     rz.m21 = 0;                     rz.m22 = 1;                     rz.m23 = 0;
+        rz.m30 = 0;                     rz.m31 = 0;                     rz.m32 = 0;                     rz.m33 = 1;
 
-        ry.m00 = (float) Math.cos(y);   ry.m01 = 0;                         ry.m02 = -(float) Math.sin(y);  ry.m03 = 0;
-        ry.m10 = 0;                     ry.m11 = 1;                         ry.m12 = 0;                     ry.m13 = 0;
-        ry.m20 = (float) Math.sin(y);   ry.m21 = 0;                         ry.m22 = (float) Math.cos(y);   ry.m23 = 0;
-        ry.m30 = 0;                     ry.m31 = 0;                         ry.m32 = 0;                     ry.m33 = 1;
+        rx.m00 = 1;                     rx.m01 = 0;                     rx.m02 = 0;                     rx.m03 = 0;
+        rx.m10 = 0;                     rx.m11 = cosX;                  rx.m12 = -sinX;                 rx.m13 = 0;
+        rx.m20 = 0;                     rx.m21 = sinX;                  rx.m22 = cosX;                  rx.m23 = 0;
+        rx.m30 = 0;                     rx.m31 = 0;                     rx.m32 = 0;                     rx.m33 = 1;
+
+        ry.m00 = cosY;                  ry.m01 = 0;                     ry.m02 = -sinY;                 ry.m03 = 0;
+        ry.m10 = 0;                     ry.m11 = 1;                     ry.m12 = 0;                     ry.m13 = 0;
+        ry.m20 = sinY;                  ry.m21 = 0;                     ry.m22 = cosY;                  ry.m23 = 0;
+        ry.m30 = 0;                     ry.m31 = 0;                     ry.m32 = 0;                     ry.m33 = 1;
 
         this.set(rz.mul(ry.mul(rx)));
 
@@ -141,6 +178,49 @@ public class Matrix4f extends javax.vecmath.Matrix4f {
         return this;
     }
 
+    /**
+     * Builds translation * rotation * scale matrix directly from its
+     * components, without any intermediate matrices.
+     *
+     * @param pos translation
+     * @param rot rotation, has to be normalized
+     * @param scale scale
+     * @return this
+     */
+    public Matrix4f initTransformation(Vector3f pos, Quaternion rot, Vector3f scale) {
+        return initTransformation(pos, rot, scale.getX(), scale.getY(), scale.getZ());
+    }
+
+    /**
+     * Builds rigid translation * rotation matrix (unit scale).
+     *
+     * @param pos translation
+     * @param rot rotation, has to be normalized
+     * @return this
+     */
+    public Matrix4f initTransformation(Vector3f pos, Quaternion rot) {
+        return initTransformation(pos, rot, 1, 1, 1);
+    }
+
+    private Matrix4f initTransformation(Vector3f pos, Quaternion rot, float sx, float sy, float sz) {
+        float x = rot.getX();
+        float y = rot.getY();
+        float z = rot.getZ();
+        float w = rot.getW();
+
+        float xx = x * x, yy = y * y, zz = z * z;
+        float xy = x * y, xz = x * z, yz = y * z;
+        float wx = w * x, wy = w * y, wz = w * z;
+
+        // columns of rotation matrix (see Quaternion.toRotationMatrix) scaled by scale
+        m00 = (1 - 2 * (yy + zz)) * sx;  m01 = 2 * (xy - wz) * sy;        m02 = 2 * (xz + wy) * sz;        m03 = pos.getX();
+        m10 = 2 * (xy + wz) * sx;        m11 = (1 - 2 * (xx + zz)) * sy;  m12 = 2 * (yz - wx) * sz;        m13 = pos.getY();
+        m20 = 2 * (xz - wy) * sx;        m21 = 2 * (yz + wx) * sy;        m22 = (1 - 2 * (xx + yy)) * sz;  m23 = pos.getZ();
+        m30 = 0;                         m31 = 0;                         m32 = 0;                         m33 = 1;
+
+        return this;
+    }
+
     public Matrix4f initRotation(Vector3f forward, Vector3f up) {
         Vector3f f = forward.normalized();
 
@@ -166,14 +246,161 @@ public class Matrix4f extends javax.vecmath.Matrix4f {
     }
 
     public Vector3f transform(Vector3f r) {
-        return new Vector3f(m00 * r.getX() + m01 * r.getY() + m02 * r.getZ() + m03,
-                m10 * r.getX() + m11 * r.getY() + m12 * r.getZ() + m13,
-                m20 * r.getX() + m21 * r.getY() + m22 * r.getZ() + m23);
+        return transform(r, new Vector3f());
+    }
+
+    public Vector3f transform(Vector3f r, Vector3f dest) {
+        float x = m00 * r.getX() + m01 * r.getY() + m02 * r.getZ() + m03;
+        float y = m10 * r.getX() + m11 * r.getY() + m12 * r.getZ() + m13;
+        float z = m20 * r.getX() + m21 * r.getY() + m22 * r.getZ() + m23;
+        dest.set(x, y, z);
+        return dest;
+    }
+
+    public Vector3f transformLocal(Vector3f r) {
+        return transform(r, r);
     }
 
     public Matrix4f mul(Matrix4f r) {
-        Matrix4f res = new Matrix4f(this);
-        res.mul(this, r);
-        return res;
+        return mul(r, new Matrix4f());
+    }
+
+    /**
+     * Stores product this * r to <code>dest</code>.
+     *
+     * @param r right operand
+     * @param dest matrix to store result to, may be this or r
+     * @return dest
+     */
+    public Matrix4f mul(Matrix4f r, Matrix4f dest) {
+        float n00 = m00 * r.m00 + m01 * r.m10 + m02 * r.m20 + m03 * r.m30;
+        float n01 = m00 * r.m01 + m01 * r.m11 + m02 * r.m21 + m03 * r.m31;
+        float n02 = m00 * r.m02 + m01 * r.m12 + m02 * r.m22 + m03 * r.m32;
+        float n03 = m00 * r.m03 + m01 * r.m13 + m02 * r.m23 + m03 * r.m33;
+
+        float n10 = m10 * r.m00 + m11 * r.m10 + m12 * r.m20 + m13 * r.m30;
+        float n11 = m10 * r.m01 + m11 * r.m11 + m12 * r.m21 + m13 * r.m31;
+        float n12 = m10 * r.m02 + m11 * r.m12 + m12 * r.m22 + m13 * r.m32;
+        float n13 = m10 * r.m03 + m11 * r.m13 + m12 * r.m23 + m13 * r.m33;
+
+        float n20 = m20 * r.m00 + m21 * r.m10 + m22 * r.m20 + m23 * r.m30;
+        float n21 = m20 * r.m01 + m21 * r.m11 + m22 * r.m21 + m23 * r.m31;
+        float n22 = m20 * r.m02 + m21 * r.m12 + m22 * r.m22 + m23 * r.m32;
+        float n23 = m20 * r.m03 + m21 * r.m13 + m22 * r.m23 + m23 * r.m33;
+
+        float n30 = m30 * r.m00 + m31 * r.m10 + m32 * r.m20 + m33 * r.m30;
+        float n31 = m30 * r.m01 + m31 * r.m11 + m32 * r.m21 + m33 * r.m31;
+        float n32 = m30 * r.m02 + m31 * r.m12 + m32 * r.m22 + m33 * r.m32;
+        float n33 = m30 * r.m03 + m31 * r.m13 + m32 * r.m23 + m33 * r.m33;
+
+        dest.m00 = n00;    dest.m01 = n01;    dest.m02 = n02;    dest.m03 = n03;
+        dest.m10 = n10;    dest.m11 = n11;    dest.m12 = n12;    dest.m13 = n13;
+        dest.m20 = n20;    dest.m21 = n21;    dest.m22 = n22;    dest.m23 = n23;
+        dest.m30 = n30;    dest.m31 = n31;    dest.m32 = n32;    dest.m33 = n33;
+        return dest;
+    }
+
+    public Matrix4f mulLocal(Matrix4f r) {
+        return mul(r, this);
+    }
+
+    /**
+     * Stores product this * r to <code>dest</code>, assuming both matrices
+     * are affine (last row is 0, 0, 0, 1). Skips the work on the last row,
+     * which makes it roughly half the cost of {@link #mul(Matrix4f, Matrix4f)}.
+     *
+     * @param r affine right operand
+     * @param dest matrix to store result to, may be this or r
+     * @return dest
+     */
+    public Matrix4f mulAffine(Matrix4f r, Matrix4f dest) {
+        float n00 = m00 * r.m00 + m01 * r.m10 + m02 * r.m20;
+        float n01 = m00 * r.m01 + m01 * r.m11 + m02 * r.m21;
+        float n02 = m00 * r.m02 + m01 * r.m12 + m02 * r.m22;
+        float n03 = m00 * r.m03 + m01 * r.m13 + m02 * r.m23 + m03;
+
+        float n10 = m10 * r.m00 + m11 * r.m10 + m12 * r.m20;
+        float n11 = m10 * r.m01 + m11 * r.m11 + m12 * r.m21;
+        float n12 = m10 * r.m02 + m11 * r.m12 + m12 * r.m22;
+        float n13 = m10 * r.m03 + m11 * r.m13 + m12 * r.m23 + m13;
+
+        float n20 = m20 * r.m00 + m21 * r.m10 + m22 * r.m20;
+        float n21 = m20 * r.m01 + m21 * r.m11 + m22 * r.m21;
+        float n22 = m20 * r.m02 + m21 * r.m12 + m22 * r.m22;
+        float n23 = m20 * r.m03 + m21 * r.m13 + m22 * r.m23 + m23;
+
+        dest.m00 = n00;    dest.m01 = n01;    dest.m02 = n02;    dest.m03 = n03;
+        dest.m10 = n10;    dest.m11 = n11;    dest.m12 = n12;    dest.m13 = n13;
+        dest.m20 = n20;    dest.m21 = n21;    dest.m22 = n22;    dest.m23 = n23;
+        dest.m30 = 0;      dest.m31 = 0;      dest.m32 = 0;      dest.m33 = 1;
+        return dest;
+    }
+
+    public Matrix4f mulAffineLocal(Matrix4f r) {
+        return mulAffine(r, this);
+    }
+
+    /**
+     * Inverts affine matrix (last row is 0, 0, 0, 1) into <code>dest</code>.
+     * Only the upper 3x3 part is inverted, translation is then just rotated
+     * back.
+     *
+     * @param dest matrix to store result to, may be this
+     * @return dest
+     */
+    public Matrix4f invertAffine(Matrix4f dest) {
+        float c00 = m11 * m22 - m12 * m21;
+        float c01 = m02 * m21 - m01 * m22;
+        float c02 = m01 * m12 - m02 * m11;
+        float c10 = m12 * m20 - m10 * m22;
+        float c11 = m00 * m22 - m02 * m20;
+        float c12 = m02 * m10 - m00 * m12;
+        float c20 = m10 * m21 - m11 * m20;
+        float c21 = m01 * m20 - m00 * m21;
+        float c22 = m00 * m11 - m01 * m10;
+
+        float invDet = 1.0f / (m00 * c00 + m01 * c10 + m02 * c20);
+
+        float i00 = c00 * invDet, i01 = c01 * invDet, i02 = c02 * invDet;
+        float i10 = c10 * invDet, i11 = c11 * invDet, i12 = c12 * invDet;
+        float i20 = c20 * invDet, i21 = c21 * invDet, i22 = c22 * invDet;
+
+        float tx = m03, ty = m13, tz = m23;
+
+        dest.m00 = i00;    dest.m01 = i01;    dest.m02 = i02;    dest.m03 = -(i00 * tx + i01 * ty + i02 * tz);
+        dest.m10 = i10;    dest.m11 = i11;    dest.m12 = i12;    dest.m13 = -(i10 * tx + i11 * ty + i12 * tz);
+        dest.m20 = i20;    dest.m21 = i21;    dest.m22 = i22;    dest.m23 = -(i20 * tx + i21 * ty + i22 * tz);
+        dest.m30 = 0;      dest.m31 = 0;      dest.m32 = 0;      dest.m33 = 1;
+        return dest;
+    }
+
+    /**
+     * Inverts rigid matrix (rotation and translation only, no scale) into
+     * <code>dest</code>. Rotation part is just transposed.
+     *
+     * @param dest matrix to store result to, may be this
+     * @return dest
+     */
+    public Matrix4f invertRigid(Matrix4f dest) {
+        float r01 = m01, r02 = m02, r12 = m12;
+        float tx = m03, ty = m13, tz = m23;
+
+        dest.m00 = m00;    dest.m01 = m10;    dest.m02 = m20;
+        dest.m10 = r01;    dest.m11 = m11;    dest.m12 = m21;
+        dest.m20 = r02;    dest.m21 = r12;    dest.m22 = m22;
+
+        dest.m03 = -(dest.m00 * tx + dest.m01 * ty + dest.m02 * tz);
+        dest.m13 = -(dest.m10 * tx + dest.m11 * ty + dest.m12 * tz);
+        dest.m23 = -(dest.m20 * tx + dest.m21 * ty + dest.m22 * tz);
+        dest.m30 = 0;      dest.m31 = 0;      dest.m32 = 0;      dest.m33 = 1;
+        return dest;
+    }
+
+    @Override
+    public String toString() {
+        return m00 + ", " + m01 + ", " + m02 + ", " + m03 + "\n"
+                + m10 + ", " + m11 + ", " + m12 + ", " + m13 + "\n"
+                + m20 + ", " + m21 + ", " + m22 + ", " + m23 + "\n"
+                + m30 + ", " + m31 + ", " + m32 + ", " + m33 + "\n";
     }
 }
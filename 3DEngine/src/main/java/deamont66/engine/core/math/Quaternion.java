@@ -29,30 +29,31 @@
  */
 package deamont66.engine.core.math;
 
-public class Quaternion extends javax.vecmath.Quat4f {
+/**
+ * Rotation quaternion.
+ *
+ * @author JiriSimecek
+ */
+public final class Quaternion {
+
+        public float x;
+        public float y;
+        public float z;
+        public float w;
 
         public Quaternion(float x, float y, float z, float w) {
-                super(x, y, z, w);
+                this.x = x;
+                this.y = y;
+                this.z = z;
+                this.w = w;
         }
 
         public Quaternion(float[] floats) {
-                super(floats);
+                this(floats[0], floats[1], floats[2], floats[3]);
         }
 
-        public Quaternion(javax.vecmath.Quat4f quat4f) {
-                super(quat4f);
-        }
-
-        public Quaternion(javax.vecmath.Quat4d quat4d) {
-                super(quat4d);
-        }
-
-        public Quaternion(javax.vecmath.Tuple4f tplf) {
-                super(tplf);
-        }
-
-        public Quaternion(javax.vecmath.Tuple4d tpld) {
-                super(tpld);
+        public Quaternion(Quaternion r) {
+                this(r.x, r.y, r.z, r.w);
         }
 
         public Quaternion() {
@@ -60,13 +61,26 @@ public class Quaternion extends javax.vecmath.Quat4f {
         }
 
         public Quaternion(Vector3f axis, float angle) {
-                float sinHalfAngle = (float) Math.sin(angle / 2);
-                float cosHalfAngle = (float) Math.cos(angle / 2);
+                fromAxisAngle(axis, angle);
+        }
+
+        /**
+         * Sets this quaternion to rotation by <code>angle</code> around
+         * <code>axis</code>.
+         *
+         * @param axis normalized rotation axis
+         * @param angle angle in radians
+         * @return this
+         */
+        public Quaternion fromAxisAngle(Vector3f axis, float angle) {
+                float sinHalfAngle = FastMath.sin(angle / 2);
+                float cosHalfAngle = FastMath.cos(angle / 2);
 
                 this.x = axis.getX() * sinHalfAngle;
                 this.y = axis.getY() * sinHalfAngle;
                 this.z = axis.getZ() * sinHalfAngle;
                 this.w = cosHalfAngle;
+                return this;
         }
 
         /**
@@ -155,30 +169,110 @@ public class Quaternion extends javax.vecmath.Quat4f {
                 return (float) Math.sqrt(x * x + y * y + z * z + w * w);
         }
 
+        public void normalize() {
+                float invLength = FastMath.invSqrt(x * x + y * y + z * z + w * w);
+                set(x * invLength, y * invLength, z * invLength, w * invLength);
+        }
+
+        public Quaternion normalizeLocal() {
+                normalize();
+                return this;
+        }
+
         public Quaternion conjugated() {
-                Quaternion ret = new Quaternion(this);
-                ret.conjugate();
-                return ret;
+                return conjugated(new Quaternion());
+        }
+
+        public Quaternion conjugated(Quaternion dest) {
+                dest.set(-x, -y, -z, w);
+                return dest;
+        }
+
+        public Quaternion conjugateLocal() {
+                return conjugated(this);
         }
 
         public void mul(float r) {
                 set(x * r, y * r, z * r, w * r);
         }
 
+        public Quaternion mul(float r, Quaternion dest) {
+                dest.set(x * r, y * r, z * r, w * r);
+                return dest;
+        }
+
+        public Quaternion mulLocal(float r) {
+                return mul(r, this);
+        }
+
         public void mul(Vector3f r) {
+                mul(r, this);
+        }
+
+        public Quaternion mul(Vector3f r, Quaternion dest) {
                 float w_ = -x * r.getX() - y * r.getY() - z * r.getZ();
                 float x_ = w * r.getX() + y * r.getZ() - z * r.getY();
                 float y_ = w * r.getY() + z * r.getX() - x * r.getZ();
                 float z_ = w * r.getZ() + x * r.getY() - y * r.getX();
-                set(x_, y_, z_, w_);
+                dest.set(x_, y_, z_, w_);
+                return dest;
+        }
+
+        /**
+         * Sets this quaternion to this * r.
+         *
+         * @param r right operand
+         */
+        public void mul(Quaternion r) {
+                mul(r, this);
+        }
+
+        /**
+         * Stores product this * r to <code>dest</code>.
+         *
+         * @param r right operand
+         * @param dest quaternion to store result to, may be this or r
+         * @return dest
+         */
+        public Quaternion mul(Quaternion r, Quaternion dest) {
+                float w_ = w * r.getW() - x * r.getX() - y * r.getY() - z * r.getZ();
+                float x_ = w * r.getX() + x * r.getW() + y * r.getZ() - z * r.getY();
+                float y_ = w * r.getY() - x * r.getZ() + y * r.getW() + z * r.getX();
+                float z_ = w * r.getZ() + x * r.getY() - y * r.getX() + z * r.getW();
+                dest.set(x_, y_, z_, w_);
+                return dest;
+        }
+
+        public Quaternion mulLocal(Quaternion r) {
+                return mul(r, this);
         }
 
         public Matrix4f toRotationMatrix() {
-                Vector3f forward = new Vector3f(2.0f * (x * z - w * y), 2.0f * (y * z + w * x), 1.0f - 2.0f * (x * x + y * y));
-                Vector3f up = new Vector3f(2.0f * (x * y + w * z), 1.0f - 2.0f * (x * x + z * z), 2.0f * (y * z - w * x));
-                Vector3f right = new Vector3f(1.0f - 2.0f * (y * y + z * z), 2.0f * (x * y - w * z), 2.0f * (x * z + w * y));
+                return toRotationMatrix(new Matrix4f());
+        }
+
+        public Matrix4f toRotationMatrix(Matrix4f dest) {
+                // rows are right, up and forward vectors of this rotation
+                dest.m00 = 1.0f - 2.0f * (y * y + z * z);
+                dest.m01 = 2.0f * (x * y - w * z);
+                dest.m02 = 2.0f * (x * z + w * y);
+                dest.m03 = 0;
+
+                dest.m10 = 2.0f * (x * y + w * z);
+                dest.m11 = 1.0f - 2.0f * (x * x + z * z);
+                dest.m12 = 2.0f * (y * z - w * x);
+                dest.m13 = 0;
 
-                return new Matrix4f().initRotation(forward, up, right);
+                dest.m20 = 2.0f * (x * z - w * y);
+                dest.m21 = 2.0f * (y * z + w * x);
+                dest.m22 = 1.0f - 2.0f * (x * x + y * y);
+                dest.m23 = 0;
+
+                dest.m30 = 0;
+                dest.m31 = 0;
+                dest.m32 = 0;
+                dest.m33 = 1;
+                return dest;
         }
 
         public float dot(Quaternion r) {
@@ -186,46 +280,61 @@ public class Quaternion extends javax.vecmath.Quat4f {
         }
 
         public Quaternion nlerp(Quaternion dest, float lerpFactor, boolean shortest) {
-                Quaternion correctedDest = dest;
+                return nlerp(dest, lerpFactor, shortest, new Quaternion());
+        }
+
+        public Quaternion nlerp(Quaternion target, float lerpFactor, boolean shortest, Quaternion dest) {
+                float sign = 1;
 
-                if (shortest && this.dot(dest) < 0) {
-                        correctedDest = new Quaternion(-dest.getX(), -dest.getY(), -dest.getZ(), -dest.getW());
+                if (shortest && this.dot(target) < 0) {
+                        sign = -1;
                 }
 
-                correctedDest.sub(this);
-                correctedDest.mul(lerpFactor);
-                correctedDest.add(this);
-                correctedDest.normalize();
-                return correctedDest;
+                return nlerp(target, sign, lerpFactor, dest);
+        }
+
+        private Quaternion nlerp(Quaternion target, float sign, float lerpFactor, Quaternion dest) {
+                float x_ = (sign * target.getX() - x) * lerpFactor + x;
+                float y_ = (sign * target.getY() - y) * lerpFactor + y;
+                float z_ = (sign * target.getZ() - z) * lerpFactor + z;
+                float w_ = (sign * target.getW() - w) * lerpFactor + w;
+                float length = (float) Math.sqrt(x_ * x_ + y_ * y_ + z_ * z_ + w_ * w_);
+
+                dest.set(x_ / length, y_ / length, z_ / length, w_ / length);
+                return dest;
         }
 
         public Quaternion slerp(Quaternion dest, float lerpFactor, boolean shortest) {
-                final float EPSILON = 1e3f;
+                return slerp(dest, lerpFactor, shortest, new Quaternion());
+        }
+
+        public Quaternion slerp(Quaternion target, float lerpFactor, boolean shortest, Quaternion dest) {
+                final float EPSILON = 1e-3f;
 
-                float cos = this.dot(dest);
-                Quaternion correctedDest = dest;
+                float cos = this.dot(target);
+                float sign = 1;
 
                 if (shortest && cos < 0) {
                         cos = -cos;
-                        correctedDest = new Quaternion(-dest.getX(), -dest.getY(), -dest.getZ(), -dest.getW());
+                        sign = -1;
                 }
 
                 if (Math.abs(cos) >= 1 - EPSILON) {
-                        return nlerp(correctedDest, lerpFactor, false);
+                        return nlerp(target, sign, lerpFactor, dest);
                 }
 
                 float sin = (float) Math.sqrt(1.0f - cos * cos);
-                float angle = (float) Math.atan2(sin, cos);
+                float angle = FastMath.atan2(sin, cos);
                 float invSin = 1.0f / sin;
 
-                float srcFactor = (float) Math.sin((1.0f - lerpFactor) * angle) * invSin;
-                float destFactor = (float) Math.sin((lerpFactor) * angle) * invSin;
+                float srcFactor = FastMath.sin((1.0f - lerpFactor) * angle) * invSin;
+                float destFactor = sign * FastMath.sin((lerpFactor) * angle) * invSin;
 
-                Quaternion ret = new Quaternion(this);
-                ret.mul(srcFactor);
-                correctedDest.mul(destFactor);
-                ret.add(correctedDest);
-                return ret;
+                dest.set(x * srcFactor + target.getX() * destFactor,
+                        y * srcFactor + target.getY() * destFactor,
+                        z * srcFactor + target.getZ() * destFactor,
+                        w * srcFactor + target.getW() * destFactor);
+                return dest;
         }
 
         //From Ken Shoemake's "Quaternion Calculus and Fast Animation" article
@@ -268,27 +377,69 @@ public class Quaternion extends javax.vecmath.Quat4f {
         }
 
         public Vector3f getForward() {
-                return new Vector3f(0, 0, 1).rotate(this);
+                return getForward(new Vector3f());
+        }
+
+        public Vector3f getForward(Vector3f dest) {
+                dest.set(0, 0, 1);
+                return dest.rotateLocal(this);
         }
 
         public Vector3f getBack() {
-                return new Vector3f(0, 0, -1).rotate(this);
+                return getBack(new Vector3f());
+        }
+
+        public Vector3f getBack(Vector3f dest) {
+                dest.set(0, 0, -1);
+                return dest.rotateLocal(this);
         }
 
         public Vector3f getUp() {
-                return new Vector3f(0, 1, 0).rotate(this);
+                return getUp(new Vector3f());
+        }
+
+        public Vector3f getUp(Vector3f dest) {
+                dest.set(0, 1, 0);
+                return dest.rotateLocal(this);
         }
 
         public Vector3f getDown() {
-                return new Vector3f(0, -1, 0).rotate(this);
+                return getDown(new Vector3f());
+        }
+
+        public Vector3f getDown(Vector3f dest) {
+                dest.set(0, -1, 0);
+                return dest.rotateLocal(this);
         }
 
         public Vector3f getRight() {
-                return new Vector3f(1, 0, 0).rotate(this);
+                return getRight(new Vector3f());
+        }
+
+        public Vector3f getRight(Vector3f dest) {
+                dest.set(1, 0, 0);
+                return dest.rotateLocal(this);
         }
 
         public Vector3f getLeft() {
-                return new Vector3f(-1, 0, 0).rotate(this);
+                return getLeft(new Vector3f());
+        }
+
+        public Vector3f getLeft(Vector3f dest) {
+                dest.set(-1, 0, 0);
+                return dest.rotateLocal(this);
+        }
+
+        public void set(float x, float y, float z, float w) {
+                this.x = x;
+                this.y = y;
+                this.z = z;
+                this.w = w;
+        }
+
+        public Quaternion set(Quaternion r) {
+                set(r.x, r.y, r.z, r.w);
+                return this;
         }
 
         public float getX() {
@@ -327,6 +478,25 @@ public class Quaternion extends javax.vecmath.Quat4f {
                 return x == r.getX() && y == r.getY() && z == r.getZ() && w == r.getW();
         }
 
+        @Override
+        public boolean equals(Object o) {
+                return o instanceof Quaternion && equals((Quaternion) o);
+        }
+
+        @Override
+        public int hashCode() {
+                int hash = Float.floatToIntBits(x);
+                hash = 31 * hash + Float.floatToIntBits(y);
+                hash = 31 * hash + Float.floatToIntBits(z);
+                hash = 31 * hash + Float.floatToIntBits(w);
+                return hash;
+        }
+
+        @Override
+        public String toString() {
+                return "(" + x + ", " + y + ", " + z + ", " + w + ")";
+        }
+
         public static Quaternion identity() {
                 return new Quaternion();
         }
@@ -30,35 +30,45 @@
 
 package deamont66.engine.core.math;
 
-public class Vector2f extends javax.vecmath.Vector2f
+/**
+ * Two component float vector.
+ *
+ * @author JiriSimecek
+ */
+public final class Vector2f
 {
 
+    public float x;
+    public float y;
+
     public Vector2f(float f, float f1) {
-        super(f, f1);
+        this.x = f;
+        this.y = f1;
     }
 
     public Vector2f(float[] floats) {
-        super(floats);
+        this(floats[0], floats[1]);
     }
 
-    public Vector2f(javax.vecmath.Vector2f vctrf) {
-        super(vctrf);
+    public Vector2f(Vector2f r) {
+        this(r.x, r.y);
     }
 
-    public Vector2f(javax.vecmath.Vector2d vctrd) {
-        super(vctrd);
+    public Vector2f() {
+        this(0,0);
     }
 
-    public Vector2f(javax.vecmath.Tuple2f tplf) {
-        super(tplf);
+    public float length() {
+        return (float) Math.sqrt(x * x + y * y);
     }
 
-    public Vector2f(javax.vecmath.Tuple2d tpld) {
-        super(tpld);
+    public void set(float x, float y) {
+        this.x = x;
+        this.y = y;
     }
 
-    public Vector2f() {
-        this(0,0);
+    public void set(Vector2f r) {
+        set(r.x, r.y);
     }
 
 	public float max()
@@ -89,6 +99,20 @@ public class Vector2f extends javax.vecmath.Vector2f
 		return new Vector2f((float)(x * cos - y * sin),(float)(x * sin + y * cos));
 	}
 	
+	public Vector2f add(Vector2f r)
+	{
+                x += r.x;
+                y += r.y;
+                return this;
+	}
+	
+	public Vector2f sub(Vector2f r)
+	{
+                x -= r.x;
+                y -= r.y;
+                return this;
+	}
+	
 	public Vector2f add(float r)
 	{
                 x += r;
@@ -103,7 +127,7 @@ public class Vector2f extends javax.vecmath.Vector2f
                 return this;
 	}
 	
-	public Vector2f mul(javax.vecmath.Tuple2d r)
+	public Vector2f mul(Vector2f r)
 	{
 		x *= r.x;
                 y *= r.y;
@@ -117,7 +141,7 @@ public class Vector2f extends javax.vecmath.Vector2f
 		return this;
 	}
 	
-	public Vector2f div(javax.vecmath.Tuple2d r)
+	public Vector2f div(Vector2f r)
 	{
 		x /= r.x;
                 y /= r.y;
@@ -146,4 +170,9 @@ public class Vector2f extends javax.vecmath.Vector2f
         public void setY(float y) {
             this.y = y;
         }
+
+        @Override
+        public String toString() {
+            return "(" + x + ", " + y + ")";
+        }
 }
@@ -29,34 +29,48 @@
  */
 package deamont66.engine.core.math;
 
-public class Vector3f extends javax.vecmath.Vector3f {
+/**
+ * Three component float vector. Standalone final class (no javax.vecmath
+ * base), so JIT can inline all calls and scalar replace short lived
+ * instances. Use {@code deamont66.game.PhysicUtils} to convert to jBullet
+ * types.
+ *
+ * @author JiriSimecek
+ */
+public final class Vector3f {
+
+        public float x;
+        public float y;
+        public float z;
 
         public Vector3f() {
-                super();
+                this(0, 0, 0);
         }
 
         public Vector3f(float[] v) {
-                super(v);
+                this(v[0], v[1], v[2]);
         }
 
         public Vector3f(float x, float y, float z) {
-                super(x, y, z);
+                this.x = x;
+                this.y = y;
+                this.z = z;
         }
 
-        public Vector3f(javax.vecmath.Vector3f vctrf) {
-                super(vctrf);
+        public Vector3f(Vector3f r) {
+                this(r.x, r.y, r.z);
         }
 
-        public Vector3f(javax.vecmath.Vector3d vctrd) {
-                super(vctrd);
+        public float length() {
+                return (float) Math.sqrt(x * x + y * y + z * z);
         }
 
-        public Vector3f(javax.vecmath.Tuple3f tplf) {
-                super(tplf);
+        public float lengthSquared() {
+                return x * x + y * y + z * z;
         }
 
-        public Vector3f(javax.vecmath.Tuple3d tpld) {
-                super(tpld);
+        public void normalize() {
+                normalizeLocal();
         }
 
         public float max() {
@@ -68,74 +82,224 @@ public class Vector3f extends javax.vecmath.Vector3f {
         }
 
         public Vector3f cross(Vector3f r) {
-                Vector3f ret = new Vector3f();
-                ret.cross(this, r);
-                return ret;
+                return cross(r, new Vector3f());
+        }
+
+        public Vector3f cross(Vector3f r, Vector3f dest) {
+                float x_ = y * r.getZ() - z * r.getY();
+                float y_ = z * r.getX() - x * r.getZ();
+                float z_ = x * r.getY() - y * r.getX();
+                dest.set(x_, y_, z_);
+                return dest;
+        }
+
+        public Vector3f crossLocal(Vector3f r) {
+                return cross(r, this);
         }
 
         public Vector3f normalized() {
-                Vector3f ret = new Vector3f(this);
-                ret.normalize();
-                return ret;
+                return normalized(new Vector3f());
+        }
+
+        public Vector3f normalized(Vector3f dest) {
+                float invLength = FastMath.invSqrt(x * x + y * y + z * z);
+                dest.set(x * invLength, y * invLength, z * invLength);
+                return dest;
+        }
+
+        public Vector3f normalizeLocal() {
+                return normalized(this);
         }
 
         public Vector3f rotate(Vector3f axis, float angle) {
-                float sinAngle = (float) Math.sin(-angle);
-                float cosAngle = (float) Math.cos(-angle);
+                return rotate(axis, angle, new Vector3f());
+        }
+
+        public Vector3f rotate(Vector3f axis, float angle, Vector3f dest) {
+                float sinAngle = FastMath.sin(-angle);
+                float cosAngle = FastMath.cos(-angle);
 
-                return this.cross(axis.mul(sinAngle)).add( //Rotation on local X
-                        (this.mul(cosAngle)).add( //Rotation on local Z
-                                axis.mul(this.dot(axis.mul(1 - cosAngle))))); //Rotation on local Y
+                // this x (axis * sin) + this * cos + axis * (this . (axis * (1 - cos)))
+                float axisDot = dot(axis) * (1 - cosAngle);
+                float x_ = (y * axis.getZ() - z * axis.getY()) * sinAngle + x * cosAngle + axis.getX() * axisDot;
+                float y_ = (z * axis.getX() - x * axis.getZ()) * sinAngle + y * cosAngle + axis.getY() * axisDot;
+                float z_ = (x * axis.getY() - y * axis.getX()) * sinAngle + z * cosAngle + axis.getZ() * axisDot;
+                dest.set(x_, y_, z_);
+                return dest;
+        }
+
+        public Vector3f rotateLocal(Vector3f axis, float angle) {
+                return rotate(axis, angle, this);
         }
 
         public Vector3f rotate(Quaternion rotation) {
-                Quaternion conjugate = rotation.conjugated();
-                Quaternion w = new Quaternion(rotation);
-                w.mul(this);
-                w.mul(conjugate);
-                return new Vector3f(w.getX(), w.getY(), w.getZ());
+                return rotate(rotation, new Vector3f());
+        }
+
+        /**
+         * Rotates this vector by <code>rotation</code> (rotation * this *
+         * rotation^-1) and stores result to <code>dest</code> without creating
+         * any temporary quaternions.
+         *
+         * @param rotation rotation to apply
+         * @param dest vector to store result to, may be this vector
+         * @return dest
+         */
+        public Vector3f rotate(Quaternion rotation, Vector3f dest) {
+                float qx = rotation.getX();
+                float qy = rotation.getY();
+                float qz = rotation.getZ();
+                float qw = rotation.getW();
+
+                // w = rotation * this
+                float w_ = -qx * x - qy * y - qz * z;
+                float x_ = qw * x + qy * z - qz * y;
+                float y_ = qw * y + qz * x - qx * z;
+                float z_ = qw * z + qx * y - qy * x;
+
+                // w * conjugate(rotation)
+                dest.set(-w_ * qx + x_ * qw - y_ * qz + z_ * qy,
+                        -w_ * qy + y_ * qw - z_ * qx + x_ * qz,
+                        -w_ * qz + z_ * qw - x_ * qy + y_ * qx);
+                return dest;
+        }
+
+        public Vector3f rotateLocal(Quaternion rotation) {
+                return rotate(rotation, this);
         }
 
         public Vector3f lerp(Vector3f dest, float lerpFactor) {
-                return dest.sub(this).mul(lerpFactor).add(this);
+                return lerp(dest, lerpFactor, new Vector3f());
+        }
+
+        public Vector3f lerp(Vector3f target, float lerpFactor, Vector3f dest) {
+                dest.set((target.getX() - x) * lerpFactor + x,
+                        (target.getY() - y) * lerpFactor + y,
+                        (target.getZ() - z) * lerpFactor + z);
+                return dest;
+        }
+
+        public Vector3f lerpLocal(Vector3f target, float lerpFactor) {
+                return lerp(target, lerpFactor, this);
         }
 
         public Vector3f add(Vector3f r) {
                 return new Vector3f(x + r.getX(), y + r.getY(), z + r.getZ());
         }
 
+        public Vector3f add(Vector3f r, Vector3f dest) {
+                dest.set(x + r.getX(), y + r.getY(), z + r.getZ());
+                return dest;
+        }
+
+        public Vector3f addLocal(Vector3f r) {
+                return add(r, this);
+        }
+
         public Vector3f add(float r) {
                 return new Vector3f(x + r, y + r, z + r);
         }
 
+        public Vector3f add(float r, Vector3f dest) {
+                dest.set(x + r, y + r, z + r);
+                return dest;
+        }
+
+        public Vector3f addLocal(float r) {
+                return add(r, this);
+        }
+
         public Vector3f sub(Vector3f r) {
                 return new Vector3f(x - r.getX(), y - r.getY(), z - r.getZ());
         }
 
+        public Vector3f sub(Vector3f r, Vector3f dest) {
+                dest.set(x - r.getX(), y - r.getY(), z - r.getZ());
+                return dest;
+        }
+
+        public Vector3f subLocal(Vector3f r) {
+                return sub(r, this);
+        }
+
         public Vector3f sub(float r) {
                 return new Vector3f(x - r, y - r, z - r);
         }
 
+        public Vector3f sub(float r, Vector3f dest) {
+                dest.set(x - r, y - r, z - r);
+                return dest;
+        }
+
+        public Vector3f subLocal(float r) {
+                return sub(r, this);
+        }
+
         public Vector3f mul(Vector3f r) {
                 return new Vector3f(x * r.getX(), y * r.getY(), z * r.getZ());
         }
 
+        public Vector3f mul(Vector3f r, Vector3f dest) {
+                dest.set(x * r.getX(), y * r.getY(), z * r.getZ());
+                return dest;
+        }
+
+        public Vector3f mulLocal(Vector3f r) {
+                return mul(r, this);
+        }
+
         public Vector3f mul(float r) {
                 return new Vector3f(x * r, y * r, z * r);
         }
 
+        public Vector3f mul(float r, Vector3f dest) {
+                dest.set(x * r, y * r, z * r);
+                return dest;
+        }
+
+        public Vector3f mulLocal(float r) {
+                return mul(r, this);
+        }
+
         public Vector3f div(Vector3f r) {
                 return new Vector3f(x / r.getX(), y / r.getY(), z / r.getZ());
         }
 
+        public Vector3f div(Vector3f r, Vector3f dest) {
+                dest.set(x / r.getX(), y / r.getY(), z / r.getZ());
+                return dest;
+        }
+
+        public Vector3f divLocal(Vector3f r) {
+                return div(r, this);
+        }
+
         public Vector3f div(float r) {
                 return new Vector3f(x / r, y / r, z / r);
         }
 
+        public Vector3f div(float r, Vector3f dest) {
+                dest.set(x / r, y / r, z / r);
+                return dest;
+        }
+
+        public Vector3f divLocal(float r) {
+                return div(r, this);
+        }
+
         public Vector3f abs() {
                 return new Vector3f(Math.abs(x), Math.abs(y), Math.abs(z));
         }
 
+        public Vector3f abs(Vector3f dest) {
+                dest.set(Math.abs(x), Math.abs(y), Math.abs(z));
+                return dest;
+        }
+
+        public Vector3f absLocal() {
+                return abs(this);
+        }
+
         public Vector2f getXY() {
                 return new Vector2f(x, y);
         }
@@ -165,6 +329,12 @@ public class Vector3f extends javax.vecmath.Vector3f {
                 return this;
         }
 
+        public void set(float x, float y, float z) {
+                this.x = x;
+                this.y = y;
+                this.z = z;
+        }
+
         public float getX() {
                 return x;
         }
@@ -196,6 +366,24 @@ public class Vector3f extends javax.vecmath.Vector3f {
                 return x == r.getX() && y == r.getY() && z == r.getZ();
         }
 
+        @Override
+        public boolean equals(Object o) {
+                return o instanceof Vector3f && equals((Vector3f) o);
+        }
+
+        @Override
+        public int hashCode() {
+                int hash = Float.floatToIntBits(x);
+                hash = 31 * hash + Float.floatToIntBits(y);
+                hash = 31 * hash + Float.floatToIntBits(z);
+                return hash;
+        }
+
+        @Override
+        public String toString() {
+                return "(" + x + ", " + y + ", " + z + ")";
+        }
+
         public static Vector3f one() {
                 return new Vector3f(1f, 1f, 1f);
         }
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.ecs;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * All entities with exactly the same set of component types. Components are
+ * stored in {@link Chunk}s, which stay densely packed (entity removed from
+ * the middle is replaced by the last one).
+ *
+ * @author JiriSimecek
+ */
+public final class Archetype {
+
+    private final long mask;
+    private final Class<?>[] types;
+    private final int[] columnByTypeId;
+    private final ComponentTypes componentTypes;
+    private final List<Chunk> chunks = new ArrayList<>();
+    private int size;
+
+    Archetype(long mask, ComponentTypes componentTypes) {
+        this.mask = mask;
+        this.componentTypes = componentTypes;
+        this.types = new Class<?>[Long.bitCount(mask)];
+        this.columnByTypeId = new int[ComponentTypes.MAX_TYPES];
+
+        int column = 0;
+        for (int id = 0; id < ComponentTypes.MAX_TYPES; id++) {
+            if ((mask & (1L << id)) != 0) {
+                types[column] = componentTypes.getType(id);
+                columnByTypeId[id] = column++;
+            } else {
+                columnByTypeId[id] = -1;
+            }
+        }
+    }
+
+    /**
+     * @param type component type
+     * @return index of column of given type or -1 if archetype doesn't
+     * contain it
+     */
+    int getColumnIndex(Class<?> type) {
+        int id = componentTypes.getId(type);
+        if (id < 0 || columnByTypeId[id] < 0) {
+            throw new IllegalArgumentException("Archetype doesn't contain " + type.getName());
+        }
+        return columnByTypeId[id];
+    }
+
+    int getColumnIndexById(int typeId) {
+        return columnByTypeId[typeId];
+    }
+
+    public long getMask() {
+        return mask;
+    }
+
+    public boolean contains(long requiredMask) {
+        return (mask & requiredMask) == requiredMask;
+    }
+
+    public Class<?>[] getTypes() {
+        return types;
+    }
+
+    public List<Chunk> getChunks() {
+        return chunks;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Appends entity, its components are left null.
+     *
+     * @return row of entity in archetype
+     */
+    int add(int entity) {
+        Chunk last = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+        if (last == null || last.isFull()) {
+            last = new Chunk(this);
+            chunks.add(last);
+        }
+        last.add(entity);
+        return size++;
+    }
+
+    Object get(int row, int column) {
+        return chunks.get(row / Chunk.CAPACITY).getColumn(column)[row % Chunk.CAPACITY];
+    }
+
+    void set(int row, int column, Object component) {
+        chunks.get(row / Chunk.CAPACITY).getColumn(column)[row % Chunk.CAPACITY] = component;
+    }
+
+    /**
+     * Removes entity at row by moving the last entity to its place.
+     *
+     * @return id of entity moved to row or -1 if removed entity was last
+     */
+    int remove(int row) {
+        int lastRow = size - 1;
+        Chunk lastChunk = chunks.get(lastRow / Chunk.CAPACITY);
+        int lastIndex = lastRow % Chunk.CAPACITY;
+        int moved = -1;
+
+        if (row != lastRow) {
+            Chunk chunk = chunks.get(row / Chunk.CAPACITY);
+            int index = row % Chunk.CAPACITY;
+            for (int c = 0; c < types.length; c++) {
+                chunk.getColumn(c)[index] = lastChunk.getColumn(c)[lastIndex];
+            }
+            moved = lastChunk.getEntity(lastIndex);
+            chunk.setEntity(index, moved);
+        }
+
+        lastChunk.removeLast();
+        if (lastChunk.size() == 0) {
+            chunks.remove(chunks.size() - 1);
+        }
+        size--;
+        return moved;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.ecs;
+
+import java.lang.reflect.Array;
+
+/**
+ * Fixed size block of entities of one {@link Archetype}. Every component
+ * type has its own array (column) of exact component class, entity at index
+ * <code>i</code> has its components at index <code>i</code> of every column.
+ *
+ * @author JiriSimecek
+ */
+public final class Chunk {
+
+    public static final int CAPACITY = 256;
+
+    private final Archetype archetype;
+    private final Object[][] columns;
+    private final int[] entities = new int[CAPACITY];
+    private int size;
+
+    Chunk(Archetype archetype) {
+        this.archetype = archetype;
+        Class<?>[] types = archetype.getTypes();
+        columns = new Object[types.length][];
+        for (int i = 0; i < types.length; i++) {
+            columns[i] = (Object[]) Array.newInstance(types[i], CAPACITY);
+        }
+    }
+
+    /**
+     * @param type component type of archetype of this chunk
+     * @return components of given type, valid from 0 to {@link #size()}
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T[] getColumn(Class<T> type) {
+        return (T[]) columns[archetype.getColumnIndex(type)];
+    }
+
+    Object[] getColumn(int column) {
+        return columns[column];
+    }
+
+    /**
+     * @param index index in chunk
+     * @return id of entity
+     */
+    public int getEntity(int index) {
+        return entities[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Archetype getArchetype() {
+        return archetype;
+    }
+
+    boolean isFull() {
+        return size == CAPACITY;
+    }
+
+    int add(int entity) {
+        entities[size] = entity;
+        return size++;
+    }
+
+    /**
+     * Removes last entity, clearing its components.
+     */
+    void removeLast() {
+        size--;
+        for (Object[] column : columns) {
+            column[size] = null;
+        }
+    }
+
+    void setEntity(int index, int entity) {
+        entities[index] = entity;
+    }
+}
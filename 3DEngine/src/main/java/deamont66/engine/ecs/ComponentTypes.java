@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.ecs;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns ids to component classes of one {@link EcsWorld}. Component type
+ * is the exact class of the component, subclasses are different types.
+ *
+ * @author JiriSimecek
+ */
+final class ComponentTypes {
+
+    static final int MAX_TYPES = 64;
+
+    private final Map<Class<?>, Integer> ids = new HashMap<>();
+    private final List<Class<?>> types = new ArrayList<>();
+
+    int getOrCreateId(Class<?> type) {
+        Integer id = ids.get(type);
+        if (id == null) {
+            if (types.size() == MAX_TYPES) {
+                throw new IllegalStateException("Too many component types, maximum is " + MAX_TYPES);
+            }
+            id = types.size();
+            ids.put(type, id);
+            types.add(type);
+        }
+        return id;
+    }
+
+    /**
+     * @return id of type or -1 if it was never used
+     */
+    int getId(Class<?> type) {
+        Integer id = ids.get(type);
+        return id != null ? id : -1;
+    }
+
+    Class<?> getType(int id) {
+        return types.get(id);
+    }
+
+    long getMask(Class<?>... types) {
+        long mask = 0;
+        for (Class<?> type : types) {
+            mask |= 1L << getOrCreateId(type);
+        }
+        return mask;
+    }
+}
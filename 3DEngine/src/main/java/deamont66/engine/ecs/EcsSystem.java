@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.ecs;
+
+import deamont66.engine.components.Camera;
+import deamont66.engine.rendering.Renderer;
+import deamont66.engine.rendering.Shader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Logic run over all entities having given component types. World calls the
+ * phase methods once for every chunk of every matching archetype, so the
+ * loop inside works with arrays of single component class.
+ *
+ * @author JiriSimecek
+ */
+public abstract class EcsSystem {
+
+    private final Class<?>[] required;
+    private final List<Archetype> archetypes = new ArrayList<>();
+    private EcsWorld world;
+    private long mask;
+    private int checkedArchetypes;
+
+    /**
+     * @param required component types entity must have to be processed
+     */
+    protected EcsSystem(Class<?>... required) {
+        this.required = required.clone();
+    }
+
+    void attach(EcsWorld world, long mask) {
+        if (this.world != null) {
+            throw new IllegalStateException("System is already added to a world");
+        }
+        this.world = world;
+        this.mask = mask;
+    }
+
+    /**
+     * @param all all archetypes of the world, new ones are only appended
+     * @return archetypes containing required types
+     */
+    List<Archetype> getArchetypes(List<Archetype> all) {
+        for (; checkedArchetypes < all.size(); checkedArchetypes++) {
+            Archetype archetype = all.get(checkedArchetypes);
+            if (archetype.contains(mask)) {
+                archetypes.add(archetype);
+            }
+        }
+        return archetypes;
+    }
+
+    Class<?>[] getRequired() {
+        return required;
+    }
+
+    public EcsWorld getWorld() {
+        return world;
+    }
+
+    public void processInput(Chunk chunk, float delta) {
+    }
+
+    public void update(Chunk chunk, float delta) {
+    }
+
+    public void render(Chunk chunk, Shader shader, Renderer renderer, Camera camera) {
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.ecs;
+
+import deamont66.engine.components.Camera;
+import deamont66.engine.components.EntityComponent;
+import deamont66.engine.core.CoreEngine;
+import deamont66.engine.core.Transform;
+import deamont66.engine.rendering.Renderer;
+import deamont66.engine.rendering.Shader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Entities stored by archetype, an opt-in alternative to {@link
+ * deamont66.engine.core.Entity} trees for large numbers of similar objects.
+ * Entity is just an int id, its components are any objects (at most one of
+ * every class) and logic lives in {@link EcsSystem}s.
+ *
+ * Classic {@link EntityComponent}s can be added too: entity gets a
+ * {@link Transform} component which they use as their transform, and every
+ * component class is run by its own {@link EntityComponentSystem}.
+ *
+ * Components can't be added or removed while systems are running.
+ *
+ * @author JiriSimecek
+ */
+public class EcsWorld {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final ComponentTypes componentTypes = new ComponentTypes();
+    private final Map<Long, Archetype> archetypesByMask = new HashMap<>();
+    private final List<Archetype> archetypes = new ArrayList<>();
+    private final List<EcsSystem> systems = new ArrayList<>();
+    private final Map<Class<?>, EntityComponentSystem<?>> adapters = new HashMap<>();
+
+    private Archetype[] entityArchetypes = new Archetype[INITIAL_CAPACITY];
+    private int[] entityRows = new int[INITIAL_CAPACITY];
+    private int[] freeIds = new int[INITIAL_CAPACITY];
+    private int freeCount;
+    private int nextId;
+    private int entityCount;
+
+    private boolean iterating;
+    private CoreEngine engine;
+
+    public EcsWorld() {
+        getArchetype(0);
+        addSystem(new TransformUpdateSystem());
+    }
+
+    /**
+     * @return id of new entity without components
+     */
+    public int createEntity() {
+        checkNotIterating();
+        int entity;
+        if (freeCount > 0) {
+            entity = freeIds[--freeCount];
+        } else {
+            entity = nextId++;
+            if (entity == entityArchetypes.length) {
+                Archetype[] newArchetypes = new Archetype[entity * 2];
+                System.arraycopy(entityArchetypes, 0, newArchetypes, 0, entity);
+                entityArchetypes = newArchetypes;
+                int[] newRows = new int[entity * 2];
+                System.arraycopy(entityRows, 0, newRows, 0, entity);
+                entityRows = newRows;
+            }
+        }
+
+        Archetype empty = getArchetype(0);
+        entityArchetypes[entity] = empty;
+        entityRows[entity] = empty.add(entity);
+        entityCount++;
+        return entity;
+    }
+
+    public int createEntity(Object... components) {
+        int entity = createEntity();
+        for (Object component : components) {
+            addComponent(entity, component);
+        }
+        return entity;
+    }
+
+    public void destroyEntity(int entity) {
+        checkAlive(entity);
+        checkNotIterating();
+        removeRow(entityArchetypes[entity], entityRows[entity]);
+        entityArchetypes[entity] = null;
+
+        if (freeCount == freeIds.length) {
+            int[] newFreeIds = new int[freeIds.length * 2];
+            System.arraycopy(freeIds, 0, newFreeIds, 0, freeCount);
+            freeIds = newFreeIds;
+        }
+        freeIds[freeCount++] = entity;
+        entityCount--;
+    }
+
+    public boolean isAlive(int entity) {
+        return entity >= 0 && entity < nextId && entityArchetypes[entity] != null;
+    }
+
+    /**
+     * Adds component to entity, replacing its component of the same class.
+     */
+    public void addComponent(int entity, Object component) {
+        checkAlive(entity);
+        checkNotIterating();
+
+        if (component instanceof EntityComponent) {
+            addEntityComponent(entity, (EntityComponent) component);
+            return;
+        }
+        putComponent(entity, component);
+    }
+
+    private void addEntityComponent(int entity, EntityComponent component) {
+        Transform transform = getComponent(entity, Transform.class);
+        if (transform == null) {
+            transform = new Transform();
+            putComponent(entity, transform);
+        }
+        component.setTransform(transform);
+        putComponent(entity, component);
+        getAdapter(component.getClass());
+
+        if (engine != null) {
+            component.addToEngine(engine);
+        }
+    }
+
+    private void putComponent(int entity, Object component) {
+        int typeId = componentTypes.getOrCreateId(component.getClass());
+        Archetype archetype = entityArchetypes[entity];
+        int column = archetype.getColumnIndexById(typeId);
+        if (column < 0) {
+            moveEntity(entity, archetype.getMask() | (1L << typeId));
+            archetype = entityArchetypes[entity];
+            column = archetype.getColumnIndexById(typeId);
+        }
+        archetype.set(entityRows[entity], column, component);
+    }
+
+    public void removeComponent(int entity, Class<?> type) {
+        checkAlive(entity);
+        checkNotIterating();
+        int typeId = componentTypes.getId(type);
+        Archetype archetype = entityArchetypes[entity];
+        if (typeId >= 0 && archetype.getColumnIndexById(typeId) >= 0) {
+            moveEntity(entity, archetype.getMask() & ~(1L << typeId));
+        }
+    }
+
+    /**
+     * @return component of given class or null if entity doesn't have it
+     */
+    public <T> T getComponent(int entity, Class<T> type) {
+        checkAlive(entity);
+        int typeId = componentTypes.getId(type);
+        Archetype archetype = entityArchetypes[entity];
+        int column = typeId >= 0 ? archetype.getColumnIndexById(typeId) : -1;
+        return column >= 0 ? type.cast(archetype.get(entityRows[entity], column)) : null;
+    }
+
+    public boolean hasComponent(int entity, Class<?> type) {
+        return getComponent(entity, type) != null;
+    }
+
+    private void moveEntity(int entity, long mask) {
+        Archetype from = entityArchetypes[entity];
+        int fromRow = entityRows[entity];
+        Archetype to = getArchetype(mask);
+        int toRow = to.add(entity);
+
+        for (Class<?> type : to.getTypes()) {
+            int typeId = componentTypes.getId(type);
+            int fromColumn = from.getColumnIndexById(typeId);
+            if (fromColumn >= 0) {
+                to.set(toRow, to.getColumnIndexById(typeId), from.get(fromRow, fromColumn));
+            }
+        }
+
+        removeRow(from, fromRow);
+        entityArchetypes[entity] = to;
+        entityRows[entity] = toRow;
+    }
+
+    private void removeRow(Archetype archetype, int row) {
+        int moved = archetype.remove(row);
+        if (moved >= 0) {
+            entityRows[moved] = row;
+        }
+    }
+
+    private Archetype getArchetype(long mask) {
+        Archetype archetype = archetypesByMask.get(mask);
+        if (archetype == null) {
+            archetype = new Archetype(mask, componentTypes);
+            archetypesByMask.put(mask, archetype);
+            archetypes.add(archetype);
+        }
+        return archetype;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private EntityComponentSystem<?> getAdapter(Class<? extends EntityComponent> type) {
+        EntityComponentSystem<?> adapter = adapters.get(type);
+        if (adapter == null) {
+            adapter = new EntityComponentSystem(type);
+            adapters.put(type, adapter);
+            addSystem(adapter);
+        }
+        return adapter;
+    }
+
+    /**
+     * Adds system, systems run in the order they were added.
+     */
+    public void addSystem(EcsSystem system) {
+        checkNotIterating();
+        system.attach(this, componentTypes.getMask(system.getRequired()));
+        systems.add(system);
+    }
+
+    public void processInput(float delta) {
+        iterating = true;
+        try {
+            for (int s = 0; s < systems.size(); s++) {
+                EcsSystem system = systems.get(s);
+                List<Archetype> matching = system.getArchetypes(archetypes);
+                for (int a = 0; a < matching.size(); a++) {
+                    List<Chunk> chunks = matching.get(a).getChunks();
+                    for (int c = 0; c < chunks.size(); c++) {
+                        system.processInput(chunks.get(c), delta);
+                    }
+                }
+            }
+        } finally {
+            iterating = false;
+        }
+    }
+
+    public void update(float delta) {
+        iterating = true;
+        try {
+            for (int s = 0; s < systems.size(); s++) {
+                EcsSystem system = systems.get(s);
+                List<Archetype> matching = system.getArchetypes(archetypes);
+                for (int a = 0; a < matching.size(); a++) {
+                    List<Chunk> chunks = matching.get(a).getChunks();
+                    for (int c = 0; c < chunks.size(); c++) {
+                        system.update(chunks.get(c), delta);
+                    }
+                }
+            }
+        } finally {
+            iterating = false;
+        }
+    }
+
+    public void render(Shader shader, Renderer renderer, Camera camera) {
+        iterating = true;
+        try {
+            for (int s = 0; s < systems.size(); s++) {
+                EcsSystem system = systems.get(s);
+                List<Archetype> matching = system.getArchetypes(archetypes);
+                for (int a = 0; a < matching.size(); a++) {
+                    List<Chunk> chunks = matching.get(a).getChunks();
+                    for (int c = 0; c < chunks.size(); c++) {
+                        system.render(chunks.get(c), shader, renderer, camera);
+                    }
+                }
+            }
+        } finally {
+            iterating = false;
+        }
+    }
+
+    /**
+     * Sets engine and adds all {@link EntityComponent}s to it.
+     */
+    public void setEngine(CoreEngine engine) {
+        if (this.engine != engine) {
+            this.engine = engine;
+            if (engine == null) {
+                return;
+            }
+            for (EntityComponentSystem<?> adapter : adapters.values()) {
+                List<Archetype> matching = adapter.getArchetypes(archetypes);
+                for (int a = 0; a < matching.size(); a++) {
+                    for (Chunk chunk : matching.get(a).getChunks()) {
+                        adapter.addToEngine(chunk, engine);
+                    }
+                }
+            }
+        }
+    }
+
+    public int getEntityCount() {
+        return entityCount;
+    }
+
+    public List<Archetype> getArchetypes() {
+        return archetypes;
+    }
+
+    private void checkAlive(int entity) {
+        if (!isAlive(entity)) {
+            throw new IllegalArgumentException("Entity " + entity + " doesn't exist");
+        }
+    }
+
+    private void checkNotIterating() {
+        if (iterating) {
+            throw new IllegalStateException("Entities and components can't be changed while systems are running");
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.ecs;
+
+import deamont66.engine.components.Camera;
+import deamont66.engine.components.EntityComponent;
+import deamont66.engine.core.CoreEngine;
+import deamont66.engine.rendering.Renderer;
+import deamont66.engine.rendering.Shader;
+
+/**
+ * Adapter running classic {@link EntityComponent}s of one class stored in
+ * {@link EcsWorld}. Created by the world automatically for every component
+ * class added to it.
+ *
+ * @author JiriSimecek
+ */
+public final class EntityComponentSystem<T extends EntityComponent> extends EcsSystem {
+
+    private final Class<T> type;
+
+    public EntityComponentSystem(Class<T> type) {
+        super(type);
+        this.type = type;
+    }
+
+    @Override
+    public void processInput(Chunk chunk, float delta) {
+        T[] components = chunk.getColumn(type);
+        for (int i = 0, size = chunk.size(); i < size; i++) {
+            components[i].processInput(delta);
+        }
+    }
+
+    @Override
+    public void update(Chunk chunk, float delta) {
+        T[] components = chunk.getColumn(type);
+        for (int i = 0, size = chunk.size(); i < size; i++) {
+            components[i].update(delta);
+        }
+    }
+
+    @Override
+    public void render(Chunk chunk, Shader shader, Renderer renderer, Camera camera) {
+        T[] components = chunk.getColumn(type);
+        for (int i = 0, size = chunk.size(); i < size; i++) {
+            components[i].render(shader, renderer, camera);
+        }
+    }
+
+    void addToEngine(Chunk chunk, CoreEngine engine) {
+        T[] components = chunk.getColumn(type);
+        for (int i = 0, size = chunk.size(); i < size; i++) {
+            components[i].addToEngine(engine);
+        }
+    }
+}
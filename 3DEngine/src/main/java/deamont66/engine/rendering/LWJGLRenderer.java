@@ -117,7 +117,14 @@ public class LWJGLRenderer extends Renderer {
     private final Shader    m_nullFilter;
     private final Shader    m_gausBlurFilter;
     private final Shader    m_fxaaFilter; 
-    private       Matrix4f  m_lightMatrix;
+    private final Matrix4f  m_lightMatrix           = new Matrix4f();
+    
+    // scratch objects reused every frame by render loop and filters
+    private final Matrix4f   m_identityProjection   = new Matrix4f().initIdentity();
+    private final Quaternion m_filterCameraRot      = new Quaternion(new Vector3f(0, 1, 0), (float) Math.toRadians(180.0f));
+    private final Vector3f   m_blurScale            = new Vector3f();
+    private final Vector3f   m_tempCameraPos        = new Vector3f();
+    private final Vector3f   m_tempLightPos         = new Vector3f();
     
 //    private Transform       m_altCameraTransform;
     private final Camera    m_altCamera;
@@ -189,7 +196,7 @@ public class LWJGLRenderer extends Renderer {
 		m_shadowMapTempTargets[i] = new Texture(shadowMapSize, shadowMapSize, null, GL_TEXTURE_2D, GL_LINEAR, GL_RG32F, GL_RGBA, true, GL_COLOR_ATTACHMENT0);
 	}
 	
-	m_lightMatrix = new Matrix4f().initScale(0,0,0);
+	m_lightMatrix.initScale(0,0,0);
     }
 
     @Override
@@ -198,10 +205,12 @@ public class LWJGLRenderer extends Renderer {
     }
 
     private void blurShadowMap(int shadowMapIndex, float blurAmount) {
-        setVector3f("blurScale", new Vector3f(blurAmount/(m_shadowMaps[shadowMapIndex].getWidth()), 0.0f, 0.0f));
+        m_blurScale.set(blurAmount/(m_shadowMaps[shadowMapIndex].getWidth()), 0.0f, 0.0f);
+        setVector3f("blurScale", m_blurScale);
 	applyFilter(m_gausBlurFilter, m_shadowMaps[shadowMapIndex], m_shadowMapTempTargets[shadowMapIndex]);
 	
-	setVector3f("blurScale", new Vector3f(0.0f, blurAmount/(m_shadowMaps[shadowMapIndex].getHeight()), 0.0f));
+        m_blurScale.set(0.0f, blurAmount/(m_shadowMaps[shadowMapIndex].getHeight()), 0.0f);
+	setVector3f("blurScale", m_blurScale);
 	applyFilter(m_gausBlurFilter, m_shadowMapTempTargets[shadowMapIndex], m_shadowMaps[shadowMapIndex]); 
     }
 
@@ -218,9 +227,9 @@ public class LWJGLRenderer extends Renderer {
 
         setTexture("filterTexture", source);
 
-        m_altCamera.setProjection(new Matrix4f().initIdentity());
-        m_altCamera.getTransform().setPos(new Vector3f(0, 0, 0));
-        m_altCamera.getTransform().setRot(new Quaternion(new Vector3f(0, 1, 0), (float) Math.toRadians(180.0f)));
+        m_altCamera.setProjection(m_identityProjection);
+        m_altCamera.getTransform().setPos(0, 0, 0);
+        m_altCamera.getTransform().setRot(m_filterCameraRot);
 
 //        Camera temp = mainCamera;
 //        mainCamera = altCamera;
@@ -252,7 +261,8 @@ public class LWJGLRenderer extends Renderer {
                     m_activeLight = light;
                                         
                     if (light instanceof PointLight) {
-                        Vector3f lightDirection = m_mainCamera.getTransform().getTransformedPos().sub(light.getTransform().getTransformedPos());
+                        Vector3f lightDirection = m_mainCamera.getTransform().getTransformedPos(m_tempCameraPos)
+                                .subLocal(light.getTransform().getTransformedPos(m_tempLightPos));
                         if (lightDirection.length() > RENDER_LIGHT_RANGE) {
                             continue;
                         }
@@ -275,10 +285,11 @@ public class LWJGLRenderer extends Renderer {
 
                     if(shadowInfo.getShadowMapSizeAsPowerOf2() != 0) {
                         m_altCamera.setProjection(shadowInfo.getProjection());
-                        m_altCamera.getTransform().setPos(m_activeLight.getTransform().getTransformedPos());
-                        m_altCamera.getTransform().setRot(m_activeLight.getTransform().getTransformedRot());
+                        m_activeLight.getTransform().getTransformedPos(m_altCamera.getTransform().getPos());
+                        m_activeLight.getTransform().getTransformedRot(m_altCamera.getTransform().getRot());
+                        m_altCamera.getTransform().markChanged();
 
-                        m_lightMatrix = biasMatrix.mul(m_altCamera.getViewProjection());
+                        biasMatrix.mul(m_altCamera.getViewProjection(m_lightMatrix), m_lightMatrix);
                         setFloat("shadowVarianceMin", shadowInfo.getMinVariance());
                         setFloat("shadowLightBleedingReduction", shadowInfo.getLightBleedReductionAmount());
 
@@ -300,7 +311,7 @@ public class LWJGLRenderer extends Renderer {
                             blurShadowMap(shadowMapIndex, shadowSoftness);
 			}
                     } else {
-                        m_lightMatrix = new Matrix4f().initScale(0,0,0);
+                        m_lightMatrix.initScale(0,0,0);
                         setFloat("shadowVarianceMin", 0.00002f);
                         setFloat("shadowLightBleedingReduction", 0.0f);
                     }   
@@ -353,6 +364,11 @@ public class LWJGLRenderer extends Renderer {
         m_lights.add(light);
     }
 
+    @Override
+    public void removeLight(BaseLight light) {
+        m_lights.remove(light);
+    }
+
     @Override
     public void clearLights() {
         m_lights.clear();
@@ -29,6 +29,7 @@
  */
 package deamont66.engine.rendering;
 
+import deamont66.engine.core.math.Bounds;
 import deamont66.engine.core.math.Vector3f;
 import deamont66.engine.rendering.meshLoading.IndexedModel;
 import deamont66.engine.rendering.meshLoading.NewOBJModel;
@@ -41,9 +42,14 @@ public class Mesh {
     private static final HashMap<String, MeshData> loadedModels = new HashMap<>();
     private MeshData resource;
     private String fileName;
+    private boolean loadedFromFile;
+    // geometry of meshes not loaded from file, kept only on request
+    private IndexedModel model;
+    private boolean disposed;
 
     public Mesh(String fileName) {
         this.fileName = fileName;
+        this.loadedFromFile = true;
         MeshData oldResource = loadedModels.get(fileName);
 
         if (oldResource != null) {
@@ -56,7 +62,20 @@ public class Mesh {
     }
 
     public Mesh(String meshName, IndexedModel model) {
+        this(meshName, model, false);
+    }
+
+    /**
+     * @param meshName name used to share data of meshes with same name
+     * @param model geometry of the mesh
+     * @param keepModel whether to keep <code>model</code> in main memory for
+     * {@link #getModel()} (e.g. for {@link StaticGeometryBaker})
+     */
+    public Mesh(String meshName, IndexedModel model, boolean keepModel) {
         this.fileName = meshName;
+        if (keepModel) {
+            this.model = model;
+        }
         MeshData oldResource = loadedModels.get(fileName);
         if (oldResource != null) {
             resource = oldResource;
@@ -79,11 +98,31 @@ public class Mesh {
 
     @Override
     protected void finalize() {
-        if (resource.removeReference() && !fileName.isEmpty()) {
+        if (!disposed && resource.removeReference() && !fileName.isEmpty()) {
             loadedModels.remove(fileName);
         }
     }
 
+    /**
+     * Releases this mesh right away instead of waiting for garbage
+     * collector. When it was the last mesh using its data, GPU buffers are
+     * deleted, so it has to be called on the rendering thread. Mesh can't be
+     * drawn afterwards.
+     */
+    public void dispose() {
+        if (disposed) {
+            return;
+        }
+        disposed = true;
+        model = null;
+        if (resource.removeReference()) {
+            if (fileName != null && loadedModels.get(fileName) == resource) {
+                loadedModels.remove(fileName);
+            }
+            resource.dispose();
+        }
+    }
+
     private void addVertices(Vertex[] vertices, int[] indices, boolean calcNormals) {
         if (calcNormals) {
             calcNormals(vertices, indices);
@@ -108,6 +147,34 @@ public class Mesh {
         resource.draw();
     }
 
+    /**
+     * Returns geometry of the mesh in main memory, meshes loaded from file
+     * are loaded again (so it's meant for load time tasks like baking).
+     *
+     * @return model of the mesh or null if it isn't {@link #hasModel()
+     * available}
+     */
+    public IndexedModel getModel() {
+        if (model != null) {
+            return model;
+        }
+        return loadedFromFile ? loadModel(fileName) : null;
+    }
+
+    /**
+     * @return true if mesh was loaded from file or keeps its model
+     */
+    public boolean hasModel() {
+        return model != null || loadedFromFile;
+    }
+
+    /**
+     * @return bounds of the mesh in model space
+     */
+    public Bounds getBounds() {
+        return resource.getBounds();
+    }
+
     private void calcNormals(Vertex[] vertices, int[] indices) {
         for (int i = 0; i < indices.length; i += 3) {
             int i0 = indices[i];
@@ -130,6 +197,19 @@ public class Mesh {
     }
 
     private Mesh loadMesh(String fileName) {
+        resource = new MeshData(loadModel(fileName));
+
+        return this;
+    }
+
+    /**
+     * Loads model from file and computes its normals and tangents. Doesn't
+     * touch OpenGL, so it may be called from any thread.
+     *
+     * @param fileName file name relative to models directory
+     * @return loaded model
+     */
+    public static IndexedModel loadModel(String fileName) {
         String[] splitArray = fileName.split("\\.");
         String ext = splitArray[splitArray.length - 1];
 
@@ -144,8 +224,6 @@ public class Mesh {
         model.calcNormals();
         model.calcTangents();
 
-        resource = new MeshData(model);
-
-        return this;
+        return model;
     }
 }
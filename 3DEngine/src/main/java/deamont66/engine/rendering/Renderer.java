@@ -50,6 +50,9 @@ public abstract class Renderer extends MappedValues {
 
     public void addLight(BaseLight light) {
     }
+
+    public void removeLight(BaseLight light) {
+    }
     
     public void clearLights() {
     }
@@ -35,10 +35,12 @@ import deamont66.engine.components.PointLight;
 import deamont66.engine.components.SpotLight;
 import deamont66.engine.core.*;
 import deamont66.engine.core.math.Matrix4f;
+import deamont66.engine.core.math.Quaternion;
 import deamont66.engine.core.math.Vector3f;
 import deamont66.engine.rendering.resourceManagement.ShaderData;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -49,9 +51,27 @@ public class Shader {
 
     private static final HashMap<String, ShaderData> loadedShaders = new HashMap<>();
 
+    private static final String[] DIRECTIONAL_LIGHT_MEMBERS = {".direction", ".base.color", ".base.intensity"};
+    private static final String[] POINT_LIGHT_MEMBERS = {".base.color", ".base.intensity", ".atten.constant",
+        ".atten.linear", ".atten.exponent", ".position", ".range"};
+    private static final String[] SPOT_LIGHT_MEMBERS = {".pointLight.base.color", ".pointLight.base.intensity",
+        ".pointLight.atten.constant", ".pointLight.atten.linear", ".pointLight.atten.exponent",
+        ".pointLight.position", ".pointLight.range", ".direction", ".cutoff"};
+
     private final ShaderData m_shaderData;
     private final String m_fileName;
 
+    // full struct member uniform names, built once per light uniform
+    private final HashMap<String, String[]> m_structMemberNames = new HashMap<>();
+
+    // scratch objects reused by updateUniforms, shader is only used from render thread
+    private final Matrix4f m_viewProjection = new Matrix4f();
+    private final Matrix4f m_projectedMatrix = new Matrix4f();
+    private final Matrix4f m_lightMatrix = new Matrix4f();
+    private final Vector3f m_tempVector = new Vector3f();
+    private final Quaternion m_tempRotation = new Quaternion();
+    private final FloatBuffer m_matrixBuffer = Util.createFloatBuffer(4 * 4);
+
     public Shader() {
         this("basicShader");
     }
@@ -88,18 +108,18 @@ public class Shader {
     }
 
     public void updateUniforms(Transform transform, Material material, Renderer renderer, Camera camera) {
-        Matrix4f worldMatrix = transform.getTransformation();
-        Matrix4f projectedMatrix = camera.getViewProjection().mul(worldMatrix);
+        Matrix4f worldMatrix = transform.getWorldMatrix();
+        Matrix4f projectedMatrix = camera.getViewProjection(m_viewProjection).mul(worldMatrix, m_projectedMatrix);
 
         for (int i = 0; i < m_shaderData.getUniformNames().size(); i++) {
             String uniformName = m_shaderData.getUniformNames().get(i);
             String uniformType = m_shaderData.getUniformTypes().get(i);
 
-            if (uniformName.substring(0, 2).equals("R_")) {
-                String unprefixedName = uniformName.substring(2, uniformName.length());
+            if (uniformName.startsWith("R_")) {
+                String unprefixedName = m_shaderData.getUnprefixedUniformNames().get(i);
 
                 if (unprefixedName.equals("lightMatrix")) {
-                    setUniformMatrix4f(uniformName, renderer.getLightMatrix().mul(worldMatrix));
+                    setUniformMatrix4f(uniformName, renderer.getLightMatrix().mul(worldMatrix, m_lightMatrix));
                 } else if (uniformType.equals("sampler2D")) {
                     int samplerSlot = renderer.getSamplerSlot(unprefixedName);
                     renderer.getTexture(unprefixedName).bind(samplerSlot);
@@ -121,7 +141,7 @@ public class Shader {
                 int samplerSlot = renderer.getSamplerSlot(uniformName);
                 material.getTexture(uniformName).bind(samplerSlot);
                 setUniformi(uniformName, samplerSlot);
-            } else if (uniformName.substring(0, 2).equals("T_")) {
+            } else if (uniformName.startsWith("T_")) {
                 if (uniformName.equals("T_MVP")) {
                     setUniformMatrix4f(uniformName, projectedMatrix);
                 } else if (uniformName.equals("T_model")) {
@@ -129,9 +149,9 @@ public class Shader {
                 } else {
                     throw new IllegalArgumentException("Invalid Transform Uniform: " + uniformName);
                 }
-            } else if (uniformName.substring(0, 2).equals("C_")) {
+            } else if (uniformName.startsWith("C_")) {
                 if (uniformName.equals("C_eyePos")) {
-                    setUniformVector3f(uniformName, camera.getTransform().getTransformedPos());
+                    setUniformVector3f(uniformName, camera.getTransform().getTransformedPos(m_tempVector));
                 } else {
                     throw new IllegalArgumentException("Invalid Camera Uniform: " + uniformName);
                 }
@@ -160,35 +180,50 @@ public class Shader {
     }
 
     public void setUniformMatrix4f(String uniformName, Matrix4f value) {
-        glUniformMatrix4(m_shaderData.getUniforms().get(uniformName), true, Util.createFlippedBuffer(value));
+        glUniformMatrix4(m_shaderData.getUniforms().get(uniformName), true, Util.fillFlippedBuffer(m_matrixBuffer, value));
+    }
+
+    private String[] getStructMemberNames(String uniformName, String[] members) {
+        String[] names = m_structMemberNames.get(uniformName);
+        if (names == null) {
+            names = new String[members.length];
+            for (int i = 0; i < members.length; i++) {
+                names[i] = uniformName + members[i];
+            }
+            m_structMemberNames.put(uniformName, names);
+        }
+        return names;
     }
 
     private void setUniformDirectionalLight(String uniformName, DirectionalLight directionalLight) {
-        setUniformVector3f(uniformName + ".direction", directionalLight.getTransform().getTransformedRot().getForward());
-        setUniformVector3f(uniformName + ".base.color", directionalLight.getColor());
-        setUniformf(uniformName + ".base.intensity", directionalLight.getIntensity());
+        String[] names = getStructMemberNames(uniformName, DIRECTIONAL_LIGHT_MEMBERS);
+        setUniformVector3f(names[0], directionalLight.getTransform().getTransformedRot(m_tempRotation).getForward(m_tempVector));
+        setUniformVector3f(names[1], directionalLight.getColor());
+        setUniformf(names[2], directionalLight.getIntensity());
     }
 
     private void setUniformPointLight(String uniformName, PointLight pointLight) {
-        setUniformVector3f(uniformName + ".base.color", pointLight.getColor());
-        setUniformf(uniformName + ".base.intensity", pointLight.getIntensity());
-        setUniformf(uniformName + ".atten.constant", pointLight.getAttenuation().getConstant());
-        setUniformf(uniformName + ".atten.linear", pointLight.getAttenuation().getLinear());
-        setUniformf(uniformName + ".atten.exponent", pointLight.getAttenuation().getExponent());
-        setUniformVector3f(uniformName + ".position", pointLight.getTransform().getTransformedPos());
-        setUniformf(uniformName + ".range", pointLight.getRange());
+        String[] names = getStructMemberNames(uniformName, POINT_LIGHT_MEMBERS);
+        setUniformVector3f(names[0], pointLight.getColor());
+        setUniformf(names[1], pointLight.getIntensity());
+        setUniformf(names[2], pointLight.getAttenuation().getConstant());
+        setUniformf(names[3], pointLight.getAttenuation().getLinear());
+        setUniformf(names[4], pointLight.getAttenuation().getExponent());
+        setUniformVector3f(names[5], pointLight.getTransform().getTransformedPos(m_tempVector));
+        setUniformf(names[6], pointLight.getRange());
     }
 
     private void setUniformSpotLight(String uniformName, SpotLight spotLight) {
-        setUniformVector3f(uniformName + ".pointLight.base.color", spotLight.getColor());
-        setUniformf(uniformName + ".pointLight.base.intensity", spotLight.getIntensity());
-        setUniformf(uniformName + ".pointLight.atten.constant", spotLight.getAttenuation().getConstant());
-        setUniformf(uniformName + ".pointLight.atten.linear", spotLight.getAttenuation().getLinear());
-        setUniformf(uniformName + ".pointLight.atten.exponent", spotLight.getAttenuation().getExponent());
-        setUniformVector3f(uniformName + ".pointLight.position", spotLight.getTransform().getTransformedPos());
-        setUniformf(uniformName + ".pointLight.range", spotLight.getRange());
-        setUniformVector3f(uniformName + ".direction", spotLight.getTransform().getTransformedRot().getForward());
-        setUniformf(uniformName + ".cutoff", spotLight.getCutoff());
+        String[] names = getStructMemberNames(uniformName, SPOT_LIGHT_MEMBERS);
+        setUniformVector3f(names[0], spotLight.getColor());
+        setUniformf(names[1], spotLight.getIntensity());
+        setUniformf(names[2], spotLight.getAttenuation().getConstant());
+        setUniformf(names[3], spotLight.getAttenuation().getLinear());
+        setUniformf(names[4], spotLight.getAttenuation().getExponent());
+        setUniformVector3f(names[5], spotLight.getTransform().getTransformedPos(m_tempVector));
+        setUniformf(names[6], spotLight.getRange());
+        setUniformVector3f(names[7], spotLight.getTransform().getTransformedRot(m_tempRotation).getForward(m_tempVector));
+        setUniformf(names[8], spotLight.getCutoff());
     }
 
 //--------------------------------------------------------------------------------
@@ -30,7 +30,11 @@
 package deamont66.engine.rendering;
 
 import deamont66.engine.core.Debug;
+import deamont66.engine.core.Transform;
+import deamont66.engine.core.math.Frustum;
 import deamont66.engine.core.math.Matrix4f;
+import deamont66.engine.core.math.Quaternion;
+import deamont66.engine.core.math.Vector3f;
 
 /**
  *
@@ -44,6 +48,11 @@ public class ShadowInfo {
     private float       m_shadowSoftness;
     private float       m_lightBleedReductionAmount;
     private float       m_minVariance;
+    
+    // scratch objects reused by calcFrustum
+    private final Matrix4f   m_lightView    = new Matrix4f();
+    private final Vector3f   m_lightPos     = new Vector3f();
+    private final Quaternion m_lightRot     = new Quaternion();
 
     public ShadowInfo() {
         this(new Matrix4f().initIdentity());
@@ -78,6 +87,21 @@ public class ShadowInfo {
         this.m_minVariance = minVariance;
     }
 
+    /**
+     * Extracts frustum of shadow map rendered from light with given
+     * transform, for culling shadow casters.
+     *
+     * @param lightTransform transform of the light
+     * @param dest frustum to store planes to
+     * @return dest
+     */
+    public Frustum calcFrustum(Transform lightTransform, Frustum dest) {
+        lightTransform.getTransformedPos(m_lightPos);
+        lightTransform.getTransformedRot(m_lightRot);
+        m_lightView.initTransformation(m_lightPos, m_lightRot).invertRigid(m_lightView);
+        return dest.set(m_projection.mul(m_lightView, m_lightView));
+    }
+
     public Matrix4f getProjection() {
         return m_projection;
     }
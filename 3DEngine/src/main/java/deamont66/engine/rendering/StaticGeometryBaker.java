@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.rendering;
+
+import deamont66.engine.components.EntityComponent;
+import deamont66.engine.components.MeshRenderer;
+import deamont66.engine.core.Entity;
+import deamont66.engine.core.EntityIterator;
+import deamont66.engine.core.Scene;
+import deamont66.engine.core.math.Bounds;
+import deamont66.engine.core.math.Matrix4f;
+import deamont66.engine.core.math.Vector2f;
+import deamont66.engine.core.math.Vector3f;
+import deamont66.engine.rendering.meshLoading.IndexedModel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges meshes of {@link Entity#isStatic() static} entities into few big
+ * meshes at load time. Every added {@link MeshRenderer} is transformed to
+ * world space and appended to the mesh of its material and of the grid cell
+ * containing center of its bounds, so baked chunks are still small enough to
+ * be culled. Added mesh renderers are removed from their entities, which
+ * keep everything else (e.g. physics). Meshes created from a model are baked
+ * only if they {@link Mesh#hasModel() keep it}.
+ *
+ * @author JiriSimecek
+ */
+public class StaticGeometryBaker {
+
+    public static final float DEFAULT_CELL_SIZE = 64;
+
+    private static int bakedCount;
+
+    private final float cellSize;
+    private final Map<Material, Map<Long, IndexedModel>> models = new IdentityHashMap<>();
+    private final Bounds worldBounds = new Bounds();
+    private final EntityIterator iterator = new EntityIterator();
+
+    public StaticGeometryBaker() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * @param cellSize size of grid cells, geometry of one material in one
+     * cell is merged together
+     */
+    public StaticGeometryBaker(float cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Adds mesh renderers of all static entities of the scene.
+     *
+     * @return number of added mesh renderers
+     */
+    public int add(Scene scene) {
+        int added = 0;
+        for (Entity entity : iterator.reset(scene, EntityIterator.Order.PRE_ORDER, MeshRenderer.class)) {
+            added += addStatic(entity);
+        }
+        return added;
+    }
+
+    /**
+     * Adds mesh renderers of all static entities in subtree of
+     * <code>root</code>.
+     *
+     * @return number of added mesh renderers
+     */
+    public int add(Entity root) {
+        int added = 0;
+        for (Entity entity : iterator.reset(root, EntityIterator.Order.PRE_ORDER, MeshRenderer.class)) {
+            added += addStatic(entity);
+        }
+        return added;
+    }
+
+    private int addStatic(Entity entity) {
+        if (!entity.isStatic()) {
+            return 0;
+        }
+
+        int added = 0;
+        for (int i = entity.getComponentCount() - 1; i >= 0; i--) {
+            EntityComponent component = entity.getComponent(i);
+            if (component instanceof MeshRenderer && ((MeshRenderer) component).getMesh().hasModel()) {
+                add((MeshRenderer) component);
+                entity.removeComponent(component);
+                added++;
+            }
+        }
+        return added;
+    }
+
+    private void add(MeshRenderer meshRenderer) {
+        Mesh mesh = meshRenderer.getMesh();
+        add(mesh.getModel(), mesh.getBounds(), meshRenderer.getTransform().getWorldMatrix(), meshRenderer.getMaterial());
+    }
+
+    /**
+     * Adds model placed by <code>world</code> matrix. Unlike the other
+     * methods (and {@link #bake()}) it doesn't need OpenGL, so models can be
+     * added on a loading thread.
+     *
+     * @param source model with texture coordinates, normals and tangents
+     * @param world transformation of the model
+     * @param material material to render the model with
+     */
+    public void add(IndexedModel source, Matrix4f world, Material material) {
+        add(source, source.calcBounds(), world, material);
+    }
+
+    private void add(IndexedModel source, Bounds bounds, Matrix4f world, Material material) {
+        if (!source.isValid()) {
+            throw new IllegalArgumentException("Mesh model has to have texture coordinates, normals and tangents for all vertices");
+        }
+
+        bounds.transform(world, worldBounds);
+        Vector3f center = worldBounds.getCenter();
+        long cell = cellKey((int) Math.floor(center.x / cellSize), (int) Math.floor(center.y / cellSize),
+                (int) Math.floor(center.z / cellSize));
+
+        Map<Long, IndexedModel> cells = models.get(material);
+        if (cells == null) {
+            cells = new HashMap<>();
+            models.put(material, cells);
+        }
+        IndexedModel dest = cells.get(cell);
+        if (dest == null) {
+            dest = new IndexedModel();
+            cells.put(cell, dest);
+        }
+        append(source, world, dest);
+    }
+
+    private static long cellKey(int x, int y, int z) {
+        return ((long) (x & 0x1FFFFF) << 42) | ((long) (y & 0x1FFFFF) << 21) | (z & 0x1FFFFF);
+    }
+
+    private static void append(IndexedModel source, Matrix4f m, IndexedModel dest) {
+        // cofactors of upper 3x3 transform normals (inverse transpose up to scale)
+        float c00 = m.m11 * m.m22 - m.m12 * m.m21;
+        float c01 = m.m12 * m.m20 - m.m10 * m.m22;
+        float c02 = m.m10 * m.m21 - m.m11 * m.m20;
+        float c10 = m.m02 * m.m21 - m.m01 * m.m22;
+        float c11 = m.m00 * m.m22 - m.m02 * m.m20;
+        float c12 = m.m01 * m.m20 - m.m00 * m.m21;
+        float c20 = m.m01 * m.m12 - m.m02 * m.m11;
+        float c21 = m.m02 * m.m10 - m.m00 * m.m12;
+        float c22 = m.m00 * m.m11 - m.m01 * m.m10;
+        float det = m.m00 * c00 + m.m01 * c01 + m.m02 * c02;
+        float sign = det < 0 ? -1 : 1;
+
+        int base = dest.getPositions().size();
+        List<Vector3f> positions = source.getPositions();
+        List<Vector2f> texCoords = source.getTexCoords();
+        List<Vector3f> normals = source.getNormals();
+        List<Vector3f> tangents = source.getTangents();
+        for (int i = 0; i < positions.size(); i++) {
+            Vector3f p = positions.get(i);
+            dest.addVertex(new Vector3f(m.m00 * p.x + m.m01 * p.y + m.m02 * p.z + m.m03,
+                    m.m10 * p.x + m.m11 * p.y + m.m12 * p.z + m.m13,
+                    m.m20 * p.x + m.m21 * p.y + m.m22 * p.z + m.m23));
+
+            Vector2f t = texCoords.get(i);
+            dest.addTexCoord(new Vector2f(t.getX(), t.getY()));
+
+            Vector3f n = normals.get(i);
+            dest.addNormal(new Vector3f(c00 * n.x + c01 * n.y + c02 * n.z,
+                    c10 * n.x + c11 * n.y + c12 * n.z,
+                    c20 * n.x + c21 * n.y + c22 * n.z).mulLocal(sign).normalizeLocal());
+
+            Vector3f tangent = tangents.get(i);
+            dest.addTangent(new Vector3f(m.m00 * tangent.x + m.m01 * tangent.y + m.m02 * tangent.z,
+                    m.m10 * tangent.x + m.m11 * tangent.y + m.m12 * tangent.z,
+                    m.m20 * tangent.x + m.m21 * tangent.y + m.m22 * tangent.z).normalizeLocal());
+        }
+
+        List<Integer> indices = source.getIndices();
+        for (int i = 0; i < indices.size(); i += 3) {
+            if (sign < 0) {
+                // mirroring flips winding
+                dest.addFace(base + indices.get(i), base + indices.get(i + 2), base + indices.get(i + 1));
+            } else {
+                dest.addFace(base + indices.get(i), base + indices.get(i + 1), base + indices.get(i + 2));
+            }
+        }
+    }
+
+    /**
+     * Creates meshes from everything added so far and clears the baker.
+     * Returned entities have identity transform and one mesh renderer each,
+     * add them where the original entities were rendered.
+     *
+     * @return baked entities, one per material and cell
+     */
+    public List<Entity> bake() {
+        List<Entity> result = new ArrayList<>();
+        for (Map.Entry<Material, Map<Long, IndexedModel>> materialCells : models.entrySet()) {
+            for (IndexedModel model : materialCells.getValue().values()) {
+                Entity chunk = new Entity();
+                chunk.setStatic(true);
+                chunk.addComponent(new MeshRenderer(new Mesh("baked#" + bakedCount++, model), materialCells.getKey()));
+                result.add(chunk);
+            }
+        }
+        models.clear();
+        return result;
+    }
+}
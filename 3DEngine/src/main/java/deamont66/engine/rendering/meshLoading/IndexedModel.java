@@ -29,6 +29,8 @@
  */
 package deamont66.engine.rendering.meshLoading;
 
+import deamont66.engine.core.math.BatchMath;
+import deamont66.engine.core.math.Bounds;
 import deamont66.engine.core.math.Vector2f;
 import deamont66.engine.core.math.Vector3f;
 
@@ -51,63 +53,60 @@ public class IndexedModel {
     }
 
     public void calcNormals() {
+        float[] result = new float[positions.size() * 3];
+        BatchMath.accumulateNormals(packPositions(), packIndices(), indices.size(), result);
+        BatchMath.normalize(result, positions.size());
+
         normals.clear();
-        for (Vector3f vector3f : positions) {
-            normals.add(new Vector3f());
+        unpack(result, normals);
+    }
+
+    public void calcTangents() {
+        float[] packedTexCoords = new float[texCoords.size() * 2];
+        for (int i = 0; i < texCoords.size(); i++) {
+            packedTexCoords[i * 2] = texCoords.get(i).getX();
+            packedTexCoords[i * 2 + 1] = texCoords.get(i).getY();
         }
-        for (int i = 0; i < indices.size(); i += 3) {
-            int i0 = indices.get(i);
-            int i1 = indices.get(i + 1);
-            int i2 = indices.get(i + 2);
 
-            Vector3f v1 = positions.get(i1).sub(positions.get(i0));
-            Vector3f v2 = positions.get(i2).sub(positions.get(i0));
+        float[] result = new float[positions.size() * 3];
+        BatchMath.accumulateTangents(packPositions(), packedTexCoords, packIndices(), indices.size(), result);
+        BatchMath.normalize(result, positions.size());
 
-            Vector3f normal = v1.cross(v2).normalized();
+        tangents.clear();
+        unpack(result, tangents);
+    }
 
-            normals.get(i0).set(normals.get(i0).add(normal));
-            normals.get(i1).set(normals.get(i1).add(normal));
-            normals.get(i2).set(normals.get(i2).add(normal));
-        }
+    /**
+     * Computes bounding box and sphere of all positions.
+     *
+     * @return new bounds
+     */
+    public Bounds calcBounds() {
+        return new Bounds().set(packPositions(), positions.size());
+    }
 
-        for (int i = 0; i < normals.size(); i++) {
-            normals.get(i).set(normals.get(i).normalized());
+    private float[] packPositions() {
+        float[] result = new float[positions.size() * 3];
+        for (int i = 0; i < positions.size(); i++) {
+            Vector3f position = positions.get(i);
+            result[i * 3] = position.getX();
+            result[i * 3 + 1] = position.getY();
+            result[i * 3 + 2] = position.getZ();
         }
+        return result;
     }
 
-    public void calcTangents() {
-        tangents.clear();
-        for (Vector3f vector3f : positions) {
-            tangents.add(new Vector3f());
-        }
-        for (int i = 0; i < indices.size(); i += 3) {
-            int i0 = indices.get(i);
-            int i1 = indices.get(i + 1);
-            int i2 = indices.get(i + 2);
-
-            Vector3f edge1 = positions.get(i1).sub(positions.get(i0));
-            Vector3f edge2 = positions.get(i2).sub(positions.get(i0));
-
-            float deltaU1 = texCoords.get(i1).getX() - texCoords.get(i0).getX();
-            float deltaV1 = texCoords.get(i1).getY() - texCoords.get(i0).getY();
-            float deltaU2 = texCoords.get(i2).getX() - texCoords.get(i0).getX();
-            float deltaV2 = texCoords.get(i2).getY() - texCoords.get(i0).getY();
-
-            float dividend = (deltaU1 * deltaV2 - deltaU2 * deltaV1);
-            float f = dividend == 0 ? 0.0f : 1.0f / dividend;
-
-            Vector3f tangent = new Vector3f(0, 0, 0);
-            tangent.setX(f * (deltaV2 * edge1.getX() - deltaV1 * edge2.getX()));
-            tangent.setY(f * (deltaV2 * edge1.getY() - deltaV1 * edge2.getY()));
-            tangent.setZ(f * (deltaV2 * edge1.getZ() - deltaV1 * edge2.getZ()));
-
-            tangents.get(i0).set(tangents.get(i0).add(tangent));
-            tangents.get(i1).set(tangents.get(i1).add(tangent));
-            tangents.get(i2).set(tangents.get(i2).add(tangent));
+    private int[] packIndices() {
+        int[] result = new int[indices.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = indices.get(i);
         }
+        return result;
+    }
 
-        for (int i = 0; i < tangents.size(); i++) {
-            tangents.get(i).set(tangents.get(i).normalized());
+    private static void unpack(float[] packed, ArrayList<Vector3f> dest) {
+        for (int i = 0; i < packed.length; i += 3) {
+            dest.add(new Vector3f(packed[i], packed[i + 1], packed[i + 2]));
         }
     }
 
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.rendering.meshLoading;
+
+import deamont66.engine.rendering.Mesh;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Levels of detail of a model, level 0 is the original model and every next
+ * level is simplified by {@link MeshSimplifier}. Levels which couldn't be
+ * simplified below the previous level are dropped, so triangle count always
+ * decreases.
+ *
+ * @author JiriSimecek
+ */
+public class LodChain {
+
+    /** Fractions of original triangle count of default chain. */
+    public static final float[] DEFAULT_RATIOS = {1f, 0.5f, 0.2f, 0.08f, 0.03f};
+
+    private static final HashMap<String, LodChain> loadedChains = new HashMap<>();
+
+    private final IndexedModel[] levels;
+    private final int[] triangleCounts;
+
+    /**
+     * @param model original model
+     * @param ratios fractions of original triangle count of every level
+     * (first is the original and is ignored), decreasing
+     */
+    public LodChain(IndexedModel model, float[] ratios) {
+        int originalTriangles = model.getIndices().size() / 3;
+        ArrayList<IndexedModel> result = new ArrayList<>();
+        result.add(model);
+
+        IndexedModel previous = model;
+        for (int i = 1; i < ratios.length; i++) {
+            // previous level is smaller, so whole chain costs little more
+            // than its first level
+            int target = Math.round(originalTriangles * ratios[i]);
+            IndexedModel level = MeshSimplifier.simplify(previous, target);
+            if (level.getIndices().size() >= previous.getIndices().size()) {
+                break;
+            }
+            result.add(level);
+            previous = level;
+        }
+
+        levels = result.toArray(new IndexedModel[result.size()]);
+        triangleCounts = new int[levels.length];
+        for (int i = 0; i < levels.length; i++) {
+            triangleCounts[i] = levels[i].getIndices().size() / 3;
+        }
+    }
+
+    /**
+     * Returns default chain of model loaded from file. Chains are cached by
+     * file name, so every model is simplified only once.
+     *
+     * @param fileName file name relative to models directory
+     * @return lod chain of the model
+     */
+    public static synchronized LodChain load(String fileName) {
+        LodChain chain = loadedChains.get(fileName);
+        if (chain == null) {
+            chain = new LodChain(Mesh.loadModel(fileName), DEFAULT_RATIOS);
+            loadedChains.put(fileName, chain);
+        }
+        return chain;
+    }
+
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+    public IndexedModel getLevel(int level) {
+        return levels[level];
+    }
+
+    public int getTriangleCount(int level) {
+        return triangleCounts[level];
+    }
+}
@@ -0,0 +1,539 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.rendering.meshLoading;
+
+import deamont66.engine.core.math.Vector3f;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+/**
+ * Quadric error metric mesh simplification (Garland and Heckbert). Edges are
+ * collapsed cheapest first until target triangle count is reached. Collapse
+ * moves one end of the edge to the other one (half edge collapse), so no new
+ * positions are invented and vertex attributes stay valid. Vertices sharing
+ * position (texture seams) are welded and move together, border edges are
+ * held in place by extra quadrics and collapses which would flip triangles
+ * are rejected.
+ *
+ * Meant for load time, it allocates freely.
+ *
+ * @author JiriSimecek
+ */
+public final class MeshSimplifier {
+
+    // weight of planes perpendicular to border edges relative to face planes
+    private static final double BORDER_WEIGHT = 100;
+    // collapse may turn face normal by at most ~78 degrees
+    private static final double MIN_NORMAL_DOT = 0.2;
+    // closed mesh can't get smaller than tetrahedron
+    private static final int MIN_TRIANGLES = 4;
+
+    private final IndexedModel model;
+    private final int vertexCount;
+    private final int[] triangles;
+    private final boolean[] removed;
+    private int liveTriangles;
+
+    // welded positions ("clusters")
+    private final int[] clusterOf;
+    private final float[] positions;
+    private final double[] quadrics;
+    private final int[] parent;
+    private final boolean[] border;
+    private final int[] stamp;
+    // the only vertex of cluster, -1 if cluster has more vertices (seam)
+    private final int[] single;
+    // vertex replaced by vertex of the cluster it was collapsed into
+    private final int[] remap;
+    private int[][] adjacent;
+    private int[] adjacentCount;
+    // neighbours already pushed by current pushEdges call
+    private final int[] visited;
+    private int visitToken;
+
+    private final PriorityQueue<Collapse> queue = new PriorityQueue<>();
+
+    private MeshSimplifier(IndexedModel model) {
+        this.model = model;
+        vertexCount = model.getPositions().size();
+        triangles = new int[model.getIndices().size() / 3 * 3];
+        for (int i = 0; i < triangles.length; i++) {
+            triangles[i] = model.getIndices().get(i);
+        }
+        removed = new boolean[triangles.length / 3];
+
+        clusterOf = new int[vertexCount];
+        HashMap<Vector3f, Integer> welded = new HashMap<>();
+        for (int v = 0; v < vertexCount; v++) {
+            Vector3f position = model.getPositions().get(v);
+            Integer cluster = welded.get(position);
+            if (cluster == null) {
+                cluster = welded.size();
+                welded.put(position, cluster);
+            }
+            clusterOf[v] = cluster;
+        }
+
+        int clusterCount = welded.size();
+        positions = new float[clusterCount * 3];
+        quadrics = new double[clusterCount * 10];
+        parent = new int[clusterCount];
+        border = new boolean[clusterCount];
+        stamp = new int[clusterCount];
+        single = new int[clusterCount];
+        remap = new int[vertexCount];
+        adjacent = new int[clusterCount][];
+        adjacentCount = new int[clusterCount];
+        visited = new int[clusterCount];
+
+        Arrays.fill(single, -2);
+        for (int v = 0; v < vertexCount; v++) {
+            int c = clusterOf[v];
+            Vector3f position = model.getPositions().get(v);
+            positions[c * 3] = position.x;
+            positions[c * 3 + 1] = position.y;
+            positions[c * 3 + 2] = position.z;
+            single[c] = single[c] == -2 ? v : -1;
+            remap[v] = v;
+        }
+        for (int c = 0; c < clusterCount; c++) {
+            parent[c] = c;
+            adjacent[c] = new int[8];
+        }
+    }
+
+    /**
+     * @param model model with positions and indices, other attributes are
+     * copied when they are complete
+     * @param ratio wanted fraction of triangles, 0 - 1
+     * @return new simplified model
+     */
+    public static IndexedModel simplify(IndexedModel model, float ratio) {
+        return simplify(model, Math.round(model.getIndices().size() / 3 * ratio));
+    }
+
+    /**
+     * Simplifies model to at most <code>targetTriangles</code> triangles, or
+     * as close as possible when no more edges can be collapsed without
+     * breaking the surface.
+     *
+     * @return new simplified model
+     */
+    public static IndexedModel simplify(IndexedModel model, int targetTriangles) {
+        MeshSimplifier simplifier = new MeshSimplifier(model);
+        simplifier.initialize();
+        simplifier.collapseTo(targetTriangles);
+        return simplifier.toIndexedModel();
+    }
+
+    private void initialize() {
+        HashMap<Long, Integer> edgeFaces = new HashMap<>();
+        double[] plane = new double[4];
+
+        for (int t = 0; t < removed.length; t++) {
+            int c0 = clusterOf[triangles[t * 3]];
+            int c1 = clusterOf[triangles[t * 3 + 1]];
+            int c2 = clusterOf[triangles[t * 3 + 2]];
+            if (c0 == c1 || c1 == c2 || c2 == c0) {
+                removed[t] = true;
+                continue;
+            }
+            liveTriangles++;
+            addAdjacent(c0, t);
+            addAdjacent(c1, t);
+            addAdjacent(c2, t);
+
+            // area weighted plane of the face
+            double area = facePlane(c0, c1, c2, plane) * 0.5;
+            addPlane(c0, plane, area);
+            addPlane(c1, plane, area);
+            addPlane(c2, plane, area);
+
+            countEdge(edgeFaces, c0, c1, t);
+            countEdge(edgeFaces, c1, c2, t);
+            countEdge(edgeFaces, c2, c0, t);
+        }
+
+        for (Long edge : edgeFaces.keySet()) {
+            int faces = edgeFaces.get(edge);
+            if (faces >= 0) {
+                // second face found, not a border
+                continue;
+            }
+            int t = -faces - 1;
+            int a = (int) (edge >>> 32);
+            int b = (int) (long) edge;
+            addBorderPlane(a, b, t);
+        }
+
+        for (int c = 0; c < parent.length; c++) {
+            pushEdges(c, false);
+        }
+    }
+
+    private static void countEdge(HashMap<Long, Integer> edgeFaces, int a, int b, int t) {
+        long key = a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+        // -(t + 1) while edge has one face, then its count
+        Integer faces = edgeFaces.get(key);
+        edgeFaces.put(key, faces == null ? -(t + 1) : faces < 0 ? 2 : faces + 1);
+    }
+
+    private void addBorderPlane(int a, int b, int t) {
+        double[] face = new double[4];
+        int c0 = clusterOf[triangles[t * 3]];
+        int c1 = clusterOf[triangles[t * 3 + 1]];
+        int c2 = clusterOf[triangles[t * 3 + 2]];
+        facePlane(c0, c1, c2, face);
+
+        double ex = positions[b * 3] - positions[a * 3];
+        double ey = positions[b * 3 + 1] - positions[a * 3 + 1];
+        double ez = positions[b * 3 + 2] - positions[a * 3 + 2];
+        double lengthSquared = ex * ex + ey * ey + ez * ez;
+
+        // plane containing the edge, perpendicular to the face
+        double nx = ey * face[2] - ez * face[1];
+        double ny = ez * face[0] - ex * face[2];
+        double nz = ex * face[1] - ey * face[0];
+        double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (length > 0) {
+            double[] plane = {nx / length, ny / length, nz / length, 0};
+            plane[3] = -(plane[0] * positions[a * 3] + plane[1] * positions[a * 3 + 1] + plane[2] * positions[a * 3 + 2]);
+            addPlane(a, plane, BORDER_WEIGHT * lengthSquared);
+            addPlane(b, plane, BORDER_WEIGHT * lengthSquared);
+        }
+        border[a] = true;
+        border[b] = true;
+    }
+
+    /**
+     * Stores unit plane of triangle to dest.
+     *
+     * @return twice the area of triangle
+     */
+    private double facePlane(int c0, int c1, int c2, double[] dest) {
+        double x0 = positions[c0 * 3], y0 = positions[c0 * 3 + 1], z0 = positions[c0 * 3 + 2];
+        double ux = positions[c1 * 3] - x0, uy = positions[c1 * 3 + 1] - y0, uz = positions[c1 * 3 + 2] - z0;
+        double vx = positions[c2 * 3] - x0, vy = positions[c2 * 3 + 1] - y0, vz = positions[c2 * 3 + 2] - z0;
+        double nx = uy * vz - uz * vy;
+        double ny = uz * vx - ux * vz;
+        double nz = ux * vy - uy * vx;
+        double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (length == 0) {
+            Arrays.fill(dest, 0);
+            return 0;
+        }
+        dest[0] = nx / length;
+        dest[1] = ny / length;
+        dest[2] = nz / length;
+        dest[3] = -(dest[0] * x0 + dest[1] * y0 + dest[2] * z0);
+        return length;
+    }
+
+    private void addPlane(int c, double[] p, double weight) {
+        int q = c * 10;
+        quadrics[q] += weight * p[0] * p[0];
+        quadrics[q + 1] += weight * p[0] * p[1];
+        quadrics[q + 2] += weight * p[0] * p[2];
+        quadrics[q + 3] += weight * p[0] * p[3];
+        quadrics[q + 4] += weight * p[1] * p[1];
+        quadrics[q + 5] += weight * p[1] * p[2];
+        quadrics[q + 6] += weight * p[1] * p[3];
+        quadrics[q + 7] += weight * p[2] * p[2];
+        quadrics[q + 8] += weight * p[2] * p[3];
+        quadrics[q + 9] += weight * p[3] * p[3];
+    }
+
+    private void addAdjacent(int c, int t) {
+        if (adjacentCount[c] == adjacent[c].length) {
+            adjacent[c] = Arrays.copyOf(adjacent[c], adjacentCount[c] * 2);
+        }
+        adjacent[c][adjacentCount[c]++] = t;
+    }
+
+    private int find(int c) {
+        int root = c;
+        while (parent[root] != root) {
+            root = parent[root];
+        }
+        while (parent[c] != root) {
+            int next = parent[c];
+            parent[c] = root;
+            c = next;
+        }
+        return root;
+    }
+
+    private int corner(int t, int k) {
+        return find(clusterOf[triangles[t * 3 + k]]);
+    }
+
+    /**
+     * Pushes collapses of cluster to all its neighbours and, when
+     * <code>both</code> is set, of all neighbours to it.
+     */
+    private void pushEdges(int c, boolean both) {
+        visitToken++;
+        for (int i = 0; i < adjacentCount[c]; i++) {
+            int t = adjacent[c][i];
+            if (removed[t]) {
+                continue;
+            }
+            for (int k = 0; k < 3; k++) {
+                int n = corner(t, k);
+                if (n != c && visited[n] != visitToken) {
+                    visited[n] = visitToken;
+                    push(c, n);
+                    if (both) {
+                        push(n, c);
+                    }
+                }
+            }
+        }
+    }
+
+    private void push(int from, int to) {
+        if (border[from] && !border[to]) {
+            // border vertex would be pulled inside
+            return;
+        }
+        queue.add(new Collapse(from, to, stamp[from], stamp[to], cost(from, to)));
+    }
+
+    /**
+     * @return error of (Q_from + Q_to) at position of <code>to</code>
+     */
+    private double cost(int from, int to) {
+        double x = positions[to * 3], y = positions[to * 3 + 1], z = positions[to * 3 + 2];
+        int a = from * 10, b = to * 10;
+        double q0 = quadrics[a] + quadrics[b], q1 = quadrics[a + 1] + quadrics[b + 1];
+        double q2 = quadrics[a + 2] + quadrics[b + 2], q3 = quadrics[a + 3] + quadrics[b + 3];
+        double q4 = quadrics[a + 4] + quadrics[b + 4], q5 = quadrics[a + 5] + quadrics[b + 5];
+        double q6 = quadrics[a + 6] + quadrics[b + 6], q7 = quadrics[a + 7] + quadrics[b + 7];
+        double q8 = quadrics[a + 8] + quadrics[b + 8], q9 = quadrics[a + 9] + quadrics[b + 9];
+        return q0 * x * x + 2 * q1 * x * y + 2 * q2 * x * z + 2 * q3 * x
+                + q4 * y * y + 2 * q5 * y * z + 2 * q6 * y
+                + q7 * z * z + 2 * q8 * z + q9;
+    }
+
+    private void collapseTo(int targetTriangles) {
+        while (liveTriangles > targetTriangles && !queue.isEmpty()) {
+            Collapse collapse = queue.poll();
+            int a = collapse.from, b = collapse.to;
+            if (parent[a] != a || parent[b] != b
+                    || stamp[a] != collapse.fromStamp || stamp[b] != collapse.toStamp) {
+                continue;
+            }
+            if (!isValid(a, b)) {
+                continue;
+            }
+            collapse(a, b);
+        }
+    }
+
+    /**
+     * Checks that moving <code>a</code> to <code>b</code> keeps the surface
+     * manifold (link condition: the only common neighbours of
+     * <code>a</code> and <code>b</code> are the opposite corners of their
+     * shared faces) and doesn't flip or degenerate any remaining face of
+     * <code>a</code>.
+     */
+    private boolean isValid(int a, int b) {
+        int neighbourOfA = ++visitToken;
+        int shared = 0;
+        for (int i = 0; i < adjacentCount[a]; i++) {
+            int t = adjacent[a][i];
+            if (removed[t]) {
+                continue;
+            }
+            for (int k = 0; k < 3; k++) {
+                int n = corner(t, k);
+                visited[n] = neighbourOfA;
+                if (n == b) {
+                    shared++;
+                }
+            }
+        }
+        if (liveTriangles - shared < MIN_TRIANGLES) {
+            return false;
+        }
+
+        int counted = ++visitToken;
+        int common = 0;
+        for (int i = 0; i < adjacentCount[b]; i++) {
+            int t = adjacent[b][i];
+            if (removed[t]) {
+                continue;
+            }
+            for (int k = 0; k < 3; k++) {
+                int n = corner(t, k);
+                if (n != a && n != b && visited[n] == neighbourOfA) {
+                    visited[n] = counted;
+                    common++;
+                }
+            }
+        }
+        if (common > shared) {
+            return false;
+        }
+
+        double[] before = new double[4];
+        double[] after = new double[4];
+        for (int i = 0; i < adjacentCount[a]; i++) {
+            int t = adjacent[a][i];
+            if (removed[t]) {
+                continue;
+            }
+            int c0 = corner(t, 0), c1 = corner(t, 1), c2 = corner(t, 2);
+            if (c0 == b || c1 == b || c2 == b) {
+                // face will be removed
+                continue;
+            }
+            facePlane(c0, c1, c2, before);
+            if (facePlane(c0 == a ? b : c0, c1 == a ? b : c1, c2 == a ? b : c2, after) == 0) {
+                return false;
+            }
+            if (before[0] * after[0] + before[1] * after[1] + before[2] * after[2] < MIN_NORMAL_DOT) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void collapse(int a, int b) {
+        parent[a] = b;
+        for (int i = 0; i < 10; i++) {
+            quadrics[b * 10 + i] += quadrics[a * 10 + i];
+        }
+        border[b] |= border[a];
+
+        if (single[a] >= 0 && single[b] >= 0) {
+            // no seam, vertex of a takes attributes of vertex of b
+            remap[single[a]] = single[b];
+        } else {
+            // seam vertices keep their attributes and only move
+            single[b] = -1;
+        }
+
+        for (int i = 0; i < adjacentCount[a]; i++) {
+            int t = adjacent[a][i];
+            if (removed[t]) {
+                continue;
+            }
+            if (corner(t, 0) == corner(t, 1) || corner(t, 1) == corner(t, 2) || corner(t, 2) == corner(t, 0)) {
+                removed[t] = true;
+                liveTriangles--;
+            } else {
+                addAdjacent(b, t);
+            }
+        }
+        adjacent[a] = null;
+        adjacentCount[a] = 0;
+        compactAdjacent(b);
+
+        stamp[b]++;
+        pushEdges(b, true);
+    }
+
+    private void compactAdjacent(int c) {
+        int count = 0;
+        for (int i = 0; i < adjacentCount[c]; i++) {
+            if (!removed[adjacent[c][i]]) {
+                adjacent[c][count++] = adjacent[c][i];
+            }
+        }
+        adjacentCount[c] = count;
+    }
+
+    private int resolve(int v) {
+        while (remap[v] != v) {
+            v = remap[v];
+        }
+        return v;
+    }
+
+    private IndexedModel toIndexedModel() {
+        IndexedModel result = new IndexedModel();
+        boolean texCoords = model.getTexCoords().size() == vertexCount;
+        boolean normals = model.getNormals().size() == vertexCount;
+        boolean tangents = model.getTangents().size() == vertexCount;
+
+        int[] newIndex = new int[vertexCount];
+        Arrays.fill(newIndex, -1);
+        int[] face = new int[3];
+        for (int t = 0; t < removed.length; t++) {
+            if (removed[t]) {
+                continue;
+            }
+            for (int k = 0; k < 3; k++) {
+                int v = resolve(triangles[t * 3 + k]);
+                if (newIndex[v] < 0) {
+                    newIndex[v] = result.getPositions().size();
+                    int c = find(clusterOf[v]);
+                    result.addVertex(new Vector3f(positions[c * 3], positions[c * 3 + 1], positions[c * 3 + 2]));
+                    if (texCoords) {
+                        result.addTexCoord(model.getTexCoords().get(v));
+                    }
+                    if (normals) {
+                        result.addNormal(model.getNormals().get(v));
+                    }
+                    if (tangents) {
+                        result.addTangent(model.getTangents().get(v));
+                    }
+                }
+                face[k] = newIndex[v];
+            }
+            result.addFace(face[0], face[1], face[2]);
+        }
+        return result;
+    }
+
+    private static final class Collapse implements Comparable<Collapse> {
+
+        final int from;
+        final int to;
+        final int fromStamp;
+        final int toStamp;
+        final double cost;
+
+        Collapse(int from, int to, int fromStamp, int toStamp, double cost) {
+            this.from = from;
+            this.to = to;
+            this.fromStamp = fromStamp;
+            this.toStamp = toStamp;
+            this.cost = cost;
+        }
+
+        @Override
+        public int compareTo(Collapse r) {
+            return Double.compare(cost, r.cost);
+        }
+    }
+}
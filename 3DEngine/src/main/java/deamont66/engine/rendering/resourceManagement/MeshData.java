@@ -31,6 +31,7 @@
 package deamont66.engine.rendering.resourceManagement;
 
 import deamont66.engine.core.Util;
+import deamont66.engine.core.math.Bounds;
 import deamont66.engine.core.math.Vector2f;
 import deamont66.engine.core.math.Vector3f;
 import deamont66.engine.rendering.meshLoading.IndexedModel;
@@ -52,6 +53,8 @@ public class MeshData extends ReferenceCounter
         private final int vertexArrayObject;
         private final int[] vertexArrayBuffers;
 	private final int size;
+        private final Bounds bounds;
+        private boolean deleted;
 	
 
 	public MeshData(IndexedModel model)
@@ -94,11 +97,26 @@ public class MeshData extends ReferenceCounter
                 glBufferData(GL_ELEMENT_ARRAY_BUFFER, Util.createFlippedBuffer(Util.toIntArray(model.getIndices().toArray(new Integer[model.getIndices().size()]))), GL_STATIC_DRAW);
                 
 		this.size = model.getIndices().size();
+                this.bounds = model.calcBounds();
 	}
 
 	@Override
 	protected void finalize() 
 	{
+                dispose();
+	}
+
+        /**
+         * Deletes GPU buffers of the mesh, called by
+         * {@link deamont66.engine.rendering.Mesh#dispose()} on rendering
+         * thread.
+         */
+        public void dispose()
+        {
+                if (deleted) {
+                        return;
+                }
+                deleted = true;
                 glDeleteBuffers(vertexArrayBuffers[POSITION_VB]);
                 glDeleteBuffers(vertexArrayBuffers[TEXCOORD_VB]);
                 glDeleteBuffers(vertexArrayBuffers[NORMAL_VB]);
@@ -111,6 +129,14 @@ public class MeshData extends ReferenceCounter
 		return size;
 	}
 
+        /**
+         * @return bounds of the mesh in model space, computed when mesh was
+         * loaded
+         */
+        public Bounds getBounds() {
+                return bounds;
+        }
+
         public void draw() {
                 glBindVertexArray(vertexArrayObject);
 		glDrawElements(GL_TRIANGLES, size, GL_UNSIGNED_INT, 0);
@@ -50,12 +50,14 @@ public class ShaderData extends ReferenceCounter {
 
     private HashMap<String, Integer> m_uniformMap;
     private ArrayList<String> m_uniformNames;
+    private ArrayList<String> m_unprefixedUniformNames;
     private ArrayList<Integer> m_shaders;
     private ArrayList<String> m_uniformTypes;
 
     public ShaderData(String fileName) {
         m_uniformMap = new HashMap<>();
         m_uniformNames = new ArrayList<>();
+        m_unprefixedUniformNames = new ArrayList<>();
         m_shaders = new ArrayList<>();
         m_uniformTypes = new ArrayList<>();
                 
@@ -135,6 +137,17 @@ public class ShaderData extends ReferenceCounter {
         return m_uniformNames;
     }
 
+    /**
+     * Uniform names without two character prefix (R_, T_, C_), parallel to
+     * {@link #getUniformNames()}. Precomputed so render loop doesn't have to
+     * substring names every frame.
+     *
+     * @return list of unprefixed uniform names
+     */
+    public ArrayList<String> getUnprefixedUniformNames() {
+        return m_unprefixedUniformNames;
+    }
+
     public ArrayList<String> getUniformTypes() {
         return m_uniformTypes;
     }
@@ -233,6 +246,7 @@ public class ShaderData extends ReferenceCounter {
                 String uniformType = uniformLine.substring(0, begin);
 
                 m_uniformNames.add(uniformName);
+                m_unprefixedUniformNames.add(uniformName.length() > 2 ? uniformName.substring(2) : uniformName);
                 m_uniformTypes.add(uniformType);
                 addUniform(uniformName, uniformType, structs);
             }
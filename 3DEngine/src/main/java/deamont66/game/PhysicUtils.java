@@ -36,8 +36,13 @@ import com.bulletphysics.linearmath.DefaultMotionState;
 import deamont66.engine.core.Transform;
 import deamont66.engine.core.math.Quaternion;
 import deamont66.engine.core.math.Vector3f;
+import javax.vecmath.Matrix3f;
+import javax.vecmath.Quat4f;
 
 /**
+ * Helpers for jBullet. jBullet works with javax.vecmath types while engine
+ * has its own math classes, so all conversions go through the adapters
+ * below. Adapters taking destination object don't allocate anything.
  *
  * @author JiriSimecek
  */
@@ -48,33 +53,89 @@ public class PhysicUtils {
     }
     
     public static RigidBody createRigidBody(float mass, Vector3f localInertia, Transform transform, CollisionShape shape) {
+        javax.vecmath.Vector3f inertia = toBullet(localInertia);
         if (mass != 0f) {
-            shape.calculateLocalInertia(mass, localInertia);
+            shape.calculateLocalInertia(mass, inertia);
+            fromBullet(inertia, localInertia);
         }
         
         com.bulletphysics.linearmath.Transform t = new com.bulletphysics.linearmath.Transform();
         t.setIdentity();
-        t.setRotation(transform.getTransformedRot());
-        t.origin.set(transform.getTransformedPos());
+        toBullet(transform.getTransformedPos(), transform.getTransformedRot(), t);
 
         // using motionstate is recommended, it provides interpolation capabilities, and only synchronizes 'active' objects
         DefaultMotionState myMotionState = new DefaultMotionState(t);
-        RigidBodyConstructionInfo rbInfo = new RigidBodyConstructionInfo(mass, myMotionState, shape, localInertia);
+        RigidBodyConstructionInfo rbInfo = new RigidBodyConstructionInfo(mass, myMotionState, shape, inertia);
         return new RigidBody(rbInfo);
     }
     
     public static com.bulletphysics.linearmath.Transform convertTransform(Transform t) {
         com.bulletphysics.linearmath.Transform tr = new com.bulletphysics.linearmath.Transform();
         tr.setIdentity();
-        tr.origin.set(t.getPos());
-        tr.setRotation(t.getRot());
+        toBullet(t.getPos(), t.getRot(), tr);
         return tr;
     }
     
     public static Transform convertTransform(com.bulletphysics.linearmath.Transform t) {
         Transform tr = new Transform();
-        tr.setPos(new Vector3f(t.origin));
-        tr.setRot((Quaternion) t.getRotation(new Quaternion()));
+        fromBullet(t, tr.getPos(), tr.getRot());
+        tr.markChanged();
         return tr;
     }
+
+    public static javax.vecmath.Vector3f toBullet(Vector3f src) {
+        return toBullet(src, new javax.vecmath.Vector3f());
+    }
+
+    public static javax.vecmath.Vector3f toBullet(Vector3f src, javax.vecmath.Vector3f dest) {
+        dest.set(src.x, src.y, src.z);
+        return dest;
+    }
+
+    public static Vector3f fromBullet(javax.vecmath.Vector3f src, Vector3f dest) {
+        dest.set(src.x, src.y, src.z);
+        return dest;
+    }
+
+    public static Quat4f toBullet(Quaternion src, Quat4f dest) {
+        dest.set(src.x, src.y, src.z, src.w);
+        return dest;
+    }
+
+    public static Quaternion fromBullet(Quat4f src, Quaternion dest) {
+        dest.set(src.x, src.y, src.z, src.w);
+        return dest;
+    }
+
+    /**
+     * Writes position and rotation to jBullet transform. Rotation is written
+     * straight to its basis matrix.
+     */
+    public static com.bulletphysics.linearmath.Transform toBullet(Vector3f pos, Quaternion rot, com.bulletphysics.linearmath.Transform dest) {
+        float x = rot.x, y = rot.y, z = rot.z, w = rot.w;
+        Matrix3f basis = dest.basis;
+        basis.m00 = 1.0f - 2.0f * (y * y + z * z);
+        basis.m01 = 2.0f * (x * y - w * z);
+        basis.m02 = 2.0f * (x * z + w * y);
+        basis.m10 = 2.0f * (x * y + w * z);
+        basis.m11 = 1.0f - 2.0f * (x * x + z * z);
+        basis.m12 = 2.0f * (y * z - w * x);
+        basis.m20 = 2.0f * (x * z - w * y);
+        basis.m21 = 2.0f * (y * z + w * x);
+        basis.m22 = 1.0f - 2.0f * (x * x + y * y);
+        toBullet(pos, dest.origin);
+        return dest;
+    }
+
+    /**
+     * Reads position and rotation from jBullet transform. Rotation is
+     * extracted straight from its basis matrix.
+     */
+    public static void fromBullet(com.bulletphysics.linearmath.Transform src, Vector3f destPos, Quaternion destRot) {
+        Matrix3f basis = src.basis;
+        fromBullet(src.origin, destPos);
+        destRot.fromRotationMatrix(basis.m00, basis.m01, basis.m02,
+                basis.m10, basis.m11, basis.m12,
+                basis.m20, basis.m21, basis.m22);
+    }
 }
@@ -31,6 +31,7 @@
 package deamont66.game.componets;
 
 import deamont66.engine.components.EntityComponent;
+import deamont66.engine.core.FrameArena;
 import deamont66.engine.core.Input;
 import deamont66.engine.core.math.Vector2f;
 import deamont66.engine.core.math.Vector3f;
@@ -44,6 +45,9 @@ public class FreeLook extends EntityComponent
 	private float sensitivity;
 	private int unlockMouseKey;
 
+	private final Vector2f centerPosition = new Vector2f();
+	private final Vector2f deltaPos = new Vector2f();
+
 	public FreeLook(float sensitivity)
 	{
 		this(sensitivity, Input.KEY_ESCAPE);
@@ -58,7 +62,7 @@ public class FreeLook extends EntityComponent
 	@Override
 	public void processInput(float delta)
 	{
-		Vector2f centerPosition = new Vector2f(Window.getWidth()/2, Window.getHeight()/2);
+		centerPosition.set(Window.getWidth()/2, Window.getHeight()/2);
 
 		if(Input.getKey(unlockMouseKey))
 		{
@@ -74,7 +78,7 @@ public class FreeLook extends EntityComponent
 
 		if(mouseLocked)
 		{
-			Vector2f deltaPos = new Vector2f(Input.getMousePosition());
+			Input.getMousePosition(deltaPos);
                         deltaPos.sub(centerPosition);
 
 			boolean rotY = deltaPos.getX() != 0;
@@ -83,7 +87,19 @@ public class FreeLook extends EntityComponent
 			if(rotY)
 				getTransform().rotate(yAxis, (float) Math.toRadians(deltaPos.getX() * sensitivity));
 			if(rotX)
-				getTransform().rotate(getTransform().getRot().getRight(), (float) Math.toRadians(-deltaPos.getY() * sensitivity));
+			{
+				FrameArena arena = FrameArena.get();
+				arena.begin();
+				try
+				{
+					Vector3f right = getTransform().getRot().getRight(arena.vector3f());
+					getTransform().rotate(right, (float) Math.toRadians(-deltaPos.getY() * sensitivity));
+				}
+				finally
+				{
+					arena.end();
+				}
+			}
 
 			if(rotY || rotX)
 				Input.setMousePosition(centerPosition);
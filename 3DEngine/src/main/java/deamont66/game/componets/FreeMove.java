@@ -31,6 +31,7 @@
 package deamont66.game.componets;
 
 import deamont66.engine.components.EntityComponent;
+import deamont66.engine.core.FrameArena;
 import deamont66.engine.core.Input;
 import deamont66.engine.core.math.Vector3f;
 
@@ -60,19 +61,30 @@ public class FreeMove extends EntityComponent
 	public void processInput(float delta)
 	{
 		float movAmt = speed * delta;
+		FrameArena arena = FrameArena.get();
+		arena.begin();
+		try
+		{
+			Vector3f dir = arena.vector3f();
 
-		if(Input.getKey(forwardKey))
-			move(getTransform().getRot().getForward(), movAmt);
-		if(Input.getKey(backKey))
-			move(getTransform().getRot().getForward(), -movAmt);
-		if(Input.getKey(leftKey))
-			move(getTransform().getRot().getLeft(), movAmt);
-		if(Input.getKey(rightKey))
-			move(getTransform().getRot().getRight(), movAmt);
+			if(Input.getKey(forwardKey))
+				move(getTransform().getRot().getForward(dir), movAmt);
+			if(Input.getKey(backKey))
+				move(getTransform().getRot().getForward(dir), -movAmt);
+			if(Input.getKey(leftKey))
+				move(getTransform().getRot().getLeft(dir), movAmt);
+			if(Input.getKey(rightKey))
+				move(getTransform().getRot().getRight(dir), movAmt);
+		}
+		finally
+		{
+			arena.end();
+		}
 	}
 
 	private void move(Vector3f dir, float amt)
 	{
-		getTransform().setPos(getTransform().getPos().add(dir.mul(amt)));
+		getTransform().getPos().addLocal(dir.mulLocal(amt));
+		getTransform().markChanged();
 	}
 }
@@ -32,25 +32,63 @@ package deamont66.game.componets;
 
 import deamont66.engine.components.EntityComponent;
 import deamont66.engine.core.math.Quaternion;
+import deamont66.engine.core.math.Vector3f;
 import deamont66.engine.core.*;
 
 public class LookAtComponent extends EntityComponent {
 
     private final Transform lookAt;
+    private final boolean threadSafe;
 
     public LookAtComponent(Entity lookAtObject) {
+        this(lookAtObject, false);
+    }
+
+    /**
+     * @param lookAtObject target
+     * @param threadSafe true if update may run in parallel, see
+     * {@link #isThreadSafe()}
+     */
+    public LookAtComponent(Entity lookAtObject, boolean threadSafe) {
         lookAt = lookAtObject.getTransform();
+        this.threadSafe = threadSafe;
     }
     
     public LookAtComponent(EntityComponent lookAtComponent) {
+        this(lookAtComponent, false);
+    }
+
+    public LookAtComponent(EntityComponent lookAtComponent, boolean threadSafe) {
         lookAt = lookAtComponent.getTransform();
+        this.threadSafe = threadSafe;
+    }
+
+    /**
+     * Reading target's world position recomputes its cached matrices when
+     * the target has moved, so parallel update is safe only when nothing
+     * moves the target during update: scene camera (Scene resolves it before
+     * the parallel update) or static target. Other targets have to stay
+     * serial, which is the default.
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return threadSafe;
     }
 
     @Override
     public void update(float delta) {
-        Quaternion newRot = getTransform().getLookAtRotation(lookAt.getTransformedPos());
+        FrameArena arena = FrameArena.get();
+        arena.begin();
+        try {
+            Vector3f target = lookAt.getTransformedPos(arena.vector3f());
+            Quaternion newRot = getTransform().getLookAtRotation(target, arena.quaternion());
 
-        //getTransform().setRot(getTransform().getRot().nlerp(newRot, delta * 5.0f, true));
-        getTransform().setRot(getTransform().getRot().slerp(newRot, delta * 5.0f, true));
+            Quaternion rot = getTransform().getRot();
+            //rot.nlerp(newRot, delta * 5.0f, true, rot);
+            rot.slerp(newRot, delta * 5.0f, true, rot);
+            getTransform().markChanged();
+        } finally {
+            arena.end();
+        }
     }
 }
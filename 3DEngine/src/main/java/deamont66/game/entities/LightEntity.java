@@ -59,9 +59,9 @@ public class LightEntity extends Entity {
         this.light = light;
         addComponent(light);
         if(pos != null)
-            getTransform().getPos().set(pos);
+            getTransform().setPos(pos);
         if(rot != null)
-            getTransform().getRot().set(rot);
+            getTransform().setRot(rot);
     }
 
     public boolean  isActive() {
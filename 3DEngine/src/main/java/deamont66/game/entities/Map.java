@@ -30,88 +30,295 @@
 package deamont66.game.entities;
 
 import com.bulletphysics.collision.shapes.BoxShape;
+import com.bulletphysics.collision.shapes.CollisionShape;
 import com.bulletphysics.dynamics.DynamicsWorld;
-import deamont66.engine.components.Camera;
-import deamont66.engine.core.CoreEngine;
+import com.bulletphysics.dynamics.RigidBody;
+import deamont66.engine.components.MeshRenderer;
 import deamont66.engine.core.Entity;
+import deamont66.engine.core.Scene;
 import deamont66.engine.core.Transform;
+import deamont66.engine.core.math.Matrix4f;
 import deamont66.engine.core.math.Vector3f;
 import deamont66.engine.rendering.Material;
 import deamont66.engine.rendering.Mesh;
-import deamont66.engine.rendering.Renderer;
-import deamont66.engine.rendering.Shader;
+import deamont66.engine.rendering.StaticGeometryBaker;
 import deamont66.engine.rendering.Texture;
-import deamont66.game.entities.physics.DynamicEntity;
+import deamont66.engine.rendering.meshLoading.IndexedModel;
+import deamont66.game.PhysicUtils;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 /**
+ * Ground of the world streamed in chunks around the camera (or another
+ * {@link #setFocus(Transform) focus}). Chunks within {@link #LOAD_RADIUS}
+ * are prepared on a background thread (models, merged ground mesh, collision
+ * shapes and bodies) and activated on the main thread, at most for
+ * {@link #ACTIVATION_BUDGET} nanoseconds per frame. Chunks farther than
+ * {@link #UNLOAD_RADIUS} are removed from physics and their meshes are
+ * disposed. Active chunks are children of the map, so scene culls them.
+ * Map has to be {@link #dispose() disposed} when it's not used any more.
  *
  * @author JiriSimecek
  */
 public class Map extends Entity {
 
-    private static final int MAP_SIZE = 40;
+    private static final float TILE_SIZE = 20;
+    private static final int CHUNK_TILES = 4;
+    private static final float CHUNK_SIZE = TILE_SIZE * CHUNK_TILES;
+    /** Map has MAP_CHUNKS x MAP_CHUNKS chunks. */
+    private static final int MAP_CHUNKS = 64;
+    private static final float GROUND_HEIGHT = -5;
+
+    public static final float LOAD_RADIUS = 240;
+    public static final float UNLOAD_RADIUS = LOAD_RADIUS + CHUNK_SIZE;
+    public static final long ACTIVATION_BUDGET = 2000000;
+
+    private static final String[] GROUND_MODELS = {"roads/road-flat.obj"};
+
+    private final Material roadTestMaterial;
     private DynamicsWorld dynamicsWorld;
+    private Transform focus;
+    private final Vector3f focusPos = new Vector3f();
+
+    // requested chunks by key, loading or active
+    private final HashMap<Long, MapChunk> chunks = new HashMap<>();
+    private final List<MapChunk> activeChunks = new ArrayList<>();
+    private final ConcurrentLinkedQueue<MapChunk> loadedChunks = new ConcurrentLinkedQueue<>();
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Map loader");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
 
-    private final DynamicEntity[][] ground;
-    private final List<DynamicEntity> entities = new ArrayList<>();
+    // used only by loader thread
+    private final IndexedModel[] groundModels = new IndexedModel[GROUND_MODELS.length];
+    private final CollisionShape tileShape = new BoxShape(PhysicUtils.toBullet(new Vector3f(TILE_SIZE / 2, 0.5f, TILE_SIZE / 2)));
 
     public Map() {
-        this.ground = new DynamicEntity[MAP_SIZE / 20][MAP_SIZE / 20];
-        Transform transform = new Transform();
-        Material roadTestMaterial = new Material();
+        roadTestMaterial = new Material();
         roadTestMaterial.setTexture("diffuse", new Texture("roads/road-asphalt.png"));
         roadTestMaterial.setTexture("normalMap", new Texture("roads/road-asphalt_normal.png"));
-        for (int y = 0; y < ground.length; y++) {
-            for (int x = 0; x < ground[y].length; x++) {
-                transform.setPos(new Vector3f(20 * x, -5, 20 * y));
-                ground[y][x] = new DynamicEntity(new Mesh("roads/road-flat.obj"), new BoxShape(new Vector3f(10f, 0.5f, 10f)), roadTestMaterial, transform);
-                entities.add(ground[y][x]);
-                transform.reset();
-            }
-        }
     }
-    
 
+    /**
+     * Moves bodies of active chunks from the previous world to the new one.
+     *
+     * @param dynamicsWorld world or null
+     */
     public void setDynamicsWorld(DynamicsWorld dynamicsWorld) {
-        this.dynamicsWorld = dynamicsWorld;
-        for (DynamicEntity e : entities) {
-            e.addToWorld(dynamicsWorld);
+        for (MapChunk chunk : activeChunks) {
+            for (RigidBody body : chunk.bodies) {
+                if (this.dynamicsWorld != null) {
+                    this.dynamicsWorld.removeRigidBody(body);
+                }
+                if (dynamicsWorld != null) {
+                    dynamicsWorld.addRigidBody(body);
+                }
+            }
         }
+        this.dynamicsWorld = dynamicsWorld;
     }
-    
-    @Override
-    public void setEngine(CoreEngine engine) {
-//        super.setEngine(engine);
-//        
-//        for (DynamicEntity e : entities) {
-//            e.setEngine(engine);
-//        }
+
+    /**
+     * Sets transform chunks are loaded around, camera of the scene is used
+     * by default.
+     */
+    public void setFocus(Transform focus) {
+        this.focus = focus;
     }
 
     @Override
-    public void render(Shader shader, Renderer renderer, Camera camera) {
-        super.render(shader, renderer, camera);
+    public void update(float delta) {
+        super.update(delta);
 
-        for (Entity e : entities) {
-            e.renderAll(shader, renderer, camera);
+        Transform focusTransform = getFocus();
+        if (focusTransform == null || loader.isShutdown()) {
+            return;
         }
+        focusTransform.getTransformedPos(focusPos);
+
+        unloadFarChunks();
+        requestNearChunks();
+        activateLoadedChunks();
     }
 
-    @Override
-    public void update(float delta) {
-        super.update(delta);
-        
-        for (Entity e : entities) {
-            e.updateAll(delta);
+    private Transform getFocus() {
+        if (focus != null) {
+            return focus;
+        }
+        Scene scene = getScene();
+        return scene != null && scene.getCamera() != null ? scene.getCamera().getTransform() : null;
+    }
+
+    private static long chunkKey(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    private float distanceToChunk(int x, int y) {
+        float dx = (x + 0.5f) * CHUNK_SIZE - TILE_SIZE / 2 - focusPos.x;
+        float dz = (y + 0.5f) * CHUNK_SIZE - TILE_SIZE / 2 - focusPos.z;
+        return (float) Math.sqrt(dx * dx + dz * dz);
+    }
+
+    private void requestNearChunks() {
+        int radius = (int) Math.ceil(LOAD_RADIUS / CHUNK_SIZE);
+        int centerX = (int) Math.floor(focusPos.x / CHUNK_SIZE);
+        int centerY = (int) Math.floor(focusPos.z / CHUNK_SIZE);
+        for (int y = Math.max(0, centerY - radius); y <= Math.min(MAP_CHUNKS - 1, centerY + radius); y++) {
+            for (int x = Math.max(0, centerX - radius); x <= Math.min(MAP_CHUNKS - 1, centerX + radius); x++) {
+                long key = chunkKey(x, y);
+                if (distanceToChunk(x, y) <= LOAD_RADIUS && !chunks.containsKey(key)) {
+                    final MapChunk chunk = new MapChunk(x, y);
+                    chunks.put(key, chunk);
+                    loader.execute(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            load(chunk);
+                        }
+                    });
+                }
+            }
+        }
+    }
+
+    private void unloadFarChunks() {
+        Iterator<MapChunk> iterator = chunks.values().iterator();
+        while (iterator.hasNext()) {
+            MapChunk chunk = iterator.next();
+            if (distanceToChunk(chunk.x, chunk.y) > UNLOAD_RADIUS) {
+                iterator.remove();
+                // loader skips it or main thread drops it when it's loaded
+                chunk.cancelled = true;
+                if (chunk.geometry != null) {
+                    deactivate(chunk);
+                }
+            }
+        }
+    }
+
+    private void activateLoadedChunks() {
+        long start = System.nanoTime();
+        MapChunk chunk;
+        while (System.nanoTime() - start < ACTIVATION_BUDGET && (chunk = loadedChunks.poll()) != null) {
+            if (!chunk.cancelled) {
+                activate(chunk);
+            }
+        }
+    }
+
+    // loader thread
+    private void load(MapChunk chunk) {
+        if (chunk.cancelled) {
+            return;
+        }
+
+        Matrix4f world = new Matrix4f();
+        Transform transform = new Transform();
+        for (int y = 0; y < CHUNK_TILES; y++) {
+            for (int x = 0; x < CHUNK_TILES; x++) {
+                MapGroundData data = new MapGroundData(chunk.x * CHUNK_TILES + x, chunk.y * CHUNK_TILES + y, 0);
+                transform.setPos(TILE_SIZE * data.x, GROUND_HEIGHT, TILE_SIZE * data.y);
+
+                chunk.baker.add(getGroundModel(data.groundID), transform.getTransformation(world), roadTestMaterial);
+                chunk.bodies.add(PhysicUtils.createRigidBody(0, transform, tileShape));
+            }
+        }
+        loadedChunks.add(chunk);
+    }
+
+    // loader thread
+    private IndexedModel getGroundModel(int groundID) {
+        if (groundModels[groundID] == null) {
+            groundModels[groundID] = Mesh.loadModel(GROUND_MODELS[groundID]);
+        }
+        return groundModels[groundID];
+    }
+
+    private void activate(MapChunk chunk) {
+        chunk.geometry = new Entity();
+        for (Entity baked : chunk.baker.bake()) {
+            chunk.geometry.addChild(baked);
+        }
+        addChild(chunk.geometry);
+        if (dynamicsWorld != null) {
+            for (RigidBody body : chunk.bodies) {
+                dynamicsWorld.addRigidBody(body);
+            }
+        }
+        activeChunks.add(chunk);
+    }
+
+    private void deactivate(MapChunk chunk) {
+        if (dynamicsWorld != null) {
+            for (RigidBody body : chunk.bodies) {
+                dynamicsWorld.removeRigidBody(body);
+            }
+        }
+        for (int i = 0; i < chunk.geometry.getChildCount(); i++) {
+            Entity baked = chunk.geometry.getChild(i);
+            baked.getComponent(MeshRenderer.class).getMesh().dispose();
+        }
+        removeChild(chunk.geometry);
+        chunk.geometry = null;
+        activeChunks.remove(chunk);
+    }
+
+    /**
+     * Stops the loader thread, cancels chunks which are being loaded and
+     * deactivates active ones (removes their bodies from physics and
+     * disposes their meshes). Map doesn't load anything after that.
+     */
+    public void dispose() {
+        loader.shutdownNow();
+        for (MapChunk chunk : chunks.values()) {
+            chunk.cancelled = true;
+        }
+        chunks.clear();
+        loadedChunks.clear();
+        while (!activeChunks.isEmpty()) {
+            deactivate(activeChunks.get(activeChunks.size() - 1));
+        }
+    }
+
+    /**
+     * @return number of chunks currently rendered and in physics world
+     */
+    public int getActiveChunkCount() {
+        return activeChunks.size();
+    }
+
+    private static final class MapChunk {
+
+        final int x;
+        final int y;
+        volatile boolean cancelled;
+
+        // filled by loader thread, published through loadedChunks queue
+        final StaticGeometryBaker baker = new StaticGeometryBaker(CHUNK_SIZE);
+        final List<RigidBody> bodies = new ArrayList<>();
+
+        // main thread
+        Entity geometry;
+
+        MapChunk(int x, int y) {
+            this.x = x;
+            this.y = y;
         }
     }
-    
-    
 
-    private class MapGroundData implements Serializable {
+    private static class MapGroundData implements Serializable {
 
         int x, y;
         int groundID;
@@ -126,7 +333,7 @@ public class Map extends Entity {
         }
     }
 
-    private class MapEntityData implements Serializable {
+    private static class MapEntityData implements Serializable {
 
         float x, y;
         String name;
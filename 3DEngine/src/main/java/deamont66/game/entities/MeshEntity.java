@@ -30,12 +30,15 @@
 
 package deamont66.game.entities;
 
+import deamont66.engine.components.EntityComponent;
+import deamont66.engine.components.LodMeshRenderer;
 import deamont66.engine.components.MeshRenderer;
 import deamont66.engine.core.Entity;
 import deamont66.engine.core.math.Quaternion;
 import deamont66.engine.core.math.Vector3f;
 import deamont66.engine.rendering.Material;
 import deamont66.engine.rendering.Mesh;
+import deamont66.game.PhysicUtils;
 
 /**
  * Entity with connected {@link Mesh}.
@@ -58,17 +61,29 @@ public class MeshEntity extends Entity {
     
     public MeshEntity(Mesh mesh, Material material, Vector3f pos, Quaternion rot, Vector3f scale) {
         super();
-        addMesh(mesh, material, pos, rot, scale);
+        addMesh(new MeshRenderer(mesh, material), pos, rot, scale);
     }
     
-    private void addMesh(Mesh mesh, Material material, Vector3f pos, Quaternion rot, Vector3f scale) {
-        addComponent(new MeshRenderer(mesh, material));
+    /**
+     * Creates entity drawn with level of detail chain of model loaded from
+     * file, see {@link LodMeshRenderer}.
+     * @param fileName model file name
+     * @param material
+     * @param pos 
+     */
+    public MeshEntity(String fileName, Material material, Vector3f pos) {
+        super();
+        addMesh(new LodMeshRenderer(fileName, material), pos, null, null);
+    }
+    
+    private void addMesh(EntityComponent renderer, Vector3f pos, Quaternion rot, Vector3f scale) {
+        addComponent(renderer);
         if(pos != null)
-            getTransform().getPos().set(pos);
+            getTransform().setPos(pos);
         if(rot != null)
-            getTransform().getRot().set(rot);
+            getTransform().setRot(rot);
         if(scale != null)
-            getTransform().getScale().set(scale);
+            getTransform().setScale(scale);
     }
     
     /**
@@ -95,10 +110,10 @@ public class MeshEntity extends Entity {
      * @param offsetRot rotation offset between entity and jBullet transform
      */
     public void updateTransform(com.bulletphysics.linearmath.Transform sourceTransform, Vector3f offsetPos, Quaternion offsetRot) {
-        getTransform().setPos(new Vector3f(sourceTransform.origin).add(offsetPos));
-        Quaternion rotation = (Quaternion) sourceTransform.getRotation(new Quaternion());
-        rotation.mul(offsetRot);
-        getTransform().setRot(rotation);
+        PhysicUtils.fromBullet(sourceTransform, getTransform().getPos(), getTransform().getRot());
+        getTransform().getPos().addLocal(offsetPos);
+        getTransform().getRot().mulLocal(offsetRot);
+        getTransform().markChanged();
     }
  
 }
@@ -35,8 +35,10 @@ import com.bulletphysics.collision.shapes.IndexedMesh;
 import com.bulletphysics.collision.shapes.TriangleIndexVertexArray;
 import com.bulletphysics.dynamics.DynamicsWorld;
 import com.bulletphysics.dynamics.RigidBody;
+import com.bulletphysics.linearmath.MotionState;
 import deamont66.engine.components.MeshRenderer;
 import deamont66.engine.core.Entity;
+import deamont66.engine.core.Scene;
 import deamont66.engine.core.Transform;
 import deamont66.engine.core.math.Quaternion;
 import deamont66.engine.core.math.Vector3f;
@@ -55,6 +57,10 @@ public class DynamicEntity extends Entity {
     
     private final RigidBody body;
     private final float mass;
+    // reused every update
+    private final com.bulletphysics.linearmath.Transform bodyTransform = new com.bulletphysics.linearmath.Transform();
+    private final Vector3f bodyPos = new Vector3f();
+    private final Quaternion bodyRot = new Quaternion();
 
     /**
      * Creates non-dynamic collidable object. Same as setting mass of object to zero.
@@ -114,6 +120,7 @@ public class DynamicEntity extends Entity {
         
         this.body = PhysicUtils.createRigidBody(mass, initialTransform, meshShape);
         this.mass = mass;
+        body.setMotionState(new WakingMotionState(body.getMotionState()));
     }
     
     public DynamicEntity(float mass, Mesh mesh, CollisionShape shape, Material material, Transform initialTransform) {
@@ -127,17 +134,32 @@ public class DynamicEntity extends Entity {
         
         this.body = PhysicUtils.createRigidBody(mass, initialTransform, shape);
         this.mass = mass;
+        body.setMotionState(new WakingMotionState(body.getMotionState()));
     }
     
     public void addToWorld(DynamicsWorld world) {
         world.addRigidBody(body);
     }
 
+    /**
+     * Copies transform of the body to entity, resting bodies don't change it.
+     * When the scene updates its active set only, entity falls asleep
+     * together with its body (static bodies right away) and wakes up when
+     * physics activates the body again, see
+     * {@link Scene#setActiveSetUpdate(boolean)}.
+     */
     @Override
     public void update(float delta) {
         super.update(delta);
-        if(!body.isStaticObject())
-            updateTransform(body.getWorldTransform(new com.bulletphysics.linearmath.Transform()));
+        if(!body.isStaticObject() && body.isActive()) {
+            updateTransform(body.getWorldTransform(bodyTransform));
+        }
+        if(body.isStaticObject() || !body.isActive()) {
+            Scene scene = getScene();
+            if(scene != null && scene.isActiveSetUpdate()) {
+                sleep();
+            }
+        }
     }
     
     /**
@@ -145,7 +167,7 @@ public class DynamicEntity extends Entity {
      * @param sourceTransform 
      */
     protected void updateTransform(com.bulletphysics.linearmath.Transform sourceTransform) {
-        updateTransform(sourceTransform, Vector3f.zero(), Quaternion.identity());
+        copyTransform(sourceTransform, null, null);
     }
     
     /**
@@ -154,7 +176,7 @@ public class DynamicEntity extends Entity {
      * @param offset 
      */
     protected void updateTransform(com.bulletphysics.linearmath.Transform sourceTransform, Vector3f offset) {
-        updateTransform(sourceTransform, offset, Quaternion.identity());
+        copyTransform(sourceTransform, offset, null);
     }
     
     /**
@@ -164,13 +186,56 @@ public class DynamicEntity extends Entity {
      * @param offsetRot rotation offset between entity and jBullet transform
      */
     protected void updateTransform(com.bulletphysics.linearmath.Transform sourceTransform, Vector3f offsetPos, Quaternion offsetRot) {
-        getTransform().setPos(new Vector3f(sourceTransform.origin).add(offsetPos));
-        Quaternion rotation = (Quaternion) sourceTransform.getRotation(new Quaternion());
-        rotation.mul(offsetRot);
-        getTransform().setRot(rotation);
+        copyTransform(sourceTransform, offsetPos, offsetRot);
+    }
+
+    /**
+     * Marks transform changed only if it differs, so entity which didn't
+     * move isn't reported by scene's change log, spatial index etc.
+     * @param offsetPos position offset or null
+     * @param offsetRot rotation offset or null
+     */
+    private void copyTransform(com.bulletphysics.linearmath.Transform sourceTransform, Vector3f offsetPos, Quaternion offsetRot) {
+        PhysicUtils.fromBullet(sourceTransform, bodyPos, bodyRot);
+        if(offsetPos != null) {
+            bodyPos.addLocal(offsetPos);
+        }
+        if(offsetRot != null) {
+            bodyRot.mulLocal(offsetRot);
+        }
+        Transform transform = getTransform();
+        if(!bodyPos.equals(transform.getPos()) || !bodyRot.equals(transform.getRot())) {
+            transform.getPos().set(bodyPos);
+            transform.getRot().set(bodyRot);
+            transform.markChanged();
+        }
     }
 
     public RigidBody getRigridBody() {
         return body;
     }
+
+    /**
+     * Physics sets transform of active bodies only, so every call means the
+     * body is awake.
+     */
+    private class WakingMotionState extends MotionState {
+
+        private final MotionState motionState;
+
+        WakingMotionState(MotionState motionState) {
+            this.motionState = motionState;
+        }
+
+        @Override
+        public com.bulletphysics.linearmath.Transform getWorldTransform(com.bulletphysics.linearmath.Transform out) {
+            return motionState.getWorldTransform(out);
+        }
+
+        @Override
+        public void setWorldTransform(com.bulletphysics.linearmath.Transform worldTrans) {
+            motionState.setWorldTransform(worldTrans);
+            wake();
+        }
+    }
 }
@@ -89,7 +89,7 @@ public class FirstTestGameState extends GameState {
 //  --------    GameObjects:    -----------------------------------------------------    
         Camera camera = new Camera((float) Math.toRadians(70.0f), (float) Window.getWidth() / (float) Window.getHeight(), 0.01f, 1000.0f);
         addToScene(new Entity().addComponent(new FreeLook(0.5f)).addComponent(new FreeMove(10.0f)).addComponent(camera));
-        camera.getTransform().getPos().set(-10, 0, 10);
+        camera.getTransform().setPos(-10, 0, 10);
         camera.getTransform().setRot(new Quaternion(new Vector3f(0, 1, 0), (float) Math.toRadians(130)));
 
 //		addToScene(new MeshEntity(new Mesh("plane4.obj"), oldBricksMaterial, new Vector3f(0, -1, 0), new Quaternion(), new Vector3f(2.5f, 2.5f, 2.5f)));
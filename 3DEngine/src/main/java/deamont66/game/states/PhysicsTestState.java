@@ -85,6 +85,7 @@ public class PhysicsTestState extends GameState {
     private Camera camera;
 
     private DynamicsWorld dynamicsWorld;
+    private Map map;
 
     private MeshEntity vehicleEntity;
     private MeshEntity[] wheelsEntities;
@@ -132,11 +133,11 @@ public class PhysicsTestState extends GameState {
 
         camera = new Camera((float) Math.toRadians(70.0f), (float) Window.getWidth() / (float) Window.getHeight(), 0.01f, 1000.0f);
         setCamera(new Entity().addComponent(new FreeLook(0.5f)).addComponent(new FreeMove(10.0f)).addComponent(camera));
-        camera.getTransform().getPos().set(-5, 2, 5);
+        camera.getTransform().setPos(-5, 2, 5);
         camera.getTransform().setRot(new Quaternion(new Vector3f(0, 1, 0), (float) Math.toRadians(130)));
 
         //        vehicleEntity = new BoxEntity(new Vector3f(1.f, 0.5f, 2.f), carMaterial, new Vector3f(0, 0, 0));       
-        vehicleEntity = new MeshEntity(new Mesh("car_1.obj"), carMaterial, new Vector3f(0, 0, 0));
+        vehicleEntity = new MeshEntity("car_1.obj", carMaterial, new Vector3f(0, 0, 0));
         addToScene(vehicleEntity);
 
         wheelsEntities = new MeshEntity[4];
@@ -149,26 +150,25 @@ public class PhysicsTestState extends GameState {
 
         Transform transform = new Transform();
 
-        transform.getPos().set(0, 2, 0);
-        CollisionShape boxShape = new BoxShape(new Vector3f(1, 1, 1));
+        transform.setPos(0, 2, 0);
+        CollisionShape boxShape = new BoxShape(PhysicUtils.toBullet(new Vector3f(1, 1, 1)));
         DynamicEntity boxEntity = new DynamicEntity(100f, new Mesh("cube.obj"), boxShape, brickMaterial, transform);
         boxEntity.addToWorld(dynamicsWorld);
         addToScene(boxEntity);
 
         transform.reset();
-        transform.getPos().set(0, 8, 0.5f);
+        transform.setPos(0, 8, 0.5f);
         boxEntity = new DynamicEntity(100f, new Mesh("cube.obj"), boxShape, brickMaterial, transform);
         boxEntity.addToWorld(dynamicsWorld);
         addToScene(boxEntity);
 
         transform.reset();
-        transform.getPos().setY(-5f + .5f);
-        transform.getPos().setX(5);
+        transform.setPos(5, -5f + .5f, 0);
         DynamicEntity rampEntity = new DynamicEntity("ramp.obj", new OBJModel("/res/models/ramp.obj").toIndexedModel(), brickMaterial, transform);
         rampEntity.addToWorld(dynamicsWorld);
         addToScene(rampEntity);
         
-        Map map = new Map();
+        map = new Map();
         map.setDynamicsWorld(dynamicsWorld);
         addToScene(map);
 
@@ -194,6 +194,7 @@ public class PhysicsTestState extends GameState {
             cameraMode %= 3;
             if (cameraMode == 0) {
                 camera.getTransform().getRot().setZ(0);
+                camera.getTransform().markChanged();
             }
         }
 
@@ -253,7 +254,7 @@ public class PhysicsTestState extends GameState {
             Quaternion newRot = new Quaternion();
             newRot.lookAt(tr.getTransformedPos().sub(camera.getTransform().getPos()));
             if (cameraMode == 2) {
-                camera.getTransform().setPos(new Vector3f(chassisWorldTransform.origin).sub(tr.getRot().getForward().mul(10f)).add(new Vector3f(0, 8, 0)));
+                camera.getTransform().setPos(tr.getPos().sub(tr.getRot().getForward().mul(10f)).add(new Vector3f(0, 8, 0)));
                 newRot = new Quaternion(tr.getRot());
                 newRot.mul(new Quaternion(new Vector3f(1, 0, 0), (float) Math.toRadians(30)));
                 camera.getTransform().setRot(newRot);
@@ -272,6 +273,11 @@ public class PhysicsTestState extends GameState {
     protected void render(Renderer renderer) {
     }
 
+    @Override
+    protected void cleanUp() {
+        map.dispose();
+    }
+
     private void initPhysics(Vector3f gravity) {
         CollisionConfiguration collisionConfiguration = new DefaultCollisionConfiguration();
 
@@ -285,7 +291,7 @@ public class PhysicsTestState extends GameState {
 
         dynamicsWorld = new DiscreteDynamicsWorld(dispatcher, broadphase, solver, collisionConfiguration);
 
-        dynamicsWorld.setGravity(gravity);
+        dynamicsWorld.setGravity(PhysicUtils.toBullet(gravity));
 
         ///////////////////////////////////////////////////////////////////////
         //              Vehicle Setup
@@ -302,27 +308,27 @@ public class PhysicsTestState extends GameState {
         float suspensionRestLength = 0.3f;
         VehicleTuning vehicleTuning = new VehicleTuning();
         int CUBE_HALF_EXTENT = 1;
-        Vector3f wheelDirectionCS0 = new Vector3f(0, -1, 0);
-        Vector3f wheelAxleCS = new Vector3f(-1, 0, 0);
+        javax.vecmath.Vector3f wheelDirectionCS0 = PhysicUtils.toBullet(new Vector3f(0, -1, 0));
+        javax.vecmath.Vector3f wheelAxleCS = PhysicUtils.toBullet(new Vector3f(-1, 0, 0));
 
-        CollisionShape vehicleChassisShape = new BoxShape(new Vector3f(1.f, 0.5f, 2.f));
+        CollisionShape vehicleChassisShape = new BoxShape(PhysicUtils.toBullet(new Vector3f(1.f, 0.5f, 2.f)));
         CompoundShape vehicleBody = new CompoundShape();
 
         Transform localTrans = new Transform();
-        localTrans.getPos().set(0, 1, 0);
+        localTrans.setPos(0, 1, 0);
         vehicleBody.addChildShape(PhysicUtils.convertTransform(localTrans), vehicleChassisShape);
 
-        localTrans.getPos().set(3, 0, 0);
+        localTrans.setPos(3, 0, 0);
         MotionState vehicleMotionState = new DefaultMotionState(PhysicUtils.convertTransform(localTrans));
 
-        Vector3f vehicleInertia = new Vector3f(0, 0, 0);
+        javax.vecmath.Vector3f vehicleInertia = new javax.vecmath.Vector3f(0, 0, 0);
         vehicleBody.calculateLocalInertia(vehicleMass, vehicleInertia);
         RigidBodyConstructionInfo vehicleRigidBodyCI = new RigidBodyConstructionInfo(vehicleMass, vehicleMotionState, vehicleBody, vehicleInertia);
 
         vehicleRigidBody = new RigidBody(vehicleRigidBodyCI);
         dynamicsWorld.addRigidBody(vehicleRigidBody);
 
-        CollisionShape wheelShape = new CylinderShapeX(new Vector3f(wheelWidth, wheelRadius, wheelRadius));
+        CollisionShape wheelShape = new CylinderShapeX(PhysicUtils.toBullet(new Vector3f(wheelWidth, wheelRadius, wheelRadius)));
         {
             VehicleRaycaster vehicleRayCaster = new DefaultVehicleRaycaster(dynamicsWorld);
             vehicle = new RaycastVehicle(vehicleTuning, vehicleRigidBody, vehicleRayCaster);
@@ -338,17 +344,17 @@ public class PhysicsTestState extends GameState {
 
             // add wheels
             // front left
-            Vector3f connectionPointCS0 = new Vector3f(CUBE_HALF_EXTENT - (0.7f * wheelWidth), connectionHeight, 2 * CUBE_HALF_EXTENT - wheelRadius - 0.25f);
+            javax.vecmath.Vector3f connectionPointCS0 = new javax.vecmath.Vector3f(CUBE_HALF_EXTENT - (0.7f * wheelWidth), connectionHeight, 2 * CUBE_HALF_EXTENT - wheelRadius - 0.25f);
             vehicle.addWheel(connectionPointCS0, wheelDirectionCS0, wheelAxleCS, suspensionRestLength, wheelRadius, vehicleTuning, isFrontWheel);
             // front right
-            connectionPointCS0 = new Vector3f(-CUBE_HALF_EXTENT + (0.7f * wheelWidth), connectionHeight, 2 * CUBE_HALF_EXTENT - wheelRadius - 0.25f);
+            connectionPointCS0 = new javax.vecmath.Vector3f(-CUBE_HALF_EXTENT + (0.7f * wheelWidth), connectionHeight, 2 * CUBE_HALF_EXTENT - wheelRadius - 0.25f);
             vehicle.addWheel(connectionPointCS0, wheelDirectionCS0, wheelAxleCS, suspensionRestLength, wheelRadius, vehicleTuning, isFrontWheel);
             isFrontWheel = false;
             // rear right
-            connectionPointCS0 = new Vector3f(-CUBE_HALF_EXTENT + (0.7f * wheelWidth), connectionHeight, -2 * CUBE_HALF_EXTENT + wheelRadius + 0.25f);
+            connectionPointCS0 = new javax.vecmath.Vector3f(-CUBE_HALF_EXTENT + (0.7f * wheelWidth), connectionHeight, -2 * CUBE_HALF_EXTENT + wheelRadius + 0.25f);
             vehicle.addWheel(connectionPointCS0, wheelDirectionCS0, wheelAxleCS, suspensionRestLength, wheelRadius, vehicleTuning, isFrontWheel);
             // rear left
-            connectionPointCS0 = new Vector3f(CUBE_HALF_EXTENT - (0.7f * wheelWidth), connectionHeight, -2 * CUBE_HALF_EXTENT + wheelRadius + 0.25f);
+            connectionPointCS0 = new javax.vecmath.Vector3f(CUBE_HALF_EXTENT - (0.7f * wheelWidth), connectionHeight, -2 * CUBE_HALF_EXTENT + wheelRadius + 0.25f);
             vehicle.addWheel(connectionPointCS0, wheelDirectionCS0, wheelAxleCS, suspensionRestLength, wheelRadius, vehicleTuning, isFrontWheel);
 
             for (int i = 0; i < vehicle.getNumWheels(); i++) {
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.core;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of {@link EntityPool}.
+ *
+ * @author JiriSimecek
+ */
+public class EntityPoolTest extends TestCase {
+
+    private EntityPool pool;
+    private Scene scene;
+
+    /**
+     * Entity which returns itself to its pool when its lifetime ends, like
+     * a projectile.
+     */
+    private static class Projectile extends Entity {
+
+        private EntityPool pool;
+        private int lifetime;
+
+        @Override
+        public void update(float delta) {
+            super.update(delta);
+            if (--lifetime == 0) {
+                pool.release(this);
+            }
+        }
+    }
+
+    @Override
+    protected void setUp() {
+        pool = new EntityPool(new EntityPool.Factory() {
+            @Override
+            public Entity create() {
+                Projectile projectile = new Projectile();
+                projectile.pool = pool;
+                return projectile;
+            }
+        });
+        scene = new Scene();
+        scene.setCamera(new Entity());
+    }
+
+    private Projectile acquire(int lifetime) {
+        Projectile projectile = (Projectile) pool.acquire();
+        projectile.lifetime = lifetime;
+        return projectile;
+    }
+
+    public void testReleaseDuringUpdate() {
+        for (int i = 0; i < 3; i++) {
+            scene.addChild(acquire(1));
+        }
+        scene.updateAll(1);
+
+        assertEquals(0, scene.getChildCount());
+        assertEquals(3, pool.getFreeCount());
+        assertEquals(3, pool.getCreatedCount());
+    }
+
+    public void testReleaseChildDuringUpdate() {
+        Entity parent = new Entity();
+        parent.addChild(acquire(2));
+        parent.addChild(acquire(1));
+        parent.addChild(acquire(2));
+        scene.addChild(parent);
+
+        scene.updateAll(1);
+        assertEquals(2, parent.getChildCount());
+        assertEquals(1, pool.getFreeCount());
+
+        scene.updateAll(1);
+        assertEquals(0, parent.getChildCount());
+        assertEquals(3, pool.getFreeCount());
+    }
+
+    public void testReleasedEntityIsDetachedAfterUpdate() {
+        Projectile projectile = acquire(1);
+        scene.addChild(projectile);
+        scene.addChild(acquire(5));
+
+        scene.updateAll(1);
+        assertNull(projectile.getScene());
+        assertSame(projectile, pool.acquire());
+    }
+
+    public void testReleaseOutsideUpdate() {
+        Projectile projectile = acquire(5);
+        scene.addChild(projectile);
+        pool.release(projectile);
+
+        assertEquals(0, scene.getChildCount());
+        assertEquals(1, pool.getFreeCount());
+    }
+
+    public void testDoubleRelease() {
+        Projectile projectile = acquire(1);
+        scene.addChild(projectile);
+        scene.updateAll(1);
+        try {
+            pool.release(projectile);
+            fail();
+        } catch (IllegalStateException e) {
+        }
+    }
+}
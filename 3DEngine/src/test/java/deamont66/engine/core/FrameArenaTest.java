@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.core;
+
+import deamont66.engine.components.EntityComponent;
+import deamont66.engine.core.math.Matrix4f;
+import deamont66.engine.core.math.Quaternion;
+import deamont66.engine.core.math.Vector3f;
+import deamont66.game.componets.LookAtComponent;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import junit.framework.TestCase;
+
+/**
+ * Tests of {@link FrameArena}. Arena is per thread and reads
+ * {@link Debug#DEBUG_FRAME_ARENA} when it's created, so every test runs on
+ * its own thread.
+ *
+ * @author JiriSimecek
+ */
+public class FrameArenaTest extends TestCase {
+
+    private static final int FRAMES = 1000;
+
+    public void testWarmFramesDontAllocate() throws Throwable {
+        runOnNewThread(new Runnable() {
+            @Override
+            public void run() {
+                FrameArena arena = FrameArena.get();
+                for (int frame = 0; frame < 10; frame++) {
+                    frame(arena, frame);
+                }
+                long allocations = arena.getAllocationCount();
+                assertTrue(allocations > 0);
+
+                for (int frame = 0; frame < FRAMES; frame++) {
+                    frame(arena, frame);
+                }
+                assertEquals(allocations, arena.getAllocationCount());
+                assertEquals(0, arena.getDepth());
+            }
+        });
+    }
+
+    /**
+     * Warmed up update of a real scene mustn't allocate at all (arena
+     * objects included). Skipped on JVMs which can't measure allocation of
+     * a thread.
+     */
+    public void testWarmSceneFramesDontAllocate() throws Throwable {
+        runOnNewThread(new Runnable() {
+            @Override
+            public void run() {
+                ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+                if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+                    return;
+                }
+                com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+                if (!allocations.isThreadAllocatedMemorySupported()) {
+                    return;
+                }
+                allocations.setThreadAllocatedMemoryEnabled(true);
+                long threadId = Thread.currentThread().getId();
+
+                Scene scene = createScene();
+                // let JIT compile the update
+                for (int frame = 0; frame < 20000; frame++) {
+                    sceneFrame(scene);
+                }
+
+                long before = allocations.getThreadAllocatedBytes(threadId);
+                for (int frame = 0; frame < FRAMES; frame++) {
+                    sceneFrame(scene);
+                }
+                long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+                assertTrue("steady state frames allocated " + allocated + " bytes", allocated < FRAMES);
+            }
+        });
+    }
+
+    public void testEscapedWriteIsDetected() throws Throwable {
+        boolean debug = Debug.DEBUG_FRAME_ARENA;
+        Debug.DEBUG_FRAME_ARENA = true;
+        try {
+            runOnNewThread(new Runnable() {
+                @Override
+                public void run() {
+                    FrameArena arena = FrameArena.get();
+                    arena.begin();
+                    Vector3f escaped = arena.vector3f();
+                    arena.end();
+
+                    // released object reads as NaN
+                    assertTrue(Float.isNaN(escaped.x));
+                    escaped.set(1, 2, 3);
+
+                    arena.begin();
+                    try {
+                        arena.vector3f();
+                        fail("write through escaped reference wasn't detected");
+                    } catch (IllegalStateException expected) {
+                    } finally {
+                        arena.end();
+                    }
+                }
+            });
+        } finally {
+            Debug.DEBUG_FRAME_ARENA = debug;
+        }
+    }
+
+    public void testEndWithoutBegin() throws Throwable {
+        runOnNewThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    FrameArena.get().end();
+                    fail("end() without begin() accepted");
+                } catch (IllegalStateException expected) {
+                }
+            }
+        });
+    }
+
+    /**
+     * Uses nested scopes and more objects every few frames, like update and
+     * render of a real frame.
+     */
+    private static void frame(FrameArena arena, int frame) {
+        arena.begin();
+        try {
+            Matrix4f m = arena.matrix4f().initIdentity();
+            for (int i = 0; i < 20 + frame % 7; i++) {
+                arena.begin();
+                try {
+                    Vector3f v = arena.vector3f();
+                    v.set(i, frame, 1);
+                    Quaternion q = arena.quaternion();
+                    q.set(0, 0, 0, 1);
+                    m.mulLocal(arena.matrix4f().initTranslation(v.x, v.y, v.z));
+                } finally {
+                    arena.end();
+                }
+                arena.vector3f();
+            }
+        } finally {
+            arena.end();
+        }
+    }
+
+    /**
+     * Spins its entity like a typical gameplay component.
+     */
+    private static final class RotateComponent extends EntityComponent {
+
+        private final Vector3f axis = new Vector3f(0, 1, 0);
+
+        @Override
+        public void update(float delta) {
+            getTransform().rotate(axis, delta);
+        }
+    }
+
+    /**
+     * Rotating roots with children looking at moving camera.
+     */
+    private static Scene createScene() {
+        Scene scene = new Scene();
+        Entity camera = new Entity();
+        camera.addComponent(new RotateComponent());
+        scene.setCamera(camera);
+        for (int i = 0; i < 50; i++) {
+            Entity root = new Entity();
+            root.getTransform().setPos(i, 0, -10);
+            root.addComponent(new RotateComponent());
+            for (int c = 0; c < 3; c++) {
+                Entity child = new Entity();
+                child.getTransform().setPos(0, c, 1);
+                child.addComponent(new LookAtComponent(camera));
+                child.addChild(new Entity().addComponent(new RotateComponent()));
+                root.addChild(child);
+            }
+            scene.addChild(root);
+        }
+        return scene;
+    }
+
+    private static void sceneFrame(Scene scene) {
+        scene.processInputAll(0.016f);
+        scene.updateAll(0.016f);
+    }
+
+    private static void runOnNewThread(final Runnable test) throws Throwable {
+        final Throwable[] failure = new Throwable[1];
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    test.run();
+                } catch (Throwable t) {
+                    failure[0] = t;
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.core;
+
+import deamont66.engine.components.EntityComponent;
+import deamont66.engine.core.math.Bounds;
+import deamont66.engine.core.math.DynamicAabbTree;
+import deamont66.engine.core.math.Matrix4f;
+import deamont66.engine.core.math.Vector3f;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Tests of {@link SpatialIndex}. Entities of a scene are randomly moved,
+ * added and removed and the index and its queries are compared with world
+ * bounds of all entities.
+ *
+ * @author JiriSimecek
+ */
+public class SpatialIndexTest extends TestCase {
+
+    private static final float WORLD = 100;
+    private static final int TICKS = 30;
+    private static final int QUERIES = 50;
+
+    private Scene scene;
+    private SpatialIndex index;
+    private Random random;
+
+    /**
+     * Component with box bounds, entities without it are indexed as points.
+     */
+    private static final class BoxComponent extends EntityComponent {
+
+        private final Bounds bounds;
+
+        BoxComponent(float size) {
+            bounds = new Bounds().set(-size, -size, -size, size, size, size);
+        }
+
+        @Override
+        public Bounds getLocalBounds() {
+            return bounds;
+        }
+    }
+
+    @Override
+    protected void setUp() {
+        random = new Random(13);
+        scene = new Scene();
+        scene.setCamera(new Entity());
+        for (int i = 0; i < 100; i++) {
+            scene.addChild(createEntity());
+        }
+        index = scene.getSpatialIndex();
+    }
+
+    private Entity createEntity() {
+        Entity entity = new Entity();
+        if (random.nextInt(4) != 0) {
+            entity.addComponent(new BoxComponent(0.1f + random.nextFloat() * 2));
+        }
+        entity.getTransform().setPos(random.nextFloat() * WORLD, random.nextFloat() * WORLD, random.nextFloat() * WORLD);
+        if (random.nextInt(3) == 0) {
+            Entity child = new Entity();
+            child.addComponent(new BoxComponent(0.5f));
+            child.getTransform().setPos(random.nextFloat() * 4, 0, 0);
+            entity.addChild(child);
+        }
+        return entity;
+    }
+
+    private Vector3f randomAxis() {
+        return new Vector3f(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f).normalized();
+    }
+
+    /**
+     * Moves, rotates, adds and removes random entities and updates scene.
+     */
+    private void tick() {
+        List<Entity> entities = new ArrayList<>(scene.getAllEntities());
+        for (Entity entity : entities) {
+            int op = random.nextInt(20);
+            if (op < 4) {
+                Vector3f pos = entity.getTransform().getPos();
+                // mostly small moves which stay in the enlarged box
+                float scale = op == 0 ? 10 : 0.05f;
+                entity.getTransform().setPos(pos.add(randomAxis().mul(scale)));
+            } else if (op == 4) {
+                entity.getTransform().rotate(randomAxis(), random.nextFloat());
+            } else if (op == 5 && entity.getScene() != null) {
+                entity.detach();
+            }
+        }
+        for (int i = random.nextInt(10); i > 0; i--) {
+            scene.addChild(createEntity());
+        }
+        scene.updateAll(0.016f);
+    }
+
+    private void assertIndexMatchesScene() {
+        DynamicAabbTree<Entity> tree = index.getTree();
+        List<Entity> entities = scene.getAllEntities();
+        assertEquals(entities.size(), index.getEntityCount());
+
+        float[] expected = new float[6];
+        float[] actual = new float[6];
+        for (Entity entity : entities) {
+            int proxy = entity.getSpatialProxy();
+            assertTrue(proxy != DynamicAabbTree.NULL);
+            assertSame(entity, tree.getData(proxy));
+
+            getBox(entity, expected);
+            tree.getBox(proxy, actual, 0);
+            for (int i = 0; i < 6; i++) {
+                assertEquals(expected[i], actual[i]);
+            }
+        }
+    }
+
+    public void testFirstUpdateIndexesAll() {
+        assertIndexMatchesScene();
+    }
+
+    public void testUpdateFollowsChanges() {
+        for (int t = 0; t < TICKS; t++) {
+            tick();
+            assertIndexMatchesScene();
+        }
+    }
+
+    public void testParentMoveMovesChildren() {
+        Entity parent = scene.getChild(0);
+        Entity child = new Entity();
+        child.addComponent(new BoxComponent(1));
+        parent.addChild(child);
+        scene.updateAll(0.016f);
+
+        parent.getTransform().setPos(parent.getTransform().getPos().add(new Vector3f(50, 0, 0)));
+        scene.updateAll(0.016f);
+        assertIndexMatchesScene();
+    }
+
+    public void testDetachedSubtreeIsRemoved() {
+        Entity root = scene.getChild(0);
+        Entity child = new Entity();
+        root.addChild(child);
+        scene.updateAll(0.016f);
+
+        int count = index.getEntityCount();
+        int subtree = root.getAllAttached().size();
+        root.detach();
+        assertEquals(count - subtree, index.getEntityCount());
+        assertEquals(DynamicAabbTree.NULL, child.getSpatialProxy());
+        scene.updateAll(0.016f);
+        assertIndexMatchesScene();
+    }
+
+    private static void getBox(Entity entity, float[] dest) {
+        Bounds bounds = entity.getWorldBounds();
+        if (bounds.isEmpty()) {
+            Matrix4f world = entity.getTransform().getWorldMatrix();
+            dest[0] = dest[3] = world.m03;
+            dest[1] = dest[4] = world.m13;
+            dest[2] = dest[5] = world.m23;
+        } else {
+            bounds.getBox(dest, 0);
+        }
+    }
+
+    private static float distanceSquared(float[] b, Vector3f p) {
+        float dx = Math.max(0, Math.max(b[0] - p.x, p.x - b[3]));
+        float dy = Math.max(0, Math.max(b[1] - p.y, p.y - b[4]));
+        float dz = Math.max(0, Math.max(b[2] - p.z, p.z - b[5]));
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    // slab test in double precision, -1 if ray misses
+    private static float intersectRay(float[] b, Vector3f o, Vector3f d, float maxDistance) {
+        double near = 0, far = maxDistance;
+        float[] origin = {o.x, o.y, o.z};
+        float[] direction = {d.x, d.y, d.z};
+        for (int axis = 0; axis < 3; axis++) {
+            if (direction[axis] == 0) {
+                if (origin[axis] < b[axis] || origin[axis] > b[axis + 3]) {
+                    return -1;
+                }
+                continue;
+            }
+            double t1 = (b[axis] - origin[axis]) / (double) direction[axis];
+            double t2 = (b[axis + 3] - origin[axis]) / (double) direction[axis];
+            near = Math.max(near, Math.min(t1, t2));
+            far = Math.min(far, Math.max(t1, t2));
+        }
+        return near <= far ? (float) near : -1;
+    }
+
+    private Vector3f randomPoint() {
+        return new Vector3f(random.nextFloat() * WORLD, random.nextFloat() * WORLD, random.nextFloat() * WORLD);
+    }
+
+    public void testRaycastReturnsNearestHitsInOrder() {
+        Entity[] dest = new Entity[4];
+        float[] distances = new float[dest.length];
+        float[] box = new float[6];
+        for (int t = 0; t < TICKS; t++) {
+            tick();
+            for (int q = 0; q < QUERIES; q++) {
+                // aimed through center of random box, so rays hit something
+                List<Entity> entities = scene.getAllEntities();
+                Bounds target;
+                do {
+                    target = entities.get(random.nextInt(entities.size())).getWorldBounds();
+                } while (target.isEmpty());
+                Vector3f origin = randomPoint();
+                Vector3f direction = target.getCenter().sub(origin).normalized();
+                float maxDistance = WORLD;
+
+                float[] expected = new float[entities.size()];
+                int hits = 0;
+                for (Entity entity : entities) {
+                    getBox(entity, box);
+                    float distance = intersectRay(box, origin, direction, maxDistance);
+                    if (distance >= 0) {
+                        expected[hits++] = distance;
+                    }
+                }
+                Arrays.sort(expected, 0, hits);
+
+                int count = index.raycast(origin, direction, maxDistance, dest, distances);
+                assertEquals(Math.min(hits, dest.length), count);
+                for (int i = 0; i < count; i++) {
+                    assertEquals(expected[i], distances[i], 1e-3f);
+                    if (i > 0) {
+                        assertTrue(distances[i - 1] <= distances[i]);
+                    }
+                    getBox(dest[i], box);
+                    assertEquals(intersectRay(box, origin, direction, maxDistance), distances[i], 1e-3f);
+                }
+            }
+        }
+    }
+
+    public void testSphereQuery() {
+        Entity[] dest = new Entity[1024];
+        float[] box = new float[6];
+        for (int t = 0; t < TICKS; t++) {
+            tick();
+            for (int q = 0; q < QUERIES; q++) {
+                Vector3f center = randomPoint();
+                float radius = random.nextFloat() * 20;
+
+                HashSet<Entity> expected = new HashSet<>();
+                for (Entity entity : scene.getAllEntities()) {
+                    getBox(entity, box);
+                    if (distanceSquared(box, center) <= radius * radius) {
+                        expected.add(entity);
+                    }
+                }
+                int count = index.querySphere(center, radius, dest);
+                assertEquals(expected, new HashSet<>(Arrays.asList(dest).subList(0, count)));
+                assertEquals(expected.size(), count);
+            }
+        }
+    }
+
+    public void testNearest() {
+        Entity[] dest = new Entity[6];
+        float[] distances = new float[dest.length];
+        float[] box = new float[6];
+        for (int t = 0; t < TICKS; t++) {
+            tick();
+            for (int q = 0; q < QUERIES; q++) {
+                Vector3f point = randomPoint();
+
+                List<Entity> entities = scene.getAllEntities();
+                float[] expected = new float[entities.size()];
+                for (int i = 0; i < expected.length; i++) {
+                    getBox(entities.get(i), box);
+                    expected[i] = distanceSquared(box, point);
+                }
+                Arrays.sort(expected);
+
+                int count = index.nearest(point, dest, distances);
+                assertEquals(Math.min(expected.length, dest.length), count);
+                for (int i = 0; i < count; i++) {
+                    // ties may come in any order, distances may not
+                    assertEquals(expected[i], distances[i]);
+                    getBox(dest[i], box);
+                    assertEquals(distanceSquared(box, point), distances[i]);
+                }
+            }
+        }
+    }
+
+    public void testFullDestinationStopsQuery() {
+        Entity[] dest = new Entity[3];
+        assertEquals(dest.length, index.querySphere(new Vector3f(WORLD / 2, WORLD / 2, WORLD / 2), WORLD, dest));
+        for (Entity entity : dest) {
+            assertNotNull(entity);
+        }
+    }
+}
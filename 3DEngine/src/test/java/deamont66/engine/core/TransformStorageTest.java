@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.core;
+
+import deamont66.engine.core.math.BatchMath;
+import deamont66.engine.core.math.Matrix4f;
+import deamont66.engine.core.math.Quaternion;
+import deamont66.engine.core.math.Vector3f;
+import java.util.ArrayList;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Tests of {@link TransformStorage}. Random changes are applied both to the
+ * storage and to a graph of {@link Transform} objects, world matrices have
+ * to match.
+ *
+ * @author JiriSimecek
+ */
+public class TransformStorageTest extends TestCase {
+
+    private static final int COUNT = 200;
+    private static final int ROUNDS = 50;
+    private static final float EPSILON = 1e-3f;
+
+    private TransformStorage storage;
+    private Random random;
+    // same transform at same index in both lists
+    private ArrayList<PackedTransform> packed;
+    private ArrayList<Transform> transforms;
+
+    @Override
+    protected void setUp() {
+        storage = new TransformStorage(4);
+        random = new Random(17);
+        packed = new ArrayList<>();
+        transforms = new ArrayList<>();
+    }
+
+    private void create() {
+        int parent = packed.isEmpty() || random.nextInt(4) == 0 ? -1 : random.nextInt(packed.size());
+        PackedTransform p = storage.create(parent < 0 ? null : packed.get(parent));
+        Transform t = new Transform();
+        t.setParent(parent < 0 ? null : transforms.get(parent));
+        packed.add(p);
+        transforms.add(t);
+        randomize(packed.size() - 1);
+    }
+
+    private void randomize(int i) {
+        Vector3f pos = new Vector3f(random.nextFloat() * 20 - 10, random.nextFloat() * 20 - 10, random.nextFloat() * 20 - 10);
+        Vector3f axis = new Vector3f(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f).normalized();
+        Quaternion rot = new Quaternion(axis, random.nextFloat() * 6);
+        Vector3f scale = new Vector3f(0.5f + random.nextFloat(), 0.5f + random.nextFloat(), 0.5f + random.nextFloat());
+
+        packed.get(i).setPos(pos);
+        packed.get(i).setRot(rot);
+        packed.get(i).setScale(scale);
+        transforms.get(i).setPos(pos);
+        transforms.get(i).setRot(rot);
+        transforms.get(i).setScale(scale);
+    }
+
+    private void reparent(int i) {
+        int parent = random.nextInt(3) == 0 ? -1 : random.nextInt(packed.size());
+        try {
+            packed.get(i).setParent(parent < 0 ? null : packed.get(parent));
+        } catch (IllegalArgumentException e) {
+            // would create cycle
+            return;
+        }
+        transforms.get(i).setParent(parent < 0 ? null : transforms.get(parent));
+    }
+
+    private void destroy(int i) {
+        storage.destroy(packed.get(i));
+        assertTrue(packed.get(i).isDestroyed());
+        // children become roots keeping their local transformation
+        Transform destroyed = transforms.get(i);
+        for (Transform t : transforms) {
+            if (t.getParent() == destroyed) {
+                t.setParent(null);
+            }
+        }
+        packed.remove(i);
+        transforms.remove(i);
+    }
+
+    private void mutate() {
+        for (int i = packed.size() - 1; i >= 0; i--) {
+            int op = random.nextInt(20);
+            if (op < 3) {
+                randomize(i);
+            } else if (op == 3) {
+                reparent(i);
+            } else if (op == 4) {
+                destroy(i);
+            } else if (op == 5) {
+                Vector3f axis = new Vector3f(0, 1, 0);
+                packed.get(i).rotate(axis, 0.3f);
+                transforms.get(i).rotate(axis, 0.3f);
+            }
+        }
+        for (int i = random.nextInt(20); i > 0; i--) {
+            create();
+        }
+    }
+
+    private void assertWorldMatricesMatch() {
+        storage.updateWorldMatrices();
+        assertEquals(packed.size(), storage.getAliveCount());
+
+        float[] world = storage.getWorldMatrices();
+        Matrix4f matrix = new Matrix4f();
+        for (int i = 0; i < packed.size(); i++) {
+            PackedTransform p = packed.get(i);
+            Matrix4f expected = transforms.get(i).getWorldMatrix();
+            int o = p.getIndex() * BatchMath.AFFINE_SIZE;
+            for (int row = 0; row < 3; row++) {
+                for (int column = 0; column < 4; column++) {
+                    float e = expected.getElement(row, column);
+                    assertEquals(e, world[o + row * 4 + column], EPSILON * Math.max(1, Math.abs(e)));
+                }
+            }
+            assertEquals(expected.m03, p.getTransformation(matrix).m03, EPSILON * Math.max(1, Math.abs(expected.m03)));
+
+            // parents are stored before children
+            PackedTransform parent = p.getParent();
+            if (parent != null) {
+                assertTrue(parent.getIndex() < p.getIndex());
+            }
+        }
+    }
+
+    public void testMatchesTransformGraph() {
+        for (int i = 0; i < COUNT; i++) {
+            create();
+        }
+        assertWorldMatricesMatch();
+        for (int round = 0; round < ROUNDS; round++) {
+            mutate();
+            assertWorldMatricesMatch();
+        }
+    }
+
+    public void testUnchangedUpdateKeepsMatrices() {
+        for (int i = 0; i < COUNT; i++) {
+            create();
+        }
+        storage.updateWorldMatrices();
+        float[] before = storage.getWorldMatrices().clone();
+        storage.updateWorldMatrices();
+        float[] after = storage.getWorldMatrices();
+        for (int i = 0; i < storage.getCount() * BatchMath.AFFINE_SIZE; i++) {
+            assertEquals(before[i], after[i]);
+        }
+    }
+
+    public void testCycleIsRejected() {
+        PackedTransform root = storage.create(null);
+        PackedTransform child = storage.create(root);
+        try {
+            root.setParent(child);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    public void testDestroyedTransformIsRejected() {
+        PackedTransform transform = storage.create(null);
+        storage.destroy(transform);
+        try {
+            transform.setPos(1, 2, 3);
+            fail();
+        } catch (IllegalStateException e) {
+        }
+    }
+}
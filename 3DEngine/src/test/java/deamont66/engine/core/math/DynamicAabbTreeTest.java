@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.core.math;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import junit.framework.TestCase;
+
+/**
+ * Tests of {@link DynamicAabbTree}. Random inserts, moves and removes are
+ * compared with brute force tests of all boxes.
+ *
+ * @author JiriSimecek
+ */
+public class DynamicAabbTreeTest extends TestCase {
+
+    private static final float WORLD = 100;
+    private static final int ROUNDS = 20;
+    private static final int QUERIES = 50;
+
+    private DynamicAabbTree<Integer> tree;
+    // exact boxes of objects by proxy
+    private Map<Integer, float[]> boxes;
+    private Random random;
+    private int nextId;
+
+    @Override
+    protected void setUp() {
+        tree = new DynamicAabbTree<>(0.5f);
+        boxes = new HashMap<>();
+        random = new Random(11);
+    }
+
+    private float[] randomBox(float maxSize) {
+        float x = random.nextFloat() * WORLD, y = random.nextFloat() * WORLD, z = random.nextFloat() * WORLD;
+        return new float[]{x, y, z,
+            x + random.nextFloat() * maxSize, y + random.nextFloat() * maxSize, z + random.nextFloat() * maxSize};
+    }
+
+    private void insert() {
+        float[] b = randomBox(5);
+        int proxy = tree.insert(b[0], b[1], b[2], b[3], b[4], b[5], nextId++);
+        assertNull(boxes.put(proxy, b));
+    }
+
+    private void move(int proxy) {
+        float[] b = boxes.get(proxy);
+        // mostly small moves which stay in the enlarged box
+        float scale = random.nextInt(4) == 0 ? 20 : 0.2f;
+        float dx = (random.nextFloat() - 0.5f) * scale;
+        float dy = (random.nextFloat() - 0.5f) * scale;
+        float dz = (random.nextFloat() - 0.5f) * scale;
+        b[0] += dx;
+        b[3] += dx;
+        b[1] += dy;
+        b[4] += dy;
+        b[2] += dz;
+        b[5] += dz;
+        tree.move(proxy, b[0], b[1], b[2], b[3], b[4], b[5]);
+    }
+
+    private void mutate() {
+        ArrayList<Integer> proxies = new ArrayList<>(boxes.keySet());
+        for (int proxy : proxies) {
+            int op = random.nextInt(10);
+            if (op == 0) {
+                tree.remove(proxy);
+                boxes.remove(proxy);
+            } else if (op < 5) {
+                move(proxy);
+            }
+        }
+        for (int i = random.nextInt(proxies.size() / 5 + 20); i > 0; i--) {
+            insert();
+        }
+    }
+
+    private static final class Collector implements DynamicAabbTree.Callback<Integer> {
+
+        final Set<Integer> found = new HashSet<>();
+
+        @Override
+        public boolean found(int proxy, Integer data) {
+            assertTrue("reported twice", found.add(proxy));
+            return true;
+        }
+    }
+
+    private static float distanceSquared(float[] b, float x, float y, float z) {
+        float dx = Math.max(0, Math.max(b[0] - x, x - b[3]));
+        float dy = Math.max(0, Math.max(b[1] - y, y - b[4]));
+        float dz = Math.max(0, Math.max(b[2] - z, z - b[5]));
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    public void testTreeMatchesBoxes() {
+        for (int i = 0; i < 200; i++) {
+            insert();
+        }
+        float[] box = new float[6];
+        for (int round = 0; round < ROUNDS; round++) {
+            mutate();
+            assertEquals(boxes.size(), tree.getProxyCount());
+            for (Map.Entry<Integer, float[]> entry : boxes.entrySet()) {
+                tree.getBox(entry.getKey(), box, 0);
+                assertTrue(Arrays.equals(entry.getValue(), box));
+                // enlarged box always contains exact box
+                tree.getFatBox(entry.getKey(), box, 0);
+                float[] b = entry.getValue();
+                assertTrue(box[0] <= b[0] && box[1] <= b[1] && box[2] <= b[2]
+                        && box[3] >= b[3] && box[4] >= b[4] && box[5] >= b[5]);
+            }
+            // balanced by rotations
+            assertTrue(tree.getHeight() <= 4 * (32 - Integer.numberOfLeadingZeros(boxes.size())));
+        }
+    }
+
+    public void testBoxQuery() {
+        for (int i = 0; i < 300; i++) {
+            insert();
+        }
+        for (int round = 0; round < ROUNDS; round++) {
+            mutate();
+            for (int q = 0; q < QUERIES; q++) {
+                float[] query = randomBox(30);
+                Set<Integer> expected = new HashSet<>();
+                for (Map.Entry<Integer, float[]> entry : boxes.entrySet()) {
+                    float[] b = entry.getValue();
+                    if (b[0] <= query[3] && b[3] >= query[0]
+                            && b[1] <= query[4] && b[4] >= query[1]
+                            && b[2] <= query[5] && b[5] >= query[2]) {
+                        expected.add(entry.getKey());
+                    }
+                }
+                Collector collector = new Collector();
+                int count = tree.query(query[0], query[1], query[2], query[3], query[4], query[5], collector);
+                assertEquals(expected, collector.found);
+                assertEquals(expected.size(), count);
+            }
+        }
+    }
+
+    public void testSphereQuery() {
+        for (int i = 0; i < 300; i++) {
+            insert();
+        }
+        for (int round = 0; round < ROUNDS; round++) {
+            mutate();
+            for (int q = 0; q < QUERIES; q++) {
+                float x = random.nextFloat() * WORLD, y = random.nextFloat() * WORLD, z = random.nextFloat() * WORLD;
+                float radius = random.nextFloat() * 20;
+                Set<Integer> expected = new HashSet<>();
+                for (Map.Entry<Integer, float[]> entry : boxes.entrySet()) {
+                    if (distanceSquared(entry.getValue(), x, y, z) <= radius * radius) {
+                        expected.add(entry.getKey());
+                    }
+                }
+                Collector collector = new Collector();
+                tree.querySphere(x, y, z, radius, collector);
+                assertEquals(expected, collector.found);
+            }
+        }
+    }
+
+    public void testFrustumQuery() {
+        for (int i = 0; i < 300; i++) {
+            insert();
+        }
+        Matrix4f projection = new Matrix4f().initPerspective((float) Math.toRadians(60), 1, 1, 80);
+        Matrix4f view = new Matrix4f();
+        Frustum frustum = new Frustum();
+        for (int round = 0; round < ROUNDS; round++) {
+            mutate();
+            for (int q = 0; q < QUERIES; q++) {
+                view.initTranslation(-random.nextFloat() * WORLD, -random.nextFloat() * WORLD, -random.nextFloat() * WORLD);
+                frustum.set(projection.mul(view));
+                Set<Integer> expected = new HashSet<>();
+                for (Map.Entry<Integer, float[]> entry : boxes.entrySet()) {
+                    if (frustum.classifyAabb(entry.getValue(), 0, Frustum.ALL_PLANES) != Frustum.OUTSIDE) {
+                        expected.add(entry.getKey());
+                    }
+                }
+                Collector collector = new Collector();
+                tree.queryFrustum(frustum, collector);
+                assertEquals(expected, collector.found);
+            }
+        }
+    }
+
+    public void testRaycastFindsAllHits() {
+        for (int i = 0; i < 300; i++) {
+            insert();
+        }
+        for (int round = 0; round < ROUNDS; round++) {
+            mutate();
+            for (int q = 0; q < QUERIES; q++) {
+                final float ox = random.nextFloat() * WORLD, oy = random.nextFloat() * WORLD, oz = random.nextFloat() * WORLD;
+                Vector3f direction = new Vector3f(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f).normalized();
+                final float maxDistance = random.nextFloat() * WORLD;
+
+                HashMap<Integer, Float> expected = new HashMap<>();
+                for (Map.Entry<Integer, float[]> entry : boxes.entrySet()) {
+                    float distance = intersectRay(entry.getValue(), ox, oy, oz, direction, maxDistance);
+                    if (distance >= 0) {
+                        expected.put(entry.getKey(), distance);
+                    }
+                }
+                final HashMap<Integer, Float> hits = new HashMap<>();
+                tree.raycast(ox, oy, oz, direction.x, direction.y, direction.z, maxDistance, new DynamicAabbTree.RayCallback<Integer>() {
+
+                    @Override
+                    public float hit(int proxy, Integer data, float distance) {
+                        assertNull("reported twice", hits.put(proxy, distance));
+                        return maxDistance;
+                    }
+                });
+                assertEquals(expected.keySet(), hits.keySet());
+                for (Map.Entry<Integer, Float> hit : hits.entrySet()) {
+                    assertEquals(expected.get(hit.getKey()), hit.getValue(), 1e-3f);
+                }
+            }
+        }
+    }
+
+    // slab test in double precision
+    private static float intersectRay(float[] b, float ox, float oy, float oz, Vector3f d, float maxDistance) {
+        double near = 0, far = maxDistance;
+        float[] o = {ox, oy, oz};
+        float[] dir = {d.x, d.y, d.z};
+        for (int axis = 0; axis < 3; axis++) {
+            if (dir[axis] == 0) {
+                if (o[axis] < b[axis] || o[axis] > b[axis + 3]) {
+                    return -1;
+                }
+                continue;
+            }
+            double t1 = (b[axis] - o[axis]) / (double) dir[axis];
+            double t2 = (b[axis + 3] - o[axis]) / (double) dir[axis];
+            near = Math.max(near, Math.min(t1, t2));
+            far = Math.min(far, Math.max(t1, t2));
+        }
+        return near <= far ? (float) near : -1;
+    }
+
+    public void testNearest() {
+        for (int i = 0; i < 300; i++) {
+            insert();
+        }
+        int k = 8;
+        int[] proxies = new int[k];
+        float[] distances = new float[k];
+        for (int round = 0; round < ROUNDS; round++) {
+            mutate();
+            for (int q = 0; q < QUERIES; q++) {
+                float x = random.nextFloat() * WORLD, y = random.nextFloat() * WORLD, z = random.nextFloat() * WORLD;
+                float[] expected = new float[boxes.size()];
+                int i = 0;
+                for (float[] b : boxes.values()) {
+                    expected[i++] = distanceSquared(b, x, y, z);
+                }
+                Arrays.sort(expected);
+
+                int count = tree.nearest(x, y, z, k, proxies, distances);
+                assertEquals(Math.min(k, boxes.size()), count);
+                for (i = 0; i < count; i++) {
+                    // ties may come in any order, distances may not
+                    assertEquals(expected[i], distances[i]);
+                    assertEquals(distanceSquared(boxes.get(proxies[i]), x, y, z), distances[i]);
+                }
+            }
+        }
+    }
+
+    public void testRemoveAll() {
+        for (int i = 0; i < 100; i++) {
+            insert();
+        }
+        for (int proxy : new ArrayList<>(boxes.keySet())) {
+            tree.remove(proxy);
+        }
+        assertEquals(0, tree.getProxyCount());
+        assertEquals(-1, tree.getHeight());
+        assertEquals(0, tree.query(-WORLD, -WORLD, -WORLD, 2 * WORLD, 2 * WORLD, 2 * WORLD, new Collector()));
+    }
+
+    public void testInvalidProxy() {
+        insert();
+        int proxy = boxes.keySet().iterator().next();
+        tree.remove(proxy);
+        try {
+            tree.remove(proxy);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+}
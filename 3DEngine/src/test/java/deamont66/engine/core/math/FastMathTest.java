@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.core.math;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks approximations of {@link FastMath} against {@link Math} over their
+ * whole domain, using error bounds documented in FastMath.
+ *
+ * @author JiriSimecek
+ */
+public class FastMathTest extends TestCase {
+
+    private static final int STEPS = 1000000;
+
+    private static final double SIN_ERROR = 1e-6;
+    private static final double SIN_REDUCTION_ERROR = 2e-7;
+    private static final double ATAN2_ERROR = 2e-5;
+    private static final double ACOS_ERROR = 2e-6;
+    private static final double INV_SQRT_RELATIVE_ERROR = 5e-6;
+
+    public void testSinCos() {
+        for (int i = 0; i <= STEPS; i++) {
+            float x = (float) (-2 * Math.PI + 4 * Math.PI * i / STEPS);
+            assertError("sin", x, Math.sin(x), FastMath.sinApprox(x), SIN_ERROR);
+            assertError("cos", x, Math.cos(x), FastMath.cosApprox(x), SIN_ERROR);
+        }
+    }
+
+    public void testSinCosBigAngles() {
+        for (int i = 0; i <= STEPS; i++) {
+            float x = -10000 + 20000.0f * i / STEPS;
+            double error = SIN_ERROR + Math.abs(x) * SIN_REDUCTION_ERROR;
+            assertError("sin", x, Math.sin(x), FastMath.sinApprox(x), error);
+            assertError("cos", x, Math.cos(x), FastMath.cosApprox(x), error);
+        }
+    }
+
+    public void testAtan2() {
+        int steps = 1000;
+        for (int i = 0; i <= steps; i++) {
+            for (int j = 0; j <= steps; j++) {
+                float y = -1 + 2.0f * i / steps;
+                float x = -1 + 2.0f * j / steps;
+                assertError("atan2 y=" + y, x, Math.atan2(y, x), FastMath.atan2Approx(y, x), ATAN2_ERROR);
+                // only ratio matters
+                assertError("atan2 y=" + y * 1e4f, x * 1e4f, Math.atan2(y * 1e4f, x * 1e4f),
+                        FastMath.atan2Approx(y * 1e4f, x * 1e4f), ATAN2_ERROR);
+            }
+        }
+        assertEquals(0, FastMath.atan2Approx(0, 0), 0);
+    }
+
+    public void testAcos() {
+        for (int i = 0; i <= STEPS; i++) {
+            float x = (float) (-1 + 2.0 * i / STEPS);
+            assertError("acos", x, Math.acos(x), FastMath.acosApprox(x), ACOS_ERROR);
+        }
+        assertError("acos", 1, 0, FastMath.acosApprox(1), ACOS_ERROR);
+        assertError("acos", -1, Math.PI, FastMath.acosApprox(-1), ACOS_ERROR);
+    }
+
+    public void testAcosClampsOutOfRange() {
+        float[] above = {Math.nextUp(1.0f), 1.0001f, 1.1f, 10};
+        for (float x : above) {
+            assertError("acos", x, 0, FastMath.acosApprox(x), ACOS_ERROR);
+            assertError("acos", -x, Math.PI, FastMath.acosApprox(-x), ACOS_ERROR);
+        }
+    }
+
+    public void testInvSqrt() {
+        for (int i = 0; i <= STEPS; i++) {
+            float x = (float) Math.pow(10, -30 + 60.0 * i / STEPS);
+            double exact = 1 / Math.sqrt(x);
+            assertError("invSqrt", x, 1, FastMath.invSqrtApprox(x) / exact, INV_SQRT_RELATIVE_ERROR);
+        }
+    }
+
+    public void testSelectedImplementation() {
+        boolean approximate = FastMath.isApproximate();
+        try {
+            FastMath.setApproximate(true);
+            assertEquals(FastMath.sinApprox(1), FastMath.sin(1), 0);
+            assertEquals(FastMath.acosApprox(0.3f), FastMath.acos(0.3f), 0);
+            FastMath.setApproximate(false);
+            assertEquals((float) Math.sin(1), FastMath.sin(1), 0);
+            assertEquals((float) Math.acos(0.3f), FastMath.acos(0.3f), 0);
+        } finally {
+            FastMath.setApproximate(approximate);
+        }
+    }
+
+    private static void assertError(String function, float x, double expected, double actual, double maxError) {
+        if (!(Math.abs(actual - expected) <= maxError)) {
+            fail(function + "(" + x + ") = " + actual + ", expected " + expected + " +- " + maxError);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2012 - 2014, Jiří Šimeček
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ * 
+ */
+package deamont66.engine.core.math;
+
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Tests of {@link Frustum}. Most of them use orthographic frustum, which is
+ * box x, y in [-10, 10] and z in [-100, -1], so expected results are easy to
+ * tell.
+ *
+ * @author JiriSimecek
+ */
+public class FrustumTest extends TestCase {
+
+    private Frustum frustum;
+
+    @Override
+    protected void setUp() {
+        frustum = new Frustum(new Matrix4f().initOrthographic(-10, 10, -10, 10, 1, 100));
+    }
+
+    public void testPointInside() {
+        assertTrue(frustum.containsPoint(0, 0, -50));
+        assertTrue(frustum.containsPoint(new Vector3f(9, -9, -2)));
+    }
+
+    public void testPointOutsideEachPlane() {
+        assertFalse(frustum.containsPoint(-11, 0, -50));
+        assertFalse(frustum.containsPoint(11, 0, -50));
+        assertFalse(frustum.containsPoint(0, -11, -50));
+        assertFalse(frustum.containsPoint(0, 11, -50));
+        assertFalse(frustum.containsPoint(0, 0, 0));
+        assertFalse(frustum.containsPoint(0, 0, -101));
+    }
+
+    public void testPlaneDistance() {
+        assertEquals(5, frustum.distance(Frustum.PLANE_LEFT, -5, 0, -50), 1e-4f);
+        assertEquals(15, frustum.distance(Frustum.PLANE_RIGHT, -5, 0, -50), 1e-4f);
+        assertEquals(-2, frustum.distance(Frustum.PLANE_NEAR, 0, 0, 1), 1e-4f);
+        assertEquals(1, frustum.distance(Frustum.PLANE_FAR, 0, 0, -99), 1e-3f);
+    }
+
+    public void testSphereInsideEachPlane() {
+        // spheres crossing one plane still intersect
+        assertTrue(frustum.intersectsSphere(-11, 0, -50, 2));
+        assertTrue(frustum.intersectsSphere(11, 0, -50, 2));
+        assertTrue(frustum.intersectsSphere(0, -11, -50, 2));
+        assertTrue(frustum.intersectsSphere(0, 11, -50, 2));
+        assertTrue(frustum.intersectsSphere(0, 0, 0, 2));
+        assertTrue(frustum.intersectsSphere(0, 0, -101, 2));
+        assertTrue(frustum.intersectsSphere(new Vector3f(0, 0, -50), 0));
+    }
+
+    public void testSphereOutsideEachPlane() {
+        assertFalse(frustum.intersectsSphere(-13, 0, -50, 2));
+        assertFalse(frustum.intersectsSphere(13, 0, -50, 2));
+        assertFalse(frustum.intersectsSphere(0, -13, -50, 2));
+        assertFalse(frustum.intersectsSphere(0, 13, -50, 2));
+        assertFalse(frustum.intersectsSphere(0, 0, 2, 2));
+        assertFalse(frustum.intersectsSphere(0, 0, -103, 2));
+    }
+
+    public void testPerspective() {
+        // camera looks along +z
+        Frustum perspective = new Frustum(new Matrix4f().initPerspective((float) Math.toRadians(90), 1, 1, 100));
+        assertTrue(perspective.containsPoint(0, 0, 50));
+        assertTrue(perspective.containsPoint(49, 49, 50));
+        assertFalse(perspective.containsPoint(51, 0, 50));
+        assertFalse(perspective.containsPoint(0, 0, -50));
+        assertFalse(perspective.containsPoint(0, 0, 0.5f));
+        assertFalse(perspective.containsPoint(0, 0, 101));
+        assertTrue(perspective.intersectsAabb(50, -1, 40, 60, 1, 60));
+        assertFalse(perspective.intersectsAabb(70, -1, 40, 80, 1, 60));
+    }
+
+    public void testClassifyInside() {
+        float[] box = {-1, -1, -60, 1, 1, -40};
+        assertEquals(Frustum.INSIDE, frustum.classifyAabb(box, 0, Frustum.ALL_PLANES));
+        assertTrue(frustum.intersectsAabb(box, 0));
+    }
+
+    public void testClassifyOutside() {
+        float[] boxes = {
+            -30, -1, -60, -20, 1, -40,
+            20, -1, -60, 30, 1, -40,
+            -1, -30, -60, 1, -20, -40,
+            -1, 20, -60, 1, 30, -40,
+            -1, -1, 1, 1, 1, 5,
+            -1, -1, -200, 1, 1, -150
+        };
+        for (int b = 0; b < Frustum.PLANE_COUNT; b++) {
+            assertEquals("box " + b, Frustum.OUTSIDE, frustum.classifyAabb(boxes, b * 6, Frustum.ALL_PLANES));
+            assertFalse("box " + b, frustum.intersectsAabb(boxes, b * 6));
+        }
+    }
+
+    public void testClassifyPartialMask() {
+        // crosses left and near plane
+        float[] box = {-15, -1, -5, -5, 1, 5};
+        int mask = frustum.classifyAabb(box, 0, Frustum.ALL_PLANES);
+        assertEquals((1 << Frustum.PLANE_LEFT) | (1 << Frustum.PLANE_NEAR), mask);
+
+        // child inside parent is tested against parent's planes only
+        float[] childInside = {-5, -1, -3, -4, 1, -2};
+        assertEquals(Frustum.INSIDE, frustum.classifyAabb(childInside, 0, mask));
+        float[] childLeft = {-15, -1, -3, -14, 1, -2};
+        assertEquals(Frustum.OUTSIDE, frustum.classifyAabb(childLeft, 0, mask));
+        float[] childAcrossNear = {-5, -1, -3, -4, 1, 2};
+        assertEquals(1 << Frustum.PLANE_NEAR, frustum.classifyAabb(childAcrossNear, 0, mask));
+
+        // planes outside of mask are not tested at all
+        assertEquals(Frustum.INSIDE, frustum.classifyAabb(childLeft, 0, 1 << Frustum.PLANE_RIGHT));
+        assertEquals(Frustum.INSIDE, frustum.classifyAabb(childLeft, 0, Frustum.INSIDE));
+    }
+
+    public void testClassifyLastPlanes() {
+        float[] boxes = {
+            20, -1, -60, 30, 1, -40,
+            -1, -1, -60, 1, 1, -40,
+            -15, -1, -60, -5, 1, -40
+        };
+        byte[] lastPlanes = new byte[3];
+
+        assertEquals(Frustum.OUTSIDE, frustum.classifyAabb(boxes, 0, Frustum.ALL_PLANES, lastPlanes, 0));
+        assertEquals(Frustum.PLANE_RIGHT, lastPlanes[0]);
+        // second test starts at remembered plane and gives same answer
+        assertEquals(Frustum.OUTSIDE, frustum.classifyAabb(boxes, 0, Frustum.ALL_PLANES, lastPlanes, 0));
+        assertEquals(Frustum.PLANE_RIGHT, lastPlanes[0]);
+
+        // remembered plane doesn't change result for visible boxes
+        lastPlanes[1] = Frustum.PLANE_FAR;
+        lastPlanes[2] = Frustum.PLANE_TOP;
+        assertEquals(Frustum.INSIDE, frustum.classifyAabb(boxes, 6, Frustum.ALL_PLANES, lastPlanes, 1));
+        assertEquals(1 << Frustum.PLANE_LEFT, frustum.classifyAabb(boxes, 12, Frustum.ALL_PLANES, lastPlanes, 2));
+        assertEquals(Frustum.PLANE_FAR, lastPlanes[1]);
+        assertEquals(Frustum.PLANE_TOP, lastPlanes[2]);
+
+        // box moved out through another plane
+        boxes[0] = -1;
+        boxes[3] = 1;
+        boxes[2] = 10;
+        boxes[5] = 20;
+        assertEquals(Frustum.OUTSIDE, frustum.classifyAabb(boxes, 0, Frustum.ALL_PLANES, lastPlanes, 0));
+        assertEquals(Frustum.PLANE_NEAR, lastPlanes[0]);
+    }
+
+    public void testCullAabbsMatchesSingleTests() {
+        Random random = new Random(5);
+        int count = 1000;
+        float[] boxes = new float[count * 6];
+        for (int b = 0; b < count; b++) {
+            float x = random.nextFloat() * 40 - 20, y = random.nextFloat() * 40 - 20, z = random.nextFloat() * -120 + 10;
+            float size = random.nextFloat() * 4;
+            boxes[b * 6] = x - size;
+            boxes[b * 6 + 1] = y - size;
+            boxes[b * 6 + 2] = z - size;
+            boxes[b * 6 + 3] = x + size;
+            boxes[b * 6 + 4] = y + size;
+            boxes[b * 6 + 5] = z + size;
+        }
+
+        int[] visible = new int[count];
+        int visibleCount = frustum.cullAabbs(boxes, count, visible);
+        int v = 0;
+        for (int b = 0; b < count; b++) {
+            boolean intersects = frustum.intersectsAabb(boxes, b * 6);
+            assertEquals("box " + b, intersects, frustum.classifyAabb(boxes, b * 6, Frustum.ALL_PLANES) != Frustum.OUTSIDE);
+            if (intersects) {
+                assertEquals("box " + b, b, visible[v++]);
+            }
+        }
+        assertEquals(v, visibleCount);
+        assertTrue(visibleCount > 0 && visibleCount < count);
+    }
+
+    public void testCullSpheresMatchesSingleTests() {
+        Random random = new Random(7);
+        int count = 1000;
+        float[] spheres = new float[count * 4];
+        for (int s = 0; s < count; s++) {
+            spheres[s * 4] = random.nextFloat() * 40 - 20;
+            spheres[s * 4 + 1] = random.nextFloat() * 40 - 20;
+            spheres[s * 4 + 2] = random.nextFloat() * -120 + 10;
+            spheres[s * 4 + 3] = random.nextFloat() * 4;
+        }
+
+        int[] visible = new int[count];
+        int visibleCount = frustum.cullSpheres(spheres, count, visible);
+        int v = 0;
+        for (int s = 0; s < count; s++) {
+            if (frustum.intersectsSphere(spheres[s * 4], spheres[s * 4 + 1], spheres[s * 4 + 2], spheres[s * 4 + 3])) {
+                assertEquals("sphere " + s, s, visible[v++]);
+            }
+        }
+        assertEquals(v, visibleCount);
+        assertTrue(visibleCount > 0 && visibleCount < count);
+    }
+
+    public void testCullChecksArraySizes() {
+        try {
+            frustum.cullAabbs(new float[6], 2, new int[2]);
+            fail("too small bounds array accepted");
+        } catch (IndexOutOfBoundsException expected) {
+        }
+        try {
+            frustum.cullSpheres(new float[8], 2, new int[1]);
+            fail("too small visible array accepted");
+        } catch (IndexOutOfBoundsException expected) {
+        }
+    }
+}